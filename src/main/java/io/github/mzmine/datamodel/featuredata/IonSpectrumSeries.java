@@ -27,6 +27,7 @@ package io.github.mzmine.datamodel.featuredata;
 
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.impl.RawFileScanList;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
@@ -58,11 +59,27 @@ public interface IonSpectrumSeries<T extends MassSpectrum> extends IonSeries {
       IonSpectrumSeries<T> series, List<T> allScans) throws XMLStreamException {
     writer.writeStartElement(CONST.XML_SCAN_LIST_ELEMENT);
     writer.writeAttribute(CONST.XML_NUM_VALUES_ATTR, String.valueOf(series.getNumberOfValues()));
-    final int[] indices = ParsingUtils.getIndicesOfSubListElements(series.getSpectra(), allScans);
+    final int[] indices = getSpectraIndices(series, allScans);
     writer.writeCharacters(ParsingUtils.intArrayToString(indices, indices.length));
     writer.writeEndElement();
   }
 
+  /**
+   * @param allScans All scans belonging to the current collection, see
+   *                 {@link #saveSpectraIndicesToXML(XMLStreamWriter, IonSpectrumSeries, List)}
+   * @return the indices of the spectra of this series in allScans
+   */
+  public static <T extends MassSpectrum> int[] getSpectraIndices(IonSpectrumSeries<T> series,
+      List<T> allScans) {
+    final List<T> spectra = series.getSpectra();
+    if (spectra instanceof RawFileScanList<?> scanList
+        && scanList.getDataFile().getScans() == allScans) {
+      // compact lists already know the indices in the raw data file
+      return scanList.getScanIndices();
+    }
+    return ParsingUtils.getIndicesOfSubListElements(spectra, allScans);
+  }
+
   List<T> getSpectra();
 
   default T getSpectrum(int index) {
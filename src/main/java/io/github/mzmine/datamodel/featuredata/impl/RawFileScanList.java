@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only list of scans that only stores the indices of the scans in
+ * {@link RawDataFile#getScans()} instead of the scan references. Consecutive scans are stored as an
+ * offset and a length, all other lists as an int buffer in the {@link MemoryMapStorage} of the
+ * feature list. Scans are resolved lazily from the raw data file on access.
+ * <p>
+ * Use {@link #of(MemoryMapStorage, List)} to create a compact list, it falls back to the original
+ * list if the scans cannot be mapped to the scan list of a single raw data file.
+ *
+ * @param <T> the scan type, e.g., {@link io.github.mzmine.datamodel.Frame}
+ */
+public final class RawFileScanList<T extends Scan> extends AbstractList<T> implements
+    RandomAccess {
+
+  /**
+   * Scans of a series are usually close to each other in the raw file. Walk forward this many scans
+   * before falling back to a binary search.
+   */
+  private static final int MAX_FORWARD_STEPS = 64;
+
+  private final RawDataFile file;
+  private final int size;
+  // index of the first scan if all scans are consecutive in the raw file
+  private final int offset;
+  // null if all scans are consecutive
+  private final @Nullable IntBuffer scanIndices;
+
+  private RawFileScanList(@NotNull RawDataFile file, int offset, int size,
+      @Nullable IntBuffer scanIndices) {
+    this.file = file;
+    this.offset = offset;
+    this.size = size;
+    this.scanIndices = scanIndices;
+  }
+
+  /**
+   * @param storage the storage for the scan indices, may be null
+   * @param scans   scans of a single raw data file
+   * @return a {@link RawFileScanList} or the original list if the scans are empty or cannot be
+   * mapped to the scans of their raw data file.
+   */
+  @NotNull
+  public static <T extends Scan> List<T> of(@Nullable MemoryMapStorage storage,
+      @NotNull List<T> scans) {
+    if (scans instanceof RawFileScanList<T> || scans.isEmpty()) {
+      return scans;
+    }
+
+    final RawDataFile file = scans.get(0).getDataFile();
+    if (file == null) {
+      return scans;
+    }
+    final List<Scan> fileScans = file.getScans();
+
+    final int[] indices = new int[scans.size()];
+    boolean consecutive = true;
+    int index = -1;
+    for (int i = 0; i < indices.length; i++) {
+      final Scan scan = scans.get(i);
+      if (scan.getDataFile() != file) {
+        return scans;
+      }
+      index = findScanIndex(file, fileScans, scan, index + 1);
+      if (index < 0) {
+        return scans;
+      }
+      indices[i] = index;
+      consecutive &= i == 0 || indices[i - 1] + 1 == index;
+    }
+
+    if (consecutive) {
+      return new RawFileScanList<>(file, indices[0], indices.length, null);
+    }
+    return new RawFileScanList<>(file, -1, indices.length,
+        StorageUtils.storeValuesToIntBuffer(storage, indices));
+  }
+
+  /**
+   * @param startIndex the expected index of the scan, the search walks forward from there
+   * @return the index of the scan in the raw file scans or -1 if the scan is not part of the list
+   */
+  private static int findScanIndex(@NotNull RawDataFile file, @NotNull List<Scan> fileScans,
+      @NotNull Scan scan, int startIndex) {
+    final int numScans = fileScans.size();
+    final int maxIndex = Math.min(numScans, startIndex + MAX_FORWARD_STEPS);
+    for (int i = Math.max(startIndex, 0); i < maxIndex; i++) {
+      if (fileScans.get(i) == scan) {
+        return i;
+      }
+    }
+
+    // scans are sorted by retention time, check all scans with the same rt
+    final int closest = file.binarySearchClosestScanIndex(scan.getRetentionTime());
+    if (closest < 0 || closest >= numScans) {
+      return -1;
+    }
+    final float rt = fileScans.get(closest).getRetentionTime();
+    for (int i = closest;
+        i < numScans && Float.compare(fileScans.get(i).getRetentionTime(), rt) == 0; i++) {
+      if (fileScans.get(i) == scan) {
+        return i;
+      }
+    }
+    for (int i = closest - 1;
+        i >= 0 && Float.compare(fileScans.get(i).getRetentionTime(), rt) == 0; i--) {
+      if (fileScans.get(i) == scan) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    return (T) file.getScan(getScanIndex(index));
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param index the index in this list
+   * @return the index of the scan in {@link RawDataFile#getScans()}
+   */
+  public int getScanIndex(int index) {
+    Objects.checkIndex(index, size);
+    return scanIndices == null ? offset + index : scanIndices.get(index);
+  }
+
+  /**
+   * @return the indices of all scans in {@link RawDataFile#getScans()}
+   */
+  public int[] getScanIndices() {
+    final int[] indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      indices[i] = getScanIndex(i);
+    }
+    return indices;
+  }
+
+  @NotNull
+  public RawDataFile getDataFile() {
+    return file;
+  }
+}
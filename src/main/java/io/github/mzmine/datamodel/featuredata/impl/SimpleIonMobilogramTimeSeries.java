@@ -103,7 +103,8 @@ public class SimpleIonMobilogramTimeSeries implements IonMobilogramTimeSeries {
     }
 
     this.mobilograms = storeMobilograms(storage, mobilograms);
-    this.frames = frames;
+    // only keep the frame indices in the raw data file
+    this.frames = RawFileScanList.of(storage, frames);
     this.summedMobilogram = summedMobilogram;
 
     mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
@@ -204,7 +205,9 @@ public class SimpleIonMobilogramTimeSeries implements IonMobilogramTimeSeries {
    */
   @Override
   public List<Frame> getSpectra() {
-    return Collections.unmodifiableList(frames);
+    // compact frame lists are read-only
+    return frames instanceof RawFileScanList<Frame> ? frames
+        : Collections.unmodifiableList(frames);
   }
 
   @Override
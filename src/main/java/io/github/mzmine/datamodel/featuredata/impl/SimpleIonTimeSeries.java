@@ -80,7 +80,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
     }
 
-    this.scans = scans;
+    // only keep the scan indices in the raw data file
+    this.scans = RawFileScanList.of(storage, scans);
 
     this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
     this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
@@ -171,7 +172,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
 
   @Override
   public List<Scan> getSpectra() {
-    return Collections.unmodifiableList(scans);
+    // compact scan lists are read-only
+    return scans instanceof RawFileScanList<Scan> ? scans : Collections.unmodifiableList(scans);
   }
 
   @Override
@@ -22,23 +22,49 @@
  * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
  * OTHER DEALINGS IN THE SOFTWARE.
  */
-
 package io.github.mzmine.datamodel.features.correlation;
 
 import io.github.mzmine.datamodel.features.FeatureListRow;
-import io.github.mzmine.util.MathUtils;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
- * Map an object to two rows
+ * Map an object to two rows. The undirected pair of row IDs is packed into a primitive long key,
+ * values are stored in primitive hash maps that are split into lock striped segments for concurrent
+ * access. The neighbors of each row are available as compressed sparse rows, see
+ * {@link #getAdjacency()}.
  *
  * @author Robin Schmid
  */
-public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
+public class R2RMap<T> {
+
+  // power of 2, the upper bits of the mixed key select the segment
+  private static final int SEGMENT_BITS = 6;
+  private static final int NUM_SEGMENTS = 1 << SEGMENT_BITS;
+
+  private final Long2ObjectOpenHashMap<T>[] segments;
+  // counts inserted edges to invalidate the adjacency
+  private final AtomicLong numInsertions = new AtomicLong();
+  private volatile @Nullable CachedAdjacency cachedAdjacency;
 
+  @SuppressWarnings("unchecked")
   public R2RMap() {
+    segments = new Long2ObjectOpenHashMap[NUM_SEGMENTS];
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segments[i] = new Long2ObjectOpenHashMap<>();
+    }
   }
 
   /**
@@ -48,8 +74,32 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param b Feature list row with getID >=0
    * @return unique undirected ID
    */
-  public static int toKey(FeatureListRow a, FeatureListRow b) {
-    return MathUtils.undirectedPairing(a.getID(), b.getID());
+  public static long toKey(FeatureListRow a, FeatureListRow b) {
+    return toKey(a.getID(), b.getID());
+  }
+
+  /**
+   * @param a row ID >=0
+   * @param b row ID >=0
+   * @return unique undirected key with the lower ID in the upper 32 bits
+   */
+  public static long toKey(int a, int b) {
+    final int lower = Math.min(a, b);
+    final int upper = Math.max(a, b);
+    return ((long) lower << 32) | (upper & 0xffffffffL);
+  }
+
+  private static int lowerID(long key) {
+    return (int) (key >>> 32);
+  }
+
+  private static int upperID(long key) {
+    return (int) key;
+  }
+
+  private Long2ObjectOpenHashMap<T> segment(long key) {
+    // the hash maps use the lower bits of the same mixed hash for their slots
+    return segments[(int) (HashCommon.mix(key) >>> (Long.SIZE - SEGMENT_BITS))];
   }
 
   /**
@@ -59,7 +109,7 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void add(FeatureListRow a, FeatureListRow b, T value) {
-    this.put(toKey(a, b), value);
+    put(toKey(a, b), value);
   }
 
   /**
@@ -69,7 +119,52 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void put(FeatureListRow a, FeatureListRow b, T value) {
-    super.put(toKey(a, b), value);
+    put(toKey(a, b), value);
+  }
+
+  /**
+   * Maps a value to two row IDs. Arguments a and b are interchangeable and yield the same mapping.
+   */
+  public void put(int a, int b, T value) {
+    put(toKey(a, b), value);
+  }
+
+  private void put(long key, T value) {
+    Objects.requireNonNull(value);
+    final Long2ObjectOpenHashMap<T> segment = segment(key);
+    final T old;
+    synchronized (segment) {
+      old = segment.put(key, value);
+    }
+    if (old == null) {
+      numInsertions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Add all mappings of another map, existing mappings are replaced
+   */
+  public void putAll(R2RMap<? extends T> map) {
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      // same number of segments, keys map to the same segment index
+      final Long2ObjectOpenHashMap<? extends T> source = map.segments[i];
+      final Long2ObjectOpenHashMap<T> copy;
+      synchronized (source) {
+        copy = new Long2ObjectOpenHashMap<>(source.size());
+        for (final Long2ObjectMap.Entry<? extends T> entry : Long2ObjectMaps.fastIterable(
+            source)) {
+          copy.put(entry.getLongKey(), entry.getValue());
+        }
+      }
+      final Long2ObjectOpenHashMap<T> segment = segments[i];
+      final int added;
+      synchronized (segment) {
+        final int before = segment.size();
+        segment.putAll(copy);
+        added = segment.size() - before;
+      }
+      numInsertions.addAndGet(added);
+    }
   }
 
   /**
@@ -78,7 +173,128 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @return the value mapped to the pair of a-b (== b-a) or null if no mapping exists
    */
   public T get(FeatureListRow a, FeatureListRow b) {
-    return get(toKey(a, b));
+    return get(a.getID(), b.getID());
+  }
+
+  /**
+   * Arguments a and b yield the same result in any order.
+   *
+   * @return the value mapped to the pair of row IDs a-b (== b-a) or null if no mapping exists
+   */
+  public T get(int a, int b) {
+    final long key = toKey(a, b);
+    final Long2ObjectOpenHashMap<T> segment = segment(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  /**
+   * @return number of row pairs
+   */
+  public int size() {
+    int size = 0;
+    for (final Long2ObjectOpenHashMap<T> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @return a snapshot of all values
+   */
+  public Collection<T> values() {
+    final List<T> values = new ArrayList<>(size());
+    for (final Long2ObjectOpenHashMap<T> segment : segments) {
+      synchronized (segment) {
+        values.addAll(segment.values());
+      }
+    }
+    return values;
+  }
+
+  /**
+   * The adjacency is computed once and cached until new row pairs are added.
+   *
+   * @return the neighbors of all rows in compressed sparse row format
+   */
+  @NotNull
+  public Adjacency getAdjacency() {
+    final long insertions = numInsertions.get();
+    final CachedAdjacency cached = cachedAdjacency;
+    if (cached != null && cached.insertions() == insertions) {
+      return cached.adjacency();
+    }
+    final Adjacency adjacency = createAdjacency();
+    cachedAdjacency = new CachedAdjacency(insertions, adjacency);
+    return adjacency;
+  }
+
+  /**
+   * @return the sorted IDs of all rows that are mapped to this row
+   */
+  public int @NotNull [] getNeighborIDs(FeatureListRow row) {
+    return getAdjacency().getNeighborIDs(row.getID());
+  }
+
+  private Adjacency createAdjacency() {
+    final LongArrayList keyList = new LongArrayList();
+    for (final Long2ObjectOpenHashMap<T> segment : segments) {
+      synchronized (segment) {
+        keyList.addAll(segment.keySet());
+      }
+    }
+    final long[] keys = keyList.toLongArray();
+
+    // unique sorted row IDs
+    final int[] ids = new int[keys.length * 2];
+    for (int i = 0; i < keys.length; i++) {
+      ids[i * 2] = lowerID(keys[i]);
+      ids[i * 2 + 1] = upperID(keys[i]);
+    }
+    Arrays.sort(ids);
+    int numRows = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (i == 0 || ids[i] != ids[i - 1]) {
+        ids[numRows++] = ids[i];
+      }
+    }
+    final int[] rowIDs = Arrays.copyOf(ids, numRows);
+
+    // count neighbors, self relationships are only counted once
+    final int[] offsets = new int[numRows + 1];
+    final int[] lowerIndices = new int[keys.length];
+    final int[] upperIndices = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      lowerIndices[i] = Arrays.binarySearch(rowIDs, lowerID(keys[i]));
+      upperIndices[i] = Arrays.binarySearch(rowIDs, upperID(keys[i]));
+      offsets[lowerIndices[i] + 1]++;
+      if (lowerIndices[i] != upperIndices[i]) {
+        offsets[upperIndices[i] + 1]++;
+      }
+    }
+    for (int i = 0; i < numRows; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+
+    final int[] neighborIDs = new int[offsets[numRows]];
+    final int[] next = Arrays.copyOf(offsets, numRows);
+    for (int i = 0; i < keys.length; i++) {
+      neighborIDs[next[lowerIndices[i]]++] = upperID(keys[i]);
+      if (lowerIndices[i] != upperIndices[i]) {
+        neighborIDs[next[upperIndices[i]]++] = lowerID(keys[i]);
+      }
+    }
+    for (int i = 0; i < numRows; i++) {
+      Arrays.sort(neighborIDs, offsets[i], offsets[i + 1]);
+    }
+    return new Adjacency(rowIDs, offsets, neighborIDs);
   }
 
   /**
@@ -91,11 +307,49 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param allRows a collection of all rows to check for correlation
    */
   public Stream<T> streamAllCorrelatedRows(FeatureListRow row, Collection<FeatureListRow> allRows) {
+    final int[] neighbors = getNeighborIDs(row);
+    if (neighbors.length == 0) {
+      return Stream.empty();
+    }
     return allRows.stream().<T>mapMulti((otherRow, consumer) -> {
+      if (Arrays.binarySearch(neighbors, otherRow.getID()) < 0) {
+        return;
+      }
       final T relationship = get(row, otherRow);
       if (relationship != null) {
         consumer.accept(relationship);
       }
     });
   }
+
+  /**
+   * Neighbors of all rows in compressed sparse row format. The neighbors of rowIDs[i] are stored in
+   * neighborIDs from offsets[i] (inclusive) to offsets[i+1] (exclusive), sorted by ID.
+   *
+   * @param rowIDs      sorted IDs of all rows with at least one neighbor
+   * @param offsets     start of the neighbors of each row, length is number of rows + 1
+   * @param neighborIDs the neighbor IDs of all rows
+   */
+  public record Adjacency(int @NotNull [] rowIDs, int @NotNull [] offsets,
+                          int @NotNull [] neighborIDs) {
+
+    public int getNumRows() {
+      return rowIDs.length;
+    }
+
+    /**
+     * @return the sorted neighbor IDs or an empty array if the row has no neighbors
+     */
+    public int @NotNull [] getNeighborIDs(int rowID) {
+      final int index = Arrays.binarySearch(rowIDs, rowID);
+      if (index < 0) {
+        return new int[0];
+      }
+      return Arrays.copyOfRange(neighborIDs, offsets[index], offsets[index + 1]);
+    }
+  }
+
+  private record CachedAdjacency(long insertions, @NotNull Adjacency adjacency) {
+
+  }
 }
@@ -33,6 +33,7 @@ import io.github.mzmine.gui.chartbasics.simplechart.providers.ColorPropertyProvi
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ColorProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.IntervalWidthProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.LabelTextProvider;
+import io.github.mzmine.gui.chartbasics.simplechart.providers.LineDecimationProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.PlotXYDataProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.SeriesKeyProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ToolTipTextProvider;
@@ -49,6 +50,7 @@ import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jfree.data.DomainOrder;
 import org.jfree.data.xy.IntervalXYDataset;
 
 /**
@@ -60,7 +62,8 @@ import org.jfree.data.xy.IntervalXYDataset;
  * @author https://github.com/SteffenHeu
  */
 public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalXYDataset,
-    SeriesKeyProvider, LabelTextProvider, ToolTipTextProvider, ColorPropertyProvider {
+    SeriesKeyProvider, LabelTextProvider, ToolTipTextProvider, ColorPropertyProvider,
+    LineDecimationProvider {
 
   private static final Logger logger = Logger.getLogger(ColoredXYDataset.class.getName());
   protected final XYValueProvider xyValueProvider;
@@ -83,6 +86,10 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
 
   protected Range<Double> domainRange;
   protected Range<Double> rangeRange;
+  // ascending domain values allow the renderer to skip items outside of the visible range
+  protected DomainOrder domainOrder = DomainOrder.NONE;
+  // items visible at the plot resolution, only for large datasets with ascending domain values
+  protected volatile LineDecimationIndex lineDecimationIndex;
 
   private ColoredXYDataset(XYValueProvider xyValueProvider,
       SeriesKeyProvider<Comparable<?>> seriesKeyProvider, LabelTextProvider labelTextProvider,
@@ -213,6 +220,17 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     return computedItemCount;
   }
 
+  @Override
+  public DomainOrder getDomainOrder() {
+    return domainOrder;
+  }
+
+  @Override
+  @Nullable
+  public LineDecimationIndex getLineDecimationIndex() {
+    return lineDecimationIndex;
+  }
+
   @Override
   public Number getX(int series, int item) {
     if (!valuesComputed) {
@@ -314,11 +332,14 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     double maxDomain = Double.NEGATIVE_INFINITY;
     double minRange = Double.POSITIVE_INFINITY;
     double maxRange = Double.NEGATIVE_INFINITY;
+    boolean ascending = true;
 
     for (int i = 0; i < computedItemCount; i++) {
       final double rangeValue = xyValueProvider.getRangeValue(i);
       final double domainValue = xyValueProvider.getDomainValue(i);
 
+      ascending = ascending && !(domainValue < maxDomain);
+
       minDomain = Math.min(domainValue, minDomain);
       maxDomain = Math.max(domainValue, maxDomain);
       minRange = Math.min(rangeValue, minRange);
@@ -329,6 +350,9 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
 
     domainRange = computedItemCount > 0 ? Range.closed(minDomain, maxDomain) : Range.closed(0d, 1d);
     rangeRange = computedItemCount > 0 ? Range.closed(minRange, maxRange) : Range.closed(0d, 1d);
+    domainOrder = ascending ? DomainOrder.ASCENDING : DomainOrder.NONE;
+    lineDecimationIndex = ascending ? LineDecimationIndex.create(computedItemCount,
+        xyValueProvider::getRangeValue) : null;
 
 //    if (setToFinished) {
     onCalculationsFinished();
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Multi resolution M4 index of a line with ascending domain values. Each level splits the items
+ * into chunks of consecutive items and keeps the first, minimum, maximum and last item of each
+ * chunk. The chunk size doubles from level to level. For a visible item range and plot width, the
+ * coarsest level with at least one chunk per pixel is used, so that the number of drawn items is
+ * bounded by the plot width instead of the number of items. The selected items are indices of the
+ * original items, so labels, tooltips and chart entities stay valid.
+ * <p>
+ * Created once in the calculation task of the dataset, the selection is a cheap lookup during
+ * rendering.
+ */
+public final class LineDecimationIndex {
+
+  /**
+   * Datasets with fewer items are drawn directly
+   */
+  public static final int MIN_ITEMS = 4096;
+  /**
+   * Number of items per chunk on the finest level
+   */
+  private static final int MIN_CHUNK_SIZE = 8;
+  // first, min, max, last
+  private static final int VALUES_PER_CHUNK = 4;
+
+  private final int itemCount;
+  /**
+   * Four item indices (first, minimum, maximum, last) per chunk for each level
+   */
+  private final int[][] levels;
+
+  private LineDecimationIndex(int itemCount, int[][] levels) {
+    this.itemCount = itemCount;
+    this.levels = levels;
+  }
+
+  /**
+   * @param itemCount   the number of items
+   * @param rangeValues the range value of an item
+   * @return the index or null if there are too few items to reduce the line
+   */
+  @Nullable
+  public static LineDecimationIndex create(int itemCount,
+      @NotNull IntToDoubleFunction rangeValues) {
+    if (itemCount < MIN_ITEMS) {
+      return null;
+    }
+
+    int numChunks = (itemCount + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE;
+    int[] level = new int[numChunks * VALUES_PER_CHUNK];
+    for (int c = 0; c < numChunks; c++) {
+      final int first = c * MIN_CHUNK_SIZE;
+      final int last = Math.min(first + MIN_CHUNK_SIZE, itemCount) - 1;
+      int min = first;
+      int max = first;
+      for (int i = first + 1; i <= last; i++) {
+        min = lower(rangeValues, min, i);
+        max = higher(rangeValues, max, i);
+      }
+      set(level, c, first, min, max, last);
+    }
+
+    final int[][] levels = new int[32][];
+    int numLevels = 0;
+    levels[numLevels++] = level;
+    // merge two chunks of the previous level
+    while (numChunks > 1) {
+      final int[] previous = level;
+      final int previousChunks = numChunks;
+      numChunks = (previousChunks + 1) / 2;
+      level = new int[numChunks * VALUES_PER_CHUNK];
+      for (int c = 0; c < numChunks; c++) {
+        final int left = 2 * c * VALUES_PER_CHUNK;
+        if (2 * c + 1 == previousChunks) {
+          System.arraycopy(previous, left, level, c * VALUES_PER_CHUNK, VALUES_PER_CHUNK);
+          continue;
+        }
+        final int right = left + VALUES_PER_CHUNK;
+        set(level, c, previous[left], lower(rangeValues, previous[left + 1], previous[right + 1]),
+            higher(rangeValues, previous[left + 2], previous[right + 2]), previous[right + 3]);
+      }
+      levels[numLevels++] = level;
+    }
+    return new LineDecimationIndex(itemCount, Arrays.copyOf(levels, numLevels));
+  }
+
+  private static void set(int[] level, int chunk, int first, int min, int max, int last) {
+    final int offset = chunk * VALUES_PER_CHUNK;
+    level[offset] = first;
+    level[offset + 1] = min;
+    level[offset + 2] = max;
+    level[offset + 3] = last;
+  }
+
+  /**
+   * @return the item with the lower range value, undefined values are skipped
+   */
+  private static int lower(IntToDoubleFunction rangeValues, int a, int b) {
+    final double va = rangeValues.applyAsDouble(a);
+    return Double.isNaN(va) || rangeValues.applyAsDouble(b) < va ? b : a;
+  }
+
+  /**
+   * @return the item with the higher range value, undefined values are skipped
+   */
+  private static int higher(IntToDoubleFunction rangeValues, int a, int b) {
+    final double va = rangeValues.applyAsDouble(a);
+    return Double.isNaN(va) || rangeValues.applyAsDouble(b) > va ? b : a;
+  }
+
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  /**
+   * Selects the items to draw for the visible items.
+   *
+   * @param firstItem the first visible item
+   * @param lastItem  the last visible item
+   * @param pixels    the number of pixels along the domain axis
+   * @return the ascending item indices between firstItem and lastItem, including both. Null if all
+   * items shall be drawn.
+   */
+  @Nullable
+  public int[] getItems(int firstItem, int lastItem, int pixels) {
+    if (firstItem < 0 || lastItem >= itemCount || lastItem < firstItem) {
+      return null;
+    }
+    final int itemsPerPixel = (lastItem - firstItem + 1) / Math.max(pixels, 1);
+    int level = -1;
+    while (level + 1 < levels.length
+        && ((long) MIN_CHUNK_SIZE << (level + 1)) <= itemsPerPixel) {
+      level++;
+    }
+    if (level < 0) {
+      return null;
+    }
+
+    final int chunkSize = MIN_CHUNK_SIZE << level;
+    final int[] chunks = levels[level];
+    final int firstChunk = firstItem / chunkSize;
+    final int lastChunk = lastItem / chunkSize;
+
+    final int[] items = new int[(lastChunk - firstChunk + 1) * VALUES_PER_CHUNK + 2];
+    int n = 0;
+    items[n++] = firstItem;
+    for (int c = firstChunk; c <= lastChunk; c++) {
+      final int offset = c * VALUES_PER_CHUNK;
+      final int min = chunks[offset + 1];
+      final int max = chunks[offset + 2];
+      n = addItem(items, n, chunks[offset], lastItem);
+      n = addItem(items, n, Math.min(min, max), lastItem);
+      n = addItem(items, n, Math.max(min, max), lastItem);
+      n = addItem(items, n, chunks[offset + 3], lastItem);
+    }
+    if (lastItem > items[n - 1]) {
+      items[n++] = lastItem;
+    }
+    return Arrays.copyOf(items, n);
+  }
+
+  /**
+   * Adds the item if it is between the last added item and the last visible item
+   *
+   * @return the new number of items
+   */
+  private static int addItem(int[] items, int n, int item, int lastItem) {
+    if (item > items[n - 1] && item < lastItem) {
+      items[n++] = item;
+    }
+    return n;
+  }
+}
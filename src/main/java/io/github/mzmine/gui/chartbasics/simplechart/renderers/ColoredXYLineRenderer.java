@@ -60,6 +60,11 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
 
   private static final long serialVersionUID = 1L;
   private double transparency = 1.0f;
+  // reduces the line to the visible resolution
+  private transient PixelColumnLinePath linePath;
+  // skips items that are not visible at the plot resolution
+  private transient DecimatedItemFilter itemFilter;
+  private transient AlphaComposite composite;
 
   private XYDataset currentDataset;
 
@@ -70,8 +75,11 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
   }
 
   private AlphaComposite makeComposite(double alpha) {
-    int type = AlphaComposite.SRC_OVER;
-    return (AlphaComposite.getInstance(type, (float) alpha));
+    if (composite == null) {
+      int type = AlphaComposite.SRC_OVER;
+      composite = AlphaComposite.getInstance(type, (float) alpha);
+    }
+    return composite;
   }
 
   @Override
@@ -85,6 +93,9 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
 
+    if (!getItemFilter().isDrawn(state, plot, dataset, series, item, pass, dataArea)) {
+      return;
+    }
     g2.setComposite(makeComposite(transparency));
     currentDataset = dataset;
 
@@ -119,9 +130,38 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
 
     g2.setComposite(makeComposite(transparency));
 
-    super.drawPrimaryLineAsPath(state, g2, plot, dataset, pass, series, item, domainAxis, rangeAxis,
-        dataArea);
+    if (!(state instanceof State s)) {
+      super.drawPrimaryLineAsPath(state, g2, plot, dataset, pass, series, item, domainAxis,
+          rangeAxis, dataArea);
+      return;
+    }
+    // at most four points per pixel column are added to the path
+    if (getLinePath().addItem(s, plot, dataset, series, item, domainAxis, rangeAxis, dataArea)) {
+      drawFirstPassShape(g2, pass, series, item, s.seriesPath);
+    }
+  }
 
+  private PixelColumnLinePath getLinePath() {
+    if (linePath == null) {
+      linePath = new PixelColumnLinePath();
+    }
+    return linePath;
+  }
+
+  private DecimatedItemFilter getItemFilter() {
+    if (itemFilter == null) {
+      itemFilter = new DecimatedItemFilter();
+    }
+    return itemFilter;
+  }
+
+  @Override
+  public Object clone() throws CloneNotSupportedException {
+    final ColoredXYLineRenderer clone = (ColoredXYLineRenderer) super.clone();
+    // each renderer needs its own path and filter state
+    clone.linePath = null;
+    clone.itemFilter = null;
+    return clone;
   }
 
   @Override
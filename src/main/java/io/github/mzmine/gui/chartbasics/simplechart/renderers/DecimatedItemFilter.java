@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.LineDecimationIndex;
+import io.github.mzmine.gui.chartbasics.simplechart.providers.LineDecimationProvider;
+import java.awt.geom.Rectangle2D;
+import org.jetbrains.annotations.NotNull;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Selects the items of a series pass that are drawn by a line renderer. Datasets implementing
+ * {@link LineDecimationProvider} provide the items that are visible at the plot resolution once per
+ * series pass. All other items are skipped before any value lookup, so lines, shapes, labels and
+ * chart entities are only created for the selected items. Items keep their dataset index.
+ * <p>
+ * Not thread safe, a renderer uses one instance for the series it is currently drawing.
+ */
+public class DecimatedItemFilter {
+
+  // the series pass that is currently drawn
+  private XYItemRendererState currentState;
+  private int currentSeries = -1;
+  private int currentPass = -1;
+  private int currentItem = -1;
+
+  // null to draw all items
+  private int[] items;
+  private int next;
+
+  /**
+   * @return true if the item shall be drawn
+   */
+  public boolean isDrawn(@NotNull XYItemRendererState state, @NotNull XYPlot plot,
+      @NotNull XYDataset dataset, int series, int item, int pass, @NotNull Rectangle2D dataArea) {
+    if (state != currentState || series != currentSeries || pass != currentPass
+        || item <= currentItem) {
+      start(state, plot, dataset, series, pass, dataArea);
+    }
+    currentItem = item;
+    if (item == state.getLastItemIndex()) {
+      // do not keep the state of a finished drawing
+      currentState = null;
+    }
+
+    if (items == null) {
+      return true;
+    }
+    while (next < items.length && items[next] < item) {
+      next++;
+    }
+    return next < items.length && items[next] == item;
+  }
+
+  private void start(@NotNull XYItemRendererState state, @NotNull XYPlot plot,
+      @NotNull XYDataset dataset, int series, int pass, @NotNull Rectangle2D dataArea) {
+    currentState = state;
+    currentSeries = series;
+    currentPass = pass;
+    items = null;
+    next = 0;
+
+    if (!(dataset instanceof LineDecimationProvider provider)
+        || dataset.getDomainOrder() != DomainOrder.ASCENDING) {
+      return;
+    }
+    final LineDecimationIndex index = provider.getLineDecimationIndex();
+    if (index == null || index.getItemCount() != dataset.getItemCount(series)) {
+      return;
+    }
+    final double pixels = plot.getOrientation() == PlotOrientation.HORIZONTAL
+        ? dataArea.getHeight() : dataArea.getWidth();
+    items = index.getItems(state.getFirstItemIndex(), state.getLastItemIndex(),
+        (int) Math.ceil(pixels));
+  }
+}
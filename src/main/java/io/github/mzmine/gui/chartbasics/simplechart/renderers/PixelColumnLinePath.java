@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import org.jetbrains.annotations.NotNull;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Reduces the points of a line path to at most four points per pixel column (M4 aggregation):
+ * the first, minimum, maximum and last point of consecutive points within the same column. The
+ * rendered line is visually identical to the line of all points, but for sorted data the number of
+ * path segments is bounded by the width of the data area instead of the number of data points.
+ * Used by line renderers that draw the series as one path.
+ * <p>
+ * Not thread safe, a renderer uses one instance for the series it is currently drawing.
+ */
+public class PixelColumnLinePath {
+
+  // the series that is currently drawn
+  private XYLineAndShapeRenderer.State currentState;
+  private int currentSeries = -1;
+  private int currentItem = -1;
+
+  private Path2D path;
+  private PlotOrientation orientation;
+  private boolean connected;
+
+  // current pixel column
+  private boolean hasColumn;
+  private long column;
+  private double firstX, firstY;
+  private double minX, minY;
+  private double maxX, maxY;
+  private double lastX, lastY;
+  // last point appended to the path
+  private double appendedX = Double.NaN;
+  private double appendedY = Double.NaN;
+
+  /**
+   * Adds a data item to the series path of the renderer state. Replaces the path building of
+   * {@link XYLineAndShapeRenderer#drawPrimaryLineAsPath}. A new series is started automatically.
+   *
+   * @return true if this was the last item of the series and the path is ready to be drawn
+   */
+  public boolean addItem(@NotNull XYLineAndShapeRenderer.State state, @NotNull XYPlot plot,
+      @NotNull XYDataset dataset, int series, int item, @NotNull ValueAxis domainAxis,
+      @NotNull ValueAxis rangeAxis, @NotNull Rectangle2D dataArea) {
+    if (state != currentState || series != currentSeries || item <= currentItem) {
+      start(state.seriesPath, plot.getOrientation());
+      currentState = state;
+      currentSeries = series;
+    }
+    currentItem = item;
+
+    final double transX = domainAxis.valueToJava2D(dataset.getXValue(series, item), dataArea,
+        plot.getDomainAxisEdge());
+    final double transY = rangeAxis.valueToJava2D(dataset.getYValue(series, item), dataArea,
+        plot.getRangeAxisEdge());
+    if (Double.isNaN(transX) || Double.isNaN(transY)) {
+      gap();
+    } else {
+      add(transX, transY);
+    }
+
+    if (item == state.getLastItemIndex()) {
+      flushColumn();
+      // do not keep the state of a finished drawing
+      currentState = null;
+      currentItem = -1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Starts a new series. Pending points of a previous series are discarded.
+   *
+   * @param path        the path of the series, the points are appended
+   * @param orientation the plot orientation. Horizontal plots swap x and y when appending.
+   */
+  void start(@NotNull Path2D path, @NotNull PlotOrientation orientation) {
+    this.path = path;
+    this.orientation = orientation;
+    connected = false;
+    hasColumn = false;
+    appendedX = Double.NaN;
+    appendedY = Double.NaN;
+  }
+
+  /**
+   * @param x java2d x of the domain value
+   * @param y java2d y of the range value
+   */
+  void add(double x, double y) {
+    final long pixelColumn = (long) Math.floor(x);
+    if (hasColumn && pixelColumn == column) {
+      if (y < minY) {
+        minY = y;
+        minX = x;
+      }
+      if (y > maxY) {
+        maxY = y;
+        maxX = x;
+      }
+      lastX = x;
+      lastY = y;
+      return;
+    }
+
+    flushColumn();
+    hasColumn = true;
+    column = pixelColumn;
+    firstX = minX = maxX = lastX = x;
+    firstY = minY = maxY = lastY = y;
+  }
+
+  /**
+   * Interrupts the line, e.g., for undefined values. The next point starts a new sub path.
+   */
+  void gap() {
+    flushColumn();
+    connected = false;
+  }
+
+  /**
+   * Appends the first, minimum, maximum and last point of the current pixel column to the path
+   */
+  void flushColumn() {
+    if (!hasColumn) {
+      return;
+    }
+    hasColumn = false;
+    append(firstX, firstY);
+    // min and max in the order of their appearance
+    if (minX <= maxX) {
+      appendIfNew(minX, minY);
+      appendIfNew(maxX, maxY);
+    } else {
+      appendIfNew(maxX, maxY);
+      appendIfNew(minX, minY);
+    }
+    appendIfNew(lastX, lastY);
+  }
+
+  private void appendIfNew(double x, double y) {
+    if (Double.compare(x, appendedX) != 0 || Double.compare(y, appendedY) != 0) {
+      append(x, y);
+    }
+  }
+
+  private void append(double x, double y) {
+    appendedX = x;
+    appendedY = y;
+    final float px = (float) (orientation == PlotOrientation.HORIZONTAL ? y : x);
+    final float py = (float) (orientation == PlotOrientation.HORIZONTAL ? x : y);
+    if (connected) {
+      path.lineTo(px, py);
+    } else {
+      path.moveTo(px, py);
+      connected = true;
+    }
+  }
+}
@@ -154,6 +154,12 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final BooleanParameter cacheSpectralLibraries = new BooleanParameter(
+      "Cache spectral libraries", "Converts imported spectral libraries to a columnar binary file "
+      + "(library file name + .mzlib) next to the original file. Later imports memory map this "
+      + "file instead of parsing the library, which is much faster and requires little memory. "
+      + "The cache is recreated when the original library file changes.", false);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -188,7 +194,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, memoryOption, tempDirectory, cacheSpectralLibraries, proxySettings,
+        rExecPath, sendStatistics,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -216,8 +223,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics/*, applyTimsPressureCompensation*/});
+        new Parameter[]{numOfThreads, memoryOption, tempDirectory, cacheSpectralLibraries,
+            proxySettings, rExecPath, sendStatistics/*, applyTimsPressureCompensation*/});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
 import io.github.mzmine.util.ExitCode;
 
@@ -40,8 +41,15 @@ public class BatchModeParameters extends SimpleParameterSet {
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
+  public static final BooleanParameter pipelineFileSteps = new BooleanParameter(
+      "Pipeline per file steps",
+      "Consecutive steps that process each raw data file on its own (mass detection, chromatogram "
+      + "building, smoothing, resolving, ...) run as independent chains per file. Each file "
+      + "advances to the next step as soon as its own tasks are finished. Steps that combine all "
+      + "files (e.g., alignment, gap filling) still wait for all files.", false);
+
   public BatchModeParameters() {
-    super(new Parameter[]{batchQueue, advanced, lastFiles});
+    super(new Parameter[]{batchQueue, advanced, pipelineFileSteps, lastFiles});
   }
 
   @Override
@@ -34,6 +34,16 @@ import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.MZmineRunnableModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_imsexpander.ImsExpanderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.IonMobilityTraceBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.dataprocessing.featdet_mobilogram_summing.MobilogramBinningModule;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.RecursiveIMSBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingModule;
+import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Module;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.ParameterSet;
@@ -41,12 +51,15 @@ import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskStatusListener;
 import io.github.mzmine.taskcontrol.impl.WrappedTask;
 import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.files.FileAndPathUtil;
@@ -56,6 +69,9 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
@@ -64,6 +80,16 @@ import org.jetbrains.annotations.NotNull;
  */
 public class BatchTask extends AbstractTask {
 
+  /**
+   * Modules that process each raw data file (or its feature list) on its own. Consecutive steps of
+   * these modules may be pipelined per raw data file.
+   */
+  private static final List<Class<?>> PER_FILE_MODULES = List.of(MassDetectionModule.class,
+      ModularADAPChromatogramBuilderModule.class, IonMobilityTraceBuilderModule.class,
+      RecursiveIMSBuilderModule.class, ImsExpanderModule.class, MobilogramBinningModule.class,
+      SmoothingModule.class, FeatureResolverModule.class, GroupMS2Module.class,
+      IsotopeGrouperModule.class);
+
   private final BatchQueue queue;
   // advanced parameters
   private final int stepsPerDataset;
@@ -73,6 +99,9 @@ public class BatchTask extends AbstractTask {
   private int processedSteps;
   private final boolean useAdvanced;
   private final int datasets;
+  private final boolean pipelineFileSteps;
+  // incremented on every status change of a task started by this batch
+  private volatile long taskStatusEvents;
   private List<File> subDirectories;
   private List<RawDataFile> createdDataFiles;
   private List<RawDataFile> previousCreatedDataFiles;
@@ -110,6 +139,7 @@ public class BatchTask extends AbstractTask {
     } else {
       datasets = 1;
     }
+    pipelineFileSteps = parameters.getValue(BatchModeParameters.pipelineFileSteps);
     stepsPerDataset = queue.size();
     totalSteps = stepsPerDataset * datasets;
     createdDataFiles = new ArrayList<>();
@@ -176,8 +206,16 @@ public class BatchTask extends AbstractTask {
       }
 
       // run step
-      processQueueStep(i % stepsPerDataset);
-      processedSteps++;
+      final int step = i % stepsPerDataset;
+      final int pipelinedSteps = pipelineFileSteps ? countPerFileSteps(step) : 0;
+      if (pipelinedSteps > 1) {
+        processPipelinedSteps(step, step + pipelinedSteps);
+        processedSteps += pipelinedSteps;
+        i += pipelinedSteps - 1;
+      } else {
+        processQueueStep(step);
+        processedSteps++;
+      }
 
       // If we are canceled or ran into error, stop here
       if (isCanceled()) {
@@ -262,21 +300,12 @@ public class BatchTask extends AbstractTask {
 
     // Update the RawDataFilesParameter parameters to reflect the current
     // state of the batch
-    for (Parameter<?> p : batchStepParameters.getParameters()) {
-      if (p instanceof RawDataFilesParameter rdp) {
-        RawDataFile[] createdFiles = createdDataFiles.toArray(new RawDataFile[0]);
-        final RawDataFilesSelection selectedFiles = rdp.getValue();
-        if (selectedFiles == null) {
-          setStatus(TaskStatus.ERROR);
-          setErrorMessage("Invalid parameter settings for module " + method.getName() + ": "
-                          + "Missing parameter value for " + p.getName());
-          return;
-        }
-        selectedFiles.setBatchLastFiles(createdFiles);
-      }
+    if (!setBatchlastFilesToParamSet(method, batchStepParameters,
+        createdDataFiles.toArray(new RawDataFile[0]))) {
+      return;
     }
 
-    if (!setBatchlastFeatureListsToParamSet(method, batchStepParameters)) {
+    if (!setBatchlastFeatureListsToParamSet(method, batchStepParameters, createdFeatureLists)) {
       return;
     }
 
@@ -319,12 +348,17 @@ public class BatchTask extends AbstractTask {
 
     boolean allTasksFinished = false;
 
+    // wake up the batch on every status change instead of polling
+    final TaskStatusListener stepListener = (task, newStatus, oldStatus) -> onTaskStatusEvent();
+    currentStepTasks.forEach(task -> task.addTaskStatusListener(stepListener));
+
     // Submit the tasks to the task controller for processing
     WrappedTask[] currentStepWrappedTasks = MZmineCore.getTaskController()
         .addTasks(currentStepTasks.toArray(new Task[0]));
     currentStepTasks = null;
 
     while (!allTasksFinished) {
+      final long events = taskStatusEvents;
 
       // If we canceled the batch, cancel all running tasks
       if (isCanceled()) {
@@ -367,15 +401,9 @@ public class BatchTask extends AbstractTask {
 
       }
 
-      // Wait 1s before checking the tasks again
+      // Wait for the next status change before checking the tasks again
       if (!allTasksFinished) {
-        synchronized (this) {
-          try {
-            this.wait(1000);
-          } catch (InterruptedException e) {
-            // ignore
-          }
-        }
+        awaitTaskStatusEvent(events);
       }
     }
 
@@ -401,6 +429,134 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Runs the consecutive per file steps [firstStep, endStep) as independent chains for each raw
+   * data file. A file advances to its next step as soon as its own tasks are finished, so fast
+   * files do not wait for slow ones. The step after this block waits for all files and receives
+   * the feature lists of all chains.
+   */
+  private void processPipelinedSteps(final int firstStep, final int endStep) {
+    if (createdDataFiles.isEmpty()) {
+      createdDataFiles = previousCreatedDataFiles;
+    }
+    if (createdFeatureLists.isEmpty()) {
+      createdFeatureLists = previousCreatedFeatureLists;
+    }
+    final List<RawDataFile> files = List.copyOf(createdDataFiles);
+    if (files.size() < 2) {
+      // nothing to pipeline
+      for (int step = firstStep; step < endStep; step++) {
+        processQueueStep(step);
+        if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+          return;
+        }
+      }
+      return;
+    }
+
+    logger.info(
+        "Starting steps # %d to %d pipelined for %d raw data files".formatted(firstStep + 1,
+            endStep, files.size()));
+    for (int step = firstStep; step < endStep; step++) {
+      GoogleAnalyticsTracker.trackModule((MZmineProcessingModule) queue.get(step).getModule());
+    }
+
+    final AtomicInteger remainingChains = new AtomicInteger(files.size());
+    final List<FileChain> chains = files.stream()
+        .map(file -> new FileChain(file, firstStep, endStep, remainingChains)).toList();
+    chains.forEach(FileChain::runNextStep);
+
+    while (true) {
+      final long events = taskStatusEvents;
+      if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+        chains.forEach(FileChain::cancelTasks);
+        return;
+      }
+      if (remainingChains.get() == 0) {
+        break;
+      }
+      awaitTaskStatusEvent(events);
+    }
+
+    createdDataFiles = new ArrayList<>(files);
+    createdFeatureLists = new ArrayList<>();
+    chains.forEach(chain -> createdFeatureLists.addAll(chain.featureLists));
+
+    previousCreatedDataFiles = createdDataFiles;
+    if (!createdFeatureLists.isEmpty()) {
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+  }
+
+  /**
+   * @return the number of consecutive steps starting at firstStep that can be pipelined per raw
+   * data file. Only modules that handle each file on its own and use the batch last files and
+   * feature lists qualify.
+   */
+  private int countPerFileSteps(final int firstStep) {
+    int endStep = firstStep;
+    while (endStep < stepsPerDataset && isPerFileStep(queue.get(endStep))) {
+      endStep++;
+    }
+    return endStep - firstStep;
+  }
+
+  private static boolean isPerFileStep(final MZmineProcessingStep<?> step) {
+    final var module = step.getModule();
+    return PER_FILE_MODULES.stream().anyMatch(c -> c.isInstance(module))
+           && usesOnlyBatchLastSelections(step.getParameterSet());
+  }
+
+  private static boolean usesOnlyBatchLastSelections(final ParameterSet parameters) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp && (rdp.getValue() == null
+                                                     || rdp.getValue().getSelectionType()
+                                                        != RawDataFilesSelectionType.BATCH_LAST_FILES)) {
+        return false;
+      } else if (p instanceof FeatureListsParameter flp && (flp.getValue() == null
+                                                            || flp.getValue().getSelectionType()
+                                                               != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS)) {
+        return false;
+      } else if (p instanceof EmbeddedParameterSet embedded
+                 && !usesOnlyBatchLastSelections(embedded.getEmbeddedParameters())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return all feature lists in the project that only contain this raw data file
+   */
+  private List<FeatureList> getFeatureListsOf(final RawDataFile file) {
+    return project.getCurrentFeatureLists().stream()
+        .filter(flist -> flist.getNumberOfRawDataFiles() == 1
+                         && flist.getRawDataFiles().get(0) == file).toList();
+  }
+
+  private void onTaskStatusEvent() {
+    synchronized (this) {
+      taskStatusEvents++;
+      this.notifyAll();
+    }
+  }
+
+  /**
+   * Waits until a task status changed after the events counter was read. The timeout is only a
+   * fallback, e.g., for cancellation of this batch.
+   */
+  private void awaitTaskStatusEvent(final long events) {
+    synchronized (this) {
+      try {
+        if (taskStatusEvents == events) {
+          this.wait(1000);
+        }
+      } catch (InterruptedException e) {
+        // ignore
+      }
+    }
+  }
+
   private void setLastFilesIfAllDataImportStep(final ParameterSet batchStepParameters) {
     if (AllSpectralDataImportParameters.isParameterSetClass(batchStepParameters)) {
       var loadedRawDataFiles = AllSpectralDataImportParameters.getLoadedRawDataFiles(
@@ -420,6 +576,33 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Recursively sets the last raw data files to the parameters since there might be embedded
+   * parameters.
+   *
+   * @return false on error
+   */
+  private boolean setBatchlastFilesToParamSet(MZmineProcessingModule method,
+      ParameterSet batchStepParameters, RawDataFile[] files) {
+    for (Parameter<?> p : batchStepParameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp) {
+        final RawDataFilesSelection selectedFiles = rdp.getValue();
+        if (selectedFiles == null) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage("Invalid parameter settings for module " + method.getName() + ": "
+                          + "Missing parameter value for " + p.getName());
+          return false;
+        }
+        selectedFiles.setBatchLastFiles(files);
+      } else if (p instanceof EmbeddedParameterSet embedded) {
+        if (!setBatchlastFilesToParamSet(method, embedded.getEmbeddedParameters(), files)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * Recursively sets the last feature lists to the parameters since there might be embedded
    * parameters.
@@ -427,12 +610,12 @@ public class BatchTask extends AbstractTask {
    * @return false on error
    */
   private boolean setBatchlastFeatureListsToParamSet(MZmineProcessingModule method,
-      ParameterSet batchStepParameters) {
+      ParameterSet batchStepParameters, List<FeatureList> featureLists) {
     // Update the FeatureListsParameter parameters to reflect the current
     // state of the batch
     for (Parameter<?> p : batchStepParameters.getParameters()) {
       if (p instanceof FeatureListsParameter featureListsParameter) {
-        FeatureList[] createdFlists = createdFeatureLists.toArray(new FeatureList[0]);
+        FeatureList[] createdFlists = featureLists.toArray(new FeatureList[0]);
         final FeatureListsSelection selectedFeatureLists = featureListsParameter.getValue();
         if (selectedFeatureLists == null) {
           setStatus(TaskStatus.ERROR);
@@ -442,7 +625,8 @@ public class BatchTask extends AbstractTask {
         }
         selectedFeatureLists.setBatchLastFeatureLists(createdFlists);
       } else if (p instanceof EmbeddedParameterSet embedded) {
-        if (!setBatchlastFeatureListsToParamSet(method, embedded.getEmbeddedParameters())) {
+        if (!setBatchlastFeatureListsToParamSet(method, embedded.getEmbeddedParameters(),
+            featureLists)) {
           return false;
         }
       }
@@ -450,6 +634,140 @@ public class BatchTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Runs the pipelined steps for a single raw data file. The next step is started by the status
+   * listener once all tasks of the current step are finished.
+   */
+  private final class FileChain implements TaskStatusListener {
+
+    private final RawDataFile file;
+    private final int endStep;
+    private final AtomicInteger remainingChains;
+    private final Set<Task> pendingTasks = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger remainingTasks = new AtomicInteger();
+    private int step;
+    private List<FeatureList> beforeFeatureLists = List.of();
+    // the last feature lists of this file, handed to the next step
+    private volatile List<FeatureList> featureLists;
+    private boolean done;
+
+    private FileChain(final RawDataFile file, final int firstStep, final int endStep,
+        final AtomicInteger remainingChains) {
+      this.file = file;
+      this.step = firstStep;
+      this.endStep = endStep;
+      this.remainingChains = remainingChains;
+      featureLists = createdFeatureLists.stream().filter(
+          flist -> flist.getNumberOfRawDataFiles() == 1 && flist.getRawDataFiles().get(0) == file)
+          .toList();
+    }
+
+    /**
+     * Starts the tasks of the next step that produces tasks or finishes the chain
+     */
+    private synchronized void runNextStep() {
+      for (; step < endStep; step++) {
+        if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+          break;
+        }
+        MZmineProcessingStep<?> currentStep = queue.get(step);
+        MZmineProcessingModule method = (MZmineProcessingModule) currentStep.getModule();
+        // each file needs its own parameters as the batch last files and feature lists differ
+        ParameterSet stepParameters = currentStep.getParameterSet().cloneParameterSet();
+        if (!setBatchlastFilesToParamSet(method, stepParameters, new RawDataFile[]{file})
+            || !setBatchlastFeatureListsToParamSet(method, stepParameters, featureLists)) {
+          break;
+        }
+
+        ArrayList<String> messages = new ArrayList<>();
+        if (!stepParameters.checkParameterValues(messages)) {
+          fail("Invalid parameter settings for module " + method.getName() + ": "
+               + Arrays.toString(messages.toArray()));
+          break;
+        }
+
+        List<Task> stepTasks = new ArrayList<>();
+        ExitCode exitCode = method.runModule(project, stepParameters, stepTasks, Instant.now());
+        if (exitCode != ExitCode.OK) {
+          fail("Could not start batch step " + method.getName() + " for " + file.getName());
+          break;
+        }
+        if (stepTasks.isEmpty()) {
+          continue;
+        }
+
+        beforeFeatureLists = getFeatureListsOf(file);
+        pendingTasks.addAll(stepTasks);
+        remainingTasks.set(stepTasks.size());
+        // listen before submitting to not miss fast tasks
+        stepTasks.forEach(task -> task.addTaskStatusListener(this));
+        MZmineCore.getTaskController().addTasks(stepTasks.toArray(new Task[0]));
+        return;
+      }
+      finish();
+    }
+
+    @Override
+    public void taskStatusChanged(final Task task, final TaskStatus newStatus,
+        final TaskStatus oldStatus) {
+      switch (newStatus) {
+        case FINISHED -> {
+          if (pendingTasks.remove(task) && remainingTasks.decrementAndGet() == 0) {
+            onStepFinished();
+          }
+        }
+        case ERROR -> {
+          fail(task.getTaskDescription() + ": " + task.getErrorMessage());
+          finish();
+        }
+        case CANCELED -> {
+          // If user canceled any of the tasks, we have to cancel the whole batch
+          synchronized (BatchTask.this) {
+            if (getStatus() == TaskStatus.PROCESSING) {
+              setStatus(TaskStatus.CANCELED);
+            }
+          }
+          finish();
+        }
+        default -> {
+        }
+      }
+      onTaskStatusEvent();
+    }
+
+    private synchronized void onStepFinished() {
+      List<FeatureList> created = new ArrayList<>(getFeatureListsOf(file));
+      created.removeAll(beforeFeatureLists);
+      // steps that work in place keep the current feature lists
+      if (!created.isEmpty()) {
+        featureLists = List.copyOf(created);
+      }
+      step++;
+      runNextStep();
+    }
+
+    private void fail(final String message) {
+      synchronized (BatchTask.this) {
+        if (getStatus() == TaskStatus.PROCESSING) {
+          setErrorMessage(message);
+          setStatus(TaskStatus.ERROR);
+        }
+      }
+    }
+
+    private synchronized void finish() {
+      if (!done) {
+        done = true;
+        remainingChains.decrementAndGet();
+        onTaskStatusEvent();
+      }
+    }
+
+    private void cancelTasks() {
+      pendingTasks.forEach(Task::cancel);
+    }
+  }
+
   @Override
   public TaskPriority getTaskPriority() {
     // to not block mzmine when run with single thread
@@ -58,6 +58,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
 import org.gnf.clustering.DataSource;
 import org.gnf.clustering.DistanceMatrix;
@@ -68,7 +69,7 @@ import org.jetbrains.annotations.Nullable;
 
 public class HierarAlignerGCTask extends AbstractTask {
 
-  private Logger logger = Logger.getLogger(this.getClass().getName());
+  private static final Logger logger = Logger.getLogger(HierarAlignerGCTask.class.getName());
 
   public static String TASK_NAME = "Hierarchical aligner (GC)";
 
@@ -336,14 +337,6 @@ public class HierarAlignerGCTask extends AbstractTask {
       nbPeaks += peakList.getNumberOfRows();
     }
 
-    // If 'Hybrid' or no distance matrix: no need for a matrix
-    if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
-      // distances = new double[nbPeaks][nbPeaks];
-
-      int nRowCount = nbPeaks;
-      distancesGNF_Tri = new DistanceMatrixTriangular1D2D(nRowCount);
-    }
-
     full_rows_list = new ArrayList<>();
 
     for (int i = 0; i < newIds.length; ++i) {
@@ -358,6 +351,23 @@ public class HierarAlignerGCTask extends AbstractTask {
       }
     }
 
+    // Cluster components of rows within RT and m/z tolerance separately, only storing the
+    // candidate pairs instead of a dense matrix over all rows. Requires that no valid cluster can
+    // contain a non-candidate pair and the dendrogram export needs the full tree.
+    final boolean clusterByComponents = !exportDendrogramAsTxt
+        && CLUSTERER_TYPE == ClustererType.CACHED
+        && maximumScore + EPSILON < RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE
+        && SparseRowDistances.isApplicable(full_rows_list);
+
+    // If 'Hybrid' or no distance matrix: no need for a matrix
+    if (!clusterByComponents && (CLUSTERER_TYPE == ClustererType.HYBRID
+        || !saveRAMratherThanCPU_1)) {
+      // distances = new double[nbPeaks][nbPeaks];
+
+      int nRowCount = nbPeaks;
+      distancesGNF_Tri = new DistanceMatrixTriangular1D2D(nRowCount);
+    }
+
     RowVsRowDistanceProvider distProvider = new RowVsRowDistanceProvider(project,
         // useOldestRDFAncestor,
         // rtAdjustementMapping,
@@ -368,8 +378,17 @@ public class HierarAlignerGCTask extends AbstractTask {
         // rtToleranceAfter,
         maximumScore);
 
+    SparseRowDistances sparseDistances = null;
+    if (clusterByComponents) {
+      sparseDistances = new SparseRowDistances(full_rows_list, distProvider,
+          mzTolerance.getMzTolerance(), rtTolerance.getTolerance(), minScore);
+      processedRows += nbPeaks;
+      logger.fine("Hierarchical aligner: " + nbPeaks + " rows, "
+          + sparseDistances.getNumCandidatePairs() + " candidate pairs in "
+          + sparseDistances.getNumComponents() + " components");
+    }
     // If 'Hybrid' or no distance matrix: no need for a matrix
-    if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
+    else if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
 
       for (int x = 0; x < nbPeaks; ++x) {
 
@@ -429,7 +448,15 @@ public class HierarAlignerGCTask extends AbstractTask {
     }
     String outputPrefix = null;
 
-    if (CLUSTERER_TYPE == ClustererType.CLASSIC) { // Pure Hierar!
+    if (clusterByComponents) {
+
+      gnfClusters = clusterComponents(sparseDistances, linkageStartegyType, newIds.length,
+          max_dist, this::isCanceled);
+      if (isCanceled()) {
+        return;
+      }
+
+    } else if (CLUSTERER_TYPE == ClustererType.CLASSIC) { // Pure Hierar!
 
       outputPrefix = "hierar_0";
 
@@ -493,12 +520,17 @@ public class HierarAlignerGCTask extends AbstractTask {
     int[] rowOrder = new int[nRowCount];
     if (DEBUG)
       logger.info("Sorting tree nodes...");
-    org.gnf.clustering.Utils.NodeSort(arNodes, nRowCount - 2, 0, rowOrder);
+    if (!clusterByComponents)
+      org.gnf.clustering.Utils.NodeSort(arNodes, nRowCount - 2, 0, rowOrder);
 
-    if (do_cluster) {
+    if (do_cluster && !clusterByComponents) {
 
+      // distances are recomputed on demand if there is no backup of the matrix
+      DistanceMatrix validationDistances = distancesGNF_Tri_Bkp != null ? distancesGNF_Tri_Bkp
+          : distProvider.asDistanceMatrix(mzTolerance.getMzTolerance(),
+              rtTolerance.getTolerance(), minScore);
       gnfClusters = getValidatedClusters_3(arNodes, 0.0f, newIds.length, max_dist,
-          distancesGNF_Tri_Bkp, distProvider);
+          validationDistances);
 
       // -- Print
       if (DEBUG_2 && do_verbose)
@@ -686,6 +718,46 @@ public class HierarAlignerGCTask extends AbstractTask {
 
   }
 
+  /**
+   * Clusters each component of rows connected by candidate pairs on its own. All distances between
+   * components are constant and exceed max_dist, so the validated clusters are the same as for the
+   * tree over all rows.
+   *
+   * @return the validated clusters with the indices of all rows
+   */
+  static List<List<Integer>> clusterComponents(SparseRowDistances sparseDistances,
+      LinkageMode linkage, int level, double max_dist, BooleanSupplier isCanceled) {
+    List<List<Integer>> clusters = new ArrayList<>();
+    for (int c = 0; c < sparseDistances.getNumComponents(); c++) {
+      if (isCanceled.getAsBoolean()) {
+        return clusters;
+      }
+
+      final int[] rows = sparseDistances.getComponent(c);
+      if (rows.length == 1) {
+        clusters.add(Arrays.asList(new Integer[]{rows[0]}));
+        continue;
+      }
+
+      // the clustering changes the matrix, keep a copy for the validation
+      DistanceMatrix distances = sparseDistances.createDistanceMatrix(c);
+      DistanceMatrix distancesBkp = new DistanceMatrixTriangular1D2D(distances);
+      org.gnf.clustering.Node[] nodes = org.gnf.clustering.sequentialcache.SequentialCacheClustering
+          .clusterDM(distances, linkage, null, rows.length);
+      org.gnf.clustering.Utils.NodeSort(nodes, rows.length - 2, 0, new int[rows.length]);
+
+      for (List<Integer> cluster : getValidatedClusters_3(nodes, 0.0f, level, max_dist,
+          distancesBkp)) {
+        List<Integer> rowIndices = new ArrayList<>(cluster.size());
+        for (int local : cluster) {
+          rowIndices.add(rows[local]);
+        }
+        clusters.add(rowIndices);
+      }
+    }
+    return clusters;
+  }
+
   /**
    * Two clusters can be merged if and only if: - The resulting merged cluster: (their parent)
    * doesn't exceed 'level' leaves - The distance between them two is acceptable (close enough)
@@ -694,9 +766,8 @@ public class HierarAlignerGCTask extends AbstractTask {
   // /*ClusteringResult clusteringResult*/org.gnf.clustering.Node[] arNodes,
   // float minCorrValue, int level, double max_dist, DistanceMatrix1D distMtx
   // /*,Set<Integer> flatLeaves*/) {
-  private List<List<Integer>> getValidatedClusters_3(org.gnf.clustering.Node[] arNodes,
-      float minCorrValue, int level, double max_dist, DistanceMatrix distMtx,
-      RowVsRowDistanceProvider distProvider) {
+  static List<List<Integer>> getValidatedClusters_3(org.gnf.clustering.Node[] arNodes,
+      float minCorrValue, int level, double max_dist, DistanceMatrix distMtx) {
 
     List<List<Integer>> validatedClusters = new ArrayList<>();
 
@@ -761,7 +832,7 @@ public class HierarAlignerGCTask extends AbstractTask {
     // **validatedClusters.addAll(recursive_validate_clusters_3(arNodes,
     // nBest, level, max_dist, distMtx));
     validatedClusters.addAll(
-        recursive_validate_clusters_3(arNodes, nBest, level, max_dist, distMtx, distProvider));
+        recursive_validate_clusters_3(arNodes, nBest, level, max_dist, distMtx));
 
     if (DEBUG) {
       // Check integrity
@@ -781,11 +852,11 @@ public class HierarAlignerGCTask extends AbstractTask {
   }
 
   // -
-  List<List<Integer>> recursive_validate_clusters_3(org.gnf.clustering.Node[] arNodes, int nNode,
-      int level, /*
-                  * float minCorrValue,
-                  */
-      double max_dist, DistanceMatrix distMtx, RowVsRowDistanceProvider distProvider) {
+  static List<List<Integer>> recursive_validate_clusters_3(org.gnf.clustering.Node[] arNodes,
+      int nNode, int level, /*
+                             * float minCorrValue,
+                             */
+      double max_dist, DistanceMatrix distMtx) {
 
     List<List<Integer>> validatedClusters = new ArrayList<>();
 
@@ -843,17 +914,7 @@ public class HierarAlignerGCTask extends AbstractTask {
         for (int j = i + 1; j < leaves.size(); j++) {
 
           // Get distance between left and right leafs
-          float dist = 0.0f;
-          if (distMtx != null) {
-            dist = distMtx.getValue(leaves.get(i), leaves.get(j));
-          } else {
-
-            dist = (float) distProvider.getRankedDistance(leaves.get(i), leaves.get(j),
-                // RangeUtils.rangeLength(mzRange) / 2.0,
-                // RangeUtils.rangeLength(rtRange) / 2.0,
-                mzTolerance.getMzTolerance(), rtTolerance.getTolerance(), minScore);
-
-          }
+          float dist = distMtx.getValue(leaves.get(i), leaves.get(j));
           if (max_dist_2 < dist) {
             max_dist_2 = dist;
           }
@@ -884,7 +945,7 @@ public class HierarAlignerGCTask extends AbstractTask {
         validatedClusters.addAll(recursive_validate_clusters_3(arNodes, node.m_nLeft, level, /*
                                                                                               * minCorrValue,
                                                                                               */
-            max_dist, distMtx, distProvider));
+            max_dist, distMtx));
       // Is leaf: Append
       else
         validatedClusters.add(Arrays.asList(new Integer[] {node.m_nLeft}));
@@ -894,7 +955,7 @@ public class HierarAlignerGCTask extends AbstractTask {
         validatedClusters.addAll(recursive_validate_clusters_3(arNodes, node.m_nRight, level, /*
                                                                                                * minCorrValue,
                                                                                                */
-            max_dist, distMtx, distProvider));
+            max_dist, distMtx));
       // Is leaf: Append
       else
         validatedClusters.add(Arrays.asList(new Integer[] {node.m_nRight}));
@@ -909,7 +970,7 @@ public class HierarAlignerGCTask extends AbstractTask {
   }
 
   // -
-  List<Integer> getLeafIds(org.gnf.clustering.Node[] arNodes,
+  static List<Integer> getLeafIds(org.gnf.clustering.Node[] arNodes,
       int nNode/* org.gnf.clustering.Node parentNode *//*
                                                         * , List<Integer> doneNodes
                                                         */) {
@@ -943,7 +1004,7 @@ public class HierarAlignerGCTask extends AbstractTask {
   }
 
   // -
-  void printValidatedClusters_3(List<List<Integer>> validatedClusters) {
+  static void printValidatedClusters_3(List<List<Integer>> validatedClusters) {
 
     int i = 0;
     for (List<Integer> cl : validatedClusters) {
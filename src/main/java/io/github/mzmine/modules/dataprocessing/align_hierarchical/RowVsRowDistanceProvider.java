@@ -29,9 +29,19 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.List;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import org.gnf.clustering.DistanceMatrix;
 
 public class RowVsRowDistanceProvider {
 
+  /**
+   * Distance of two rows from the same raw data file
+   */
+  public static final double SAME_FILE_DISTANCE = 1000.0d;
+  /**
+   * Distance of two rows outside the m/z or RT tolerance
+   */
+  public static final double NOT_CANDIDATE_DISTANCE = 100.0d;
+
   MZmineProject project;
   // boolean useOldestRDFancestor;
   // Hashtable<RawDataFile, List<double[]>> rtAdjustementMapping;
@@ -130,7 +140,7 @@ public class RowVsRowDistanceProvider {
     // aligned_row_id < 102)
     // || (row_id >= 102 && aligned_row_id >= 102)) {
     if (row.getRawDataFiles().get(0) == k_row.getRawDataFiles().get(0)) {
-      return 1000.0d;
+      return SAME_FILE_DISTANCE;
     }
     // Not candidate
     else {
@@ -147,7 +157,7 @@ public class RowVsRowDistanceProvider {
       if ((Math.abs(row.getBestFeature().getRT() - k_row.getBestFeature().getRT()) >= rtMaxDiff / 2.0
           || Math.abs(row.getBestFeature().getMZ() - k_row.getBestFeature().getMZ()) >= mzMaxDiff
               / 2.0)) {
-        return 100.0d;
+        return NOT_CANDIDATE_DISTANCE;
       }
     }
 
@@ -165,4 +175,32 @@ public class RowVsRowDistanceProvider {
     return this.maximumScore - score;
   }
 
+  /**
+   * Read-only view of the ranked distances between all rows, each distance is computed on demand
+   */
+  public DistanceMatrix asDistanceMatrix(double mzMaxDiff, double rtMaxDiff, double minScore) {
+    final int numRows = full_rows_list.size();
+    return new DistanceMatrix() {
+      @Override
+      public int getRowCount() {
+        return numRows;
+      }
+
+      @Override
+      public int getColCount() {
+        return numRows;
+      }
+
+      @Override
+      public float getValue(int i, int j) {
+        return (float) getRankedDistance(i, j, mzMaxDiff, rtMaxDiff, minScore);
+      }
+
+      @Override
+      public void setValue(int i, int j, float value) {
+        throw new UnsupportedOperationException("Distances are computed on demand");
+      }
+    };
+  }
+
 }
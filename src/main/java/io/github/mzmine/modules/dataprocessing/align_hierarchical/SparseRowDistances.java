@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sparse distances between the rows of all aligned feature lists. Only rows of different raw data
+ * files within half the m/z and RT tolerance are candidates. All other pairs have the constant
+ * distances of {@link RowVsRowDistanceProvider}, so only the candidate pairs are stored. The
+ * candidates are found by a sweep over the rows sorted by RT.
+ * <p>
+ * Rows connected by candidate pairs form components. All distances between components are
+ * constant and larger than any distance within a valid cluster, therefore each component can be
+ * clustered on its own with a small dense {@link DistanceMatrixTriangular1D2D} instead of one
+ * matrix over all rows.
+ */
+public class SparseRowDistances {
+
+  private final int numRows;
+  // raw data file index of each row
+  private final int[] fileIndices;
+  // candidate pairs with row1 < row2, grouped by component
+  private final int[] pairRows1;
+  private final int[] pairRows2;
+  private final float[] pairDistances;
+  // pairs of component c are in [pairOffsets[c], pairOffsets[c+1])
+  private final int[] pairOffsets;
+  // row indices of each component in ascending order
+  private final int[][] components;
+  // position of each row within its component
+  private final int[] localIndices;
+
+  /**
+   * Finds all candidate pairs and their distances
+   *
+   * @param rows         all rows, the indices of the distance provider
+   * @param distProvider computes the distance of candidate pairs
+   */
+  public SparseRowDistances(@NotNull List<FeatureListRow> rows,
+      @NotNull RowVsRowDistanceProvider distProvider, double mzMaxDiff, double rtMaxDiff,
+      double minScore) {
+    numRows = rows.size();
+    fileIndices = new int[numRows];
+    final float[] rts = new float[numRows];
+    final double[] mzs = new double[numRows];
+    final Map<RawDataFile, Integer> files = new HashMap<>();
+    for (int i = 0; i < numRows; i++) {
+      final FeatureListRow row = rows.get(i);
+      final Feature best = row.getBestFeature();
+      fileIndices[i] = files.computeIfAbsent(row.getRawDataFiles().get(0), f -> files.size());
+      rts[i] = best.getRT();
+      mzs[i] = best.getMZ();
+    }
+
+    // sweep over rows sorted by RT, same tolerance checks as the distance provider
+    final int[] order = IntStream.range(0, numRows).toArray();
+    IntArrays.quickSort(order, (a, b) -> Float.compare(rts[a], rts[b]));
+    final double maxRtDelta = rtMaxDiff / 2.0;
+    final double maxMzDelta = mzMaxDiff / 2.0;
+
+    final IntArrayList rows1 = new IntArrayList();
+    final IntArrayList rows2 = new IntArrayList();
+    final FloatArrayList distances = new FloatArrayList();
+    final int[] parents = IntStream.range(0, numRows).toArray();
+    for (int oi = 0; oi < numRows; oi++) {
+      final int a = order[oi];
+      for (int oj = oi + 1; oj < numRows; oj++) {
+        final int b = order[oj];
+        if (Math.abs(rts[a] - rts[b]) >= maxRtDelta) {
+          break;
+        }
+        if (fileIndices[a] == fileIndices[b] || Math.abs(mzs[a] - mzs[b]) >= maxMzDelta) {
+          continue;
+        }
+        // the dense matrix was always filled with the lower index first
+        final int row1 = Math.min(a, b);
+        final int row2 = Math.max(a, b);
+        rows1.add(row1);
+        rows2.add(row2);
+        distances.add(
+            (float) distProvider.getRankedDistance(row1, row2, mzMaxDiff, rtMaxDiff, minScore));
+        union(parents, row1, row2);
+      }
+    }
+
+    // components are numbered in order of their first row
+    final int[] componentOfRow = new int[numRows];
+    final int[] rootComponent = new int[numRows];
+    Arrays.fill(rootComponent, -1);
+    int numComponents = 0;
+    final IntArrayList componentSizes = new IntArrayList();
+    for (int i = 0; i < numRows; i++) {
+      final int root = find(parents, i);
+      if (rootComponent[root] == -1) {
+        rootComponent[root] = numComponents++;
+        componentSizes.add(0);
+      }
+      final int c = rootComponent[root];
+      componentOfRow[i] = c;
+      componentSizes.set(c, componentSizes.getInt(c) + 1);
+    }
+
+    components = new int[numComponents][];
+    for (int c = 0; c < numComponents; c++) {
+      components[c] = new int[componentSizes.getInt(c)];
+    }
+    localIndices = new int[numRows];
+    final int[] filled = new int[numComponents];
+    for (int i = 0; i < numRows; i++) {
+      final int c = componentOfRow[i];
+      localIndices[i] = filled[c];
+      components[c][filled[c]++] = i;
+    }
+
+    // group pairs by component (counting sort)
+    final int numPairs = rows1.size();
+    pairOffsets = new int[numComponents + 1];
+    for (int p = 0; p < numPairs; p++) {
+      pairOffsets[componentOfRow[rows1.getInt(p)] + 1]++;
+    }
+    for (int c = 0; c < numComponents; c++) {
+      pairOffsets[c + 1] += pairOffsets[c];
+    }
+    pairRows1 = new int[numPairs];
+    pairRows2 = new int[numPairs];
+    pairDistances = new float[numPairs];
+    final int[] next = Arrays.copyOf(pairOffsets, numComponents);
+    for (int p = 0; p < numPairs; p++) {
+      final int target = next[componentOfRow[rows1.getInt(p)]]++;
+      pairRows1[target] = rows1.getInt(p);
+      pairRows2[target] = rows2.getInt(p);
+      pairDistances[target] = distances.getFloat(p);
+    }
+  }
+
+  /**
+   * The sparse distances are only equivalent to the dense matrix if all rows have a best feature
+   * with defined RT and m/z
+   */
+  public static boolean isApplicable(@NotNull List<FeatureListRow> rows) {
+    for (final FeatureListRow row : rows) {
+      final Feature best = row.getBestFeature();
+      if (best == null || best.getRT() == null || best.getMZ() == null || Float.isNaN(best.getRT())
+          || Double.isNaN(best.getMZ())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int find(final int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  private static void union(final int[] parents, final int a, final int b) {
+    final int rootA = find(parents, a);
+    final int rootB = find(parents, b);
+    if (rootA != rootB) {
+      parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+  }
+
+  public int getNumRows() {
+    return numRows;
+  }
+
+  public int getNumCandidatePairs() {
+    return pairRows1.length;
+  }
+
+  public int getNumComponents() {
+    return components.length;
+  }
+
+  /**
+   * @return the row indices of a component in ascending order. Position i in this array is index
+   * i in the {@link #createDistanceMatrix(int)} of this component.
+   */
+  public int[] getComponent(int component) {
+    return components[component];
+  }
+
+  /**
+   * Creates the dense distance matrix of a component with the same values as the distance matrix
+   * over all rows
+   */
+  @NotNull
+  public DistanceMatrixTriangular1D2D createDistanceMatrix(int component) {
+    final int[] rows = components[component];
+    final DistanceMatrixTriangular1D2D matrix = new DistanceMatrixTriangular1D2D(rows.length);
+    for (int x = 0; x < rows.length; x++) {
+      matrix.setValue(x, x, 0f);
+      for (int y = x + 1; y < rows.length; y++) {
+        matrix.setValue(x, y, (float) (fileIndices[rows[x]] == fileIndices[rows[y]]
+            ? RowVsRowDistanceProvider.SAME_FILE_DISTANCE
+            : RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE));
+      }
+    }
+    for (int p = pairOffsets[component]; p < pairOffsets[component + 1]; p++) {
+      matrix.setValue(localIndices[pairRows1[p]], localIndices[pairRows2[p]], pairDistances[p]);
+    }
+    return matrix;
+  }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds ADAP chromatograms on primitive arrays instead of one data point object per centroid, a
+ * range map and a chromatogram object per m/z range. The results are the same as for the previous
+ * object based implementation: data points are processed by descending intensity (then
+ * descending m/z, then input order), each data point is added to the chromatogram whose
+ * non-overlapping closed-open m/z range contains it, otherwise it starts a new chromatogram if it
+ * reaches the minimum highest point. Each chromatogram keeps the first (most intense) data point of
+ * each scan.
+ * <p>
+ * All data points are kept sorted by m/z. Every chromatogram range contains its starting data
+ * point (seed) and ranges do not overlap, therefore the range that contains an m/z is always the
+ * range of the closest seed below or above this m/z. Seeds are flagged in a {@link BitSet} over
+ * the m/z sorted data points.
+ * <p>
+ * Usage: {@link #addDataPoint(double, double, int)} for all data points, then
+ * {@link #buildChromatograms(BooleanSupplier)}. Chromatograms are then sorted by m/z and accessed
+ * by their index.
+ */
+public class ADAPChromatogramEngine {
+
+  private static final int CANCEL_CHECK_INTERVAL = 1 << 14;
+
+  private final int numScans;
+  private final MZTolerance mzTolerance;
+  private final double minHighestPoint;
+
+  // data points, sorted by m/z after building
+  private double[] mzs;
+  private double[] intensities;
+  private int[] scanIndices;
+  private int numDataPoints;
+
+  // chromatogram ranges by creation order
+  private final DoubleArrayList rangeLowers = new DoubleArrayList();
+  private final DoubleArrayList rangeUppers = new DoubleArrayList();
+  // data point index -> chromatogram by creation order or -1
+  private int[] chromatogramOfDp;
+  private BitSet seeds;
+
+  // results sorted by chromatogram m/z. Data points of chromatogram i are
+  // chromatogramDps[chromatogramStarts[i]] to chromatogramDps[chromatogramStarts[i+1]] sorted by scan
+  private int numChromatograms;
+  private int[] chromatogramStarts;
+  private int[] chromatogramDps;
+  private double[] chromatogramMzs;
+
+  private volatile double progress = 0d;
+
+  /**
+   * @param numScans        number of scans, the scan index of data points refers to these scans
+   * @param capacity        expected number of data points
+   * @param mzTolerance     the tolerance to create new m/z ranges
+   * @param minHighestPoint minimum intensity to start a new chromatogram
+   */
+  public ADAPChromatogramEngine(int numScans, int capacity, @NotNull MZTolerance mzTolerance,
+      double minHighestPoint) {
+    this.numScans = numScans;
+    this.mzTolerance = mzTolerance;
+    this.minHighestPoint = minHighestPoint;
+    mzs = new double[Math.max(capacity, 16)];
+    intensities = new double[mzs.length];
+    scanIndices = new int[mzs.length];
+  }
+
+  /**
+   * Add a data point. Data points with NaN values are skipped. Data points need to be added in
+   * scan order.
+   *
+   * @param scanIndex index of the scan in the list of all scans
+   */
+  public void addDataPoint(double mz, double intensity, int scanIndex) {
+    if (Double.isNaN(mz) || Double.isNaN(intensity)) {
+      return;
+    }
+    if (numDataPoints == mzs.length) {
+      final int newLength = (int) Math.min(Integer.MAX_VALUE - 8, (long) mzs.length * 3 / 2);
+      mzs = Arrays.copyOf(mzs, newLength);
+      intensities = Arrays.copyOf(intensities, newLength);
+      scanIndices = Arrays.copyOf(scanIndices, newLength);
+    }
+    mzs[numDataPoints] = mz;
+    intensities[numDataPoints] = intensity;
+    scanIndices[numDataPoints] = scanIndex;
+    numDataPoints++;
+  }
+
+  /**
+   * Sorts all data points and builds the chromatograms
+   *
+   * @param isCanceled checked regularly
+   * @return false if canceled
+   */
+  public boolean buildChromatograms(@NotNull BooleanSupplier isCanceled) {
+    sortByMz();
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+
+    // processing order by intensity descending, m/z descending, input order
+    // input order is retained in m/z sorted data points with the same m/z
+    final int[] order = new int[numDataPoints];
+    Arrays.setAll(order, i -> i);
+    final double[] mzs = this.mzs;
+    final double[] intensities = this.intensities;
+    IntArrays.parallelQuickSort(order, 0, numDataPoints, (a, b) -> {
+      int result = Double.compare(intensities[b], intensities[a]);
+      if (result == 0) {
+        result = Double.compare(mzs[b], mzs[a]);
+      }
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+
+    chromatogramOfDp = new int[numDataPoints];
+    Arrays.fill(chromatogramOfDp, -1);
+    seeds = new BitSet(numDataPoints);
+
+    int numAssigned = 0;
+    for (int i = 0; i < numDataPoints; i++) {
+      if ((i & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+        if (isCanceled.getAsBoolean()) {
+          return false;
+        }
+        progress = 0.8 * i / numDataPoints;
+      }
+
+      final int dp = order[i];
+      final double mz = mzs[dp];
+      int chromatogram = findRange(mz, dp);
+      if (chromatogram == -1) {
+        // skip it entirely if the intensity is not high enough
+        if (intensities[dp] < minHighestPoint) {
+          continue;
+        }
+        chromatogram = startNewChromatogramLimitMzRange(dp);
+      }
+      chromatogramOfDp[dp] = chromatogram;
+      numAssigned++;
+    }
+
+    collectChromatograms(order, numAssigned);
+    progress = 1d;
+    return true;
+  }
+
+  /**
+   * Stable sort of all data points by m/z. Data points are moved so that the m/z sorted index is
+   * the data point index.
+   */
+  private void sortByMz() {
+    final int[] order = new int[numDataPoints];
+    Arrays.setAll(order, i -> i);
+    final double[] mzs = this.mzs;
+    IntArrays.parallelQuickSort(order, 0, numDataPoints, (a, b) -> {
+      final int result = Double.compare(mzs[a], mzs[b]);
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+
+    final double[] sortedMzs = new double[numDataPoints];
+    for (int i = 0; i < numDataPoints; i++) {
+      sortedMzs[i] = mzs[order[i]];
+    }
+    this.mzs = sortedMzs;
+
+    final double[] sortedIntensities = new double[numDataPoints];
+    for (int i = 0; i < numDataPoints; i++) {
+      sortedIntensities[i] = intensities[order[i]];
+    }
+    intensities = sortedIntensities;
+
+    final int[] sortedScanIndices = new int[numDataPoints];
+    for (int i = 0; i < numDataPoints; i++) {
+      sortedScanIndices[i] = scanIndices[order[i]];
+    }
+    scanIndices = sortedScanIndices;
+  }
+
+  /**
+   * @param mz           the m/z to search
+   * @param lastDpBelow  the last data point index with an m/z less than or equal to mz or -1
+   * @return the chromatogram (creation order) whose range contains mz or -1
+   */
+  private int findRange(double mz, int lastDpBelow) {
+    final int below = lastDpBelow < 0 ? -1 : seeds.previousSetBit(lastDpBelow);
+    if (below != -1 && rangeContains(chromatogramOfDp[below], mz)) {
+      return chromatogramOfDp[below];
+    }
+    final int above = seeds.nextSetBit(lastDpBelow + 1);
+    if (above != -1 && rangeContains(chromatogramOfDp[above], mz)) {
+      return chromatogramOfDp[above];
+    }
+    return -1;
+  }
+
+  /**
+   * @return the chromatogram (creation order) whose range contains mz or -1
+   */
+  private int findRange(double mz) {
+    // binary search for the last data point with an m/z less than or equal to mz
+    int low = 0;
+    int high = numDataPoints - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return findRange(mz, low - 1);
+  }
+
+  private boolean rangeContains(int chromatogram, double mz) {
+    return rangeLowers.getDouble(chromatogram) <= mz && mz < rangeUppers.getDouble(chromatogram);
+  }
+
+  /**
+   * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
+   * ranges
+   *
+   * @param dp the data point to start the chromatogram
+   * @return the chromatogram the data point was added to
+   */
+  private int startNewChromatogramLimitMzRange(int dp) {
+    final double mz = mzs[dp];
+    final double absoluteTolerance = mzTolerance.getMzToleranceForMass(mz);
+    final double lowerMz = mz - absoluteTolerance;
+    final double upperMz = mz + absoluteTolerance;
+
+    // use the proper boundary of neighbouring ranges so that none of the ranges overlap
+    final int minusRange = findRange(lowerMz);
+    final int plusRange = findRange(upperMz);
+    final double toBeLowerBound =
+        minusRange == -1 ? lowerMz : rangeUppers.getDouble(minusRange);
+    final double toBeUpperBound =
+        plusRange == -1 ? upperMz : rangeLowers.getDouble(plusRange);
+
+    if (toBeLowerBound < toBeUpperBound) {
+      // closed open so that every value may be captured
+      final int chromatogram = rangeLowers.size();
+      rangeLowers.add(toBeLowerBound);
+      rangeUppers.add(toBeUpperBound);
+      seeds.set(dp);
+      return chromatogram;
+    } else if (toBeLowerBound == toBeUpperBound && plusRange != -1) {
+      return plusRange;
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
+              mz));
+    }
+  }
+
+  /**
+   * Groups the assigned data points by chromatogram, keeps the first data point of each scan in
+   * processing order and sorts the chromatograms by m/z and their data points by scan.
+   *
+   * @param order       data points in processing order
+   * @param numAssigned number of data points assigned to a chromatogram
+   */
+  private void collectChromatograms(int[] order, int numAssigned) {
+    final int numCreated = rangeLowers.size();
+    // counting sort by chromatogram, stable to retain the processing order
+    final int[] starts = new int[numCreated + 1];
+    for (int dp = 0; dp < numDataPoints; dp++) {
+      if (chromatogramOfDp[dp] != -1) {
+        starts[chromatogramOfDp[dp] + 1]++;
+      }
+    }
+    for (int c = 0; c < numCreated; c++) {
+      starts[c + 1] += starts[c];
+    }
+    final int[] grouped = new int[numAssigned];
+    final int[] next = Arrays.copyOf(starts, numCreated);
+    for (final int dp : order) {
+      final int chromatogram = chromatogramOfDp[dp];
+      if (chromatogram != -1) {
+        grouped[next[chromatogram]++] = dp;
+      }
+    }
+
+    // chromatograms sorted by m/z are the seeds in m/z order
+    numChromatograms = numCreated;
+    chromatogramStarts = new int[numCreated + 1];
+    chromatogramDps = new int[numAssigned];
+    chromatogramMzs = new double[numCreated];
+    final int[] scanOwner = new int[numScans];
+    Arrays.fill(scanOwner, -1);
+    final int[] scanOfDp = scanIndices;
+
+    int chromatogramIndex = 0;
+    int size = 0;
+    for (int seed = seeds.nextSetBit(0); seed != -1; seed = seeds.nextSetBit(seed + 1)) {
+      final int chromatogram = chromatogramOfDp[seed];
+      final int start = size;
+      double mzSum = 0;
+      for (int i = starts[chromatogram]; i < starts[chromatogram + 1]; i++) {
+        final int dp = grouped[i];
+        final int scan = scanOfDp[dp];
+        // the first (highest) data point per scan is used
+        if (scanOwner[scan] != chromatogram) {
+          scanOwner[scan] = chromatogram;
+          chromatogramDps[size++] = dp;
+          mzSum += mzs[dp];
+        }
+      }
+      IntArrays.quickSort(chromatogramDps, start, size,
+          (a, b) -> Integer.compare(scanOfDp[a], scanOfDp[b]));
+
+      chromatogramMzs[chromatogramIndex] = mzSum / (size - start);
+      chromatogramIndex++;
+      chromatogramStarts[chromatogramIndex] = size;
+    }
+
+    // release the working memory
+    chromatogramOfDp = null;
+    seeds = null;
+    rangeLowers.clear();
+    rangeLowers.trim();
+    rangeUppers.clear();
+    rangeUppers.trim();
+  }
+
+  /**
+   * @return progress of {@link #buildChromatograms(BooleanSupplier)} from 0 to 1
+   */
+  public double getProgress() {
+    return progress;
+  }
+
+  /**
+   * @return number of chromatograms after building
+   */
+  public int getNumberOfChromatograms() {
+    return numChromatograms;
+  }
+
+  /**
+   * @param chromatogram index of the chromatogram sorted by m/z
+   * @return the number of detected data points
+   */
+  public int getNumberOfDataPoints(int chromatogram) {
+    return chromatogramStarts[chromatogram + 1] - chromatogramStarts[chromatogram];
+  }
+
+  /**
+   * @param chromatogram index of the chromatogram sorted by m/z
+   * @return the average m/z of all detected data points
+   */
+  public double getMZ(int chromatogram) {
+    return chromatogramMzs[chromatogram];
+  }
+
+  /**
+   * Check for a minimum number of continuous scans
+   *
+   * @param chromatogram    index of the chromatogram sorted by m/z
+   * @param intensityThresh minimum intensity to consider data point connected
+   * @param minimumScanSpan minimum number of connected dp
+   * @return true if a minimum number of scans are connected (without holes)
+   */
+  public boolean matchesMinContinuousDataPoints(int chromatogram, double intensityThresh,
+      int minimumScanSpan, double minHeight) {
+    final int start = chromatogramStarts[chromatogram];
+    final int end = chromatogramStarts[chromatogram + 1];
+    if (minimumScanSpan <= 1 && end > start) {
+      return true;
+    }
+
+    int connectedScans = 0;
+    int lastConnectedScan = -2;
+    double maxCurrentHeight = 0d;
+    for (int i = start; i < end; i++) {
+      final int dp = chromatogramDps[i];
+      final double intensity = intensities[dp];
+      if (intensity >= intensityThresh) {
+        // a scan without data point breaks the segment
+        if (scanIndices[dp] != lastConnectedScan + 1) {
+          connectedScans = 0;
+        }
+        connectedScans++;
+        lastConnectedScan = scanIndices[dp];
+        // track height of current segment
+        if (maxCurrentHeight < intensity) {
+          maxCurrentHeight = intensity;
+        }
+        // check conditions
+        if (connectedScans >= minimumScanSpan && maxCurrentHeight >= minHeight) {
+          return true;
+        }
+      } else {
+        connectedScans = 0;
+        lastConnectedScan = -2;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates the time series of a chromatogram with one zero intensity data point added on each side
+   * of consecutive data points. Zeros are only added to missing scans.
+   *
+   * @param chromatogram index of the chromatogram sorted by m/z
+   * @param allScans     all scans, the scan indices of the data points refer to this array
+   */
+  public SimpleIonTimeSeries createTimeSeriesWithZeros(int chromatogram, @NotNull Scan[] allScans,
+      @Nullable MemoryMapStorage storage) {
+    final int start = chromatogramStarts[chromatogram];
+    final int end = chromatogramStarts[chromatogram + 1];
+    final double zeroMz = chromatogramMzs[chromatogram];
+
+    // at most two zeros per data point
+    final int maxLength = (end - start) * 3;
+    final double[] mzValues = new double[maxLength];
+    final double[] intensityValues = new double[maxLength];
+    final List<Scan> scans = new ArrayList<>(maxLength);
+
+    int lastScan = -1;
+    for (int i = start; i < end; i++) {
+      final int dp = chromatogramDps[i];
+      final int scan = scanIndices[dp];
+      if (scan - 1 > lastScan) {
+        // leading zero, the trailing zero of the last data point if the gap is longer
+        if (lastScan != -1 && scan - 1 > lastScan + 1) {
+          mzValues[scans.size()] = zeroMz;
+          scans.add(allScans[lastScan + 1]);
+        }
+        mzValues[scans.size()] = zeroMz;
+        scans.add(allScans[scan - 1]);
+      }
+      mzValues[scans.size()] = mzs[dp];
+      intensityValues[scans.size()] = intensities[dp];
+      scans.add(allScans[scan]);
+      lastScan = scan;
+    }
+    // trailing zero after the last data point
+    if (lastScan != -1 && lastScan + 1 < allScans.length) {
+      mzValues[scans.size()] = zeroMz;
+      scans.add(allScans[lastScan + 1]);
+    }
+
+    final int length = scans.size();
+    return new SimpleIonTimeSeries(storage, Arrays.copyOf(mzValues, length),
+        Arrays.copyOf(intensityValues, length), scans);
+  }
+}
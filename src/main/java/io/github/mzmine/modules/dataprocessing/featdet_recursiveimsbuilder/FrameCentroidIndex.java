@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Centroids of all mobility scans of a single frame in primitive arrays. Replaces one data point
+ * object per centroid and the object trees of the mobilogram building. Mobilograms are built from
+ * the centroids in order of decreasing intensity. Every centroid is assigned to the m/z range of
+ * the first, most intense centroid within tolerance. Ranges are kept in sorted primitive arrays.
+ */
+class FrameCentroidIndex {
+
+  private final List<MobilityScan> mobilityScans;
+  private final int[] mobilityScanNumbers;
+  private final double[] mzs;
+  private final double[] intensities;
+  // index into mobilityScans
+  private final int[] scanIndices;
+
+  FrameCentroidIndex(List<MobilityScan> mobilityScans, double[] mzs, double[] intensities,
+      int[] scanIndices) {
+    this.mobilityScans = mobilityScans;
+    this.mzs = mzs;
+    this.intensities = intensities;
+    this.scanIndices = scanIndices;
+    mobilityScanNumbers = mobilityScans.stream().mapToInt(MobilityScan::getMobilityScanNumber)
+        .toArray();
+  }
+
+  int getNumberOfDataPoints() {
+    return mzs.length;
+  }
+
+  /**
+   * Builds mobilograms for this frame. Data points that do not fit into a mobilogram are used to
+   * build additional mobilograms recursively, if there are more than the recursive threshold.
+   *
+   * @param storage storage for the building series
+   */
+  @NotNull
+  List<BuildingIonMobilitySeries> buildMobilograms(@NotNull MZTolerance tolerance,
+      int recursiveThreshold, boolean enableRecursive, @Nullable MemoryMapStorage storage) {
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+    int[] dps = sortByDecreasingIntensity(IntStream.range(0, mzs.length).toArray());
+    while (true) {
+      final IntArrayList leftover = new IntArrayList();
+      mobilograms.addAll(calcMobilograms(dps, tolerance, leftover));
+      if (!enableRecursive || leftover.size() <= recursiveThreshold) {
+        break;
+      }
+      dps = sortByDecreasingIntensity(leftover.toIntArray());
+    }
+
+    final List<BuildingIonMobilitySeries> series = new ArrayList<>(mobilograms.size());
+    for (Mobilogram mobilogram : mobilograms) {
+      series.add(mobilogram.toBuildingSeries(storage));
+    }
+    return series;
+  }
+
+  /**
+   * Stable sort, so data points of equal intensity keep their order
+   */
+  private int[] sortByDecreasingIntensity(int[] dps) {
+    IntArrays.mergeSort(dps, (a, b) -> Double.compare(intensities[b], intensities[a]));
+    return dps;
+  }
+
+  /**
+   * @param dps      data point indices sorted by decreasing intensity
+   * @param leftover receives all data points that were not added to a mobilogram
+   */
+  private List<Mobilogram> calcMobilograms(int[] dps, MZTolerance tolerance,
+      IntArrayList leftover) {
+    // non overlapping closed mz ranges, sorted by lower bound
+    final DoubleArrayList lowerBounds = new DoubleArrayList();
+    final DoubleArrayList upperBounds = new DoubleArrayList();
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+
+    for (final int dp : dps) {
+      final double mz = mzs[dp];
+      // last range starting at or below the mz
+      int rangeIndex = floorIndex(lowerBounds, mz);
+      Mobilogram mobilogram = null;
+      if (rangeIndex >= 0 && mz <= upperBounds.getDouble(rangeIndex)) {
+        mobilogram = mobilograms.get(rangeIndex);
+      }
+      if (mobilogram == null) {
+        final Range<Double> proposed = tolerance.getToleranceRange(mz);
+        final double lower = proposed.lowerEndpoint();
+        final double upper = proposed.upperEndpoint();
+        // only the last range starting at or below the upper bound may overlap
+        final int overlapIndex = floorIndex(lowerBounds, upper);
+        if (overlapIndex >= 0 && upperBounds.getDouble(overlapIndex) >= lower) {
+          leftover.add(dp);
+          continue;
+        }
+        mobilogram = new Mobilogram();
+        lowerBounds.add(overlapIndex + 1, lower);
+        upperBounds.add(overlapIndex + 1, upper);
+        mobilograms.add(overlapIndex + 1, mobilogram);
+      }
+      final int previousDp = mobilogram.keepBetterFittingDataPoint(dp);
+      if (previousDp != -1) {
+        leftover.add(previousDp);
+      }
+    }
+    return mobilograms;
+  }
+
+  /**
+   * @return the index of the last value less than or equal to the value or -1
+   */
+  private static int floorIndex(DoubleArrayList sorted, double value) {
+    final int index = Arrays.binarySearch(sorted.elements(), 0, sorted.size(), value);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Extracts the centroids of all mobility scans of the current frame of the data access
+   */
+  @NotNull
+  static FrameCentroidIndex of(@NotNull MobilityScanDataAccess access)
+      throws MissingMassListException {
+    final List<MobilityScan> scans = new ArrayList<>();
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final DoubleArrayList intensities = new DoubleArrayList();
+    final IntArrayList scanIndices = new IntArrayList();
+    while (access.hasNextMobilityScan()) {
+      final MobilityScan mobilityScan = access.nextMobilityScan();
+      final int scanIndex = scans.size();
+      scans.add(mobilityScan);
+      for (int i = 0; i < access.getNumberOfDataPoints(); i++) {
+        mzs.add(access.getMzValue(i));
+        intensities.add(access.getIntensityValue(i));
+        scanIndices.add(scanIndex);
+      }
+    }
+    return new FrameCentroidIndex(scans, mzs.toDoubleArray(), intensities.toDoubleArray(),
+        scanIndices.toIntArray());
+  }
+
+  /**
+   * A mobilogram of data point indices, sorted by mobility scan number with at most one data point
+   * per mobility scan.
+   */
+  private class Mobilogram {
+
+    private final IntArrayList scanNumbers = new IntArrayList();
+    private final IntArrayList dataPoints = new IntArrayList();
+    private double centerMz;
+
+    /**
+     * Adds a data point if no data point of the same scan number is contained in this mobilogram.
+     *
+     * @return position of the data point of the same scan or a negative insertion point if it was
+     * added
+     */
+    private int tryToAddDataPoint(int dp) {
+      final int scanNumber = mobilityScanNumbers[scanIndices[dp]];
+      final int index = Arrays.binarySearch(scanNumbers.elements(), 0, scanNumbers.size(),
+          scanNumber);
+      if (index >= 0) {
+        return index;
+      }
+      scanNumbers.add(-index - 1, scanNumber);
+      dataPoints.add(-index - 1, dp);
+      updateValues();
+      return index;
+    }
+
+    private void updateValues() {
+      centerMz = 0d;
+      double summedIntensities = 0d;
+      for (int i = 0; i < dataPoints.size(); i++) {
+        final int dp = dataPoints.getInt(i);
+        centerMz += mzs[dp] * intensities[dp];
+        summedIntensities += intensities[dp];
+      }
+      centerMz /= summedIntensities;
+    }
+
+    /**
+     * @return the data point that was not kept or -1 if the data point was added
+     */
+    private int keepBetterFittingDataPoint(int dp) {
+      final int index = tryToAddDataPoint(dp);
+      if (index < 0) {
+        return -1;
+      }
+      final int current = dataPoints.getInt(index);
+
+      final double currentDelta = Math.abs(centerMz - mzs[current]);
+      final double proposedDelta = Math.abs(centerMz - mzs[dp]);
+      if (currentDelta < proposedDelta) {
+        return dp;
+      }
+      // the neighbouring scans are directly before and after the same scan
+      if (index > 0 && index < dataPoints.size() - 1) {
+        final double floorIntensity = intensities[dataPoints.getInt(index - 1)];
+        final double ceilingIntensity = intensities[dataPoints.getInt(index + 1)];
+        final double avg = (ceilingIntensity + floorIntensity) / 2;
+        if (Math.abs(avg - intensities[dp]) < Math.abs(avg - intensities[current])) {
+          dataPoints.set(index, dp);
+          updateValues();
+          return current;
+        }
+      }
+      return dp;
+    }
+
+    private BuildingIonMobilitySeries toBuildingSeries(@Nullable MemoryMapStorage storage) {
+      final int numValues = dataPoints.size();
+      final double[] seriesMzs = new double[numValues];
+      final double[] seriesIntensities = new double[numValues];
+      final List<MobilityScan> scans = new ArrayList<>(numValues);
+      for (int i = 0; i < numValues; i++) {
+        final int dp = dataPoints.getInt(i);
+        seriesMzs[i] = mzs[dp];
+        seriesIntensities[i] = intensities[dp];
+        scans.add(mobilityScans.get(scanIndices[dp]));
+      }
+      return new BuildingIonMobilitySeries(storage, seriesMzs, seriesIntensities, scans);
+    }
+  }
+}
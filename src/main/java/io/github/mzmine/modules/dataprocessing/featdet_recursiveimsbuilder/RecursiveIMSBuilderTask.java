@@ -42,7 +42,6 @@ import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.FeatureShapeMobilogramType;
-import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.RetentionTimeMobilityDataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
@@ -62,13 +61,11 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -170,7 +167,7 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     stepTotal = access.getNumberOfScans();
 
     // build mobilograms for all frames
-    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = buildFrameMobilograms(access);
+    final List<BuildingIonMobilitySeries> sortedMobilograms = buildFrameMobilograms(access);
     if (isCanceled()) {
       return;
     }
@@ -387,38 +384,37 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     );
   }
 
-  private TreeSet<BuildingIonMobilitySeries> buildFrameMobilograms(MobilityScanDataAccess access) {
-    Set<BuildingIonMobilitySeries> buildingTraces = new HashSet<>();
+  /**
+   * Extracts the centroids of a batch of frames into primitive arrays and builds the mobilograms
+   * of these frames in parallel.
+   *
+   * @return the mobilograms sorted by decreasing summed intensity
+   */
+  private List<BuildingIonMobilitySeries> buildFrameMobilograms(MobilityScanDataAccess access) {
+    final List<BuildingIonMobilitySeries> buildingTraces = new ArrayList<>();
+    final int batchSize = Math.max(1, Runtime.getRuntime().availableProcessors());
     try {
-
+      final List<FrameCentroidIndex> batch = new ArrayList<>(batchSize);
       while (access.hasNextFrame()) {
         if (isCanceled()) {
           return null;
         }
 
-        final Frame frame = access.nextFrame();
-
-        final TreeSet<RetentionTimeMobilityDataPoint> dps = new TreeSet<>(
-            (o1, o2) -> {
-              if (o1.getIntensity() > o2.getIntensity()) {
-                return -1;
-              }
-              return 1;
-            });
-        // get all datapoints
-        while (access.hasNextMobilityScan()) {
-          final MobilityScan currentMobilityScan = access.nextMobilityScan();
-          for (int i = 0; i < access.getNumberOfDataPoints(); i++) {
-            dps.add(new RetentionTimeMobilityDataPoint(currentMobilityScan, access.getMzValue(i),
-                access.getIntensityValue(i)));
-          }
+        access.nextFrame();
+        batch.add(FrameCentroidIndex.of(access));
+
+        if (batch.size() >= batchSize || !access.hasNextFrame()) {
+          // keep the frame order of the results
+          final List<List<BuildingIonMobilitySeries>> batchMobilograms = batch.parallelStream()
+              .map(frame -> {
+                final List<BuildingIonMobilitySeries> mobilograms = frame.buildMobilograms(
+                    tolerance, RECURSIVE_THRESHOLD, enableRecursive, tempStorage);
+                stepProcessed.getAndIncrement();
+                return mobilograms;
+              }).toList();
+          batchMobilograms.forEach(buildingTraces::addAll);
+          batch.clear();
         }
-
-        final Set<TempMobilogram> mobilogramMap = calcMobilograms(dps, tolerance);
-        final List<BuildingIonMobilitySeries> storedTraces = storeBuldingMobilograms(mobilogramMap);
-        buildingTraces.addAll(storedTraces);
-
-        stepProcessed.getAndIncrement();
       }
     } catch (MissingMassListException e) {
       e.printStackTrace();
@@ -426,80 +422,18 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
 
     // now sort chromatograms like the adap builder
     logger.finest(() -> "Sorting mobilograms");
-    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = new TreeSet<>(
-        (o1, o2) -> {
-          if (o1.getSummedIntensity() > o2.getSummedIntensity()) {
-            return -1;
-          }
-          return 1;
-        });
-    sortedMobilograms.addAll(buildingTraces);
-
+    buildingTraces.sort(
+        Comparator.comparingDouble(BuildingIonMobilitySeries::getSummedIntensity).reversed());
     logger.finest(() -> "Mobilograms sorted");
 
-    return sortedMobilograms;
-  }
-
-  @NotNull
-  private Set<TempMobilogram> calcMobilograms(Collection<RetentionTimeMobilityDataPoint> dps,
-      final MZTolerance tolerance) {
-    final RangeMap<Double, TempMobilogram> map = TreeRangeMap.create();
-    Set<RetentionTimeMobilityDataPoint> leftoverDataPoints = new TreeSet<>((o1, o2) -> {
-      if (o1.getIntensity() > o2.getIntensity()) {
-        return -1;
-      }
-      return 1;
-    });
-
-    for (final var dp : dps) {
-      TempMobilogram mobilogram = map.get(dp.getMZ());
-      if (mobilogram == null) {
-        final Range<Double> proposed = tolerance.getToleranceRange(dp.getMZ());
-        final Range<Double> actual = SpectraMerging.createNewNonOverlappingRange(map, proposed);
-        if (proposed.equals(actual)) {
-          mobilogram = new TempMobilogram();
-          map.put(actual, mobilogram);
-        } else {
-          leftoverDataPoints.add(dp);
-          continue;
-        }
-      }
-      final RetentionTimeMobilityDataPoint previousDp = mobilogram.keepBetterFittingDataPoint(dp);
-      if (previousDp != null) {
-        leftoverDataPoints.add(previousDp);
-      }
-    }
-
-    Set<TempMobilogram> mobilograms = new HashSet<>(map.asMapOfRanges().values());
-
-    if (!leftoverDataPoints.isEmpty()) {
-      if (enableRecursive && leftoverDataPoints.size() > RECURSIVE_THRESHOLD) {
-        Set<TempMobilogram> recursiveMobilograms = calcMobilograms(leftoverDataPoints, tolerance);
-//        logger.finest(() -> "Created additional " + recursiveMobilograms.size()
-//            + " mobilograms recursively from " + leftoverDataPoints.size() + " datapoints. "
-//            + leftoverDataPoints.stream().findFirst().get().getMobilityScan().getFrame()
-//            .getFrameId());
-        mobilograms.addAll(recursiveMobilograms);
-      }
-    }
-    return mobilograms;
-  }
-
-  private List<BuildingIonMobilitySeries> storeBuldingMobilograms(
-      final Set<TempMobilogram> traces) {
-    List<BuildingIonMobilitySeries> storedTraces = new ArrayList<>(traces.size());
-    for (TempMobilogram trace : traces) {
-      final BuildingIonMobilitySeries building = trace.toBuildingSeries(tempStorage);
-      storedTraces.add(building);
-    }
-    return storedTraces;
+    return buildingTraces;
   }
 
   @Nullable
   private List<TempIMTrace> createTempIMTraces(
       Collection<BuildingIonMobilitySeries> ionMobilitySeries, MZTolerance tolerance) {
     final RangeMap<Double, TempIMTrace> map = TreeRangeMap.create();
-    Set<BuildingIonMobilitySeries> leftoverMobilograms = new HashSet<>();
+    List<BuildingIonMobilitySeries> leftoverMobilograms = new ArrayList<>();
     for (final var mobilogram : ionMobilitySeries) {
       if (isCanceled()) {
         return null;
@@ -526,6 +460,8 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
       logger.finest(() -> leftoverMobilograms.size() + "/" + ionMobilitySeries.size()
           + " leftover mobilograms");
       if (enableRecursive && leftoverMobilograms.size() > RECURSIVE_THRESHOLD) {
+        leftoverMobilograms.sort(
+            Comparator.comparingDouble(BuildingIonMobilitySeries::getSummedIntensity).reversed());
         List<TempIMTrace> recursiveTraces = createTempIMTraces(leftoverMobilograms, tolerance);
         if (recursiveTraces != null) {
           logger.finest(() -> "Created additional " + recursiveTraces.size()
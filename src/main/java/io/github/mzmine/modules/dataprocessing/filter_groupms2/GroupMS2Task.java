@@ -39,8 +39,6 @@ import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.MsMsInfoType;
 import io.github.mzmine.datamodel.features.types.numbers.RtMs2ApexDistanceType;
-import io.github.mzmine.datamodel.impl.MSnInfoImpl;
-import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2_refine.GroupedMs2RefinementTask;
@@ -58,8 +56,10 @@ import io.github.mzmine.util.scans.SpectraMerging;
 import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -86,6 +86,8 @@ public class GroupMS2Task extends AbstractTask {
   private final FragmentScanSelection timsFragmentScanSelection;
   private int processedRows;
   private GroupedMs2RefinementTask refineTask;
+  // fragment scans by precursor m/z for each raw data file, only during processing
+  private final Map<RawDataFile, PrecursorScanIndex> precursorIndices = new HashMap<>();
 
   /**
    * Create the task.
@@ -172,12 +174,14 @@ public class GroupMS2Task extends AbstractTask {
     // for all features
     for (FeatureListRow row : list.getRows()) {
       if (parentTask.isCanceled()) {
+        precursorIndices.clear();
         return;
       }
 
       processRow(row);
       processedRows++;
     }
+    precursorIndices.clear();
 
     // refine MS2 groupings with features that are at least X % of the highest feature that was grouped with each MS2
     if (minimumRelativeFeatureHeight != null) {
@@ -217,8 +221,14 @@ public class GroupMS2Task extends AbstractTask {
     final List<Scan> scans;
     RawDataFile raw = feature.getRawDataFile();
 
-    scans = raw.stream().filter(scan -> scan.getMSLevel() > 1)
-        .filter(scan -> filterScan(scan, feature)).sorted(FragmentScanSorter.DEFAULT_TIC).toList();
+    // preselect by precursor m/z and RT, the filter still applies the exact checks
+    final PrecursorScanIndex index = precursorIndices.computeIfAbsent(raw,
+        file -> new PrecursorScanIndex(file, minimumSignals));
+    final List<Scan> candidates = index.getCandidates(mzTol.getToleranceRange(feature.getMZ()),
+        rtFilter.getRtRange(feature));
+
+    scans = candidates.stream().filter(scan -> filterScan(scan, feature))
+        .sorted(FragmentScanSorter.DEFAULT_TIC).toList();
     return scans;
   }
 
@@ -260,14 +270,7 @@ public class GroupMS2Task extends AbstractTask {
       }
     }
     //
-    final double precursorMZ;
-    if (scan.getMsMsInfo() instanceof MSnInfoImpl msn) {
-      precursorMZ = msn.getMS2PrecursorMz();
-    } else if (scan.getMsMsInfo() instanceof DDAMsMsInfo info) {
-      precursorMZ = info.getIsolationMz();
-    } else {
-      precursorMZ = Objects.requireNonNullElse(scan.getPrecursorMz(), 0d);
-    }
+    final double precursorMZ = PrecursorScanIndex.getPrecursorMz(scan);
     return rtFilter.accept(feature, scan.getRetentionTime()) && precursorMZ != 0
         && mzTol.checkWithinTolerance(feature.getMZ(), precursorMZ);
   }
@@ -285,9 +288,12 @@ public class GroupMS2Task extends AbstractTask {
     double fmz = feature.getMZ();
     Float mobility = feature.getMobility();
 
-    final List<? extends Scan> scans = feature.getRawDataFile().getScanNumbers(2).stream()
-        .filter(scan -> rtFilter.accept(feature, scan.getRetentionTime()))
-        .collect(Collectors.toList());
+    // preselect the frames by RT range, the filter still applies the exact check
+    final RawDataFile raw = feature.getRawDataFile();
+    final Range<Float> rtRange = rtFilter.getRtRange(feature);
+    final List<? extends Scan> scans = (rtRange == null ? raw.getScanNumbers(2).stream()
+        : Arrays.stream(raw.getScanNumbers(2, rtRange))).filter(
+        scan -> rtFilter.accept(feature, scan.getRetentionTime())).collect(Collectors.toList());
 
     if (scans.isEmpty() || !(scans.get(0) instanceof Frame)) {
       return List.of();
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_groupms2;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.MSnInfoImpl;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of the fragment scans of a raw data file sorted by precursor m/z. Precursor m/z and
+ * retention times are kept in primitive arrays, so the candidates for a feature are found by a
+ * binary search on the m/z range and a check of the RT range without touching the scans. Scans
+ * without precursor m/z or with fewer than the minimum signals are not indexed.
+ */
+class PrecursorScanIndex {
+
+  // all in order of precursor m/z
+  private final double[] precursorMzs;
+  private final float[] rts;
+  // position in the raw data file to retain the scan order
+  private final int[] positions;
+  private final Scan[] scans;
+
+  /**
+   * @param minimumSignals 0 to deactivate, otherwise the minimum number of signals in the mass
+   *                       list
+   * @throws MissingMassListException if minimum signals are required and a fragment scan has no
+   *                                  mass list
+   */
+  PrecursorScanIndex(@NotNull RawDataFile raw, int minimumSignals) {
+    final List<Scan> fragmentScans = new ArrayList<>();
+    final List<Integer> filePositions = new ArrayList<>();
+    final List<Scan> allScans = raw.getScans();
+    for (int i = 0; i < allScans.size(); i++) {
+      final Scan scan = allScans.get(i);
+      if (scan.getMSLevel() <= 1) {
+        continue;
+      }
+      if (minimumSignals > 0) {
+        MassList massList = scan.getMassList();
+        if (massList == null) {
+          throw new MissingMassListException(scan);
+        }
+        if (massList.getNumberOfDataPoints() < minimumSignals) {
+          continue;
+        }
+      }
+      if (getPrecursorMz(scan) == 0) {
+        continue;
+      }
+      fragmentScans.add(scan);
+      filePositions.add(i);
+    }
+
+    final int n = fragmentScans.size();
+    final double[] mzs = new double[n];
+    for (int i = 0; i < n; i++) {
+      mzs[i] = getPrecursorMz(fragmentScans.get(i));
+    }
+    final int[] order = new int[n];
+    Arrays.setAll(order, i -> i);
+    IntArrays.mergeSort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+
+    precursorMzs = new double[n];
+    rts = new float[n];
+    positions = new int[n];
+    scans = new Scan[n];
+    for (int i = 0; i < n; i++) {
+      final Scan scan = fragmentScans.get(order[i]);
+      precursorMzs[i] = mzs[order[i]];
+      rts[i] = scan.getRetentionTime();
+      positions[i] = filePositions.get(order[i]);
+      scans[i] = scan;
+    }
+  }
+
+  /**
+   * The precursor m/z that is matched against the feature m/z
+   *
+   * @return the precursor m/z or 0 if there is none
+   */
+  static double getPrecursorMz(@NotNull Scan scan) {
+    if (scan.getMsMsInfo() instanceof MSnInfoImpl msn) {
+      return msn.getMS2PrecursorMz();
+    } else if (scan.getMsMsInfo() instanceof DDAMsMsInfo info) {
+      return info.getIsolationMz();
+    } else {
+      return Objects.requireNonNullElse(scan.getPrecursorMz(), 0d);
+    }
+  }
+
+  /**
+   * @param mzRange precursor m/z range, both bounds included
+   * @param rtRange retention time range or null to accept all
+   * @return the candidate scans in the order of the raw data file
+   */
+  @NotNull
+  List<Scan> getCandidates(@NotNull Range<Double> mzRange, @Nullable Range<Float> rtRange) {
+    // duplicate precursor m/z are common, find the first index >= lower and the first > upper
+    final int from = firstIndexAbove(precursorMzs, mzRange.lowerEndpoint(), false);
+    final int to = firstIndexAbove(precursorMzs, mzRange.upperEndpoint(), true);
+    if (from >= to) {
+      return List.of();
+    }
+
+    final int[] matches = new int[to - from];
+    int numMatches = 0;
+    for (int i = from; i < to; i++) {
+      if (rtRange == null || rtRange.contains(rts[i])) {
+        matches[numMatches++] = i;
+      }
+    }
+    if (numMatches == 0) {
+      return List.of();
+    }
+
+    // file order
+    IntArrays.quickSort(matches, 0, numMatches,
+        (a, b) -> Integer.compare(positions[a], positions[b]));
+    final List<Scan> candidates = new ArrayList<>(numMatches);
+    for (int i = 0; i < numMatches; i++) {
+      candidates.add(scans[matches[i]]);
+    }
+    return candidates;
+  }
+
+  /**
+   * @param inclusive true: first index with value &gt; mz, false: first index with value &gt;= mz
+   * @return the first index or the length of the array
+   */
+  private static int firstIndexAbove(final double[] sorted, final double mz,
+      final boolean inclusive) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] < mz || (inclusive && sorted[mid] == mz)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -41,6 +41,7 @@ import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.util.ArrayList;
 import java.util.List;
+import org.jetbrains.annotations.Nullable;
 
 public class Gap {
 
@@ -89,7 +90,17 @@ public class Gap {
     }
 
     // Find top m/z peak in our range
-    DataPoint basePeak = ScanUtils.findBasePeak(scan, mzRange);
+    offerBasePeak(scan, ScanUtils.findBasePeak(scan, mzRange));
+  }
+
+  /**
+   * Offers the base peak of a scan within the {@link #mzRange}. The scan needs to be within the
+   * {@link #rtRange}. Used by {@link GapSweep} that searches the base peaks of many gaps at once.
+   *
+   * @param basePeak the base peak in the m/z range or null if there was no signal
+   */
+  void offerBasePeak(Scan scan, @Nullable DataPoint basePeak) {
+    final float scanRT = scan.getRetentionTime();
 
     GapDataPointImpl currentDataPoint;
     if (basePeak != null) {
@@ -268,4 +279,12 @@ public class Gap {
   public FeatureListRow getFeatureListRow() {
     return featureListRow;
   }
+
+  public Range<Double> getMzRange() {
+    return mzRange;
+  }
+
+  public Range<Float> getRtRange() {
+    return rtRange;
+  }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
+import io.github.mzmine.util.scans.ScanUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sweeps over the scans of a raw data file in retention time order and only offers each scan to
+ * the gaps whose RT range contains the scan. Gaps are activated once the scan RT reaches the lower
+ * end of their RT range and retired after the scan RT passed the upper end. The active gaps are
+ * kept sorted by m/z so that their base peaks in a scan are found by binary searches that only
+ * move forward through the scan.
+ * <p>
+ * Scans are expected in ascending RT order, as provided by the raw data file. If the RT
+ * decreases, the sweep starts over. All gaps need bounded RT and m/z ranges.
+ */
+public class GapSweep {
+
+  private static final Comparator<Gap> RT_ORDER = Comparator.comparingDouble(
+      gap -> gap.getRtRange().lowerEndpoint());
+  private static final Comparator<Gap> MZ_ORDER = Comparator.comparingDouble(
+      gap -> gap.getMzRange().lowerEndpoint());
+
+  // sorted by lower rt
+  private final Gap[] gaps;
+  // sorted by lower mz
+  private final List<Gap> activeGaps = new ArrayList<>();
+  private int nextGap = 0;
+  private float lastRT = Float.NEGATIVE_INFINITY;
+
+  public GapSweep(@NotNull List<? extends Gap> gaps) {
+    this.gaps = gaps.toArray(Gap[]::new);
+    Arrays.sort(this.gaps, RT_ORDER);
+  }
+
+  /**
+   * Moves the sweep to the retention time of the next scan
+   *
+   * @param rt the retention time of the next scan
+   * @return the gaps with an RT range that may contain the retention time, sorted by the lower m/z.
+   * The list is reused by the next call and must not be modified.
+   */
+  @NotNull
+  public List<Gap> advanceTo(final float rt) {
+    if (rt < lastRT) {
+      // not sorted by RT - start over
+      activeGaps.clear();
+      nextGap = 0;
+    }
+    lastRT = rt;
+
+    // retire gaps that ended before this scan
+    activeGaps.removeIf(gap -> gap.getRtRange().upperEndpoint() < rt);
+
+    // activate gaps that start with this scan
+    boolean added = false;
+    while (nextGap < gaps.length && gaps[nextGap].getRtRange().lowerEndpoint() <= rt) {
+      final Gap gap = gaps[nextGap++];
+      if (gap.getRtRange().upperEndpoint() >= rt) {
+        activeGaps.add(gap);
+        added = true;
+      }
+    }
+    if (added) {
+      activeGaps.sort(MZ_ORDER);
+    }
+    return activeGaps;
+  }
+
+  /**
+   * Offers a scan to all gaps with an RT range that contains the scan. The base peak of each gap is
+   * searched starting from the position of the previous gap, as the gaps are sorted by m/z. Only
+   * for gaps that use the default base peak detection of {@link Gap}, other gaps need to be offered
+   * each scan of {@link #advanceTo(float)}.
+   *
+   * @param scan the next scan in RT order
+   */
+  public void offerNextScan(@NotNull Scan scan) {
+    final float rt = scan.getRetentionTime();
+    final List<Gap> active = advanceTo(rt);
+    if (active.isEmpty()) {
+      return;
+    }
+
+    final int numDp = scan.getNumberOfDataPoints();
+    int fromIndex = 0;
+    for (final Gap gap : active) {
+      if (!gap.getRtRange().contains(rt)) {
+        // only for open range ends
+        continue;
+      }
+      final int startIndex = fromIndex >= numDp ? -1
+          : scan.binarySearch(gap.getMzRange().lowerEndpoint(), DefaultTo.GREATER_EQUALS,
+              fromIndex, numDp);
+      fromIndex = startIndex == -1 ? numDp : startIndex;
+      gap.offerBasePeak(scan, ScanUtils.findBasePeak(scan, gap.getMzRange(), startIndex));
+    }
+  }
+}
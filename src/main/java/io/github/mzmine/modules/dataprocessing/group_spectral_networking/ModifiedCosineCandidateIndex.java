@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.scans.similarity.Weights;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Candidate generation for the modified cosine networking. Only pairs that may reach the minimum
+ * number of matched signals and the minimum cosine similarity are returned, all other pairs cannot
+ * create an edge in {@link SpectralNetworkingTask}.
+ * <p>
+ * Two signals are matched by the modified cosine if their m/z or their neutral loss (precursor m/z
+ * - fragment m/z) is within tolerance. An inverted index maps fragment and neutral loss m/z bins to
+ * spectra. The bin width is the maximum m/z tolerance so that matching signals are always found in
+ * the same or a neighbouring bin. Candidates that share enough signals are then checked with an
+ * exact upper bound of the matched signals and the cosine similarity.
+ */
+public class ModifiedCosineCandidateIndex {
+
+  // account for floating point differences of the bound and the actual cosine
+  private static final double COSINE_BOUND_EPSILON = 1E-9;
+
+  private final double[] precursorMzs;
+  private final MZTolerance mzTol;
+  private final int minMatch;
+  private final double minCosine;
+  private final double maxPrecursorMzDelta;
+  private final double binWidth;
+  // per spectrum: signal mz sorted ascending and their weighted squared intensities
+  private final double[][] sortedMzs;
+  private final double[][] sortedSquaredWeights;
+  private final double[] totalSquaredWeights;
+  // inverted index bin -> spectra
+  private final Long2ObjectOpenHashMap<int[]> fragmentBins;
+  private final Long2ObjectOpenHashMap<int[]> neutralLossBins;
+  private final ThreadLocal<Scratch> scratch;
+
+  /**
+   * @param spectra             data points sorted by intensity as used in the similarity
+   * @param precursorMzs        the precursor m/z of each spectrum sorted ascending
+   * @param mzTol               the tolerance to match signals
+   * @param weights             weights of the cosine
+   * @param minMatch            minimum matched signals
+   * @param minCosine           minimum cosine similarity
+   * @param maxPrecursorMzDelta maximum precursor m/z difference between two spectra
+   */
+  public ModifiedCosineCandidateIndex(@NotNull List<DataPoint[]> spectra,
+      double @NotNull [] precursorMzs, @NotNull MZTolerance mzTol, @NotNull Weights weights,
+      int minMatch, double minCosine, double maxPrecursorMzDelta) {
+    this.precursorMzs = precursorMzs;
+    this.mzTol = mzTol;
+    this.minMatch = minMatch;
+    this.minCosine = minCosine;
+    this.maxPrecursorMzDelta = maxPrecursorMzDelta;
+
+    final int n = spectra.size();
+    sortedMzs = new double[n][];
+    sortedSquaredWeights = new double[n][];
+    totalSquaredWeights = new double[n];
+    double maxMz = 0;
+    for (int i = 0; i < n; i++) {
+      final DataPoint[] dps = spectra.get(i).clone();
+      Arrays.sort(dps, (a, b) -> Double.compare(a.getMZ(), b.getMZ()));
+      sortedMzs[i] = new double[dps.length];
+      sortedSquaredWeights[i] = new double[dps.length];
+      for (int k = 0; k < dps.length; k++) {
+        final double mz = dps[k].getMZ();
+        // same weighting as ScanAlignment.toIntensityMatrixWeighted
+        final double weighted = Math.pow(dps[k].getIntensity(), weights.getIntensity()) * Math.pow(
+            mz, weights.getMz());
+        sortedMzs[i][k] = mz;
+        sortedSquaredWeights[i][k] = weighted * weighted;
+        totalSquaredWeights[i] += weighted * weighted;
+        maxMz = Math.max(maxMz, mz);
+      }
+    }
+    final double maxPrecursorMz = n == 0 ? 0 : Arrays.stream(precursorMzs).max().orElse(0);
+    // shifted fragments are compared at up to fragment + precursor delta
+    binWidth = mzTol.getMzToleranceForMass(maxMz + maxPrecursorMz) * (1 + 1E-6) + 1E-9;
+
+    fragmentBins = createBins(false);
+    neutralLossBins = createBins(true);
+    scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+  }
+
+  private Long2ObjectOpenHashMap<int[]> createBins(boolean neutralLoss) {
+    final Long2ObjectOpenHashMap<IntArrayList> bins = new Long2ObjectOpenHashMap<>();
+    for (int i = 0; i < sortedMzs.length; i++) {
+      if (neutralLoss && precursorMzs[i] <= 0) {
+        continue;
+      }
+      for (double mz : sortedMzs[i]) {
+        final long bin = bin(neutralLoss ? precursorMzs[i] - mz : mz);
+        final IntArrayList list = bins.computeIfAbsent(bin, key -> new IntArrayList());
+        // spectra are added in ascending order, only add once per bin
+        if (list.isEmpty() || list.getInt(list.size() - 1) != i) {
+          list.add(i);
+        }
+      }
+    }
+    final Long2ObjectOpenHashMap<int[]> result = new Long2ObjectOpenHashMap<>(bins.size());
+    bins.long2ObjectEntrySet().forEach(e -> result.put(e.getLongKey(), e.getValue().toIntArray()));
+    return result;
+  }
+
+  private long bin(double value) {
+    return (long) Math.floor(value / binWidth);
+  }
+
+  /**
+   * All spectra j > i that may form an edge with spectrum i
+   *
+   * @param i the index of the first spectrum
+   * @return candidate indices sorted ascending
+   */
+  public int @NotNull [] findCandidates(int i) {
+    final Scratch s = scratch.get();
+    s.touched.clear();
+    final double[] mzs = sortedMzs[i];
+    final boolean modAware = precursorMzs[i] > 0;
+    for (int k = 0; k < mzs.length; k++) {
+      // stamp each signal to count it only once per other spectrum
+      final int stamp = k + 1;
+      countBins(s, fragmentBins, bin(mzs[k]), i, stamp);
+      if (modAware) {
+        countBins(s, neutralLossBins, bin(precursorMzs[i] - mzs[k]), i, stamp);
+      }
+    }
+
+    final IntArrayList candidates = new IntArrayList();
+    for (int t = 0; t < s.touched.size(); t++) {
+      final int j = s.touched.getInt(t);
+      if (s.counts[j] >= minMatch && isPossibleMatch(i, j)) {
+        candidates.add(j);
+      }
+      // reset scratch
+      s.counts[j] = 0;
+      s.stamps[j] = 0;
+    }
+    final int[] result = candidates.toIntArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  private void countBins(Scratch s, Long2ObjectOpenHashMap<int[]> bins, long bin, int i,
+      int stamp) {
+    for (long b = bin - 1; b <= bin + 1; b++) {
+      final int[] spectraInBin = bins.get(b);
+      if (spectraInBin == null) {
+        continue;
+      }
+      // spectra are sorted ascending, only j > i
+      int start = Arrays.binarySearch(spectraInBin, i + 1);
+      start = start < 0 ? -start - 1 : start;
+      for (int t = start; t < spectraInBin.length; t++) {
+        final int j = spectraInBin[t];
+        if (precursorMzs[j] - precursorMzs[i] > maxPrecursorMzDelta) {
+          break;
+        }
+        if (s.stamps[j] == stamp) {
+          continue;
+        }
+        if (s.stamps[j] == 0 && s.counts[j] == 0) {
+          s.touched.add(j);
+        }
+        s.stamps[j] = stamp;
+        s.counts[j]++;
+      }
+    }
+  }
+
+  /**
+   * Exact upper bound of the matched signals and the cosine similarity. The alignment matches
+   * each signal at most once, therefore, the number of signals with any possible partner is an
+   * upper bound for the overlap. The cosine is bound by the norm of all signals with a possible
+   * partner (Cauchy-Schwarz).
+   *
+   * @return false if the pair cannot reach the minimum matched signals or minimum cosine
+   */
+  public boolean isPossibleMatch(int i, int j) {
+    // same argument order as in SpectralNetworkingTask alignDataPoints: signals of j are matched
+    // against signals of i
+    final double[] mzsA = sortedMzs[i];
+    final double[] mzsB = sortedMzs[j];
+    final boolean modAware = precursorMzs[i] > 0 && precursorMzs[j] > 0;
+    final double delta = precursorMzs[i] - precursorMzs[j];
+
+    final Scratch s = scratch.get();
+    final boolean[] partnerA = s.partnerFlags(mzsA.length);
+    int possibleOverlap = 0;
+    double squaredB = 0;
+    for (int k = 0; k < mzsB.length; k++) {
+      boolean hasPartner = markPartners(mzsB[k], mzsA, partnerA);
+      if (modAware) {
+        hasPartner |= markPartners(mzsB[k] + delta, mzsA, partnerA);
+      }
+      if (hasPartner) {
+        possibleOverlap++;
+        squaredB += sortedSquaredWeights[j][k];
+      }
+    }
+    double squaredA = 0;
+    for (int k = 0; k < mzsA.length; k++) {
+      if (partnerA[k]) {
+        squaredA += sortedSquaredWeights[i][k];
+      }
+    }
+    if (possibleOverlap < minMatch || possibleOverlap == 0) {
+      return false;
+    }
+    final double cosineBound = Math.sqrt(squaredA / totalSquaredWeights[i]) * Math.sqrt(
+        squaredB / totalSquaredWeights[j]);
+    return cosineBound + COSINE_BOUND_EPSILON >= minCosine;
+  }
+
+  /**
+   * Marks all signals in sortedMzs that are within tolerance of mz, same check as
+   * {@link MZTolerance#checkWithinTolerance(double, double)} in the alignment
+   *
+   * @return true if any signal is within tolerance
+   */
+  private boolean markPartners(double mz, double[] sortedMzs, boolean[] partners) {
+    // slightly wider search range, the exact check is done below
+    final double tol = mzTol.getMzToleranceForMass(mz) * (1 + 1E-6) + 1E-9;
+    final IndexRange range = BinarySearch.indexRange(sortedMzs, mz - tol, mz + tol);
+    if (range.isEmpty()) {
+      return false;
+    }
+    boolean result = false;
+    for (int k = range.min(); k < range.maxExclusive(); k++) {
+      if (mzTol.checkWithinTolerance(mz, sortedMzs[k])) {
+        partners[k] = true;
+        result = true;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reusable buffers per thread
+   */
+  private static final class Scratch {
+
+    private final int[] counts;
+    private final int[] stamps;
+    private final IntArrayList touched = new IntArrayList();
+    private boolean[] partners = new boolean[0];
+
+    private Scratch(int n) {
+      counts = new int[n];
+      stamps = new int[n];
+    }
+
+    private boolean[] partnerFlags(int length) {
+      if (partners.length < length) {
+        partners = new boolean[length];
+      } else {
+        Arrays.fill(partners, 0, length, false);
+      }
+      return partners;
+    }
+  }
+}
@@ -74,6 +74,11 @@ public class SpectralNetworkingParameters extends SimpleParameterSet {
           "Maximum allowed m/z delta between precursor ions to be tested. This can speed up the process",
           MZmineCore.getConfiguration().getMZFormat(), 500d), true);
 
+  public static final BooleanParameter EXHAUSTIVE_PAIRS = new BooleanParameter(
+      "Compare all pairs",
+      "Compares all pairs of spectra. Otherwise, pairs that cannot reach the minimum matched signals or the minimum cosine similarity are skipped (same results, faster). Only used for the best MS2 scan without neutral loss similarity.",
+      false);
+
   public static final ParameterSetParameter<SignalFiltersParameters> signalFilters = new ParameterSetParameter<>(
       "Signal filters", """
       Signal filters to limit the number of signals etc.
@@ -81,7 +86,7 @@ public class SpectralNetworkingParameters extends SimpleParameterSet {
 
   public SpectralNetworkingParameters() {
     super(FEATURE_LISTS, MZ_TOLERANCE, ONLY_BEST_MS2_SCAN, MAX_MZ_DELTA, MIN_MATCH,
-        MIN_COSINE_SIMILARITY, CHECK_NEUTRAL_LOSS_SIMILARITY, signalFilters);
+        MIN_COSINE_SIMILARITY, CHECK_NEUTRAL_LOSS_SIMILARITY, EXHAUSTIVE_PAIRS, signalFilters);
   }
 
 }
@@ -97,6 +97,7 @@ public class SpectralNetworkingTask extends AbstractTask {
   private final boolean checkNeutralLoss;
   private final SpectralSignalFilter signalFilter;
   private final double maxMzDelta;
+  private final boolean exhaustivePairs;
   private List<FeatureListRow> rows;
   private long totalMaxPairs = 0;
 
@@ -108,6 +109,7 @@ public class SpectralNetworkingTask extends AbstractTask {
     mzTolerance = params.getValue(SpectralNetworkingParameters.MZ_TOLERANCE);
     maxMzDelta = params.getEmbeddedParameterValueIfSelectedOrElse(
         SpectralNetworkingParameters.MAX_MZ_DELTA, Double.MAX_VALUE);
+    exhaustivePairs = params.getValue(SpectralNetworkingParameters.EXHAUSTIVE_PAIRS);
 
     minMatch = params.getValue(SpectralNetworkingParameters.MIN_MATCH);
     minCosineSimilarity = params.getValue(SpectralNetworkingParameters.MIN_COSINE_SIMILARITY);
@@ -444,6 +446,10 @@ public class SpectralNetworkingTask extends AbstractTask {
     final int numRows = filteredRows.size();
     totalMaxPairs = Combinatorics.uniquePairs(filteredRows);
     logger.log(Level.INFO, MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
+    if (!exhaustivePairs && !checkNeutralLoss) {
+      checkCandidatePairsBestMs2(mapSimilarity, mapNeutralLoss, filteredRows);
+      return;
+    }
     // try map multi for all pairs
     long comparedPairs = IntStream.range(0, numRows - 1).boxed()
         .<Pair<FilteredRowData, FilteredRowData>>mapMulti((i, consumer) -> {
@@ -472,6 +478,40 @@ public class SpectralNetworkingTask extends AbstractTask {
     logger.info("Spectral networking: Performed %d pairwise comparisons.".formatted(comparedPairs));
   }
 
+  /**
+   * Only checks candidate pairs that may reach the minimum matched signals and cosine similarity.
+   * Results are the same as for all pairs.
+   *
+   * @param filteredRows sorted by precursor m/z
+   */
+  private void checkCandidatePairsBestMs2(R2RMap<RowsRelationship> mapSimilarity,
+      R2RMap<RowsRelationship> mapNeutralLoss, List<FilteredRowData> filteredRows) {
+    final int numRows = filteredRows.size();
+    final double[] precursorMzs = filteredRows.stream().mapToDouble(r -> r.row().getAverageMZ())
+        .toArray();
+    final ModifiedCosineCandidateIndex index = new ModifiedCosineCandidateIndex(
+        filteredRows.stream().map(FilteredRowData::data).toList(), precursorMzs, mzTolerance,
+        Weights.SQRT, minMatch, minCosineSimilarity, maxMzDelta);
+
+    long comparedPairs = IntStream.range(0, numRows - 1).parallel().mapToLong(i -> {
+      if (isCanceled()) {
+        return 0;
+      }
+      final FilteredRowData a = filteredRows.get(i);
+      final int[] candidates = index.findCandidates(i);
+      for (int j : candidates) {
+        checkSpectralPair(a, filteredRows.get(j), mapSimilarity, mapNeutralLoss);
+      }
+      // count all pairs of this row as processed
+      processedPairs.addAndGet(numRows - 1 - i);
+      return candidates.length;
+    }).sum();
+
+    logger.info(
+        "Spectral networking: Performed %d pairwise comparisons of %d possible pairs (pruned the rest).".formatted(
+            comparedPairs, totalMaxPairs));
+  }
+
   private void checkSpectralPair(final FilteredRowData a, final FilteredRowData b,
       final R2RMap<RowsRelationship> mapSimilarity, final R2RMap<RowsRelationship> mapNeutralLoss) {
     checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.data(), b.data(), Type.MS2_COSINE_SIM);
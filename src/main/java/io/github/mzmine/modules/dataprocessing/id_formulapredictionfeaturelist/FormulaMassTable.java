@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * Immutable table of generated formulas sorted by their neutral exact mass. The formulas of a
+ * whole mass window are generated once and the candidates of each row within this window are
+ * found by a range query.
+ */
+class FormulaMassTable {
+
+  // in generation order
+  private final IMolecularFormula[] formulas;
+  // sorted by mass
+  private final double[] masses;
+  // formula index for each sorted mass
+  private final int[] formulaIndices;
+
+  /**
+   * @param formulas the formulas in the order of the generator
+   */
+  FormulaMassTable(@NotNull List<IMolecularFormula> formulas) {
+    this.formulas = formulas.toArray(IMolecularFormula[]::new);
+    final int n = this.formulas.length;
+    final double[] unsorted = new double[n];
+    for (int i = 0; i < n; i++) {
+      unsorted[i] = MolecularFormulaManipulator.getTotalExactMass(this.formulas[i]);
+    }
+    // merge sort is stable for equal masses
+    formulaIndices = IntStream.range(0, n).toArray();
+    IntArrays.mergeSort(formulaIndices, (a, b) -> Double.compare(unsorted[a], unsorted[b]));
+    masses = new double[n];
+    for (int i = 0; i < n; i++) {
+      masses[i] = unsorted[formulaIndices[i]];
+    }
+  }
+
+  int size() {
+    return formulas.length;
+  }
+
+  /**
+   * @param massRange neutral mass range
+   * @return all formulas within the mass range in the order of the generator
+   */
+  @NotNull
+  IMolecularFormula[] findCandidates(@NotNull Range<Double> massRange) {
+    final IndexRange range = BinarySearch.indexRange(masses, massRange);
+    if (range.isEmpty()) {
+      return new IMolecularFormula[0];
+    }
+    final int[] indices = Arrays.copyOfRange(formulaIndices, range.min(), range.maxExclusive());
+    Arrays.sort(indices);
+    final IMolecularFormula[] candidates = new IMolecularFormula[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      candidates[i] = formulas[indices[i]];
+    }
+    return candidates;
+  }
+}
@@ -54,10 +54,17 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FormulaUtils;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
@@ -66,6 +73,17 @@ import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 public class FormulaPredictionFeatureListTask extends AbstractTask {
 
+  /**
+   * Maximum width of a neutral mass window that shares the generated formulas. Keeps enough windows
+   * for parallel processing.
+   */
+  private static final double MAX_MASS_WINDOW_WIDTH = 0.1;
+  /**
+   * Maximum number of formulas held in memory for a window with multiple rows. Larger windows are
+   * split, depending on the mass and the element ranges a window may contain millions of formulas.
+   */
+  static final int MAX_WINDOW_FORMULAS = 20_000;
+
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final MolecularFormulaRange elementCounts;
   private final Double minIsotopeScore;
@@ -85,10 +103,10 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
   private float sortPPMFactor;
   private float sortMSMSFactor;
   private float sortIsotopeFactor;
-  private MolecularFormulaGenerator generator;
+  private final Set<MolecularFormulaGenerator> activeGenerators = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
   private String message;
-  private int totalRows, finishedRows;
-  private List<ResultFormula> resultingFormulas;
+  private int totalRows;
   private Range<Double> rdbeRange;
   private Boolean rdbeIsInteger;
   private Boolean checkHCRatio;
@@ -184,7 +202,7 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0;
     }
-    return (double) finishedRows / (double) totalRows;
+    return (double) finishedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -202,72 +220,181 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     featureList.addRowType(DataTypes.get(
         io.github.mzmine.datamodel.features.types.annotations.formula.FormulaListType.class));
 
-    for (FeatureListRow row : featureList.getRows()) {
+    final List<MassWindow> windows = createMassWindows(createRowSearches());
+    // rows without search are finished
+    finishedRows.set(totalRows - windows.stream().mapToInt(w -> w.rows().size()).sum());
 
-      if (row.getPeakIdentities().size() > 0) {
-        continue;
+    windows.parallelStream().forEach(window -> {
+      if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
+        return;
       }
-      this.resultingFormulas = new ArrayList<>();
-
-      double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
+      predictFormulas(window);
+    });
 
-      message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
-          .format(searchedMass);
-
-      Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+    if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
+      return;
+    }
 
-      IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-      generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-          massRange.upperEndpoint(), elementCounts);
+    featureList.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
+            getModuleCallDate()));
 
-      IMolecularFormula cdkFormula;
+    logger.finest("Finished formula search for all the features");
 
-      // create a map to store ResultFormula and relative mass deviation
-      // for sorting
-      while ((cdkFormula = generator.getNextFormula()) != null) {
-        // Mass is ok, so test other constraints
-        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
+    setStatus(TaskStatus.FINISHED);
 
-        if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
-          return;
-        }
+  }
 
-        if (molf != null) {
-          resultingFormulas.add(molf);
-        }
+  /**
+   * @return the neutral mass searches of all rows without identities
+   */
+  @NotNull
+  private List<RowSearch> createRowSearches() {
+    final List<RowSearch> searches = new ArrayList<>();
+    for (FeatureListRow row : featureList.getRows()) {
+      if (row.getPeakIdentities().size() > 0) {
+        continue;
       }
+      double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
+      searches.add(new RowSearch(row, searchedMass, mzTolerance.getToleranceRange(searchedMass)));
+    }
+    return searches;
+  }
 
-      if (isCanceled()) {
-        return;
+  /**
+   * Groups the rows sorted by searched mass into windows of overlapping mass ranges. The formulas
+   * of each window are only generated once.
+   */
+  @NotNull
+  static List<MassWindow> createMassWindows(@NotNull List<RowSearch> searches) {
+    final List<RowSearch> sorted = new ArrayList<>(searches);
+    sorted.sort(Comparator.comparingDouble(RowSearch::searchedMass));
+
+    final List<MassWindow> windows = new ArrayList<>();
+    List<RowSearch> windowRows = new ArrayList<>();
+    double lower = 0d;
+    double upper = 0d;
+    for (RowSearch search : sorted) {
+      final double searchLower = search.massRange().lowerEndpoint();
+      final double searchUpper = search.massRange().upperEndpoint();
+      if (!windowRows.isEmpty() && (searchLower > upper
+          || Math.max(upper, searchUpper) - lower > MAX_MASS_WINDOW_WIDTH)) {
+        windows.add(new MassWindow(Range.closed(lower, upper), windowRows));
+        windowRows = new ArrayList<>();
+      }
+      if (windowRows.isEmpty()) {
+        lower = searchLower;
+        upper = searchUpper;
       }
+      upper = Math.max(upper, searchUpper);
+      windowRows.add(search);
+    }
+    if (!windowRows.isEmpty()) {
+      windows.add(new MassWindow(Range.closed(lower, upper), windowRows));
+    }
+    return windows;
+  }
 
+  private void predictFormulas(MassWindow window) {
+    message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
+        .format(window.massRange().lowerEndpoint()) + " - " + MZmineCore.getConfiguration()
+        .getMZFormat().format(window.massRange().upperEndpoint());
 
-      // Add the new formula entry top results
-      if (!resultingFormulas.isEmpty()) {
-        FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
-            sortMSMSFactor);
-        row.setFormulas(resultingFormulas.subList(0,
-            Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
-      }
+    findCandidates(window, elementCounts, MAX_WINDOW_FORMULAS, activeGenerators,
+        () -> isCanceled() || getStatus().equals(TaskStatus.ERROR), (search, candidates) -> {
+          final FeatureListRow row = search.row();
+          final List<ResultFormula> resultingFormulas = new ArrayList<>();
 
-      if (isCanceled()) {
-        return;
-      }
-      finishedRows++;
-    }
+          // candidates are shared between the rows of this window
+          for (IMolecularFormula candidate : candidates) {
+            // Mass is ok, so test other constraints
+            ResultFormula molf = checkConstraints(candidate, row, search.searchedMass());
 
-    if (isCanceled()) {
-      return;
-    }
+            if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
+              return;
+            }
 
-    featureList.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
-            getModuleCallDate()));
+            if (molf != null) {
+              resultingFormulas.add(molf);
+            }
+          }
 
-    logger.finest("Finished formula search for all the features");
+          // Add the new formula entry top results
+          if (!resultingFormulas.isEmpty()) {
+            FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
+                sortMSMSFactor);
+            row.setFormulas(resultingFormulas.subList(0,
+                Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
+          }
+          finishedRows.incrementAndGet();
+        });
+  }
 
-    setStatus(TaskStatus.FINISHED);
+  /**
+   * Generates the formulas of a window once and passes the candidates of each row to the consumer.
+   * Windows with multiple rows and more than maxFormulas formulas are split into halves.
+   *
+   * @param maxFormulas      maximum number of formulas of a window with multiple rows
+   * @param activeGenerators the generators that are running, to cancel them
+   * @param rowCandidates    receives each row with its candidates in the order of the generator
+   */
+  static void findCandidates(@NotNull MassWindow window,
+      @NotNull MolecularFormulaRange elementCounts, int maxFormulas,
+      @NotNull Set<MolecularFormulaGenerator> activeGenerators, @NotNull BooleanSupplier isCanceled,
+      @NotNull BiConsumer<RowSearch, IMolecularFormula[]> rowCandidates) {
+    final boolean canSplit = window.rows().size() > 1;
+    final List<IMolecularFormula> generated = generateFormulas(window.massRange(), elementCounts,
+        canSplit ? maxFormulas : Integer.MAX_VALUE, activeGenerators, isCanceled);
+    if (isCanceled.getAsBoolean()) {
+      return;
+    }
+    if (generated == null) {
+      // too many formulas - split the rows
+      final List<RowSearch> rows = window.rows();
+      final int half = rows.size() / 2;
+      findCandidates(MassWindow.of(rows.subList(0, half)), elementCounts, maxFormulas,
+          activeGenerators, isCanceled, rowCandidates);
+      findCandidates(MassWindow.of(rows.subList(half, rows.size())), elementCounts, maxFormulas,
+          activeGenerators, isCanceled, rowCandidates);
+      return;
+    }
+
+    final FormulaMassTable massTable = new FormulaMassTable(generated);
+    for (RowSearch search : window.rows()) {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      rowCandidates.accept(search, massTable.findCandidates(search.massRange()));
+    }
+  }
 
+  /**
+   * @return the formulas in the order of the generator or null if there are more than maxFormulas
+   * or the search was canceled
+   */
+  @Nullable
+  private static List<IMolecularFormula> generateFormulas(@NotNull Range<Double> massRange,
+      @NotNull MolecularFormulaRange elementCounts, int maxFormulas,
+      @NotNull Set<MolecularFormulaGenerator> activeGenerators,
+      @NotNull BooleanSupplier isCanceled) {
+    IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+    MolecularFormulaGenerator generator = new MolecularFormulaGenerator(builder,
+        massRange.lowerEndpoint(), massRange.upperEndpoint(), elementCounts);
+    activeGenerators.add(generator);
+
+    final List<IMolecularFormula> generated = new ArrayList<>();
+    try {
+      IMolecularFormula cdkFormula;
+      while ((cdkFormula = generator.getNextFormula()) != null) {
+        if (isCanceled.getAsBoolean() || generated.size() >= maxFormulas) {
+          return null;
+        }
+        generated.add(cdkFormula);
+      }
+    } finally {
+      activeGenerators.remove(generator);
+    }
+    return generated;
   }
 
   /**
@@ -347,20 +474,43 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
 
     }
 
-    // Create a new formula entry
-    return new ResultFormula(cdkFormula, predictedIsotopePattern, isotopeScore, msmsScore,
-        msmsAnnotations, searchedMass);
+    // Create a new formula entry, the candidate formula is shared with other rows
+    return new ResultFormula(FormulaUtils.cloneFormula(cdkFormula), predictedIsotopePattern,
+        isotopeScore, msmsScore, msmsAnnotations, searchedMass);
   }
 
   @Override
   public void cancel() {
     super.cancel();
 
-    // We need to cancel the formula generator, because searching for next
+    // We need to cancel the formula generators, because searching for next
     // candidate formula may take a looong time
-    if (generator != null) {
+    for (MolecularFormulaGenerator generator : activeGenerators) {
       generator.cancel();
     }
 
   }
+
+  record RowSearch(FeatureListRow row, double searchedMass, Range<Double> massRange) {
+
+  }
+
+  /**
+   * @param massRange neutral mass range that covers the mass ranges of all rows
+   */
+  record MassWindow(Range<Double> massRange, List<RowSearch> rows) {
+
+    /**
+     * @param rows rows sorted by searched mass
+     */
+    static MassWindow of(List<RowSearch> rows) {
+      double lower = Double.POSITIVE_INFINITY;
+      double upper = Double.NEGATIVE_INFINITY;
+      for (RowSearch row : rows) {
+        lower = Math.min(lower, row.massRange().lowerEndpoint());
+        upper = Math.max(upper, row.massRange().upperEndpoint());
+      }
+      return new MassWindow(Range.closed(lower, upper), rows);
+    }
+  }
 }
@@ -25,14 +25,12 @@
 
 package io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation;
 
-import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.IonizationType;
-import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.LipidFragmentationRule;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.LipidFragmentationRuleType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation.LipidIonFragments.FragmentCandidate;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.ILipidAnnotation;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.LipidFragment;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.lipidchain.ILipidChain;
@@ -41,7 +39,6 @@ import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lip
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidannotationmodules.LipidAnnotationChainParameters;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.FormulaUtils;
-import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
 import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
@@ -65,11 +62,19 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
   public LipidFragmentFactory(MZTolerance mzToleranceMS2, ILipidAnnotation lipidAnnotation,
       IonizationType ionizationType, LipidFragmentationRule[] rules, Scan msMsScan,
       LipidAnnotationChainParameters chainParameters) {
+    this(lipidAnnotation, ionizationType, rules, chainParameters);
     this.mzToleranceMS2 = mzToleranceMS2;
+    this.msMsScan = msMsScan;
+  }
+
+  /**
+   * Only to calculate the fragments with {@link #createLipidIonFragments()}
+   */
+  public LipidFragmentFactory(ILipidAnnotation lipidAnnotation, IonizationType ionizationType,
+      LipidFragmentationRule[] rules, LipidAnnotationChainParameters chainParameters) {
     this.lipidAnnotation = lipidAnnotation;
     this.ionizationType = ionizationType;
     this.rules = rules;
-    this.msMsScan = msMsScan;
     this.minChainLength = chainParameters.getParameter(
         LipidAnnotationChainParameters.minChainLength).getValue();
     this.maxChainLength = chainParameters.getParameter(
@@ -85,88 +90,93 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
 
   @Override
   public List<LipidFragment> findLipidFragments() {
-    List<LipidFragment> lipidFragments = new ArrayList<>();
+    return createLipidIonFragments().findLipidFragments(msMsScan, mzToleranceMS2);
+  }
+
+  /**
+   * Calculates all fragments of the lipid and ionization that are defined by the rules. The
+   * fragments do not depend on the MS2 scan and can be matched against multiple scans.
+   */
+  @NotNull
+  public LipidIonFragments createLipidIonFragments() {
+    List<FragmentCandidate> candidates = new ArrayList<>();
     for (LipidFragmentationRule rule : rules) {
       if (!ionizationType.equals(rule.getIonizationType())
           || rule.getLipidFragmentationRuleType() == null) {
         continue;
       }
-      List<LipidFragment> detectedFragments = checkForRuleTypes(rule);
-      if (detectedFragments != null) {
-        lipidFragments.addAll(detectedFragments);
+      List<FragmentCandidate> ruleCandidates = checkForRuleTypes(rule);
+      if (ruleCandidates != null) {
+        candidates.addAll(ruleCandidates);
       }
     }
-    return lipidFragments;
+    return new LipidIonFragments(lipidAnnotation, candidates);
   }
 
-  private List<LipidFragment> checkForRuleTypes(LipidFragmentationRule rule) {
+  private List<FragmentCandidate> checkForRuleTypes(LipidFragmentationRule rule) {
     LipidFragmentationRuleType ruleType = rule.getLipidFragmentationRuleType();
     return switch (ruleType) {
-      case HEADGROUP_FRAGMENT -> checkForHeadgroupFragment(rule, lipidAnnotation, msMsScan);
-      case HEADGROUP_FRAGMENT_NL -> checkForHeadgroupFragmentNL(rule, lipidAnnotation, msMsScan);
-      case PRECURSOR -> checkForOnlyPrecursor(rule, lipidAnnotation, msMsScan);
-      case ACYLCHAIN_FRAGMENT -> checkForAcylChainFragment(rule, lipidAnnotation, msMsScan);
+      case HEADGROUP_FRAGMENT -> checkForHeadgroupFragment(rule, lipidAnnotation);
+      case HEADGROUP_FRAGMENT_NL -> checkForHeadgroupFragmentNL(rule, lipidAnnotation);
+      case PRECURSOR -> checkForOnlyPrecursor(rule, lipidAnnotation);
+      case ACYLCHAIN_FRAGMENT -> checkForAcylChainFragment(rule, lipidAnnotation);
       case ACYLCHAIN_FRAGMENT_NL ->
-          findChainFragmentNL(rule, lipidAnnotation, msMsScan, LipidChainType.ACYL_CHAIN);
+          findChainFragmentNL(rule, lipidAnnotation, LipidChainType.ACYL_CHAIN);
       case ACYLCHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan, LipidChainType.ACYL_CHAIN);
+          findChainMinusFormulaFragment(rule, lipidAnnotation, LipidChainType.ACYL_CHAIN);
       case ACYLCHAIN_MINUS_FORMULA_FRAGMENT_NL ->
-          findChainMinusFormulaFragmentNL(rule, lipidAnnotation, msMsScan,
-              LipidChainType.ACYL_CHAIN);
+          findChainMinusFormulaFragmentNL(rule, lipidAnnotation, LipidChainType.ACYL_CHAIN);
       case ACYLCHAIN_PLUS_FORMULA_FRAGMENT ->
-          findChainPlusFormulaFragment(rule, lipidAnnotation, msMsScan, LipidChainType.ACYL_CHAIN);
+          findChainPlusFormulaFragment(rule, lipidAnnotation, LipidChainType.ACYL_CHAIN);
       case ACYLCHAIN_PLUS_FORMULA_FRAGMENT_NL ->
-          findChainPlusFormulaFragmentNL(rule, lipidAnnotation, msMsScan,
-              LipidChainType.ACYL_CHAIN);
+          findChainPlusFormulaFragmentNL(rule, lipidAnnotation, LipidChainType.ACYL_CHAIN);
       case TWO_ACYLCHAINS_PLUS_FORMULA_FRAGMENT ->
-          checkForTwoAcylChainsPlusFormulaFragment(rule, lipidAnnotation, msMsScan);
+          checkForTwoAcylChainsPlusFormulaFragment(rule, lipidAnnotation);
       case ALKYLCHAIN_PLUS_FORMULA_FRAGMENT ->
-          findChainPlusFormulaFragment(rule, lipidAnnotation, msMsScan, LipidChainType.ALKYL_CHAIN);
+          findChainPlusFormulaFragment(rule, lipidAnnotation, LipidChainType.ALKYL_CHAIN);
       case AMID_CHAIN_FRAGMENT ->
-          findChainFragment(rule, lipidAnnotation, msMsScan, LipidChainType.AMID_CHAIN);
+          findChainFragment(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
       case AMID_CHAIN_PLUS_FORMULA_FRAGMENT ->
-          findChainPlusFormulaFragment(rule, lipidAnnotation, msMsScan, LipidChainType.AMID_CHAIN);
+          findChainPlusFormulaFragment(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
       case AMID_CHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan, LipidChainType.AMID_CHAIN);
-      case AMID_MONO_HYDROXY_CHAIN_FRAGMENT -> findChainFragment(rule, lipidAnnotation, msMsScan,
-          LipidChainType.AMID_MONO_HYDROXY_CHAIN);
+          findChainMinusFormulaFragment(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
+      case AMID_MONO_HYDROXY_CHAIN_FRAGMENT ->
+          findChainFragment(rule, lipidAnnotation, LipidChainType.AMID_MONO_HYDROXY_CHAIN);
       case AMID_MONO_HYDROXY_CHAIN_PLUS_FORMULA_FRAGMENT ->
-          findChainPlusFormulaFragment(rule, lipidAnnotation, msMsScan,
+          findChainPlusFormulaFragment(rule, lipidAnnotation,
               LipidChainType.AMID_MONO_HYDROXY_CHAIN);
       case AMID_MONO_HYDROXY_CHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan,
+          findChainMinusFormulaFragment(rule, lipidAnnotation,
               LipidChainType.AMID_MONO_HYDROXY_CHAIN);
       case AMID_CHAIN_FRAGMENT_NL ->
-          findChainFragmentNL(rule, lipidAnnotation, msMsScan, LipidChainType.AMID_CHAIN);
+          findChainFragmentNL(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
       case AMID_CHAIN_PLUS_FORMULA_FRAGMENT_NL ->
-          findChainPlusFormulaFragmentNL(rule, lipidAnnotation, msMsScan,
-              LipidChainType.AMID_CHAIN);
+          findChainPlusFormulaFragmentNL(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
       case AMID_CHAIN_MINUS_FORMULA_FRAGMENT_NL ->
-          findChainMinusFormulaFragmentNL(rule, lipidAnnotation, msMsScan,
-              LipidChainType.AMID_CHAIN);
+          findChainMinusFormulaFragmentNL(rule, lipidAnnotation, LipidChainType.AMID_CHAIN);
       case SPHINGOLIPID_MONO_HYDROXY_BACKBONE_CHAIN_FRAGMENT ->
-          findChainFragment(rule, lipidAnnotation, msMsScan,
+          findChainFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_MONO_HYDROXY_BACKBONE_CHAIN);
       case SPHINGOLIPID_DI_HYDROXY_BACKBONE_CHAIN_FRAGMENT ->
-          findChainFragment(rule, lipidAnnotation, msMsScan,
+          findChainFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_DI_HYDROXY_BACKBONE_CHAIN);
       case SPHINGOLIPID_TRI_HYDROXY_BACKBONE_CHAIN_FRAGMENT ->
-          findChainFragment(rule, lipidAnnotation, msMsScan,
+          findChainFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_TRI_HYDROXY_BACKBONE_CHAIN);
       case SPHINGOLIPID_MONO_HYDROXY_BACKBONE_CHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan,
+          findChainMinusFormulaFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_MONO_HYDROXY_BACKBONE_CHAIN);
       case SPHINGOLIPID_DI_HYDROXY_BACKBONE_CHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan,
+          findChainMinusFormulaFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_DI_HYDROXY_BACKBONE_CHAIN);
       case SPHINGOLIPID_TRI_HYDROXY_BACKBONE_CHAIN_MINUS_FORMULA_FRAGMENT ->
-          findChainMinusFormulaFragment(rule, lipidAnnotation, msMsScan,
+          findChainMinusFormulaFragment(rule, lipidAnnotation,
               LipidChainType.SPHINGOLIPID_TRI_HYDROXY_BACKBONE_CHAIN);
     };
   }
 
-  private List<LipidFragment> checkForOnlyPrecursor(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan) {
+  private List<FragmentCandidate> checkForOnlyPrecursor(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation) {
     IMolecularFormula lipidFormula;
     try {
       lipidFormula = (IMolecularFormula) lipidAnnotation.getMolecularFormula().clone();
@@ -174,18 +184,18 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
       throw new RuntimeException(e);
     }
     rule.getIonizationType().ionizeFormula(lipidFormula);
-    return findLipidFragmentFromIonFormula(rule, lipidAnnotation, msMsScan, lipidFormula);
+    return createFragmentFromIonFormula(rule, lipidFormula);
   }
 
 
-  private List<LipidFragment> checkForHeadgroupFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan) {
+  private List<FragmentCandidate> checkForHeadgroupFragment(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation) {
     String fragmentFormula = rule.getMolecularFormula();
-    return findLipidFragmentFromIonFormula(rule, lipidAnnotation, msMsScan, fragmentFormula);
+    return createFragmentFromIonFormula(rule, fragmentFormula);
   }
 
-  private List<LipidFragment> checkForHeadgroupFragmentNL(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan) {
+  private List<FragmentCandidate> checkForHeadgroupFragmentNL(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation) {
     IMolecularFormula formulaNL = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     IMolecularFormula lipidFormula;
@@ -196,105 +206,75 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
     }
     rule.getIonizationType().ionizeFormula(lipidFormula);
     IMolecularFormula fragmentFormula = FormulaUtils.subtractFormula(lipidFormula, formulaNL);
-    return findLipidFragmentFromIonFormula(rule, lipidAnnotation, msMsScan, fragmentFormula);
+    return createFragmentFromIonFormula(rule, fragmentFormula);
   }
 
-  private List<LipidFragment> checkForAcylChainFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan) {
+  private List<FragmentCandidate> checkForAcylChainFragment(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation) {
     if (rule.getPolarityType().equals(PolarityType.NEGATIVE)) {
       List<ILipidChain> fattyAcylChains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(
           LipidChainType.ACYL_CHAIN, minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds,
           onlySearchForEvenChains);
-      List<LipidFragment> matchedFragments = new ArrayList<>();
+      List<FragmentCandidate> fragments = new ArrayList<>();
       for (ILipidChain lipidChain : fattyAcylChains) {
         IMolecularFormula lipidChainFormula = lipidChain.getChainMolecularFormula();
         IonizationType.NEGATIVE_HYDROGEN.ionizeFormula(lipidChainFormula);
-        addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-            lipidChainFormula);
+        addChainFragment(rule, fragments, lipidChain, lipidChainFormula);
       }
-      return matchedFragments;
+      return fragments;
     }
     return null;
   }
 
   @NotNull
-  private List<LipidFragment> findLipidFragmentFromIonFormula(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, IMolecularFormula ionFormula) {
-    String ionFormulaString = MolecularFormulaManipulator.getString(ionFormula);
-    Double mzExact = FormulaUtils.calculateMzRatio(ionFormulaString);
-    BestDataPoint bestDataPoint = getBestDataPoint(mzExact);
-    if (bestDataPoint.fragmentMatched()) {
-      return List.of(new LipidFragment(rule.getLipidFragmentationRuleType(),
-          rule.getLipidFragmentInformationLevelType(), rule.getLipidFragmentationRuleRating(),
-          mzExact, ionFormulaString,
-          new SimpleDataPoint(bestDataPoint.mzValue(), bestDataPoint.intensity()),
-          lipidAnnotation.getLipidClass(), null, null, null, null, msMsScan));
-    } else {
-      return List.of();
-    }
+  private List<FragmentCandidate> createFragmentFromIonFormula(LipidFragmentationRule rule,
+      IMolecularFormula ionFormula) {
+    return createFragmentFromIonFormula(rule, MolecularFormulaManipulator.getString(ionFormula));
   }
 
   @NotNull
-  private List<LipidFragment> findLipidFragmentFromIonFormula(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, String ionFormula) {
+  private List<FragmentCandidate> createFragmentFromIonFormula(LipidFragmentationRule rule,
+      String ionFormula) {
     Double mzExact = FormulaUtils.calculateMzRatio(ionFormula);
-    BestDataPoint bestDataPoint = getBestDataPoint(mzExact);
-    if (bestDataPoint.fragmentMatched()) {
-      return List.of(new LipidFragment(rule.getLipidFragmentationRuleType(),
-          rule.getLipidFragmentInformationLevelType(), rule.getLipidFragmentationRuleRating(),
-          mzExact, ionFormula,
-          new SimpleDataPoint(bestDataPoint.mzValue(), bestDataPoint.intensity()),
-          lipidAnnotation.getLipidClass(), null, null, null, null, msMsScan));
-    } else {
-      return List.of();
-    }
+    return List.of(new FragmentCandidate(rule, mzExact, ionFormula, null, null, null, null));
   }
 
   @NotNull
-  protected List<LipidFragment> findChainMinusFormulaFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType chainType) {
+  protected List<FragmentCandidate> findChainMinusFormulaFragment(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType chainType) {
     IMolecularFormula modificationFormula = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(chainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidChainFormula = lipidChain.getChainMolecularFormula();
       IMolecularFormula fragmentFormula = FormulaUtils.subtractFormula(lipidChainFormula,
           modificationFormula);
       IMolecularFormula ionizedFragmentFormula = ionizeFragmentBasedOnPolarity(fragmentFormula,
           rule.getPolarityType());
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          ionizedFragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, ionizedFragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
-  private void addMatchedChainFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, List<LipidFragment> matchedFragments,
+  private void addChainFragment(LipidFragmentationRule rule, List<FragmentCandidate> fragments,
       ILipidChain lipidChain, IMolecularFormula ionizedFragmentFormula) {
     Double mzExact = FormulaUtils.calculateMzRatio(ionizedFragmentFormula);
-    BestDataPoint bestDataPoint = getBestDataPoint(mzExact);
-    if (bestDataPoint.fragmentMatched()) {
-      int chainLength = lipidChain.getNumberOfCarbons();
-      int numberOfDoubleBonds = lipidChain.getNumberOfDBEs();
-      matchedFragments.add(new LipidFragment(rule.getLipidFragmentationRuleType(),
-          rule.getLipidFragmentInformationLevelType(), rule.getLipidFragmentationRuleRating(),
-          mzExact, MolecularFormulaManipulator.getString(ionizedFragmentFormula),
-          new SimpleDataPoint(bestDataPoint.mzValue(), bestDataPoint.intensity()),
-          lipidAnnotation.getLipidClass(), chainLength, numberOfDoubleBonds,
-          lipidChain.getNumberOfOxygens(), lipidChain.getLipidChainType(), msMsScan));
-    }
+    fragments.add(new FragmentCandidate(rule, mzExact,
+        MolecularFormulaManipulator.getString(ionizedFragmentFormula),
+        lipidChain.getNumberOfCarbons(), lipidChain.getNumberOfDBEs(),
+        lipidChain.getNumberOfOxygens(), lipidChain.getLipidChainType()));
   }
 
   @NotNull
-  protected List<LipidFragment> findChainMinusFormulaFragmentNL(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType chainType) {
+  protected List<FragmentCandidate> findChainMinusFormulaFragmentNL(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType chainType) {
     IMolecularFormula modificationFormula = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(chainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidFormula;
       try {
@@ -308,40 +288,38 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
           modificationFormula);
       IMolecularFormula lipidMinusFragmentFormula = FormulaUtils.subtractFormula(lipidFormula,
           fragmentFormula);
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          lipidMinusFragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, lipidMinusFragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
   @NotNull
-  protected List<LipidFragment> findChainPlusFormulaFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType lipidChainType) {
+  protected List<FragmentCandidate> findChainPlusFormulaFragment(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType lipidChainType) {
     IMolecularFormula modificationFormula = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(lipidChainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidChainFormula = lipidChain.getChainMolecularFormula();
       IMolecularFormula fragmentFormula = FormulaUtils.addFormula(lipidChainFormula,
           modificationFormula);
       IMolecularFormula ionizedFragmentFormula = ionizeFragmentBasedOnPolarity(fragmentFormula,
           rule.getPolarityType());
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          ionizedFragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, ionizedFragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
-  private List<LipidFragment> checkForTwoAcylChainsPlusFormulaFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan) {
+  private List<FragmentCandidate> checkForTwoAcylChainsPlusFormulaFragment(
+      LipidFragmentationRule rule, ILipidAnnotation lipidAnnotation) {
     IMolecularFormula modificationFormula = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     List<ILipidChain> combinedFattyAcylChains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(
         LipidChainType.ACYL_CHAIN, minChainLength * 2, maxChainLength * 2, minDoubleBonds * 2,
         maxDoubleBonds * 2, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain combinedFattyAcylChain : combinedFattyAcylChains) {
       IMolecularFormula combinedChainsFormula = combinedFattyAcylChain.getChainMolecularFormula();
       IMolecularFormula fragmentFormula = FormulaUtils.addFormula(combinedChainsFormula,
@@ -349,42 +327,35 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
       IMolecularFormula ionizedFragmentFormula = ionizeFragmentBasedOnPolarity(fragmentFormula,
           rule.getPolarityType());
       Double mzExact = FormulaUtils.calculateMzRatio(ionizedFragmentFormula);
-      BestDataPoint bestDataPoint = getBestDataPoint(mzExact);
-      if (bestDataPoint.fragmentMatched()) {
-        matchedFragments.add(new LipidFragment(rule.getLipidFragmentationRuleType(),
-            rule.getLipidFragmentInformationLevelType(), rule.getLipidFragmentationRuleRating(),
-            mzExact, MolecularFormulaManipulator.getString(ionizedFragmentFormula),
-            new SimpleDataPoint(bestDataPoint.mzValue(), bestDataPoint.intensity()),
-            lipidAnnotation.getLipidClass(), combinedFattyAcylChain.getNumberOfCarbons(),
-            combinedFattyAcylChain.getNumberOfDBEs(), combinedFattyAcylChain.getNumberOfOxygens(),
-            LipidChainType.TWO_ACYL_CHAINS_COMBINED, msMsScan));
-      }
+      fragments.add(new FragmentCandidate(rule, mzExact,
+          MolecularFormulaManipulator.getString(ionizedFragmentFormula),
+          combinedFattyAcylChain.getNumberOfCarbons(), combinedFattyAcylChain.getNumberOfDBEs(),
+          combinedFattyAcylChain.getNumberOfOxygens(), LipidChainType.TWO_ACYL_CHAINS_COMBINED));
     }
-    return matchedFragments;
+    return fragments;
   }
 
   @NotNull
-  protected List<LipidFragment> findChainFragment(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType lipidChainType) {
+  protected List<FragmentCandidate> findChainFragment(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType lipidChainType) {
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(lipidChainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidChainFormula = lipidChain.getChainMolecularFormula();
       IMolecularFormula ionizedFragmentFormula = ionizeFragmentBasedOnPolarity(lipidChainFormula,
           rule.getPolarityType());
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          ionizedFragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, ionizedFragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
   @NotNull
-  protected List<LipidFragment> findChainFragmentNL(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType lipidChainType) {
+  protected List<FragmentCandidate> findChainFragmentNL(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType lipidChainType) {
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(lipidChainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidFormula;
       try {
@@ -396,20 +367,19 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
       IMolecularFormula lipidChainFormula = lipidChain.getChainMolecularFormula();
       IMolecularFormula fragmentFormula = FormulaUtils.subtractFormula(lipidFormula,
           lipidChainFormula);
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          fragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, fragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
   @NotNull
-  protected List<LipidFragment> findChainPlusFormulaFragmentNL(LipidFragmentationRule rule,
-      ILipidAnnotation lipidAnnotation, Scan msMsScan, LipidChainType lipidChainType) {
+  protected List<FragmentCandidate> findChainPlusFormulaFragmentNL(LipidFragmentationRule rule,
+      ILipidAnnotation lipidAnnotation, LipidChainType lipidChainType) {
     IMolecularFormula modificationFormula = FormulaUtils.createMajorIsotopeMolFormula(
         rule.getMolecularFormula());
     List<ILipidChain> chains = LIPID_CHAIN_FACTORY.buildLipidChainsInRange(lipidChainType,
         minChainLength, maxChainLength, minDoubleBonds, maxDoubleBonds, onlySearchForEvenChains);
-    List<LipidFragment> matchedFragments = new ArrayList<>();
+    List<FragmentCandidate> fragments = new ArrayList<>();
     for (ILipidChain lipidChain : chains) {
       IMolecularFormula lipidFormula = null;
       try {
@@ -423,10 +393,9 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
           modificationFormula);
       IMolecularFormula lipidMinusFragmentFormula = FormulaUtils.subtractFormula(lipidFormula,
           fragmentFormula);
-      addMatchedChainFragment(rule, lipidAnnotation, msMsScan, matchedFragments, lipidChain,
-          lipidMinusFragmentFormula);
+      addChainFragment(rule, fragments, lipidChain, lipidMinusFragmentFormula);
     }
-    return matchedFragments;
+    return fragments;
   }
 
   protected IMolecularFormula ionizeFragmentBasedOnPolarity(IMolecularFormula formula,
@@ -441,39 +410,4 @@ public class LipidFragmentFactory implements ILipidFragmentFactory {
     return formula;
   }
 
-  @NotNull
-  protected BestDataPoint getBestDataPoint(Double mzExact) {
-    boolean fragmentMatched = false;
-    MassList massList = msMsScan.getMassList();
-    if (massList != null) {
-      Range<Double> toleranceRange = mzToleranceMS2.getToleranceRange(mzExact);
-      int index = massList.binarySearch(toleranceRange.lowerEndpoint(), DefaultTo.GREATER_EQUALS);
-      if (index < 0) {
-        return new BestDataPoint(fragmentMatched, 0.0, 0.0);
-      }
-      int numberOfDataPoints = massList.getNumberOfDataPoints();
-      double maxIntensity = 0.0;
-      double bestMzValue = 0.0;
-      for (int i = index; i < numberOfDataPoints; i++) {
-        double intensity = massList.getIntensityValue(i);
-        double mzValue = massList.getMzValue(i);
-        Range<Double> mzTolRangeMSMS = mzToleranceMS2.getToleranceRange(mzValue);
-        if (mzTolRangeMSMS.contains(mzExact) && intensity > maxIntensity) {
-          maxIntensity = intensity;
-          bestMzValue = mzValue;
-          fragmentMatched = true;
-        }
-        if (mzTolRangeMSMS.upperEndpoint() < mzValue) {
-          break;
-        }
-      }
-      return new BestDataPoint(fragmentMatched, bestMzValue, maxIntensity);
-    }
-    return new BestDataPoint(fragmentMatched, 0.0, 0.0);
-  }
-
-  protected record BestDataPoint(boolean fragmentMatched, double mzValue, double intensity) {
-
-  }
-
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation;
+
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.LipidIon;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidannotationmodules.LipidAnnotationChainParameters;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thread safe library of in-silico fragments for the lipid ions of one annotation run. The
+ * fragments of a lipid ion are calculated on first use, which is only the case for lipid ions that
+ * matched the precursor m/z of at least one row, and are then reused for all MS2 scans.
+ */
+public class LipidFragmentLibrary {
+
+  private final LipidAnnotationChainParameters chainParameters;
+  private final Map<LipidIon, LipidIonFragments> fragments = new ConcurrentHashMap<>();
+
+  public LipidFragmentLibrary(@NotNull LipidAnnotationChainParameters chainParameters) {
+    this.chainParameters = chainParameters;
+  }
+
+  /**
+   * @return the fragments of the lipid ion, calculated once and cached
+   */
+  @NotNull
+  public LipidIonFragments getFragments(@NotNull LipidIon lipidIon) {
+    return fragments.computeIfAbsent(lipidIon, this::createFragments);
+  }
+
+  @NotNull
+  private LipidIonFragments createFragments(@NotNull LipidIon lipidIon) {
+    final LipidFragmentationRule[] rules = lipidIon.lipidAnnotation().getLipidClass()
+        .getFragmentationRules();
+    return new LipidFragmentFactory(lipidIon.lipidAnnotation(), lipidIon.ionizationType(),
+        rules == null ? new LipidFragmentationRule[0] : rules,
+        chainParameters).createLipidIonFragments();
+  }
+
+  /**
+   * @return number of cached lipid ions
+   */
+  public int size() {
+    return fragments.size();
+  }
+}
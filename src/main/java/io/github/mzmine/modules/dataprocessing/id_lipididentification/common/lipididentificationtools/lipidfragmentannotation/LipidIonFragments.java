@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.LipidFragment;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.lipidchain.LipidChainType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * All in-silico fragments of a lipid ion that are defined by the fragmentation rules of its lipid
+ * class. The fragments are independent of the MS2 scan, so they are calculated once per lipid ion
+ * and matched against all MS2 scans of all rows. The exact m/z values are kept sorted in a
+ * primitive array to match them against the sorted mass list in a single merge pass.
+ */
+public class LipidIonFragments {
+
+  private final ILipidAnnotation lipidAnnotation;
+  // in rule order
+  private final FragmentCandidate[] candidates;
+  // sorted by mz
+  private final double[] sortedMzs;
+  // candidate index for each sorted mz
+  private final int[] sortedCandidateIndices;
+
+  /**
+   * @param candidates all fragments in the order of the rules
+   */
+  public LipidIonFragments(@NotNull ILipidAnnotation lipidAnnotation,
+      @NotNull List<FragmentCandidate> candidates) {
+    this.lipidAnnotation = lipidAnnotation;
+    this.candidates = candidates.toArray(FragmentCandidate[]::new);
+
+    final int n = this.candidates.length;
+    final double[] mzs = new double[n];
+    for (int i = 0; i < n; i++) {
+      mzs[i] = this.candidates[i].mzExact();
+    }
+    sortedCandidateIndices = IntStream.range(0, n).toArray();
+    IntArrays.mergeSort(sortedCandidateIndices, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    sortedMzs = new double[n];
+    for (int i = 0; i < n; i++) {
+      sortedMzs[i] = mzs[sortedCandidateIndices[i]];
+    }
+  }
+
+  public int getNumberOfFragments() {
+    return candidates.length;
+  }
+
+  /**
+   * Matches all fragments against the mass list of the scan. For each fragment, the most intense
+   * signal within the tolerance is used.
+   *
+   * @return the matched fragments in the order of the rules. Empty if the scan has no mass list
+   */
+  @NotNull
+  public List<LipidFragment> findLipidFragments(@NotNull Scan msMsScan,
+      @NotNull MZTolerance mzToleranceMS2) {
+    final MassList massList = msMsScan.getMassList();
+    final int numCandidates = sortedMzs.length;
+    if (massList == null || numCandidates == 0) {
+      return List.of();
+    }
+    final int numberOfDataPoints = massList.getNumberOfDataPoints();
+    if (numberOfDataPoints == 0) {
+      return List.of();
+    }
+
+    // best signal per candidate, in candidate order. -1 if not matched
+    final int[] bestIndex = new int[candidates.length];
+    int matched = 0;
+    // the lower tolerance bound increases with the exact mz, so the start only moves forward
+    int start = massList.binarySearch(mzToleranceMS2.getToleranceRange(sortedMzs[0])
+        .lowerEndpoint(), DefaultTo.GREATER_EQUALS);
+    if (start < 0) {
+      return List.of();
+    }
+    for (int s = 0; s < numCandidates; s++) {
+      final double mzExact = sortedMzs[s];
+      final double lowerMz = mzToleranceMS2.getToleranceRange(mzExact).lowerEndpoint();
+      while (start < numberOfDataPoints && massList.getMzValue(start) < lowerMz) {
+        start++;
+      }
+
+      int best = -1;
+      double maxIntensity = 0.0;
+      for (int i = start; i < numberOfDataPoints; i++) {
+        final double mzValue = massList.getMzValue(i);
+        final Range<Double> mzTolRangeMSMS = mzToleranceMS2.getToleranceRange(mzValue);
+        if (mzTolRangeMSMS.lowerEndpoint() > mzExact) {
+          // all following signals are out of tolerance
+          break;
+        }
+        final double intensity = massList.getIntensityValue(i);
+        if (mzTolRangeMSMS.contains(mzExact) && intensity > maxIntensity) {
+          maxIntensity = intensity;
+          best = i;
+        }
+      }
+      bestIndex[sortedCandidateIndices[s]] = best;
+      if (best >= 0) {
+        matched++;
+      }
+    }
+
+    if (matched == 0) {
+      return List.of();
+    }
+    final List<LipidFragment> fragments = new ArrayList<>(matched);
+    for (int c = 0; c < candidates.length; c++) {
+      final int best = bestIndex[c];
+      if (best >= 0) {
+        fragments.add(candidates[c].toFragment(lipidAnnotation,
+            new SimpleDataPoint(massList.getMzValue(best), massList.getIntensityValue(best)),
+            msMsScan));
+      }
+    }
+    return fragments;
+  }
+
+  /**
+   * A fragment that is independent of the scan. Chain information is null for fragments that
+   * describe the whole lipid or the headgroup.
+   */
+  public record FragmentCandidate(@NotNull LipidFragmentationRule rule, double mzExact,
+                                  @NotNull String ionFormula, @Nullable Integer chainLength,
+                                  @Nullable Integer numberOfDBEs,
+                                  @Nullable Integer numberOfOxygens,
+                                  @Nullable LipidChainType lipidChainType) {
+
+    @NotNull
+    LipidFragment toFragment(@NotNull ILipidAnnotation lipidAnnotation,
+        @NotNull SimpleDataPoint dataPoint, @NotNull Scan msMsScan) {
+      return new LipidFragment(rule.getLipidFragmentationRuleType(),
+          rule.getLipidFragmentInformationLevelType(), rule.getLipidFragmentationRuleRating(),
+          mzExact, ionFormula, dataPoint, lipidAnnotation.getLipidClass(), chainLength,
+          numberOfDBEs, numberOfOxygens, lipidChainType, msMsScan);
+    }
+  }
+}
@@ -34,6 +34,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.annotations.LipidMatchListType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation.LipidFragmentLibrary;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.ILipidClass;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.LipidClasses;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipids.LipidIon;
@@ -189,6 +190,10 @@ public class LipidAnnotationTask extends AbstractTask {
         ionizationTypesToIgnore, polarityTypes);
     List<LipidIon> sortedLipidDatabase = lipidDatabase.stream()
         .sorted(Comparator.comparingDouble(LipidIon::mz)).toList();
+    // in-silico fragments are only calculated for lipid ions that match a precursor
+    LipidFragmentLibrary fragmentLibrary = new LipidFragmentLibrary(
+        parameters.getParameter(LipidAnnotationParameters.lipidChainParameters)
+            .getEmbeddedParameters());
 
     rows.parallelStream().forEach(row -> {
       Range<Double> mzTolRange = mzTolerance.getToleranceRange(row.getAverageMZ());
@@ -205,7 +210,8 @@ public class LipidAnnotationTask extends AbstractTask {
           LipidAnnotationUtils.findPossibleLipid(sortedLipidDatabase.get(i), row, parameters,
               mzTolerance, mzToleranceMS2, searchForMSMSFragments, minMsMsScore,
               keepUnconfirmedAnnotations,
-              sortedLipidDatabase.get(i).lipidAnnotation().getLipidClass().getCoreClass());
+              sortedLipidDatabase.get(i).lipidAnnotation().getLipidClass().getCoreClass(),
+              fragmentLibrary);
 
           if (upperEdge < sortedLipidDatabase.get(i).mz()) {
             break;
@@ -222,7 +228,8 @@ public class LipidAnnotationTask extends AbstractTask {
 
     setStatus(TaskStatus.FINISHED);
 
-    logger.info("Finished lipid annotation task for " + featureList);
+    logger.info("Finished lipid annotation task for " + featureList + ". Calculated fragments for "
+        + fragmentLibrary.size() + " lipid ions");
   }
 
   @NotNull
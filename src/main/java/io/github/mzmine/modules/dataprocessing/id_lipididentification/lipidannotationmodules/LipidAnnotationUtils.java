@@ -34,8 +34,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.types.annotations.LipidMatchListType;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.LipidFragmentationRule;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.MSMSLipidTools;
-import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation.ILipidFragmentFactory;
-import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation.LipidFragmentFactory;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.lipidfragmentannotation.LipidFragmentLibrary;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.matchedlipidannotations.MatchedLipid;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.matchedlipidannotations.molecularspecieslevelidentities.GlyceroAndPhosphoMolecularSpeciesLevelMatchedLipidFactory;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.common.lipididentificationtools.matchedlipidannotations.molecularspecieslevelidentities.IMolecularSpeciesLevelMatchedLipidFactory;
@@ -143,10 +142,13 @@ public class LipidAnnotationUtils {
     }
   }
 
+  /**
+   * @param fragmentLibrary provides the in-silico fragments of the lipid ion for the MS2 search
+   */
   public static void findPossibleLipid(LipidIon lipidIon, FeatureListRow row,
       ParameterSet parameters, MZTolerance mzTolerance, MZTolerance mzToleranceMS2,
       boolean searchForMSMSFragments, double minMsMsScore, boolean keepUnconfirmedAnnotations,
-      LipidCategories lipidCategory) {
+      LipidCategories lipidCategory, @NotNull LipidFragmentLibrary fragmentLibrary) {
     Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
 
     if (Objects.requireNonNull(row.getBestFeature().getRepresentativeScan()).getPolarity()
@@ -159,9 +161,8 @@ public class LipidAnnotationUtils {
         // If search for MSMS fragments is selected search for fragments
         if (searchForMSMSFragments) {
           possibleRowAnnotations.addAll(
-              searchMsmsFragments(row, lipidIon.ionizationType(), lipidIon.lipidAnnotation(),
-                  parameters, mzToleranceMS2, minMsMsScore, keepUnconfirmedAnnotations,
-                  lipidCategory));
+              searchMsmsFragments(row, lipidIon, parameters, mzToleranceMS2, minMsMsScore,
+                  keepUnconfirmedAnnotations, lipidCategory, fragmentLibrary));
         } else {
 
           // make MS1 annotation
@@ -180,10 +181,12 @@ public class LipidAnnotationUtils {
   /**
    * This method searches for MS/MS fragments. A mass list for MS2 scans will be used if present.
    */
-  private static Set<MatchedLipid> searchMsmsFragments(FeatureListRow row,
-      IonizationType ionization, ILipidAnnotation lipid, ParameterSet parameters,
-      MZTolerance mzToleranceMS2, double minMsMsScore, boolean keepUnconfirmedAnnotations,
-      LipidCategories lipidCategory) {
+  private static Set<MatchedLipid> searchMsmsFragments(FeatureListRow row, LipidIon lipidIon,
+      ParameterSet parameters, MZTolerance mzToleranceMS2, double minMsMsScore,
+      boolean keepUnconfirmedAnnotations, LipidCategories lipidCategory,
+      LipidFragmentLibrary fragmentLibrary) {
+    final IonizationType ionization = lipidIon.ionizationType();
+    final ILipidAnnotation lipid = lipidIon.lipidAnnotation();
     Set<MatchedLipid> matchedLipids = new HashSet<>();
     LipidFragmentationRule[] rules = lipid.getLipidClass().getFragmentationRules();
     // Check if selected feature has MSMS spectra and LipidIdentity
@@ -199,11 +202,9 @@ public class LipidAnnotationUtils {
         massList = MSMSLipidTools.deisotopeMassList(massList, mzToleranceMS2);
         Set<LipidFragment> annotatedFragments = new HashSet<>();
         if (rules != null && rules.length > 0) {
-          ILipidFragmentFactory lipidFragmentFactory = new LipidFragmentFactory(mzToleranceMS2,
-              lipid, ionization, rules, msmsScan,
-              parameters.getParameter(LipidAnnotationParameters.lipidChainParameters)
-                  .getEmbeddedParameters());
-          List<LipidFragment> annotatedFragmentsForDataPoint = lipidFragmentFactory.findLipidFragments();
+          // fragments are calculated once per lipid ion and merged with the sorted mass list
+          List<LipidFragment> annotatedFragmentsForDataPoint = fragmentLibrary.getFragments(
+              lipidIon).findLipidFragments(msmsScan, mzToleranceMS2);
           if (annotatedFragmentsForDataPoint != null && !annotatedFragmentsForDataPoint.isEmpty()) {
             annotatedFragments.addAll(annotatedFragmentsForDataPoint);
           }
@@ -59,6 +59,7 @@ import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.SpectralDBAnnotation;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryIndex;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -289,14 +290,14 @@ public class RowsSpectralMatchTask extends AbstractTask {
   @Override
   public void run() {
 
-    // combine libraries
-    List<SpectralLibraryEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
-    }
-
     // run on spectra
     if (scan != null) {
+      // combine libraries
+      List<SpectralLibraryEntry> entries = new ArrayList<>();
+      for (var lib : libraries) {
+        entries.addAll(lib.getEntries());
+      }
+
       logger.info(
           () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
 
@@ -309,14 +310,18 @@ public class RowsSpectralMatchTask extends AbstractTask {
 
     // run in parallel
     if (rows != null) {
+      // precursor index is built once per library and reused
+      final int totalEntries = libraries.stream().mapToInt(SpectralLibrary::size).sum();
+      libraries.forEach(SpectralLibrary::buildIndex);
+
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
-          entries.size(), totalRows));
+          totalEntries, totalRows));
       // cannot use parallel.forEach with side effects - this thread will continue without waiting for
       // stream to finish
       var totalMatches = rows.stream().filter(FeatureListRow::hasMs2Fragmentation).parallel()
           .mapToInt(row -> {
             if (!isCanceled()) {
-              int matches = matchRowToLibraries(entries, row);
+              int matches = matchRowToLibraries(row);
               finishedRows.incrementAndGet();
               return matches;
             }
@@ -324,7 +329,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
           }).sum();
       logger.info("Total spectral library matches " + totalMatches);
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
-          getCount(), getErrorCount(), totalRows, entries.size()));
+          getCount(), getErrorCount(), totalRows, totalEntries));
     }
   }
 
@@ -393,7 +398,55 @@ public class RowsSpectralMatchTask extends AbstractTask {
   }
 
   /**
-   * Match row against all entries, add matches, sort them by score
+   * Match row against the candidates of all libraries, add matches, sort them by score. Uses the
+   * {@link SpectralLibraryIndex} of each library to only visit entries within the precursor
+   * tolerance. Results are the same as {@link #matchRowToLibraries(List, FeatureListRow)}.
+   *
+   * @param row target row
+   * @return number of matches
+   */
+  public int matchRowToLibraries(FeatureListRow row) {
+    try {
+      List<Scan> scans = getScans(row);
+      if (scans.isEmpty()) {
+        return 0;
+      }
+
+      List<DataPoint[]> rowMassLists = getRowMassLists(row, scans);
+      final Float rowCCS = row.getAverageCCS();
+      final Float rowRT = row.getAverageRT();
+      List<SpectralDBAnnotation> ids = null;
+      for (SpectralLibrary library : libraries) {
+        final SpectralLibraryIndex index = library.getIndex();
+        final List<SpectralLibraryEntry> entries = library.getEntries();
+
+        for (int entryIndex : findCandidates(index, row.getAverageMZ())) {
+          if (!checkIndexedEntry(index, entryIndex, rowRT, rowCCS)) {
+            continue;
+          }
+          SpectralDBAnnotation best = matchRowToEntry(row, scans, rowMassLists, rowCCS,
+              entries.get(entryIndex), index.getPolarity(entryIndex));
+          if (best != null) {
+            if (ids == null) {
+              ids = new ArrayList<>();
+            }
+            ids.add(best);
+            matches.getAndIncrement();
+          }
+        }
+      }
+
+      return addRowMatches(row, ids);
+    } catch (MissingMassListException e) {
+      logger.log(Level.WARNING, "No mass list in spectrum for rowID=" + row.getID(), e);
+      errorCounter.getAndIncrement();
+    }
+    return 0;
+  }
+
+  /**
+   * Match row against all entries, add matches, sort them by score. This is the exhaustive linear
+   * scan over all entries, see {@link #matchRowToLibraries(FeatureListRow)} for the indexed search.
    *
    * @param entries combined library entries
    * @param row     target row
@@ -408,42 +461,14 @@ public class RowsSpectralMatchTask extends AbstractTask {
         return 0;
       }
 
-      List<DataPoint[]> rowMassLists = new ArrayList<>();
-      for (Scan scan : scans) {
-        // get mass list and perform deisotoping if active
-        DataPoint[] rowMassList = getDataPoints(scan, row.getAverageMZ());
-        rowMassLists.add(rowMassList);
-      }
-
+      List<DataPoint[]> rowMassLists = getRowMassLists(row, scans);
       final Float rowCCS = row.getAverageCCS();
       List<SpectralDBAnnotation> ids = null;
       // match against all library entries
       for (SpectralLibraryEntry ident : entries) {
-
         final String entryPolarity = ident.getOrElse(DBEntryField.POLARITY, null);
-
-        final Float libCCS = ident.getOrElse(DBEntryField.CCS, null);
-        SpectralDBAnnotation best = null;
-        // match all scans against this ident to find best match
-        for (int i = 0; i < scans.size(); i++) {
-          final PolarityType scanPolarity = scans.get(i).getPolarity();
-          if (!weakPolarityCheck(entryPolarity, scanPolarity)) {
-            // check each ms2 scan individually, maybe we have grouped pos/neg rows in the future.
-            continue;
-          }
-
-          SpectralSimilarity sim = matchSpectrum(row.getAverageRT(), row.getAverageMZ(), rowCCS,
-              rowMassLists.get(i), ident);
-          if (sim != null && (!needsIsotopePattern || checkForIsotopePattern(sim,
-              mzToleranceSpectra, minMatchedIsoSignals)) && (best == null
-                                                             || best.getSimilarity().getScore()
-                                                                < sim.getScore())) {
-
-            Float ccsRelativeError = PercentTolerance.getPercentError(rowCCS, libCCS);
-
-            best = new SpectralDBAnnotation(ident, sim, scans.get(i), ccsRelativeError);
-          }
-        }
+        SpectralDBAnnotation best = matchRowToEntry(row, scans, rowMassLists, rowCCS, ident,
+            PolarityType.parseFromString(entryPolarity));
         // has match?
         if (best != null) {
           if (ids == null) {
@@ -454,13 +479,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
         }
       }
 
-      // add and sort identities based on similarity score
-      if (ids != null) {
-        addIdentities(row, ids);
-        SortSpectralMatchesTask.sortIdentities(row);
-        return ids.size();
-
-      }
+      return addRowMatches(row, ids);
     } catch (MissingMassListException e) {
       logger.log(Level.WARNING, "No mass list in spectrum for rowID=" + row.getID(), e);
       errorCounter.getAndIncrement();
@@ -468,6 +487,109 @@ public class RowsSpectralMatchTask extends AbstractTask {
     return 0;
   }
 
+  /**
+   * @return mass lists for all scans, deisotoped and precursor removed if active
+   */
+  private List<DataPoint[]> getRowMassLists(FeatureListRow row, List<Scan> scans)
+      throws MissingMassListException {
+    List<DataPoint[]> rowMassLists = new ArrayList<>();
+    for (Scan scan : scans) {
+      // get mass list and perform deisotoping if active
+      DataPoint[] rowMassList = getDataPoints(scan, row.getAverageMZ());
+      rowMassLists.add(rowMassList);
+    }
+    return rowMassLists;
+  }
+
+  /**
+   * Match all scans against this library entry to find the best match
+   *
+   * @return the best match or null if no scan matched
+   */
+  @Nullable
+  private SpectralDBAnnotation matchRowToEntry(FeatureListRow row, List<Scan> scans,
+      List<DataPoint[]> rowMassLists, Float rowCCS, SpectralLibraryEntry ident,
+      PolarityType entryPolarity) {
+    final Float libCCS = ident.getOrElse(DBEntryField.CCS, null);
+    SpectralDBAnnotation best = null;
+    // match all scans against this ident to find best match
+    for (int i = 0; i < scans.size(); i++) {
+      final PolarityType scanPolarity = scans.get(i).getPolarity();
+      if (!weakPolarityCheck(entryPolarity, scanPolarity)) {
+        // check each ms2 scan individually, maybe we have grouped pos/neg rows in the future.
+        continue;
+      }
+
+      SpectralSimilarity sim = matchSpectrum(row.getAverageRT(), row.getAverageMZ(), rowCCS,
+          rowMassLists.get(i), ident);
+      if (sim != null && (!needsIsotopePattern || checkForIsotopePattern(sim, mzToleranceSpectra,
+          minMatchedIsoSignals)) && (best == null
+                                     || best.getSimilarity().getScore() < sim.getScore())) {
+
+        Float ccsRelativeError = PercentTolerance.getPercentError(rowCCS, libCCS);
+
+        best = new SpectralDBAnnotation(ident, sim, scans.get(i), ccsRelativeError);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Add and sort identities based on similarity score
+   *
+   * @return number of added matches
+   */
+  private int addRowMatches(FeatureListRow row, @Nullable List<SpectralDBAnnotation> ids) {
+    if (ids == null) {
+      return 0;
+    }
+    addIdentities(row, ids);
+    SortSpectralMatchesTask.sortIdentities(row);
+    return ids.size();
+  }
+
+  /**
+   * Range query on the precursor index. The precursor tolerance is applied to the library
+   * precursor m/z in {@link #checkPrecursorMZ(double, SpectralLibraryEntry)}, therefore the window
+   * is slightly widened to contain all entries that may pass this check.
+   *
+   * @return entry indices in library order
+   */
+  private int[] findCandidates(SpectralLibraryIndex index, double rowMZ) {
+    if (msLevelFilter.isMs1Only()) {
+      return index.getAllEntryIndices();
+    }
+    final double absTolerance = mzTolerancePrecursor.getMzTolerance();
+    final double relTolerance = mzTolerancePrecursor.getPpmTolerance() / 1_000_000d;
+    // lib - |tol(lib)| <= rowMZ <= lib + |tol(lib)|
+    double lower = Math.min(rowMZ - absTolerance, rowMZ / (1d + relTolerance));
+    double upper = relTolerance >= 1d ? Double.POSITIVE_INFINITY
+        : Math.max(rowMZ + absTolerance, rowMZ / (1d - relTolerance));
+    // account for rounding, exact check is done later
+    final double padding = Math.ulp(rowMZ) * 16;
+    return index.findPrecursorCandidates(lower - padding, upper + padding);
+  }
+
+  /**
+   * Pre-filter on primitive index values. Same criteria as {@link #checkRT(Float,
+   * SpectralLibraryEntry)} and {@link #checkCCS(Float, SpectralLibraryEntry)}.
+   */
+  private boolean checkIndexedEntry(SpectralLibraryIndex index, int entryIndex, Float rowRT,
+      Float rowCCS) {
+    if (useRT && rowRT != null) {
+      final float libRT = index.getRT(entryIndex);
+      if (!Float.isNaN(libRT) && !rtTolerance.checkWithinTolerance(libRT, rowRT)) {
+        return false;
+      }
+    }
+    if (ccsTolerance != null) {
+      final float libCCS = index.getCCS(entryIndex);
+      return rowCCS != null && !Float.isNaN(libCCS) && ccsTolerance.matches((double) rowCCS,
+          (double) libCCS);
+    }
+    return true;
+  }
+
   /**
    * Remove 13C isotopes from masslist
    */
@@ -632,8 +754,21 @@ public class RowsSpectralMatchTask extends AbstractTask {
     if (scanPolarity == null || scanPolarity == PolarityType.UNKNOWN) {
       return true;
     }
-    final PolarityType entryPolarity = PolarityType.parseFromString(entryPolarityString);
-    if (entryPolarity != PolarityType.UNKNOWN) {
+    return weakPolarityCheck(PolarityType.parseFromString(entryPolarityString), scanPolarity);
+  }
+
+  /**
+   * Weak polarity check. If in doubt (e.g. either polarity is null or unknown) this returns true.
+   *
+   * @param entryPolarity the parsed library entry polarity
+   * @param scanPolarity  The spectrum scanPolarity
+   * @return false if both polarities are defined and do not match, true otherwise.
+   */
+  public boolean weakPolarityCheck(PolarityType entryPolarity, PolarityType scanPolarity) {
+    if (scanPolarity == null || scanPolarity == PolarityType.UNKNOWN) {
+      return true;
+    }
+    if (entryPolarity != null && entryPolarity != PolarityType.UNKNOWN) {
       return entryPolarity == scanPolarity;
     }
     return true;
@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.ScanDataAccess;
 import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.parameters.ParameterSet;
@@ -39,22 +40,41 @@ import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.collections.ListChangeListener;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * This import task wraps other data import tasks that do not support application of mass detection
- * during data import. This task calls the data import and applies mass detection afterwards.
+ * during data import. This task calls the data import and applies mass detection to each scan as
+ * soon as it is added to the data file. Mass detection runs on a bounded pool of worker threads so
+ * that parsing, decoding and centroiding overlap. Scans that were missed are processed after the
+ * import.
  */
 public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
 
+  private static final Logger logger = Logger.getLogger(
+      MsDataImportAndMassDetectWrapperTask.class.getName());
+  // scans waiting for mass detection per worker thread, the import thread runs mass detection
+  // itself when the queue is full
+  private static final int QUEUED_SCANS_PER_THREAD = 8;
+
   private final RawDataFile newMZmineFile;
   private final AbstractTask importTask;
   private final Boolean denormalizeMSnScans;
   private MZmineProcessingStep<MassDetector> ms1Detector = null;
   private MZmineProcessingStep<MassDetector> ms2Detector = null;
 
+  private final AtomicInteger processedScans = new AtomicInteger(0);
+  private final AtomicReference<Throwable> massDetectionError = new AtomicReference<>();
   private int totalScans = 1;
-  private final int parsedScans = 0;
 
   /**
    * This import task wraps other data import tasks that do not support application of mass
@@ -95,8 +115,13 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return totalScans > 0 ? (importTask.getFinishedPercentage() + parsedScans / (double) totalScans)
-        / 2d : importTask.getFinishedPercentage() / 2d;
+    if (newMZmineFile != null && !(importTask.isFinished() || importTask.isCanceled())) {
+      // scans are still added
+      totalScans = newMZmineFile.getNumOfScans();
+    }
+    return totalScans > 0 ? (importTask.getFinishedPercentage()
+        + Math.min(processedScans.get() / (double) totalScans, 1d)) / 2d
+        : importTask.getFinishedPercentage() / 2d;
   }
 
   @Override
@@ -109,14 +134,20 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
   public void run() {
     setStatus(TaskStatus.PROCESSING);
     try {
-      // import data
-      importTask.run();
+      // import data and apply mass detection to the scans while they are added
+      importAndApplyMassDetection();
+
+      final Throwable error = massDetectionError.get();
+      if (error != null) {
+        throw new RuntimeException("Error during mass detection: " + error.getMessage(), error);
+      }
 
       // should be in the new data file
       if (importTask.isFinished()) {
         totalScans = newMZmineFile.getNumOfScans();
 
-        if (!applyMassDetection()) {
+        // scans that were added before the listener or by a different path
+        if (!applyMassDetection(true)) {
           // cancelled
           return;
         }
@@ -132,12 +163,103 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
     this.setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Runs the import task on this thread. Each scan added to the data file is handed to a worker
+   * pool for mass detection.
+   */
+  private void importAndApplyMassDetection() throws InterruptedException {
+    if (newMZmineFile == null) {
+      // the data file is created by the import task, apply mass detection afterwards
+      importTask.run();
+      return;
+    }
+
+    final int threads = Math.max(1, MZmineCore.getConfiguration().getNumOfThreads() - 1);
+    final ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0L,
+        TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * QUEUED_SCANS_PER_THREAD),
+        runnable -> {
+          Thread t = new Thread(runnable, "Mass detection " + newMZmineFile.getName());
+          t.setDaemon(true);
+          return t;
+        }, new CallerRunsPolicy());
+
+    // listeners are called on the import thread that adds the scan
+    final ListChangeListener<Scan> scanListener = change -> {
+      while (change.next()) {
+        if (!change.wasAdded()) {
+          continue;
+        }
+        for (Scan scan : change.getAddedSubList()) {
+          if (isCanceled() || massDetectionError.get() != null) {
+            return;
+          }
+          workers.execute(() -> {
+            try {
+              applyMassDetection(scan);
+              processedScans.incrementAndGet();
+            } catch (Exception e) {
+              logger.log(Level.WARNING, "Error during mass detection of scan " + scan, e);
+              massDetectionError.compareAndSet(null, e);
+            }
+          });
+        }
+      }
+    };
+
+    newMZmineFile.getScans().addListener(scanListener);
+    try {
+      importTask.run();
+    } finally {
+      newMZmineFile.getScans().removeListener(scanListener);
+      workers.shutdown();
+      while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+        if (isCanceled()) {
+          workers.shutdownNow();
+        }
+      }
+    }
+  }
+
   /**
    * apply mass detection to all scans and sets the mass lists
    *
    * @return true if succeed and false if cancelled
    */
   public boolean applyMassDetection() {
+    return applyMassDetection(false);
+  }
+
+  /**
+   * Applies mass detection and sets the mass list of a single scan. Thread safe for different
+   * scans.
+   */
+  private void applyMassDetection(@NotNull Scan scan) {
+    int msLevel = Objects.requireNonNullElse(scan.getMSLevel(), 1);
+    double[][] mzIntensities = null;
+    if (ms1Detector != null && msLevel <= 1) {
+      mzIntensities = ms1Detector.getModule().getMassValues(scan, ms1Detector.getParameterSet());
+    } else if (ms2Detector != null && msLevel >= 2) {
+      mzIntensities = ms2Detector.getModule().getMassValues(scan, ms2Detector.getParameterSet());
+      if (denormalizeMSnScans) {
+        ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
+            scan.getInjectionTime());
+      }
+    }
+
+    if (mzIntensities != null) {
+      // uses a different storage for mass lists then the one defined for the MS data import
+      SimpleMassList newMassList = new SimpleMassList(storage, mzIntensities[0], mzIntensities[1]);
+      scan.addMassList(newMassList);
+    }
+  }
+
+  /**
+   * apply mass detection to all scans and sets the mass lists
+   *
+   * @param onlyMissing only apply to scans without mass list
+   * @return true if succeed and false if cancelled
+   */
+  private boolean applyMassDetection(boolean onlyMissing) {
     // uses only a single array for each (mz and intensity) to loop over all scans
     ScanDataAccess data = EfficientDataAccess.of(newMZmineFile,
         EfficientDataAccess.ScanDataType.RAW);
@@ -150,6 +272,9 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
       }
 
       Scan scan = data.nextScan();
+      if (onlyMissing && scan.getMassList() != null) {
+        continue;
+      }
 
       int msLevel = Objects.requireNonNullElse(scan.getMSLevel(), 1);
       double[][] mzIntensities = null;
@@ -169,6 +294,7 @@ public class MsDataImportAndMassDetectWrapperTask extends AbstractTask {
             mzIntensities[1]);
         scan.addMassList(newMassList);
       }
+      processedScans.incrementAndGet();
     }
     return true;
   }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import com.alanmrace.jimzmlparser.mzml.BinaryDataArray;
+import com.alanmrace.jimzmlparser.mzml.CVParam;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Memory-mapped binary data file (.ibd) of an imzML file. The file is mapped in segments that
+ * overlap, so every array that {@link #canDecode(IbdArray)} lies within one segment. Decoding
+ * does not change the state of the mapped buffers and is thread safe.
+ */
+class IbdFile {
+
+  private static final long SEGMENT_SIZE = 1L << 30;
+  private static final long SEGMENT_OVERLAP = 1L << 28;
+
+  // imzML cv terms of the binary data arrays
+  private static final String EXTERNAL_OFFSET = "IMS:1000102";
+  private static final String EXTERNAL_ARRAY_LENGTH = "IMS:1000103";
+  private static final String EXTERNAL_ENCODED_LENGTH = "IMS:1000104";
+  private static final String ZLIB_COMPRESSION = "MS:1000574";
+
+  private final File file;
+  private final long size;
+  private final MappedByteBuffer[] segments;
+
+  private IbdFile(@NotNull File file) throws IOException {
+    this.file = file;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      size = channel.size();
+      segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; i++) {
+        final long start = i * SEGMENT_SIZE;
+        final long length = Math.min(size - start, SEGMENT_SIZE + SEGMENT_OVERLAP);
+        segments[i] = channel.map(MapMode.READ_ONLY, start, length);
+        segments[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+  }
+
+  /**
+   * The .ibd file has the same name as the imzML file
+   *
+   * @return the mapped .ibd file or null if it does not exist
+   */
+  @Nullable
+  static IbdFile open(@NotNull File imzmlFile) throws IOException {
+    final String name = imzmlFile.getName();
+    final int extension = name.lastIndexOf('.');
+    final String baseName = extension > 0 ? name.substring(0, extension) : name;
+    for (String suffix : new String[]{".ibd", ".IBD"}) {
+      final File ibd = new File(imzmlFile.getParentFile(), baseName + suffix);
+      if (ibd.isFile()) {
+        return new IbdFile(ibd);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return true if the array is within this file and small enough to be decoded from a single
+   * segment
+   */
+  boolean canDecode(@NotNull IbdArray array) {
+    final long bytes = array.getNumBytes();
+    return array.offset() >= 0 && bytes <= SEGMENT_OVERLAP && array.offset() + bytes <= size;
+  }
+
+  /**
+   * @param array an array that {@link #canDecode(IbdArray)}
+   * @return the values converted to double
+   */
+  double @NotNull [] decode(@NotNull IbdArray array) {
+    final int numValues = array.numValues();
+    final double[] values = new double[numValues];
+    if (numValues == 0) {
+      return values;
+    }
+    final MappedByteBuffer segment = segments[(int) (array.offset() / SEGMENT_SIZE)];
+    final int start = (int) (array.offset() % SEGMENT_SIZE);
+    // views of the shared buffer, byte order is not inherited by slices
+    final ByteBuffer data = segment.slice(start, (int) array.getNumBytes())
+        .order(ByteOrder.LITTLE_ENDIAN);
+    switch (array.format()) {
+      case FLOAT64 -> data.asDoubleBuffer().get(values);
+      case FLOAT32 -> {
+        final FloatBuffer floats = data.asFloatBuffer();
+        for (int i = 0; i < numValues; i++) {
+          values[i] = floats.get(i);
+        }
+      }
+      case INT64 -> {
+        final LongBuffer longs = data.asLongBuffer();
+        for (int i = 0; i < numValues; i++) {
+          values[i] = longs.get(i);
+        }
+      }
+      case INT32 -> {
+        final IntBuffer ints = data.asIntBuffer();
+        for (int i = 0; i < numValues; i++) {
+          values[i] = ints.get(i);
+        }
+      }
+    }
+    return values;
+  }
+
+  @NotNull
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Number formats of uncompressed binary data arrays
+   */
+  enum IbdNumberFormat {
+    FLOAT64("MS:1000523", Double.BYTES), FLOAT32("MS:1000521", Float.BYTES), //
+    INT64("MS:1000522", Long.BYTES), INT32("MS:1000519", Integer.BYTES);
+
+    private final String accession;
+    private final int bytes;
+
+    IbdNumberFormat(String accession, int bytes) {
+      this.accession = accession;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Location of a binary data array in the .ibd file
+   *
+   * @param offset    offset in bytes
+   * @param numValues number of values
+   * @param format    the number format
+   */
+  record IbdArray(long offset, int numValues, @NotNull IbdNumberFormat format) {
+
+    /**
+     * @return the location of the array or null if the array is compressed or the location is not
+     * defined
+     */
+    @Nullable
+    static IbdArray of(@Nullable BinaryDataArray array) {
+      if (array == null || array.getCVParam(ZLIB_COMPRESSION) != null) {
+        return null;
+      }
+      final CVParam offset = array.getCVParam(EXTERNAL_OFFSET);
+      final CVParam length = array.getCVParam(EXTERNAL_ARRAY_LENGTH);
+      if (offset == null || length == null) {
+        return null;
+      }
+      IbdNumberFormat format = null;
+      for (IbdNumberFormat f : IbdNumberFormat.values()) {
+        if (array.getCVParam(f.accession) != null) {
+          format = f;
+          break;
+        }
+      }
+      // double is exact for offsets and lengths below 2^53
+      final long numValues = (long) length.getValueAsDouble();
+      if (format == null || numValues < 0 || numValues > Integer.MAX_VALUE) {
+        return null;
+      }
+      final CVParam encodedLength = array.getCVParam(EXTERNAL_ENCODED_LENGTH);
+      if (encodedLength != null
+          && (long) encodedLength.getValueAsDouble() != numValues * format.bytes) {
+        return null;
+      }
+      return new IbdArray((long) offset.getValueAsDouble(), (int) numValues, format);
+    }
+
+    long getNumBytes() {
+      return (long) numValues * format.bytes;
+    }
+  }
+}
@@ -44,8 +44,13 @@ import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleImagingScan;
-import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
 import io.github.mzmine.modules.MZmineModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_imzml.IbdFile.IbdArray;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
@@ -54,14 +59,18 @@ import io.github.mzmine.util.scans.ScanUtils;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class reads mzML 1.0 and 1.1.0 files (http://www.psidev.info/index.php?q=node/257) using the
@@ -76,36 +85,50 @@ public class ImzMLImportTask extends AbstractTask {
   private ImagingRawDataFile newMZmineFile;
   private final ParameterSet parameters;
   private final Class<? extends MZmineModule> module;
-  private int totalScans = 0, parsedScans;
+  private int totalScans = 0;
+  // scans are decoded in parallel
+  private final AtomicInteger parsedScans = new AtomicInteger(0);
 
   private int lastScanNumber = 0;
 
   private Map<String, Integer> scanIdTable = new Hashtable<>();
 
-  /*
-   * This stack stores at most 20 consecutive scans. This window serves to find possible fragments
-   * (current scan) that belongs to any of the stored scans in the stack. The reason of the size
-   * follows the concept of neighborhood of scans and all his fragments. These solution is
-   * implemented because exists the possibility to find fragments of one scan after one or more full
-   * scans.
-   */
-  private static final int PARENT_STACK_SIZE = 20;
-  private LinkedList<SimpleScan> parentStack = new LinkedList<>();
+  // advanced processing will apply mass detection directly to the scans
+  private MZmineProcessingStep<MassDetector> ms1Detector = null;
+  private MZmineProcessingStep<MassDetector> ms2Detector = null;
 
   public ImzMLImportTask(MZmineProject project, File fileToOpen, ImagingRawDataFile newMZmineFile,
       @NotNull final Class<? extends MZmineModule> module, @NotNull final ParameterSet parameters,
       @NotNull Instant moduleCallDate) {
+    this(project, fileToOpen, newMZmineFile, null, module, parameters, moduleCallDate);
+  }
+
+  public ImzMLImportTask(MZmineProject project, File fileToOpen, ImagingRawDataFile newMZmineFile,
+      @Nullable AdvancedSpectraImportParameters advancedParam,
+      @NotNull final Class<? extends MZmineModule> module, @NotNull final ParameterSet parameters,
+      @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // storage in raw data file
     this.project = project;
     this.file = fileToOpen;
     this.newMZmineFile = newMZmineFile;
     this.parameters = parameters;
     this.module = module;
+
+    if (advancedParam != null) {
+      if (advancedParam.getParameter(AdvancedSpectraImportParameters.msMassDetection).getValue()) {
+        this.ms1Detector = advancedParam.getParameter(
+            AdvancedSpectraImportParameters.msMassDetection).getEmbeddedParameter().getValue();
+      }
+      if (advancedParam.getParameter(AdvancedSpectraImportParameters.ms2MassDetection).getValue()) {
+        this.ms2Detector = advancedParam.getParameter(
+            AdvancedSpectraImportParameters.ms2MassDetection).getEmbeddedParameter().getValue();
+      }
+    }
   }
 
   @Override
   public double getFinishedPercentage() {
-    return totalScans == 0 ? 0 : (double) parsedScans / totalScans;
+    return totalScans == 0 ? 0 : (double) parsedScans.get() / totalScans;
   }
 
   /**
@@ -120,9 +143,15 @@ public class ImzMLImportTask extends AbstractTask {
     ImzML imzml;
     try {
       imzml = ImzMLHandler.parseimzML(file.getAbsolutePath());
+      final IbdFile ibd = IbdFile.open(file);
+      if (ibd == null) {
+        logger.warning("Cannot find .ibd file of " + file + ", reading spectra sequentially");
+      }
 
+      // read the metadata and the locations of the binary arrays in the .ibd file
       SpectrumList spectra = imzml.getRun().getSpectrumList();
       totalScans = spectra.size();
+      final List<PixelSpectrum> pixels = new ArrayList<>(totalScans);
       for (int i = 0; i < totalScans; i++) {
 
         if (isCanceled()) {
@@ -133,52 +162,29 @@ public class ImzMLImportTask extends AbstractTask {
 
         // Ignore scans that are not MS, e.g. UV
         if (!isMsSpectrum(spectrum)) {
-          parsedScans++;
+          parsedScans.incrementAndGet();
           continue;
         }
 
-        String scanId = spectrum.getID();
-        int scanNumber = convertScanIdToScanNumber(scanId);
-
-        // Extract scan data
-        int msLevel = extractMSLevel(spectrum);
-        float retentionTime = extractRetentionTime(spectrum);
-        PolarityType polarity = extractPolarity(spectrum);
-        int parentScan = extractParentScanNumber(spectrum);
-        double precursorMz = extractPrecursorMz(spectrum);
-        int precursorCharge = extractPrecursorCharge(spectrum);
-        String scanDefinition = extractScanDefinition(spectrum);
-        double mzValues[] = extractMzValues(spectrum);
-        double intensityValues[] = extractIntensityValues(spectrum);
-
-        // imaging
-        Coordinates coord = extractCoordinates(spectrum);
-
-        // Auto-detect whether this scan is centroided
-        MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
-
-        SimpleImagingScan scan = new SimpleImagingScan(newMZmineFile, scanNumber, msLevel,
-            retentionTime, precursorMz, precursorCharge, mzValues, intensityValues, spectrumType,
-            polarity, scanDefinition, null, coord);
-
-
-        /*
-         * Verify the size of parentStack. The actual size of the window to cover possible
-         * candidates is defined by limitSize.
-         */
-        if (parentStack.size() > PARENT_STACK_SIZE) {
-          io.github.mzmine.datamodel.Scan firstScan = parentStack.removeLast();
-          newMZmineFile.addScan(firstScan);
-        }
-
-        parentStack.addFirst(scan);
+        pixels.add(extractPixelSpectrum(spectrum, ibd));
+      }
 
-        parsedScans++;
+      // decode, centroid and store the spectra in parallel
+      final SimpleImagingScan[] scans = new SimpleImagingScan[pixels.size()];
+      IntStream.range(0, scans.length).parallel().forEach(i -> {
+        if (isCanceled()) {
+          return;
+        }
+        scans[i] = createScan(pixels.get(i), ibd);
+        parsedScans.incrementAndGet();
+      });
 
+      if (isCanceled()) {
+        return;
       }
 
-      while (!parentStack.isEmpty()) {
-        io.github.mzmine.datamodel.Scan scan = parentStack.removeLast();
+      // keep the order of the imzML file
+      for (SimpleImagingScan scan : scans) {
         newMZmineFile.addScan(scan);
       }
 
@@ -194,17 +200,82 @@ public class ImzMLImportTask extends AbstractTask {
       return;
     }
 
-    if (parsedScans == 0) {
+    if (parsedScans.get() == 0) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("No scans found");
       return;
     }
 
-    logger.info("Finished parsing " + file + ", parsed " + parsedScans + " scans");
+    logger.info("Finished parsing " + file + ", parsed " + parsedScans.get() + " scans");
     setStatus(TaskStatus.FINISHED);
 
   }
 
+  /**
+   * Extracts the metadata of a spectrum. The data arrays are decoded later from the mapped .ibd
+   * file or directly if they cannot be decoded from the mapped file (e.g., compressed arrays).
+   *
+   * @param ibd the mapped .ibd file or null to decode all arrays directly
+   */
+  private PixelSpectrum extractPixelSpectrum(Spectrum spectrum, @Nullable IbdFile ibd) {
+    String scanId = spectrum.getID();
+    int scanNumber = convertScanIdToScanNumber(scanId);
+
+    BinaryDataArrayList dataList = spectrum.getBinaryDataArrayList();
+    IbdArray mzArray = dataList == null ? null : IbdArray.of(dataList.getmzArray());
+    IbdArray intensityArray = dataList == null ? null : IbdArray.of(dataList.getIntensityArray());
+    final boolean mapped = ibd != null && mzArray != null && intensityArray != null
+        && mzArray.numValues() == intensityArray.numValues() && ibd.canDecode(mzArray)
+        && ibd.canDecode(intensityArray);
+
+    // the parser reads from a shared file and is only used sequentially
+    double[] mzValues = mapped ? null : extractMzValues(spectrum);
+    double[] intensityValues = mapped ? null : extractIntensityValues(spectrum);
+
+    return new PixelSpectrum(scanNumber, extractMSLevel(spectrum), extractRetentionTime(spectrum),
+        extractPolarity(spectrum), extractPrecursorMz(spectrum),
+        extractPrecursorCharge(spectrum), extractScanDefinition(spectrum),
+        extractCoordinates(spectrum), mapped ? mzArray : null, mapped ? intensityArray : null,
+        mzValues, intensityValues);
+  }
+
+  /**
+   * Decodes the data and applies mass detection if selected. Thread safe.
+   */
+  private SimpleImagingScan createScan(PixelSpectrum pixel, @Nullable IbdFile ibd) {
+    double[] mzValues = pixel.mzArray() != null && ibd != null ? ibd.decode(pixel.mzArray())
+        : pixel.mzValues();
+    double[] intensityValues =
+        pixel.intensityArray() != null && ibd != null ? ibd.decode(pixel.intensityArray())
+            : pixel.intensityValues();
+
+    final MZmineProcessingStep<MassDetector> detector =
+        pixel.msLevel() <= 1 ? ms1Detector : ms2Detector;
+    if (detector != null) {
+      // Set the centroided / thresholded data points to the scan
+      final double[][] mzIntensities = detector.getModule()
+          .getMassValues(new SimpleMassSpectrum(mzValues, intensityValues),
+              detector.getParameterSet());
+      final SimpleImagingScan scan = createScan(pixel, mzIntensities[0], mzIntensities[1],
+          MassSpectrumType.CENTROIDED);
+      // create mass list and scan. Override data points and spectrum type
+      scan.addMassList(new ScanPointerMassList(scan));
+      return scan;
+    }
+
+    // Auto-detect whether this scan is centroided
+    MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
+    return createScan(pixel, mzValues, intensityValues, spectrumType);
+  }
+
+  private SimpleImagingScan createScan(PixelSpectrum pixel, double[] mzValues,
+      double[] intensityValues, MassSpectrumType spectrumType) {
+    return new SimpleImagingScan(newMZmineFile, pixel.scanNumber(), pixel.msLevel(),
+        pixel.retentionTime(), pixel.precursorMz(), pixel.precursorCharge(), mzValues,
+        intensityValues, spectrumType, pixel.polarity(), pixel.scanDefinition(), null,
+        pixel.coordinates());
+  }
+
   private int convertScanIdToScanNumber(String scanId) {
 
     if (scanIdTable.containsKey(scanId)) {
@@ -440,4 +511,15 @@ public class ImzMLImportTask extends AbstractTask {
     return cvParams == null;
   }
 
+  /**
+   * Metadata of a pixel spectrum with either the locations of the arrays in the .ibd file or the
+   * decoded values.
+   */
+  private record PixelSpectrum(int scanNumber, int msLevel, float retentionTime,
+                               PolarityType polarity, double precursorMz, int precursorCharge,
+                               String scanDefinition, Coordinates coordinates,
+                               @Nullable IbdArray mzArray, @Nullable IbdArray intensityArray,
+                               double @Nullable [] mzValues, double @Nullable [] intensityValues) {
+
+  }
 }
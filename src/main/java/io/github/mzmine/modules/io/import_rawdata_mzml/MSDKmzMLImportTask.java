@@ -50,6 +50,7 @@ import io.github.mzmine.modules.io.import_rawdata_all.MsDataImportAndMassDetectW
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLRawDataFile;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.project.impl.RawDataFileImpl;
@@ -90,6 +91,8 @@ public class MSDKmzMLImportTask extends AbstractTask {
   public static final Pattern watersPattern = Pattern.compile(
       "function=([1-9]+) process=[\\d]+ scan=[\\d]+");
   private static final Logger logger = Logger.getLogger(MSDKmzMLImportTask.class.getName());
+  // binary data of scans is decoded in parallel blocks, scans are added in order
+  private static final int PARALLEL_DECODING_BLOCK_SIZE = 512;
   private final File file;
   private final InputStream fis;
   // advanced processing will apply mass detection directly to the scans
@@ -240,12 +243,36 @@ public class MSDKmzMLImportTask extends AbstractTask {
     super.cancel();
   }
 
+  /**
+   * Decodes the binary data arrays of a block of scans in parallel. The parser only records the
+   * positions of the binary data in the memory mapped file. Scans from an input stream are already
+   * decoded during parsing.
+   *
+   * @param scans all scans
+   * @param start the first scan of the block
+   */
+  private void decodeBlockInParallel(List<MsScan> scans, int start) {
+    final int end = Math.min(scans.size(), start + PARALLEL_DECODING_BLOCK_SIZE);
+    scans.subList(start, end).parallelStream().forEach(scan -> {
+      if (!isCanceled() && scan instanceof MzMLMsScan mzMLScan
+          && mzMLScan.getInputStream() instanceof ByteBufferInputStream mapped) {
+        // each thread needs its own position in the mapped file
+        mzMLScan.decodeBinaryData(mapped.copy());
+      }
+    });
+  }
+
   public void buildLCMSFile(io.github.msdk.datamodel.RawDataFile file, RawDataFile newMZmineFile)
       throws IOException {
-    for (MsScan scan : file.getScans()) {
+    final List<MsScan> scans = file.getScans();
+    for (int i = 0; i < scans.size(); i++) {
       if (isCanceled()) {
         return;
       }
+      if (i % PARALLEL_DECODING_BLOCK_SIZE == 0) {
+        decodeBlockInParallel(scans, i);
+      }
+      final MsScan scan = scans.get(i);
       MzMLMsScan mzMLScan = (MzMLMsScan) scan;
 
       Scan newScan = null;
@@ -307,10 +334,15 @@ public class MSDKmzMLImportTask extends AbstractTask {
         .toArray();
 
 //    int previousFunction = 1;
-    for (MsScan scan : file.getScans()) {
+    final List<MsScan> scans = file.getScans();
+    for (int i = 0; i < scans.size(); i++) {
       if (isCanceled()) {
         return;
       }
+      if (i % PARALLEL_DECODING_BLOCK_SIZE == 0) {
+        decodeBlockInParallel(scans, i);
+      }
+      final MsScan scan = scans.get(i);
       MzMLMsScan mzMLScan = (MzMLMsScan) scan;
       if (mzMLScan.getMobility() == null) {
         continue;
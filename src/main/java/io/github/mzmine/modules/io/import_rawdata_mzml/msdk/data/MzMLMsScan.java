@@ -39,6 +39,7 @@ import io.github.msdk.spectra.centroidprofiledetection.SpectrumTypeDetectionAlgo
 import io.github.msdk.util.MsSpectrumUtil;
 import io.github.msdk.util.tolerances.MzTolerance;
 import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -188,6 +189,25 @@ public class MzMLMsScan implements MsScan {
     this.inputStream = inputStream;
   }
 
+  /**
+   * Decodes and caches the m/z and intensity arrays. Used to decode scans in parallel, each thread
+   * needs its own stream, e.g., a {@link ByteBufferInputStream#copy()} of the memory mapped file.
+   *
+   * @param is the stream to read the binary data from
+   */
+  public void decodeBinaryData(@NotNull InputStream is) {
+    try {
+      if (mzValues == null) {
+        mzValues = MzMLPeaksDecoder.decodeToDouble(is, getMzBinaryDataInfo(), null);
+      }
+      if (intensityValues == null) {
+        intensityValues = MzMLPeaksDecoder.decodeToFloat(is, getIntensityBinaryDataInfo(), null);
+      }
+    } catch (Exception e) {
+      throw (new MSDKRuntimeException(e));
+    }
+  }
+
   /**
    * <p>
    * getPrecursorList.
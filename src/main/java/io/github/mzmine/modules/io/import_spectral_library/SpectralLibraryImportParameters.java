@@ -37,12 +37,13 @@ public class SpectralLibraryImportParameters extends SimpleParameterSet {
       new ExtensionFilter("mgf files", "*.mgf"), //
       new ExtensionFilter("msp files from NIST", "*.msp"), //
       new ExtensionFilter("JCAM-DX files", "*.jdx"), //
+      new ExtensionFilter("Columnar MZmine library cache", "*.mzlib"), //
       new ExtensionFilter("All files", "*.*") //
   );
 
   public static final FileNamesParameter dataBaseFiles = new FileNamesParameter(
       "Spectral library files",
-      "Name of file that contains information for peak identification\n(GNPS json, MONA json, NIST msp, mgf, JCAMP-DX jdx)",
+      "Name of file that contains information for peak identification\n(GNPS json, MONA json, NIST msp, mgf, JCAMP-DX jdx, columnar mzlib)",
       extensions);
 
   public SpectralLibraryImportParameters() {
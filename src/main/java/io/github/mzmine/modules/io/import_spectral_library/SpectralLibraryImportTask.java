@@ -26,9 +26,13 @@
 package io.github.mzmine.modules.io.import_spectral_library;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat;
+import io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryWriter;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import io.github.mzmine.util.spectraldb.parser.AutoLibraryParser;
@@ -97,17 +101,55 @@ public class SpectralLibraryImportTask extends AbstractTask {
   }
 
   /**
-   * Load all library entries from data base file
+   * Load all library entries from data base file. Uses the columnar cache if activated in the
+   * preferences and if the cache is up to date.
    *
    * @param dataBaseFile the target database file
    */
   private SpectralLibrary parseFile(File dataBaseFile)
       throws UnsupportedFormatException, IOException {
-    //
+    final boolean useCache = MZmineCore.getConfiguration().getPreferences()
+        .getValue(MZminePreferences.cacheSpectralLibraries)
+        && !ColumnarLibraryFormat.isColumnarLibrary(dataBaseFile);
+    if (useCache) {
+      final File cacheFile = ColumnarLibraryFormat.getCacheFile(dataBaseFile);
+      if (cacheFile.exists() && cacheFile.lastModified() >= dataBaseFile.lastModified()) {
+        try {
+          return parseFile(dataBaseFile, cacheFile);
+        } catch (IOException e) {
+          logger.log(Level.WARNING,
+              "Cannot open columnar library cache %s, parsing the original library".formatted(
+                  cacheFile.getAbsolutePath()), e);
+        }
+      }
+    }
+
+    final SpectralLibrary library = parseFile(dataBaseFile, dataBaseFile);
+    if (useCache && !isCanceled() && library.size() > 0) {
+      final File cacheFile = ColumnarLibraryFormat.getCacheFile(dataBaseFile);
+      try {
+        ColumnarLibraryWriter.write(library, cacheFile);
+        logger.info("Created columnar library cache " + cacheFile.getAbsolutePath());
+      } catch (IOException e) {
+        logger.log(Level.WARNING,
+            "Cannot write columnar library cache " + cacheFile.getAbsolutePath(), e);
+      }
+    }
+    return library;
+  }
+
+  /**
+   * @param dataBaseFile the library file that defines the library path and name
+   * @param sourceFile   the file to parse, either the library or its columnar cache
+   */
+  private SpectralLibrary parseFile(File dataBaseFile, File sourceFile)
+      throws UnsupportedFormatException, IOException {
     SpectralLibrary library = new SpectralLibrary(MemoryMapStorage.forMassList(), dataBaseFile);
     parser = new AutoLibraryParser(1000, (list, alreadyProcessed) -> library.addEntries(list));
     // return tasks
-    parser.parse(this, dataBaseFile, library);
+    parser.parse(this, sourceFile, library);
+    // precursor index for fast library matching
+    library.buildIndex();
     return library;
   }
 
@@ -26,8 +26,10 @@
 package io.github.mzmine.modules.io.projectload;
 
 import com.google.common.io.CountingInputStream;
+import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataSnapshotReader;
 import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
 import io.github.mzmine.modules.io.projectsave.RawDataFileSaveHandler;
 import io.github.mzmine.parameters.ParameterSet;
@@ -39,6 +41,7 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
 import io.github.mzmine.util.GUIUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.PhaseTimer;
 import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.BufferedReader;
@@ -75,6 +78,7 @@ public class ProjectOpeningTask extends AbstractTask {
   private CountingInputStream cis;
   private long totalBytes, finishedBytes;
   private String currentLoadedObjectName;
+  private final PhaseTimer phaseTimer = new PhaseTimer();
 
   // This hashtable maps stored IDs to raw data file objects
 //  private final Hashtable<String, RawDataFile> dataFilesIDMap = new Hashtable<>();
@@ -98,7 +102,8 @@ public class ProjectOpeningTask extends AbstractTask {
     if (currentLoadedObjectName == null) {
       return "Opening project " + openFile;
     }
-    return "Opening project " + openFile + " (" + currentLoadedObjectName + ")";
+    return "Opening project " + openFile + " (" + currentLoadedObjectName + ") - "
+           + phaseTimer.describeCurrentPhase();
   }
 
   /**
@@ -164,6 +169,7 @@ public class ProjectOpeningTask extends AbstractTask {
 
       // Iterate over the entries and read them
       entries = zipFile.entries();
+      phaseTimer.start("MS data files and parameters");
 
       while (entries.hasMoreElements()) {
 
@@ -187,6 +193,8 @@ public class ProjectOpeningTask extends AbstractTask {
           loadRawDataFiles(cis, zipFile);
         } else if (entryName.equals(ProjectSavingTask.STANDALONE_FILENAME)) {
           newProject.setStandalone(true);
+        } else if (RawDataSnapshotReader.isSnapshotEntry(entryName)) {
+          loadRawDataSnapshot(cis);
         }
 
         // Close the ZIP entry
@@ -200,7 +208,9 @@ public class ProjectOpeningTask extends AbstractTask {
 
       }
 
+      phaseTimer.start("feature lists");
       loadFeatureList(zipFile);
+      phaseTimer.finish();
 
       // Finish and close the project ZIP file
       zipFile.close();
@@ -215,7 +225,7 @@ public class ProjectOpeningTask extends AbstractTask {
         return;
       }
 
-      logger.info("Finished opening project " + openFile);
+      logger.info("Finished opening project " + openFile + " (" + phaseTimer.summary() + ")");
       setStatus(TaskStatus.FINISHED);
 
       // add to last loaded projects
@@ -352,7 +362,7 @@ public class ProjectOpeningTask extends AbstractTask {
     tempConfigFile.delete();
   }
 
-  private void loadFeatureList(ZipFile zipFile) {
+  private void loadFeatureList(ZipFile zipFile) throws IOException {
 
     FeatureListLoadTask task = new FeatureListLoadTask(MemoryMapStorage.forFeatureList(),
         newProject, zipFile);
@@ -365,6 +375,9 @@ public class ProjectOpeningTask extends AbstractTask {
         e.printStackTrace();
       }
     }
+    if (task.getStatus() == TaskStatus.ERROR) {
+      throw new IOException("Error while loading feature lists. " + task.getErrorMessage());
+    }
   }
 
   private void loadUserParameters(InputStream is)
@@ -383,6 +396,14 @@ public class ProjectOpeningTask extends AbstractTask {
 
   }
 
+  private void loadRawDataSnapshot(InputStream is) throws IOException {
+    currentLoadedObjectName = "MS data files";
+    final RawDataFile file = RawDataSnapshotReader.read(is, newProject, this::isCanceled);
+    if (file != null) {
+      logger.info("Loaded binary snapshot of raw data file " + file.getName());
+    }
+  }
+
   private boolean loadRawDataFiles(InputStream is, ZipFile zipFile) {
     currentLoadedObjectName = ("MS data files");
     rawDataFileOpenHandler.setBatchFileStream(is);
@@ -69,6 +69,7 @@ public class CONST {
   public static final String XML_NUM_ROWS_ATTR = "numberofrows";
   public static final String XML_FLIST_NAME_ATTR = "featurelistname";
   public static final String XML_DATE_CREATED_ATTR = "date";
+  public static final String XML_BINARY_COLUMNS_ATTR = "binarycolumns";
   public static final String XML_DATA_TYPE_ELEMENT = "datatype";
   public static final String XML_DATA_TYPE_ID_ATTR = "type";
   public static final String XML_FEATURE_ELEMENT = "feature";
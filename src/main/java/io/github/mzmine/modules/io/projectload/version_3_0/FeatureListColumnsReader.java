@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import static io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter.DOUBLE_COLUMN;
+import static io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter.DOUBLE_RANGE_COLUMN;
+import static io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter.FLOAT_COLUMN;
+import static io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter.FLOAT_RANGE_COLUMN;
+import static io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter.INTEGER_COLUMN;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
+import io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.ParsingUtils;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the binary columns written by {@link FeatureListColumnsWriter} into a feature list that
+ * was already loaded from its xml file. The series are copied into the {@link MemoryMapStorage}
+ * of the feature list and the column values override values that were recalculated while
+ * loading.
+ */
+public class FeatureListColumnsReader {
+
+  private static final Logger logger = Logger.getLogger(FeatureListColumnsReader.class.getName());
+
+  private FeatureListColumnsReader() {
+  }
+
+  /**
+   * Applies the series, feature columns and row columns to the feature list.
+   *
+   * @param flist the feature list with all rows and features of the xml file
+   * @throws IOException if the stream is not a column file of this feature list or truncated
+   */
+  public static void read(@NotNull InputStream stream, @NotNull ModularFeatureList flist,
+      @Nullable MemoryMapStorage storage) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+    try {
+      read(in, flist, storage);
+    } catch (EOFException e) {
+      throw new IOException(
+          "Feature list column file of " + flist.getName() + " is truncated or incomplete", e);
+    }
+  }
+
+  private static void read(DataInputStream in, ModularFeatureList flist,
+      @Nullable MemoryMapStorage storage) throws IOException {
+    if (in.readInt() != FeatureListColumnsWriter.MAGIC) {
+      throw new IOException("Not a feature list column file");
+    }
+    final int version = in.readInt();
+    if (version > FeatureListColumnsWriter.VERSION) {
+      throw new IOException("Unsupported feature list column version " + version);
+    }
+
+    final int numRows = in.readInt();
+    if (numRows != flist.getNumberOfRows()) {
+      throw new IOException("Number of rows does not match the feature list " + flist.getName());
+    }
+    final ModularFeatureListRow[] rows = new ModularFeatureListRow[numRows];
+    for (int i = 0; i < numRows; i++) {
+      rows[i] = (ModularFeatureListRow) flist.getRow(i);
+      if (rows[i].getID() != in.readInt()) {
+        throw new IOException("Row ids do not match the feature list " + flist.getName());
+      }
+    }
+
+    final String[] fileNames = new String[in.readInt()];
+    for (int i = 0; i < fileNames.length; i++) {
+      fileNames[i] = readString(in);
+    }
+
+    final int numFeatures = in.readInt();
+    final int[] rowIndices = readInts(in, numFeatures);
+    final int[] fileIndices = readInts(in, numFeatures);
+    // features may be missing if the file was not found during xml loading
+    final ModularFeature[] features = new ModularFeature[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      features[i] = findFeature(rows[rowIndices[i]], fileNames[fileIndices[i]]);
+    }
+
+    readSeries(in, features, storage);
+    readColumns(in, features);
+    readColumns(in, rows);
+    logger.finest(() -> "Loaded binary columns of feature list " + flist.getName());
+  }
+
+  @Nullable
+  private static ModularFeature findFeature(ModularFeatureListRow row, String fileName) {
+    for (ModularFeature feature : row.getFeatures()) {
+      final RawDataFile file = feature.getRawDataFile();
+      if (file != null && file.getName().equals(fileName)) {
+        return feature;
+      }
+    }
+    return null;
+  }
+
+  private static void readSeries(DataInputStream in, ModularFeature[] features,
+      @Nullable MemoryMapStorage storage) throws IOException {
+    final int numSeries = in.readInt();
+    byte[] buffer = new byte[0];
+    for (int s = 0; s < numSeries; s++) {
+      final ModularFeature feature = features[in.readInt()];
+      final int numValues = in.readInt();
+      final int[] indices = readInts(in, numValues);
+      if (buffer.length < numValues * Double.BYTES) {
+        buffer = new byte[numValues * Double.BYTES];
+      }
+      final double[] mzs = readDoubles(in, numValues, buffer);
+      final double[] intensities = readDoubles(in, numValues, buffer);
+      if (feature == null) {
+        continue;
+      }
+
+      // use all scans, same as the xml format
+      final List<Scan> scans = ParsingUtils.getSublistFromIndices(
+          feature.getRawDataFile().getScans(), indices);
+      setValue(feature, DataTypes.get(FeatureDataType.class),
+          new SimpleIonTimeSeries(storage, mzs, intensities, scans));
+    }
+  }
+
+  private static void readColumns(DataInputStream in, ModularDataModel[] models)
+      throws IOException {
+    final int numColumns = in.readInt();
+    final byte[] present = new byte[models.length];
+    for (int c = 0; c < numColumns; c++) {
+      final String id = readString(in);
+      final byte kind = in.readByte();
+      in.readFully(present);
+
+      // skip values of unknown types or types that changed their format
+      final DataType type = DataTypes.getTypeForId(id);
+      final boolean apply = type != null && FeatureListColumnsWriter.getColumnKind(type) == kind;
+      if (!apply) {
+        logger.warning(() -> "Cannot load column of data type " + id);
+      }
+
+      for (int i = 0; i < models.length; i++) {
+        final Object value = switch (kind) {
+          case DOUBLE_COLUMN -> in.readDouble();
+          case FLOAT_COLUMN -> in.readFloat();
+          case INTEGER_COLUMN -> in.readInt();
+          case DOUBLE_RANGE_COLUMN -> Range.closed(in.readDouble(), in.readDouble());
+          case FLOAT_RANGE_COLUMN -> Range.closed(in.readFloat(), in.readFloat());
+          default -> throw new IOException("Unknown column kind " + kind);
+        };
+        if (apply && present[i] != 0 && models[i] != null) {
+          setValue(models[i], type, value);
+        }
+      }
+    }
+  }
+
+  private static void setValue(ModularDataModel model, DataType type, Object value) {
+    try {
+      model.set(type, value);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, () -> String.format(
+          "DataType %s and value %s were not set. Maybe incompatible during loading?", type,
+          value));
+    }
+  }
+
+  private static double[] readDoubles(DataInputStream in, int length, byte[] buffer)
+      throws IOException {
+    in.readFully(buffer, 0, length * Double.BYTES);
+    final double[] values = new double[length];
+    ByteBuffer.wrap(buffer, 0, length * Double.BYTES).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  private static int[] readInts(DataInputStream in, int length) throws IOException {
+    final int[] values = new int[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -38,10 +38,12 @@ import io.github.mzmine.datamodel.features.types.DataTypes;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
+import io.github.mzmine.modules.io.projectsave.FeatureListColumnsWriter;
 import io.github.mzmine.modules.io.projectsave.FeatureListSaveTask;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.PhaseTimer;
 import io.github.mzmine.util.ParsingUtils;
 import io.github.mzmine.util.ZipUtils;
 import io.github.mzmine.util.files.FileAndPathUtil;
@@ -55,6 +57,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -89,12 +95,12 @@ public class FeatureListLoadTask extends AbstractTask {
   final String idTypeUniqueID = new IDType().getUniqueID();
   private final ZipFile zip;
   private final MZmineProject project;
-  private final AtomicInteger rowCounter = new AtomicInteger(0);
-  private int totalRows = 1;
-  private int processedRows = 0;
-  private String currentFlist = "";
+  private final PhaseTimer phaseTimer = new PhaseTimer();
+  // feature lists are loaded in parallel
+  private final AtomicInteger totalRows = new AtomicInteger(0);
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+  private final AtomicInteger processedFlists = new AtomicInteger(0);
   private int numFlists = 1;
-  private int processedFlists;
 
   public FeatureListLoadTask(@Nullable MemoryMapStorage storage, @NotNull MZmineProject project,
       ZipFile zip) {
@@ -132,20 +138,24 @@ public class FeatureListLoadTask extends AbstractTask {
 
   @Override
   public String getTaskDescription() {
-    return "Importing feature list " + currentFlist + (processedFlists + 1) + "/" + numFlists
-           + ". Parsing row " + processedRows + "/" + totalRows;
+    return "Importing feature lists " + processedFlists.get() + "/" + numFlists + ". Parsing row "
+           + processedRows.get() + "/" + totalRows.get() + " - "
+           + phaseTimer.describeCurrentPhase();
   }
 
   @Override
   public double getFinishedPercentage() {
-    return (double) processedFlists / numFlists // overall progress finished flists
-           + (double) processedRows / totalRows / numFlists; // current flist progress
+    final int rows = totalRows.get();
+    final double rowProgress = rows == 0 ? 0 : (double) processedRows.get() / rows;
+    // finished flists and rows of all flists that are being parsed
+    return ((double) processedFlists.get() / numFlists + rowProgress) / 2;
   }
 
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
     try {
+      phaseTimer.start("unzipping");
       Path tempDirectory = FileAndPathUtil.createTempDirectory(TEMP_FLIST_DATA_FOLDER);
 
       logger.info(() -> "Unzipping feature lists of project to " + tempDirectory.toString());
@@ -167,34 +177,27 @@ public class FeatureListLoadTask extends AbstractTask {
       // enable caching of mobility scans during project import.
       project.setProjectLoadImsImportCaching(true);
 
-      for (File flistFile : files) {
-        if (isCanceled()) {
-          return;
-        }
-        rowCounter.set(0);
-
-        final File metadataFile = new File(flistFile.toString()
-            .replace(FeatureListSaveTask.DATA_FILE_SUFFIX,
-                FeatureListSaveTask.METADATA_FILE_SUFFIX));
-        ModularFeatureList flist = createRows(storage, flistFile, metadataFile);
-
-        if (flist == null) {
-          logger.severe(
-              () -> "Cannot load feature list from files " + flistFile.getAbsolutePath() + " and "
-                    + metadataFile.getAbsolutePath());
-          continue;
-        }
-        parseFeatureList(storage, project, flist, flistFile);
-
-        // disable buffering after the import (replace references to CachedIMSRawDataFiles with IMSRawDataFiles
-        flist.replaceCachedFilesAndScans();
+      // feature lists are independent of each other and parsed in parallel
+      phaseTimer.start("parsing");
+      final ModularFeatureList[] flists = loadFeatureLists(storage, files);
+      if (isCanceled()) {
+        return;
+      }
 
-        project.addFeatureList(flist);
-        processedFlists++;
+      // keep the order of the files
+      phaseTimer.start("adding to project");
+      for (ModularFeatureList flist : flists) {
+        if (flist != null) {
+          project.addFeatureList(flist);
+        }
       }
+      phaseTimer.finish();
+      logger.info(
+          () -> "Imported " + files.length + " feature lists (" + phaseTimer.summary() + ")");
     } catch (Exception e) {
       e.printStackTrace();
       logger.log(Level.SEVERE, e.getMessage(), e);
+      setErrorMessage(e.getMessage());
       setStatus(TaskStatus.ERROR);
       project.setProjectLoadImsImportCaching(false);
       MZmineCore.getDesktop().displayErrorMessage(e.getMessage());
@@ -206,11 +209,112 @@ public class FeatureListLoadTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
-  private void parseFeatureList(MemoryMapStorage storage, MZmineProject project,
+  /**
+   * Loads the feature lists on a pool bounded by the number of threads set in the preferences
+   * instead of the common pool that is shared with all other tasks.
+   *
+   * @return the feature lists in the order of the files. null for lists that could not be loaded
+   */
+  private ModularFeatureList[] loadFeatureLists(MemoryMapStorage storage, File[] files)
+      throws InterruptedException {
+    final ModularFeatureList[] flists = new ModularFeatureList[files.length];
+    final int numThreads = Math.max(1,
+        Math.min(files.length, MZmineCore.getConfiguration().getNumOfThreads()));
+    final AtomicInteger threadCounter = new AtomicInteger(0);
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+      Thread thread = new Thread(r,
+          "Feature list import thread " + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      final List<Future<?>> futures = new ArrayList<>(files.length);
+      for (int i = 0; i < files.length; i++) {
+        final int index = i;
+        futures.add(executor.submit(() -> {
+          if (isCanceled()) {
+            return;
+          }
+          flists[index] = loadFeatureList(storage, files[index]);
+          processedFlists.incrementAndGet();
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException re) {
+            throw re;
+          }
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return flists;
+  }
+
+  /**
+   * Creates the feature list from the data and metadata file and parses all rows.
+   *
+   * @return the feature list or null if it could not be created
+   */
+  @Nullable
+  private ModularFeatureList loadFeatureList(MemoryMapStorage storage, File flistFile) {
+    final File metadataFile = new File(flistFile.toString()
+        .replace(FeatureListSaveTask.DATA_FILE_SUFFIX, FeatureListSaveTask.METADATA_FILE_SUFFIX));
+    ModularFeatureList flist = createRows(storage, flistFile, metadataFile);
+
+    if (flist == null) {
+      logger.severe(
+          () -> "Cannot load feature list from files " + flistFile.getAbsolutePath() + " and "
+                + metadataFile.getAbsolutePath());
+      return null;
+    }
+    totalRows.addAndGet(flist.getNumberOfRows());
+    final boolean binaryColumns = parseFeatureList(storage, project, flist, flistFile);
+    if (binaryColumns && !isCanceled()) {
+      loadColumns(storage, flist, flistFile);
+    }
+
+    // disable buffering after the import
+    // (replace references to CachedIMSRawDataFiles with IMSRawDataFiles)
+    flist.replaceCachedFilesAndScans();
+    return flist;
+  }
+
+  /**
+   * Binary projects store numeric values and chromatograms in a columns file, which are not in the
+   * xml file. The feature list cannot be loaded without them.
+   *
+   * @throws IllegalStateException if the columns file is missing or cannot be read
+   */
+  private void loadColumns(MemoryMapStorage storage, ModularFeatureList flist, File flistFile) {
+    final File columnsFile = new File(flistFile.toString().replace(
+        FeatureListSaveTask.DATA_FILE_SUFFIX, FeatureListColumnsWriter.COLUMNS_FILE_SUFFIX));
+    if (!columnsFile.exists()) {
+      throw new IllegalStateException(
+          "The project is incomplete. Binary columns file " + columnsFile.getName()
+              + " of feature list " + flist.getName() + " is missing.");
+    }
+    try (InputStream is = new FileInputStream(columnsFile)) {
+      FeatureListColumnsReader.read(is, flist, storage);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Cannot read binary columns file " + columnsFile.getName() + " of feature list "
+              + flist.getName() + ". " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return true if the numeric values and chromatograms are stored in a binary columns file
+   */
+  private boolean parseFeatureList(MemoryMapStorage storage, MZmineProject project,
       ModularFeatureList flist, File flistFile) {
-    currentFlist = flist.getName();
-    processedRows = 0;
-    totalRows = flist.getNumberOfRows();
+    int rowIndex = 0;
+    boolean binaryColumns = false;
 
     try (InputStream fis = new FileInputStream(flistFile)) {
       final XMLInputFactory xif = XMLInputFactory.newInstance();
@@ -218,7 +322,7 @@ public class FeatureListLoadTask extends AbstractTask {
 
       while (reader.hasNext()) {
         if (isCanceled()) {
-          return;
+          return binaryColumns;
         }
 
         int type = reader.next();
@@ -232,9 +336,12 @@ public class FeatureListLoadTask extends AbstractTask {
                   "Feature list names do not match. " + flist.getName() + " != " + reader
                       .getAttributeValue(null, CONST.XML_FLIST_NAME_ATTR));
             }
+            binaryColumns = Boolean.parseBoolean(
+                reader.getAttributeValue(null, CONST.XML_BINARY_COLUMNS_ATTR));
           } else if (CONST.XML_ROW_ELEMENT.equals(localName)) {
-            parseRow(reader, storage, project, flist);
-            processedRows++;
+            parseRow(reader, storage, project, flist, rowIndex);
+            rowIndex++;
+            processedRows.incrementAndGet();
           }
         }
       }
@@ -242,6 +349,7 @@ public class FeatureListLoadTask extends AbstractTask {
     } catch (IOException | XMLStreamException e) {
       logger.log(Level.WARNING, "Error opening file " + flistFile.getAbsolutePath(), e);
     }
+    return binaryColumns;
   }
 
   /**
@@ -381,13 +489,13 @@ public class FeatureListLoadTask extends AbstractTask {
   }
 
   private void parseRow(XMLStreamReader reader, MemoryMapStorage storage, MZmineProject project,
-      ModularFeatureList flist) throws XMLStreamException {
+      ModularFeatureList flist, int rowIndex) throws XMLStreamException {
     if (!reader.getLocalName().equals(CONST.XML_ROW_ELEMENT)) {
       throw new IllegalStateException("Cannot parse row if current element is not a row element");
     }
 
     int id = Integer.parseInt(reader.getAttributeValue(null, idTypeUniqueID));
-    final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(rowCounter.get());
+    final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(rowIndex);
     if (id != row.getID()) {
       throw new IllegalStateException("Row ids do not match.");
     }
@@ -423,7 +531,6 @@ public class FeatureListLoadTask extends AbstractTask {
         }
       }
     }
-    rowCounter.getAndIncrement();
   }
 
   private void parseFeature(@NotNull XMLStreamReader reader, @Nullable MemoryMapStorage storage,
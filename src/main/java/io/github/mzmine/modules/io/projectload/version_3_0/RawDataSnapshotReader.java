@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.modules.dataprocessing.id_ccscalibration.CCSCalibration;
+import io.github.mzmine.modules.io.projectsave.RawDataSnapshotWriter;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import javafx.scene.paint.Color;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads a binary raw data snapshot written by {@link RawDataSnapshotWriter}. The m/z and intensity
+ * values are copied to the {@link MemoryMapStorage} directly, neither the original file nor the
+ * raw data processing steps are needed.
+ */
+public class RawDataSnapshotReader {
+
+  private static final Logger logger = Logger.getLogger(RawDataSnapshotReader.class.getName());
+
+  private RawDataSnapshotReader() {
+  }
+
+  /**
+   * @param entryName name of a zip entry
+   * @return true if the entry is a raw data snapshot
+   */
+  public static boolean isSnapshotEntry(@NotNull String entryName) {
+    return entryName.startsWith(RawDataSnapshotWriter.SNAPSHOT_FOLDER) && entryName.endsWith(
+        RawDataSnapshotWriter.SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Reads a snapshot and adds the raw data file to the project.
+   *
+   * @param isCanceled checked after each scan
+   * @return the raw data file or null if canceled
+   */
+  @Nullable
+  public static RawDataFile read(@NotNull InputStream stream, @NotNull MZmineProject project,
+      @NotNull BooleanSupplier isCanceled) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+
+    if (in.readInt() != RawDataSnapshotWriter.MAGIC) {
+      throw new IOException("Invalid raw data snapshot");
+    }
+    final int version = in.readInt();
+    if (version > RawDataSnapshotWriter.VERSION) {
+      throw new IOException("Raw data snapshot version " + version
+          + " was written by a newer version of MZmine and cannot be read.");
+    }
+
+    final String name = readString(in);
+    final String absolutePath = readString(in);
+    final String color = readString(in);
+    final String startTimeStamp = readString(in);
+    final String appliedMethods = readString(in);
+
+    final PolarityType[] polarities = readEnumNames(in, PolarityType.class);
+    final MassSpectrumType[] spectrumTypes = readEnumNames(in, MassSpectrumType.class);
+
+    final boolean ims = version >= 2 && in.readByte() == RawDataSnapshotWriter.FILE_KIND_IMS;
+    final MobilityType mobilityType = ims ? MobilityType.valueOf(readString(in)) : null;
+    final String ccsCalibration = ims ? readString(in) : null;
+
+    final int numScans = in.readInt();
+    final int[] scanNumbers = readInts(in, numScans);
+    final int[] msLevels = readInts(in, numScans);
+    final float[] retentionTimes = new float[numScans];
+    for (int i = 0; i < numScans; i++) {
+      retentionTimes[i] = in.readFloat();
+    }
+    final byte[] polarityIndices = new byte[numScans];
+    in.readFully(polarityIndices);
+    final byte[] spectrumTypeIndices = new byte[numScans];
+    in.readFully(spectrumTypeIndices);
+    final float[] injectionTimes = new float[numScans];
+    for (int i = 0; i < numScans; i++) {
+      injectionTimes[i] = in.readFloat();
+    }
+    final double[] mzRanges = new double[numScans * 2];
+    for (int i = 0; i < mzRanges.length; i++) {
+      mzRanges[i] = in.readDouble();
+    }
+    final int[] numDataPoints = readInts(in, numScans);
+    final int[] numMassListDataPoints = readInts(in, numScans);
+    final String[] scanDefinitions = new String[numScans];
+    for (int i = 0; i < numScans; i++) {
+      scanDefinitions[i] = readString(in);
+    }
+    final String[] msMsInfos = new String[numScans];
+    for (int i = 0; i < numScans; i++) {
+      msMsInfos[i] = readString(in);
+    }
+    final int[] numMobilityScans = ims ? readInts(in, numScans) : null;
+    final String[][] pasefMsMsInfos = ims ? new String[numScans][] : null;
+    if (ims) {
+      for (int i = 0; i < numScans; i++) {
+        pasefMsMsInfos[i] = new String[in.readInt()];
+        for (int j = 0; j < pasefMsMsInfos[i].length; j++) {
+          pasefMsMsInfos[i][j] = readString(in);
+        }
+      }
+    }
+
+    final RawDataFileImpl file = createFile(ims, name, absolutePath, color);
+    if (startTimeStamp != null) {
+      file.setStartTimeStamp(LocalDateTime.parse(startTimeStamp));
+    }
+    final MemoryMapStorage massListStorage = MemoryMapStorage.forMassList();
+
+    final List<Scan> scans = new ArrayList<>(numScans);
+    byte[] buffer = new byte[0];
+    for (int i = 0; i < numScans; i++) {
+      if (isCanceled.getAsBoolean()) {
+        return null;
+      }
+      final int numDp = numDataPoints[i];
+      if (buffer.length < numDp * Double.BYTES) {
+        buffer = new byte[numDp * Double.BYTES];
+      }
+      final double[] mzs = readDoubles(in, numDp, buffer);
+      final double[] intensities = readDoubles(in, numDp, buffer);
+      final double lower = mzRanges[i * 2];
+      final double upper = mzRanges[i * 2 + 1];
+      final Range<Double> mzRange = Double.isNaN(lower) ? null : Range.closed(lower, upper);
+      final Float injectionTime = Float.isNaN(injectionTimes[i]) ? null : injectionTimes[i];
+      final SimpleScan scan = ims ? new SimpleFrame(file, scanNumbers[i], msLevels[i],
+          retentionTimes[i], mzs, intensities, spectrumTypes[spectrumTypeIndices[i]],
+          polarities[polarityIndices[i]], scanDefinitions[i], mzRange, mobilityType, null,
+          injectionTime)
+          : new SimpleScan(file, scanNumbers[i], msLevels[i], retentionTimes[i], null, mzs,
+              intensities, spectrumTypes[spectrumTypeIndices[i]], polarities[polarityIndices[i]],
+              scanDefinitions[i], mzRange, injectionTime);
+
+      final int numMasses = numMassListDataPoints[i];
+      if (numMasses == RawDataSnapshotWriter.SCAN_POINTER_MASS_LIST) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      } else if (numMasses >= 0) {
+        if (buffer.length < numMasses * Double.BYTES) {
+          buffer = new byte[numMasses * Double.BYTES];
+        }
+        final double[] masses = readDoubles(in, numMasses, buffer);
+        final double[] massIntensities = readDoubles(in, numMasses, buffer);
+        scan.addMassList(new SimpleMassList(massListStorage, masses, massIntensities));
+      }
+
+      if (ims) {
+        readMobilityScans(in, (SimpleFrame) scan, numMobilityScans[i], massListStorage);
+      }
+      file.addScan(scan);
+      scans.add(scan);
+    }
+
+    // ms/ms infos may point to other scans of the file
+    final List<RawDataFile> allProjectFiles = new ArrayList<>(List.of(project.getDataFiles()));
+    allProjectFiles.add(file);
+    for (int i = 0; i < numScans; i++) {
+      if (msMsInfos[i] != null) {
+        ((SimpleScan) scans.get(i)).setMsMsInfo(
+            parseMsMsInfo(msMsInfos[i], file, allProjectFiles));
+      }
+      if (ims) {
+        final Set<PasefMsMsInfo> infos = new HashSet<>(pasefMsMsInfos[i].length);
+        for (String info : pasefMsMsInfos[i]) {
+          infos.add((PasefMsMsInfo) parseMsMsInfo(info, file, allProjectFiles));
+        }
+        ((SimpleFrame) scans.get(i)).setPrecursorInfos(infos);
+      }
+    }
+    if (ccsCalibration != null) {
+      ((IMSRawDataFileImpl) file).setCCSCalibration(parseCCSCalibration(ccsCalibration));
+    }
+
+    file.getAppliedMethods().addAll(parseAppliedMethods(appliedMethods));
+    project.addFile(file);
+    logger.finest(() -> "Loaded raw data snapshot of " + name + " with " + numScans + " scans.");
+    return file;
+  }
+
+  private static RawDataFileImpl createFile(boolean ims, String name,
+      @Nullable String absolutePath, @Nullable String color) {
+    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    if (ims) {
+      return color != null ? new IMSRawDataFileImpl(name, absolutePath, storage, Color.web(color))
+          : new IMSRawDataFileImpl(name, absolutePath, storage);
+    }
+    return color != null ? new RawDataFileImpl(name, absolutePath, storage, Color.web(color))
+        : new RawDataFileImpl(name, absolutePath, storage);
+  }
+
+  /**
+   * Sets the mobilities, mobility scans and mobility scan mass lists of a frame before it is added
+   * to the file.
+   */
+  private static void readMobilityScans(DataInputStream in, SimpleFrame frame,
+      int numMobilityScans, @Nullable MemoryMapStorage massListStorage) throws IOException {
+    final double[] mobilities = new double[numMobilityScans];
+    for (int i = 0; i < numMobilityScans; i++) {
+      mobilities[i] = in.readDouble();
+    }
+    frame.setMobilities(mobilities);
+
+    final List<double[][]> rawValues = readMobilityScanValues(in,
+        readInts(in, numMobilityScans));
+    final List<BuildingMobilityScan> mobilityScans = new ArrayList<>(numMobilityScans);
+    for (int i = 0; i < numMobilityScans; i++) {
+      mobilityScans.add(new BuildingMobilityScan(i, rawValues.get(i)));
+    }
+    frame.setMobilityScans(mobilityScans, false);
+
+    if (in.readInt() == RawDataSnapshotWriter.NO_MASS_LIST) {
+      return;
+    }
+    frame.getMobilityScanStorage().setMassLists(massListStorage,
+        readMobilityScanValues(in, readInts(in, numMobilityScans)));
+  }
+
+  /**
+   * Reads all m/z values followed by all intensities of a frame's mobility scans.
+   *
+   * @return [mzs, intensities] for each mobility scan
+   */
+  private static List<double[][]> readMobilityScanValues(DataInputStream in, int[] numDataPoints)
+      throws IOException {
+    final int total = Arrays.stream(numDataPoints).sum();
+    final byte[] buffer = new byte[total * Double.BYTES];
+    final double[] mzs = readDoubles(in, total, buffer);
+    final double[] intensities = readDoubles(in, total, buffer);
+
+    final List<double[][]> values = new ArrayList<>(numDataPoints.length);
+    int offset = 0;
+    for (int numDp : numDataPoints) {
+      values.add(new double[][]{Arrays.copyOfRange(mzs, offset, offset + numDp),
+          Arrays.copyOfRange(intensities, offset, offset + numDp)});
+      offset += numDp;
+    }
+    return values;
+  }
+
+  private static double[] readDoubles(DataInputStream in, int length, byte[] buffer)
+      throws IOException {
+    in.readFully(buffer, 0, length * Double.BYTES);
+    final double[] values = new double[length];
+    ByteBuffer.wrap(buffer, 0, length * Double.BYTES).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  private static int[] readInts(DataInputStream in, int length) throws IOException {
+    final int[] values = new int[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  private static <T extends Enum<T>> T[] readEnumNames(DataInputStream in, Class<T> type)
+      throws IOException {
+    final int length = in.readInt();
+    @SuppressWarnings("unchecked") final T[] values = (T[]) Array.newInstance(type, length);
+    for (int i = 0; i < length; i++) {
+      values[i] = Enum.valueOf(type, readString(in));
+    }
+    return values;
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static MsMsInfo parseMsMsInfo(String xml, RawDataFile file,
+      List<RawDataFile> allProjectFiles) throws IOException {
+    try {
+      final XMLStreamReader reader = XMLInputFactory.newInstance()
+          .createXMLStreamReader(new StringReader(xml));
+      reader.nextTag();
+      return MsMsInfo.loadFromXML(reader, file, allProjectFiles);
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot read ms/ms info of raw data snapshot", e);
+    }
+  }
+
+  private static CCSCalibration parseCCSCalibration(String xml) throws IOException {
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .parse(new InputSource(new StringReader(xml)));
+      return CCSCalibration.loadFromXML(document.getDocumentElement());
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IOException("Cannot read ccs calibration of raw data snapshot", e);
+    }
+  }
+
+  private static List<FeatureListAppliedMethod> parseAppliedMethods(@Nullable String xml)
+      throws IOException {
+    final List<FeatureListAppliedMethod> methods = new ArrayList<>();
+    if (xml == null) {
+      return methods;
+    }
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .parse(new InputSource(new StringReader(xml)));
+      final NodeList methodElements = document.getElementsByTagName(
+          CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+      for (int i = 0; i < methodElements.getLength(); i++) {
+        final FeatureListAppliedMethod method = SimpleFeatureListAppliedMethod.loadValueFromXML(
+            (Element) methodElements.item(i));
+        if (method != null) {
+          methods.add(method);
+        }
+      }
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IOException("Cannot read applied methods of raw data snapshot", e);
+    }
+    return methods;
+  }
+}
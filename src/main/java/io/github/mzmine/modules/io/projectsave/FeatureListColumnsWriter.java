@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonSpectrumSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
+import io.github.mzmine.datamodel.features.types.FeaturesType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.IntegerType;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes the numeric values and chromatograms of a feature list as binary columns. Numeric
+ * {@link DataType}s are stored as one primitive column per type and {@link SimpleIonTimeSeries} as
+ * raw scan index, m/z and intensity buffers. All other types are saved to the xml file by
+ * {@link FeatureListSaveTask}, which skips the values in {@link #isRowColumn(DataType)},
+ * {@link #isFeatureColumn(DataType)} and {@link #isSeriesColumn(ModularFeature)}. Read by
+ * {@link io.github.mzmine.modules.io.projectload.version_3_0.FeatureListColumnsReader} after the
+ * xml file, which is marked with
+ * {@link io.github.mzmine.modules.io.projectload.version_3_0.CONST#XML_BINARY_COLUMNS_ATTR} so that
+ * loading fails if the columns are missing.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * header:   magic, version
+ * rows:     number of rows, row ids
+ * files:    number of files, file names
+ * features: number of features, row index and file index of each feature
+ * series:   number of series, for each feature index, number of values, scan indices, m/z and
+ *           intensity values
+ * columns:  feature columns and row columns. number of columns, for each type id, column kind,
+ *           presence flags and one value (or two range endpoints) per feature or row
+ * </pre>
+ */
+public class FeatureListColumnsWriter {
+
+  public static final String COLUMNS_FILE_SUFFIX = "_columns.bin";
+  public static final int MAGIC = 0x4D5A464C;
+  public static final int VERSION = 1;
+
+  public static final byte NO_COLUMN = -1;
+  public static final byte DOUBLE_COLUMN = 0;
+  public static final byte FLOAT_COLUMN = 1;
+  public static final byte INTEGER_COLUMN = 2;
+  public static final byte DOUBLE_RANGE_COLUMN = 3;
+  public static final byte FLOAT_RANGE_COLUMN = 4;
+
+  private final List<ModularFeatureListRow> rows;
+  // features in the order of the xml file
+  private final List<ModularFeature> features = new ArrayList<>();
+  private final List<Integer> featureRowIndices = new ArrayList<>();
+  private final List<Integer> featureFileIndices = new ArrayList<>();
+  private final Map<RawDataFile, Integer> fileIndices = new LinkedHashMap<>();
+  private final Map<DataType<?>, Byte> rowColumns;
+  private final Map<DataType<?>, Byte> featureColumns;
+  private final Set<ModularFeature> seriesFeatures = Collections.newSetFromMap(
+      new IdentityHashMap<>());
+
+  /**
+   * Selects the types that are stored as columns. A type is only stored as column if all its
+   * values can be represented by the column kind, otherwise it stays in the xml file.
+   */
+  public FeatureListColumnsWriter(@NotNull ModularFeatureList flist) {
+    rows = new ArrayList<>(flist.getNumberOfRows());
+    final Map<DataType<?>, Byte> rowKinds = new HashMap<>();
+    final Map<DataType<?>, Byte> featureKinds = new HashMap<>();
+
+    for (FeatureListRow r : flist.getRows()) {
+      final ModularFeatureListRow row = (ModularFeatureListRow) r;
+      final int rowIndex = rows.size();
+      rows.add(row);
+
+      for (Entry<DataType, Object> entry : row.getMap().entrySet()) {
+        if (!(entry.getKey() instanceof FeaturesType)) {
+          collectColumn(entry.getKey(), entry.getValue(), rowKinds);
+        }
+      }
+
+      for (ModularFeature feature : row.getFeatures()) {
+        if (!isSaved(feature)) {
+          continue;
+        }
+        final RawDataFile file = feature.getRawDataFile();
+        features.add(feature);
+        featureRowIndices.add(rowIndex);
+        featureFileIndices.add(fileIndices.computeIfAbsent(file, f -> fileIndices.size()));
+
+        for (Entry<DataType, Object> entry : feature.getMap().entrySet()) {
+          if (entry.getKey() instanceof FeatureDataType) {
+            if (isSeriesValue(file, entry.getValue())) {
+              seriesFeatures.add(feature);
+            }
+          } else {
+            collectColumn(entry.getKey(), entry.getValue(), featureKinds);
+          }
+        }
+      }
+    }
+
+    rowColumns = withoutExcluded(rowKinds);
+    featureColumns = withoutExcluded(featureKinds);
+  }
+
+  /**
+   * Same condition as the xml file, features of unknown status or without file are not saved.
+   */
+  public static boolean isSaved(@NotNull ModularFeature feature) {
+    return feature.getRawDataFile() != null
+        && feature.getFeatureStatus() != FeatureStatus.UNKNOWN;
+  }
+
+  /**
+   * Only the number types that keep the default xml format of their abstract type are stored as
+   * columns, so the binary value is equal to the value loaded from xml.
+   *
+   * @return the column kind or {@link #NO_COLUMN}
+   */
+  public static byte getColumnKind(@NotNull DataType<?> type) {
+    if (type instanceof DoubleType) {
+      return usesXmlFormatOf(type, DoubleType.class) ? DOUBLE_COLUMN : NO_COLUMN;
+    }
+    if (type instanceof FloatType) {
+      return usesXmlFormatOf(type, FloatType.class) ? FLOAT_COLUMN : NO_COLUMN;
+    }
+    if (type instanceof IntegerType) {
+      return usesXmlFormatOf(type, IntegerType.class) ? INTEGER_COLUMN : NO_COLUMN;
+    }
+    if (type instanceof DoubleRangeType) {
+      return usesXmlFormatOf(type, DoubleRangeType.class) ? DOUBLE_RANGE_COLUMN : NO_COLUMN;
+    }
+    if (type instanceof FloatRangeType) {
+      return usesXmlFormatOf(type, FloatRangeType.class) ? FLOAT_RANGE_COLUMN : NO_COLUMN;
+    }
+    return NO_COLUMN;
+  }
+
+  private static boolean usesXmlFormatOf(DataType<?> type, Class<?> abstractType) {
+    try {
+      final Class<?> save = type.getClass()
+          .getMethod("saveToXML", XMLStreamWriter.class, Object.class, ModularFeatureList.class,
+              ModularFeatureListRow.class, ModularFeature.class, RawDataFile.class)
+          .getDeclaringClass();
+      final Class<?> load = type.getClass()
+          .getMethod("loadFromXML", XMLStreamReader.class, MZmineProject.class,
+              ModularFeatureList.class, ModularFeatureListRow.class, ModularFeature.class,
+              RawDataFile.class).getDeclaringClass();
+      return save == abstractType && load == abstractType;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static boolean isColumnValue(byte kind, @NotNull Object value) {
+    return switch (kind) {
+      case DOUBLE_COLUMN -> value instanceof Double;
+      case FLOAT_COLUMN -> value instanceof Float;
+      case INTEGER_COLUMN -> value instanceof Integer;
+      case DOUBLE_RANGE_COLUMN -> value instanceof Range<?> r && r.hasLowerBound()
+          && r.hasUpperBound() && r.lowerEndpoint() instanceof Double
+          && r.upperEndpoint() instanceof Double;
+      case FLOAT_RANGE_COLUMN -> value instanceof Range<?> r && r.hasLowerBound()
+          && r.hasUpperBound() && r.lowerEndpoint() instanceof Float
+          && r.upperEndpoint() instanceof Float;
+      default -> false;
+    };
+  }
+
+  /**
+   * Ion mobility series and other series implementations stay in the xml file.
+   */
+  private static boolean isSeriesValue(@NotNull RawDataFile file, @Nullable Object value) {
+    return value != null && value.getClass() == SimpleIonTimeSeries.class
+        && !(file instanceof IMSRawDataFile);
+  }
+
+  /**
+   * Types are excluded with {@link #NO_COLUMN} as soon as one value does not fit the column
+   */
+  private static void collectColumn(@NotNull DataType<?> type, @Nullable Object value,
+      @NotNull Map<DataType<?>, Byte> kinds) {
+    Byte kind = kinds.get(type);
+    if (kind == null) {
+      kind = getColumnKind(type);
+      kinds.put(type, kind);
+    }
+    if (kind != NO_COLUMN && value != null && !isColumnValue(kind, value)) {
+      kinds.put(type, NO_COLUMN);
+    }
+  }
+
+  private static Map<DataType<?>, Byte> withoutExcluded(Map<DataType<?>, Byte> kinds) {
+    final Map<DataType<?>, Byte> columns = new LinkedHashMap<>();
+    kinds.forEach((type, kind) -> {
+      if (kind != NO_COLUMN) {
+        columns.put(type, kind);
+      }
+    });
+    return columns;
+  }
+
+  /**
+   * @return true if the row values of this type are written as column
+   */
+  public boolean isRowColumn(@NotNull DataType<?> type) {
+    return rowColumns.containsKey(type);
+  }
+
+  /**
+   * @return true if the feature values of this type are written as column
+   */
+  public boolean isFeatureColumn(@NotNull DataType<?> type) {
+    return featureColumns.containsKey(type);
+  }
+
+  /**
+   * @return true if the {@link FeatureDataType} of this feature is written as binary series
+   */
+  public boolean isSeriesColumn(@NotNull ModularFeature feature) {
+    return seriesFeatures.contains(feature);
+  }
+
+  /**
+   * Writes the columns. The stream is flushed but not closed.
+   */
+  public void write(@NotNull OutputStream stream) throws IOException {
+    // only flushed to keep the underlying zip stream open
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    out.writeInt(rows.size());
+    for (ModularFeatureListRow row : rows) {
+      out.writeInt(row.getID());
+    }
+
+    out.writeInt(fileIndices.size());
+    for (RawDataFile file : fileIndices.keySet()) {
+      writeString(out, file.getName());
+    }
+
+    out.writeInt(features.size());
+    for (int rowIndex : featureRowIndices) {
+      out.writeInt(rowIndex);
+    }
+    for (int fileIndex : featureFileIndices) {
+      out.writeInt(fileIndex);
+    }
+
+    writeSeries(out);
+    writeColumns(out, featureColumns, features);
+    writeColumns(out, rowColumns, rows);
+    out.flush();
+  }
+
+  private void writeSeries(DataOutputStream out) throws IOException {
+    out.writeInt(seriesFeatures.size());
+    double[] values = new double[0];
+    ByteBuffer buffer = ByteBuffer.allocate(0);
+    for (int i = 0; i < features.size(); i++) {
+      final ModularFeature feature = features.get(i);
+      if (!seriesFeatures.contains(feature)) {
+        continue;
+      }
+      final SimpleIonTimeSeries series = (SimpleIonTimeSeries) feature.getFeatureData();
+      final int numValues = series.getNumberOfValues();
+      // use ALL scans of the raw data file, same as the xml format
+      final int[] indices = IonSpectrumSeries.getSpectraIndices(series,
+          (List<Scan>) feature.getRawDataFile().getScans());
+
+      out.writeInt(i);
+      out.writeInt(numValues);
+      for (int index : indices) {
+        out.writeInt(index);
+      }
+      if (values.length < numValues) {
+        values = new double[numValues];
+        buffer = ByteBuffer.allocate(numValues * Double.BYTES);
+      }
+      writeDoubles(out, series.getMzValues(values), numValues, buffer);
+      writeDoubles(out, series.getIntensityValues(values), numValues, buffer);
+    }
+  }
+
+  private static void writeColumns(DataOutputStream out, Map<DataType<?>, Byte> columns,
+      List<? extends ModularDataModel> models) throws IOException {
+    out.writeInt(columns.size());
+    final byte[] present = new byte[models.size()];
+    for (Entry<DataType<?>, Byte> column : columns.entrySet()) {
+      final DataType<?> type = column.getKey();
+      final byte kind = column.getValue();
+      writeString(out, type.getUniqueID());
+      out.writeByte(kind);
+
+      for (int i = 0; i < present.length; i++) {
+        present[i] = (byte) (models.get(i).get(type) != null ? 1 : 0);
+      }
+      out.write(present);
+
+      for (ModularDataModel model : models) {
+        final Object value = model.get(type);
+        switch (kind) {
+          case DOUBLE_COLUMN -> out.writeDouble(value != null ? (Double) value : Double.NaN);
+          case FLOAT_COLUMN -> out.writeFloat(value != null ? (Float) value : Float.NaN);
+          case INTEGER_COLUMN -> out.writeInt(value != null ? (Integer) value : 0);
+          case DOUBLE_RANGE_COLUMN -> {
+            final Range<Double> range = (Range<Double>) value;
+            out.writeDouble(range != null ? range.lowerEndpoint() : Double.NaN);
+            out.writeDouble(range != null ? range.upperEndpoint() : Double.NaN);
+          }
+          case FLOAT_RANGE_COLUMN -> {
+            final Range<Float> range = (Range<Float>) value;
+            out.writeFloat(range != null ? range.lowerEndpoint() : Float.NaN);
+            out.writeFloat(range != null ? range.upperEndpoint() : Float.NaN);
+          }
+          default -> throw new IllegalStateException("Unknown column kind " + kind);
+        }
+      }
+    }
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] values, int length,
+      ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    buffer.asDoubleBuffer().put(values, 0, length);
+    out.write(buffer.array(), 0, length * Double.BYTES);
+  }
+
+  /**
+   * Length prefixed UTF-8 string, length -1 for null
+   */
+  private static void writeString(DataOutputStream out, @Nullable String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
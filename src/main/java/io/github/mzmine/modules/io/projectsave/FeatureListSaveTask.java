@@ -35,6 +35,7 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
@@ -81,12 +82,25 @@ public class FeatureListSaveTask extends AbstractTask {
   private final ZipOutputStream zos;
   private final int rows;
   private final StreamCopy copy;
+  private final boolean binaryColumns;
+  // numeric values and chromatograms that are not written to the xml file
+  private FeatureListColumnsWriter columns;
   private int processedRows = 0;
 
   public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos) {
+    this(flist, zos, false);
+  }
+
+  /**
+   * @param binaryColumns save numeric values and chromatograms as binary columns, see
+   *                      {@link FeatureListColumnsWriter}
+   */
+  public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos,
+      boolean binaryColumns) {
     super(null, Instant.now());
     this.flist = flist;
     this.zos = zos;
+    this.binaryColumns = binaryColumns;
     rows = flist.getNumberOfRows();
     copy = new StreamCopy();
   }
@@ -99,6 +113,11 @@ public class FeatureListSaveTask extends AbstractTask {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + METADATA_FILE_SUFFIX;
   }
 
+  public static String getColumnsFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname
+        + FeatureListColumnsWriter.COLUMNS_FILE_SUFFIX;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Saving feature list " + flist.getName();
@@ -106,17 +125,26 @@ public class FeatureListSaveTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return (((double) processedRows / rows) + copy.getProgress()) / 2;
+    final double rowProgress = rows == 0 ? 1d : (double) processedRows / rows;
+    return (rowProgress + copy.getProgress()) / 2;
   }
 
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
 
+    if (binaryColumns) {
+      columns = new FeatureListColumnsWriter(flist);
+    }
+
     if (!saveFeatureData()) {
       return;
     }
 
+    if (columns != null && !saveColumns()) {
+      return;
+    }
+
     saveAppliedMethods();
 
     setStatus(TaskStatus.FINISHED);
@@ -143,10 +171,13 @@ public class FeatureListSaveTask extends AbstractTask {
       appendMetadata(document, root, flist);
 
       XMLUtils.saveToFile(tempFile, document);
-      zos.putNextEntry(new ZipEntry(getMetadataFileName(flist.getName())));
 
-      try (InputStream is = new FileInputStream(tempFile)) {
-        copy.copy(is, zos);
+      // feature lists are saved in parallel, only one entry can be written at a time
+      synchronized (zos) {
+        zos.putNextEntry(new ZipEntry(getMetadataFileName(flist.getName())));
+        try (InputStream is = new FileInputStream(tempFile)) {
+          copy.copy(is, zos);
+        }
       }
 
       tempFile.delete();
@@ -228,6 +259,10 @@ public class FeatureListSaveTask extends AbstractTask {
       writer.writeAttribute(CONST.XML_FLIST_NAME_ATTR, flist.getName());
       writer.writeAttribute(CONST.XML_NUM_ROWS_ATTR, String.valueOf(flist.getNumberOfRows()));
       writer.writeAttribute(CONST.XML_DATE_CREATED_ATTR, flist.getDateCreated());
+      if (columns != null) {
+        // the loader requires the columns file if the values are not in the xml
+        writer.writeAttribute(CONST.XML_BINARY_COLUMNS_ATTR, String.valueOf(true));
+      }
 
       for (FeatureListRow r : flist.getRows()) {
         if (isCanceled()) {
@@ -255,8 +290,11 @@ public class FeatureListSaveTask extends AbstractTask {
     }
 
     try (FileInputStream is = new FileInputStream(tempFile)) {
-      zos.putNextEntry(new ZipEntry(getDataFileName(flist.getName())));
-      copy.copy(is, zos);
+      // feature lists are saved in parallel, only one entry can be written at a time
+      synchronized (zos) {
+        zos.putNextEntry(new ZipEntry(getDataFileName(flist.getName())));
+        copy.copy(is, zos);
+      }
     } catch (IOException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
       setStatus(TaskStatus.ERROR);
@@ -267,6 +305,21 @@ public class FeatureListSaveTask extends AbstractTask {
     return true;
   }
 
+  private boolean saveColumns() {
+    try {
+      // feature lists are saved in parallel, only one entry can be written at a time
+      synchronized (zos) {
+        zos.putNextEntry(new ZipEntry(getColumnsFileName(flist.getName())));
+        columns.write(zos);
+      }
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, e.getMessage(), e);
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+    return true;
+  }
+
   private void writeRow(XMLStreamWriter writer, ModularFeatureListRow row)
       throws XMLStreamException {
 
@@ -276,7 +329,8 @@ public class FeatureListSaveTask extends AbstractTask {
     for (Entry<DataType, Object> entry : row.getMap().entrySet()) {
       DataType dataType = entry.getKey();
       Object value = entry.getValue();
-      if (dataType instanceof FeaturesType) {
+      if (dataType instanceof FeaturesType || (columns != null && columns.isRowColumn(
+          dataType))) {
         continue;
       }
       writeDataType(writer, dataType, value, flist, row, null, null);
@@ -318,9 +372,17 @@ public class FeatureListSaveTask extends AbstractTask {
     writer.writeAttribute(CONST.XML_RAW_FILE_ELEMENT, rawDataFile.getName());
 
     for (Entry<DataType, Object> entry : feature.getMap().entrySet()) {
+      if (columns != null && isColumn(feature, entry.getKey())) {
+        continue;
+      }
       writeDataType(writer, entry.getKey(), entry.getValue(), flist, row, feature, rawDataFile);
     }
 
     writer.writeEndElement();
   }
+
+  private boolean isColumn(ModularFeature feature, DataType<?> type) {
+    return type instanceof FeatureDataType ? columns.isSeriesColumn(feature)
+        : columns.isFeatureColumn(type);
+  }
 }
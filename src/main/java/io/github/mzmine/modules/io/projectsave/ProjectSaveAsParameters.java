@@ -56,7 +56,8 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
       "Project type",
       "Referencing projects point to the original directory of raw data files (with those projects "
       + "files should not be moved or renamed). Standalone copies the raw data files into the project, "
-      + "creating a large but flexible project that can be shared.", ProjectSaveOption.values(),
+      + "creating a large but flexible project that can be shared. Standalone binary stores "
+      + "the scans and mass lists directly and opens much faster.", ProjectSaveOption.values(),
       ProjectSaveOption.REFERENCING);
   public static final FileNameParameter projectFile = new FileNameParameter("Project file",
       "File name of project to be saved", extensions, FileSelectionType.SAVE);
@@ -71,10 +72,12 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
     assert Platform.isFxApplicationThread();
 
     final String message = """
-        There are currently two project formats supported:</br>
+        There are currently three project formats supported:</br>
         <b>Standalone</b>: Adds the raw data files into a project (large but flexible)</br>
         <b>Referencing</b>: The project will point to the current files used. Any rename, move, or 
         remove of a file from their current directory might lead to incompatibility of the project.</br>
+        <b>Standalone binary</b>: Adds the scans and mass lists in a binary format (large but fast 
+        to open, the raw data files are not imported and processed again)</br>
         <b>WARNING:</b> If this is an existing project, it is recommended to save it in the same way.""";
 
     // set parameters to current project if already saved to file
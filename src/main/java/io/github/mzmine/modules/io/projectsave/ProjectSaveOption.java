@@ -32,7 +32,11 @@ public enum ProjectSaveOption {
   STANDALONE("Standalone (large/flexible)", "Large flexible format that contains the raw data"), //
   REFERENCING("Referencing (small)",
       "Smaller format that points to the raw data files in their original path. "
-      + "Project might be corrupted by removing, renaming, or moving files.");
+      + "Project might be corrupted by removing, renaming, or moving files."), //
+  BINARY("Standalone binary (fast loading)",
+      "Large format that contains the scans, mobility scans and mass lists in a binary format. "
+      + "Loading does not require the original files and skips raw data import and processing. "
+      + "Imaging files are stored as in standalone projects.");
 
   public final String name;
   public final String description;
@@ -27,7 +27,6 @@ package io.github.mzmine.modules.io.projectsave;
 
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
@@ -35,6 +34,7 @@ import io.github.mzmine.project.impl.MZmineProjectImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
+import io.github.mzmine.util.PhaseTimer;
 import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
@@ -45,6 +45,7 @@ import java.time.Instant;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -73,6 +74,8 @@ public class ProjectSavingTask extends AbstractTask {
   private RawDataFileSaveHandler rawDataFileSaveHandler;
   private PeakListSaveHandler peakListSaveHandler;
   private UserParameterSaveHandler userParameterSaveHandler;
+  private final PhaseTimer phaseTimer = new PhaseTimer();
+  private volatile List<FeatureListSaveTask> featureListSaveTasks = List.of();
   private int currentStage;
   private String currentSavedObjectName;
 
@@ -88,10 +91,11 @@ public class ProjectSavingTask extends AbstractTask {
 
   @Override
   public String getTaskDescription() {
+    final String phase = phaseTimer.describeCurrentPhase();
     if (currentSavedObjectName == null) {
-      return "Saving project";
+      return phase.isEmpty() ? "Saving project" : "Saving project: " + phase;
     }
-    return "Saving project (" + currentSavedObjectName + ")";
+    return "Saving project (" + currentSavedObjectName + "): " + phase;
   }
 
   @Override
@@ -110,10 +114,10 @@ public class ProjectSavingTask extends AbstractTask {
         }
         break;
       case 3:
-        if (peakListSaveHandler != null) {
-          currentItemProgress = peakListSaveHandler.getProgress();
-        }
-        break;
+        // feature lists are saved in parallel
+        final double featureListProgress = featureListSaveTasks.stream()
+            .mapToDouble(FeatureListSaveTask::getFinishedPercentage).sum();
+        return (savedProject.getDataFiles().length + featureListProgress) / totalSaveItems;
       case 4:
       case 5:
         return 1.0;
@@ -139,6 +143,8 @@ public class ProjectSavingTask extends AbstractTask {
       peakListSaveHandler.cancel();
     }
 
+    featureListSaveTasks.forEach(FeatureListSaveTask::cancel);
+
     if (userParameterSaveHandler != null) {
       userParameterSaveHandler.cancel();
     }
@@ -152,7 +158,7 @@ public class ProjectSavingTask extends AbstractTask {
       setStatus(TaskStatus.PROCESSING);
 
       switch (projectType) {
-        case STANDALONE -> savedProject.setStandalone(true);
+        case STANDALONE, BINARY -> savedProject.setStandalone(true);
         case REFERENCING -> savedProject.setStandalone(false);
       }
 
@@ -176,6 +182,7 @@ public class ProjectSavingTask extends AbstractTask {
 
       // Stage 1 - save version and configuration
       currentStage++;
+      phaseTimer.start("configuration");
       saveVersion(zipStream);
       saveStandalone(zipStream);
       saveConfiguration(zipStream);
@@ -187,6 +194,7 @@ public class ProjectSavingTask extends AbstractTask {
 
       // Stage 2 - save RawDataFile objects
       currentStage++;
+      phaseTimer.start("MS data files");
       saveRawDataFiles(zipStream);
       if (isCanceled()) {
         zipStream.close();
@@ -196,6 +204,7 @@ public class ProjectSavingTask extends AbstractTask {
 
       // Stage 3 - save PeakList objects
       currentStage++;
+      phaseTimer.start("feature lists");
       savePeakLists(zipStream);
       if (isCanceled()) {
         zipStream.close();
@@ -205,6 +214,7 @@ public class ProjectSavingTask extends AbstractTask {
 
       // Stage 4 - save user parameters
       currentStage++;
+      phaseTimer.start("user parameters");
       saveUserParameters(zipStream);
       if (isCanceled()) {
         zipStream.close();
@@ -215,7 +225,9 @@ public class ProjectSavingTask extends AbstractTask {
       // Stage 5 - finish and close the temporary ZIP file
       currentStage++;
       currentSavedObjectName = null;
+      phaseTimer.start("writing project file");
       zipStream.close();
+      phaseTimer.finish();
 
       // Final check for cancel
       if (isCanceled()) {
@@ -243,7 +255,8 @@ public class ProjectSavingTask extends AbstractTask {
       // mainWindow.updateTitle();
       // }
 
-      logger.info("Finished saving the project to " + saveFile);
+      logger.info(
+          "Finished saving the project to " + saveFile + " (" + phaseTimer.summary() + ")");
       setStatus(TaskStatus.FINISHED);
 
       // add to last loaded projects
@@ -325,7 +338,8 @@ public class ProjectSavingTask extends AbstractTask {
 
     AtomicBoolean finished = new AtomicBoolean(false);
     rawDataFileSaveHandler = new RawDataFileSaveHandler(savedProject, zipStream,
-        Objects.requireNonNullElse(savedProject.isStandalone(), true), getModuleCallDate());
+        Objects.requireNonNullElse(savedProject.isStandalone(), true),
+        projectType == ProjectSaveOption.BINARY, getModuleCallDate());
     rawDataFileSaveHandler.addTaskStatusListener((task, newStatus, oldStatus) -> {
       switch (newStatus) {
         case WAITING, PROCESSING -> {
@@ -364,35 +378,33 @@ public class ProjectSavingTask extends AbstractTask {
   private void savePeakLists(ZipOutputStream zipStream)
       throws IOException, TransformerConfigurationException, SAXException {
 
-    final List<FeatureList> currentFeatureLists = savedProject.getCurrentFeatureLists();
-    for (FeatureList featureList : currentFeatureLists) {
-      FeatureListSaveTask saveTask = new FeatureListSaveTask((ModularFeatureList) featureList,
-          zipStream);
-
-      AtomicBoolean finished = new AtomicBoolean(false);
-      saveTask.addTaskStatusListener((task, newStatus, oldStatus) -> {
+    // feature lists are serialized in parallel, the tasks synchronize on the zip stream to write
+    // their entries
+    featureListSaveTasks = savedProject.getCurrentFeatureLists().stream()
+        .map(flist -> new FeatureListSaveTask((ModularFeatureList) flist, zipStream,
+            projectType == ProjectSaveOption.BINARY)).toList();
+
+    // completed by the status listeners of the tasks
+    final CompletableFuture<?>[] completed = new CompletableFuture[featureListSaveTasks.size()];
+    for (int i = 0; i < completed.length; i++) {
+      final CompletableFuture<Void> future = new CompletableFuture<>();
+      completed[i] = future;
+      featureListSaveTasks.get(i).addTaskStatusListener((task, newStatus, oldStatus) -> {
         switch (newStatus) {
           case WAITING, PROCESSING -> {
           }
-          case FINISHED, ERROR, CANCELED -> {
-            finished.set(true);
-          }
+          case FINISHED, ERROR, CANCELED -> future.complete(null);
         }
       });
-      MZmineCore.getTaskController().addTask(saveTask);
-
-      while (!finished.get()) {
-        try {
-          Thread.sleep(50);
-        } catch (InterruptedException e) {
-          logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-      }
-
-      if (isCanceled()) {
-        break;
-      }
     }
+    featureListSaveTasks.forEach(MZmineCore.getTaskController()::addTask);
+    // canceled before the tasks were created, later calls to cancel() cancel the tasks
+    if (isCanceled()) {
+      featureListSaveTasks.forEach(FeatureListSaveTask::cancel);
+    }
+
+    // wait for all tasks, even if canceled. They must not write to the closed zip stream
+    CompletableFuture.allOf(completed).join();
   }
 
   /**
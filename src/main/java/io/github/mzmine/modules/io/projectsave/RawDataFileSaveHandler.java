@@ -56,6 +56,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -83,7 +84,10 @@ public class RawDataFileSaveHandler extends AbstractTask {
   private final MZmineProject project;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final ZipOutputStream zipStream;
+  // files saved as import batch
   private final List<RawDataFile> files;
+  // files saved as binary snapshot
+  private final List<RawDataFile> snapshotFiles;
   private final boolean saveFilesInProject;
   private final String prefix = "Saving raw data files: ";
   private final int numSteps;
@@ -93,13 +97,39 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
   public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
       boolean saveFilesInProject, @NotNull Instant moduleCallDate) {
+    this(project, zipOutputStream, saveFilesInProject, false, moduleCallDate);
+  }
+
+  /**
+   * @param saveBinarySnapshots save all supported files as binary snapshots, see
+   *                            {@link RawDataSnapshotWriter#isSupported(RawDataFile)}. Standalone
+   *                            projects also use snapshots for supported files that do not exist
+   *                            at their original path anymore.
+   */
+  public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
+      boolean saveFilesInProject, boolean saveBinarySnapshots, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.project = project;
     this.zipStream = zipOutputStream;
     this.saveFilesInProject = saveFilesInProject;
-    files = List.of(project.getDataFiles());
-    numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
-        + 1 /*save batch file*/;
+
+    final List<RawDataFile> batchFiles = new ArrayList<>();
+    final List<RawDataFile> binaryFiles = new ArrayList<>();
+    for (RawDataFile file : project.getDataFiles()) {
+      final boolean missing = file.getAbsolutePath() == null || !Files.exists(
+          Paths.get(file.getAbsolutePath()));
+      if ((saveBinarySnapshots || (saveFilesInProject && missing))
+          && RawDataSnapshotWriter.isSupported(file)) {
+        binaryFiles.add(file);
+      } else {
+        batchFiles.add(file);
+      }
+    }
+    files = List.copyOf(batchFiles);
+    snapshotFiles = List.copyOf(binaryFiles);
+
+    numSteps = snapshotFiles.size() /*save snapshots*/ + 1 /*dissect + merge */ + (
+        saveFilesInProject ? files.size() : 0) /*save files*/ + 1 /*save batch file*/;
     stepProgress = 1 / (double) numSteps;
   }
 
@@ -129,6 +159,31 @@ public class RawDataFileSaveHandler extends AbstractTask {
     return TaskPriority.HIGH;
   }
 
+  /**
+   * Saves the binary snapshots of all files that are not saved as import batch.
+   */
+  public void saveRawDataSnapshots() throws IOException {
+    final List<RawDataFile> allFiles = List.of(project.getDataFiles());
+    // binary m/z and intensity values barely compress
+    zipStream.setLevel(Deflater.BEST_SPEED);
+    try {
+      for (RawDataFile file : snapshotFiles) {
+        if (isCanceled()) {
+          return;
+        }
+        description = prefix + "Writing binary snapshot of " + file.getName();
+        logger.finest(() -> "Writing binary snapshot of " + file.getName() + " to project file.");
+
+        zipStream.putNextEntry(
+            new ZipEntry(RawDataSnapshotWriter.getZipEntryName(allFiles.indexOf(file))));
+        RawDataSnapshotWriter.write(file, zipStream);
+        progress += stepProgress;
+      }
+    } finally {
+      zipStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+    }
+  }
+
   public boolean saveRawDataFilesAsBatch() throws IOException, ParserConfigurationException {
 
     List<BatchQueue> cleanedBatchQueues = List.of(RawDataSavingUtils.makeBatchQueue(files));
@@ -298,6 +353,10 @@ public class RawDataFileSaveHandler extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
 
     try {
+      saveRawDataSnapshots();
+      if (isCanceled()) {
+        return;
+      }
       if (!saveRawDataFilesAsBatch()) {
         setStatus(TaskStatus.ERROR);
         return;
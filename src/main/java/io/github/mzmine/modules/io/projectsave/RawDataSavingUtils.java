@@ -47,6 +47,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -92,16 +93,43 @@ public class RawDataSavingUtils {
       }
 
       // add a new queue step, replace raw file parameters to SPECIFIC
-      queue.add(new MZmineProcessingStepImpl<>(procModule,
-          RawDataSavingUtils.replaceAndMergeFileAndRawParameters(
-              methodList.stream().map(FeatureListAppliedMethod::getParameters).toList(),
-              procModule)));
+      final ParameterSet parameters = RawDataSavingUtils.replaceAndMergeFileAndRawParameters(
+          methodList.stream().map(FeatureListAppliedMethod::getParameters).toList(), procModule);
+      // other files of the same module call might be saved differently
+      retainFiles(parameters, files, procModule);
+      queue.add(new MZmineProcessingStepImpl<>(procModule, parameters));
       logger.finest(() -> "Added module " + module.getName() + " to raw file batch queue.");
     }
 
     return queue;
   }
 
+  /**
+   * Restricts the {@link RawDataFilesParameter} and the {@link FileNamesParameter} of raw data
+   * import modules to the given files.
+   *
+   * @param parameterSet merged parameters with {@link RawDataFilesSelectionType#SPECIFIC_FILES}
+   * @param files        the files to retain
+   */
+  private static void retainFiles(@NotNull ParameterSet parameterSet,
+      @NotNull List<RawDataFile> files, MZmineProcessingModule module) {
+    final Set<RawDataFile> retained = new HashSet<>(files);
+    for (Parameter<?> parameter : parameterSet.getParameters()) {
+      if (parameter instanceof FileNamesParameter fnp
+          && module.getModuleCategory() == MZmineModuleCategory.RAWDATAIMPORT) {
+        // same matching as for merging
+        fnp.setValue(Arrays.stream(fnp.getValue()).filter(f -> retained.contains(
+                new RawDataFilePlaceholder(f.getName(), f.getAbsolutePath()).getMatchingFile()))
+            .toArray(File[]::new));
+      } else if (parameter instanceof RawDataFilesParameter rfp
+          && rfp.getValue().getSelectionType() == RawDataFilesSelectionType.SPECIFIC_FILES) {
+        rfp.setValue(RawDataFilesSelectionType.SPECIFIC_FILES,
+            getRemainingProjectFiles(rfp.getValue().getSpecificFilesPlaceholders()).stream()
+                .filter(retained::contains).toArray(RawDataFile[]::new));
+      }
+    }
+  }
+
   /**
    * Groups all queues by their mergability. Note that this list might still contain queues with
    * equal steps.
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.modules.dataprocessing.id_ccscalibration.CCSCalibration;
+import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Writes a binary snapshot of a raw data file to a project. The snapshot contains the scan
+ * metadata as columns followed by the m/z and intensity values of all scans and mass lists, so
+ * that the file is loaded into the {@link io.github.mzmine.util.MemoryMapStorage} without parsing
+ * the original file or repeating the raw data processing. Read by
+ * {@link io.github.mzmine.modules.io.projectload.version_3_0.RawDataSnapshotReader}.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * header:   magic, version, name, absolute path, color, start time stamp, applied methods (xml)
+ * enums:    names of {@link PolarityType} and {@link MassSpectrumType} (columns use the index)
+ * kind:     {@link #FILE_KIND_MS} or {@link #FILE_KIND_IMS}, ion mobility files continue with the
+ *           mobility type and the ccs calibration (xml)
+ * columns:  number of scans, scan numbers, ms levels, retention times, polarities, spectrum
+ *           types, injection times, scanning m/z ranges, number of data points, number of mass
+ *           list data points, scan definitions, ms/ms infos (xml)
+ * ims:      number of mobility scans and pasef ms/ms infos (count and xml) of each frame
+ * data:     for each scan m/z and intensity values followed by the mass list values. Frames
+ *           continue with the mobilities, the number of data points of each mobility scan, all
+ *           mobility scan m/z and intensity values and the same for the mobility scan mass lists
+ *           (total number of data points {@link #NO_MASS_LIST} if not present)
+ * </pre>
+ * Version 1 snapshots do not contain the file kind and ims sections.
+ */
+public class RawDataSnapshotWriter {
+
+  public static final String SNAPSHOT_FOLDER = "msdatasnapshots/";
+  public static final String SNAPSHOT_SUFFIX = ".mzsnapshot";
+  public static final int MAGIC = 0x4D5A5253;
+  public static final int VERSION = 2;
+
+  public static final byte FILE_KIND_MS = 0;
+  public static final byte FILE_KIND_IMS = 1;
+
+  /**
+   * Mass list column values that do not have data points in the snapshot
+   */
+  public static final int NO_MASS_LIST = -1;
+  public static final int SCAN_POINTER_MASS_LIST = -2;
+
+  private RawDataSnapshotWriter() {
+  }
+
+  /**
+   * Imaging files have additional data structures and are saved as import batch. Ion mobility
+   * files are supported if all frames have mobility scans.
+   *
+   * @return true if the file can be saved as a binary snapshot
+   */
+  public static boolean isSupported(@NotNull RawDataFile file) {
+    final boolean ims = file.getClass() == IMSRawDataFileImpl.class;
+    if (!ims && file.getClass() != RawDataFileImpl.class) {
+      return false;
+    }
+    final Class<? extends Scan> scanClass = ims ? SimpleFrame.class : SimpleScan.class;
+    for (Scan scan : file.getScans()) {
+      if (scan.getClass() != scanClass || (ims && !hasMobilityScans((Frame) scan))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasMobilityScans(@NotNull Frame frame) {
+    try {
+      return frame.getMobilityScanStorage().getNumberOfMobilityScans() > 0;
+    } catch (IllegalStateException e) {
+      // mobility scans were not loaded
+      return false;
+    }
+  }
+
+  /**
+   * @param index index of the file in the project, to create unique entries for files with the
+   *              same name
+   * @return the name of the zip entry
+   */
+  public static String getZipEntryName(int index) {
+    return SNAPSHOT_FOLDER + index + SNAPSHOT_SUFFIX;
+  }
+
+  /**
+   * Writes the snapshot. The stream is flushed but not closed.
+   *
+   * @param file a file that {@link #isSupported(RawDataFile)}
+   */
+  public static void write(@NotNull RawDataFile file, @NotNull OutputStream stream)
+      throws IOException {
+    // only flushed to keep the underlying zip stream open
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    writeString(out, file.getName());
+    writeString(out, file.getAbsolutePath());
+    writeString(out, file.getColor() != null ? file.getColor().toString() : null);
+    writeString(out, file.getStartTimeStamp() != null ? file.getStartTimeStamp().toString() : null);
+    writeString(out, appliedMethodsToXml(file.getAppliedMethods()));
+
+    writeEnumNames(out, PolarityType.values());
+    writeEnumNames(out, MassSpectrumType.values());
+
+    final boolean ims = file instanceof IMSRawDataFileImpl;
+    out.writeByte(ims ? FILE_KIND_IMS : FILE_KIND_MS);
+    if (ims) {
+      final IMSRawDataFileImpl imsFile = (IMSRawDataFileImpl) file;
+      writeString(out, imsFile.getMobilityType().name());
+      writeString(out, ccsCalibrationToXml(imsFile.getCCSCalibration()));
+    }
+
+    final List<Scan> scans = List.copyOf(file.getScans());
+    final int numScans = scans.size();
+    out.writeInt(numScans);
+    for (Scan scan : scans) {
+      out.writeInt(scan.getScanNumber());
+    }
+    for (Scan scan : scans) {
+      out.writeInt(scan.getMSLevel());
+    }
+    for (Scan scan : scans) {
+      out.writeFloat(scan.getRetentionTime());
+    }
+    for (Scan scan : scans) {
+      out.writeByte(scan.getPolarity().ordinal());
+    }
+    for (Scan scan : scans) {
+      out.writeByte(scan.getSpectrumType().ordinal());
+    }
+    for (Scan scan : scans) {
+      final Float injectionTime = scan.getInjectionTime();
+      out.writeFloat(injectionTime != null ? injectionTime : Float.NaN);
+    }
+    for (Scan scan : scans) {
+      final Range<Double> mzRange = scan.getScanningMZRange();
+      out.writeDouble(mzRange != null ? mzRange.lowerEndpoint() : Double.NaN);
+      out.writeDouble(mzRange != null ? mzRange.upperEndpoint() : Double.NaN);
+    }
+    for (Scan scan : scans) {
+      out.writeInt(scan.getNumberOfDataPoints());
+    }
+    for (Scan scan : scans) {
+      final MassList massList = scan.getMassList();
+      if (massList == null) {
+        out.writeInt(NO_MASS_LIST);
+      } else if (massList instanceof ScanPointerMassList) {
+        out.writeInt(SCAN_POINTER_MASS_LIST);
+      } else {
+        out.writeInt(massList.getNumberOfDataPoints());
+      }
+    }
+    for (Scan scan : scans) {
+      writeString(out, scan.getScanDefinition());
+    }
+    for (Scan scan : scans) {
+      writeString(out, msMsInfoToXml(scan.getMsMsInfo()));
+    }
+    if (ims) {
+      for (Scan scan : scans) {
+        out.writeInt(((Frame) scan).getNumberOfMobilityScans());
+      }
+      for (Scan scan : scans) {
+        final Set<PasefMsMsInfo> infos = ((Frame) scan).getImsMsMsInfos();
+        out.writeInt(infos.size());
+        for (PasefMsMsInfo info : infos) {
+          writeString(out, msMsInfoToXml(info));
+        }
+      }
+    }
+
+    // data
+    double[] values = new double[0];
+    ByteBuffer buffer = ByteBuffer.allocate(0);
+    for (Scan scan : scans) {
+      final int numDp = scan.getNumberOfDataPoints();
+      if (values.length < numDp) {
+        values = new double[numDp];
+        buffer = ByteBuffer.allocate(numDp * Double.BYTES);
+      }
+      writeDoubles(out, scan.getMzValues(values), numDp, buffer);
+      writeDoubles(out, scan.getIntensityValues(values), numDp, buffer);
+
+      final MassList massList = scan.getMassList();
+      if (massList != null && !(massList instanceof ScanPointerMassList)) {
+        final int numMasses = massList.getNumberOfDataPoints();
+        if (values.length < numMasses) {
+          values = new double[numMasses];
+          buffer = ByteBuffer.allocate(numMasses * Double.BYTES);
+        }
+        writeDoubles(out, massList.getMzValues(values), numMasses, buffer);
+        writeDoubles(out, massList.getIntensityValues(values), numMasses, buffer);
+      }
+
+      if (ims) {
+        writeMobilityScans(out, (Frame) scan);
+      }
+    }
+    out.flush();
+  }
+
+  private static void writeMobilityScans(DataOutputStream out, Frame frame) throws IOException {
+    final MobilityScanStorage storage = frame.getMobilityScanStorage();
+    final int numMobilityScans = storage.getNumberOfMobilityScans();
+    for (int i = 0; i < numMobilityScans; i++) {
+      out.writeDouble(frame.getMobilityForMobilityScanNumber(i));
+    }
+
+    final int numRawDp = storage.getRawTotalNumPoints();
+    for (int i = 0; i < numMobilityScans; i++) {
+      out.writeInt(storage.getNumberOfRawDatapoints(i));
+    }
+    final double[] values = new double[numRawDp];
+    final ByteBuffer buffer = ByteBuffer.allocate(numRawDp * Double.BYTES);
+    storage.getAllRawMobilityScanMzValues(values);
+    writeDoubles(out, values, numRawDp, buffer);
+    storage.getAllRawMobilityScanIntensityValues(values);
+    writeDoubles(out, values, numRawDp, buffer);
+
+    if (storage.getMassList(0) == null) {
+      out.writeInt(NO_MASS_LIST);
+      return;
+    }
+    final int numMasses = storage.getMassListTotalNumPoints();
+    out.writeInt(numMasses);
+    for (int i = 0; i < numMobilityScans; i++) {
+      out.writeInt(storage.getNumberOfMassListDatapoints(i));
+    }
+    final double[] masses = new double[numMasses];
+    final ByteBuffer massBuffer = ByteBuffer.allocate(numMasses * Double.BYTES);
+    storage.getAllMassListMzValues(masses);
+    writeDoubles(out, masses, numMasses, massBuffer);
+    storage.getAllMassListIntensityValues(masses);
+    writeDoubles(out, masses, numMasses, massBuffer);
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] values, int length,
+      ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    buffer.asDoubleBuffer().put(values, 0, length);
+    out.write(buffer.array(), 0, length * Double.BYTES);
+  }
+
+  private static void writeEnumNames(DataOutputStream out, Enum<?>[] values) throws IOException {
+    out.writeInt(values.length);
+    for (Enum<?> value : values) {
+      writeString(out, value.name());
+    }
+  }
+
+  /**
+   * Length prefixed UTF-8 string, length -1 for null
+   */
+  private static void writeString(DataOutputStream out, @Nullable String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String msMsInfoToXml(@Nullable MsMsInfo info) throws IOException {
+    if (info == null) {
+      return null;
+    }
+    try {
+      final StringWriter string = new StringWriter();
+      final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(string);
+      info.writeToXML(writer);
+      writer.flush();
+      writer.close();
+      return string.toString();
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot write ms/ms info of raw data snapshot", e);
+    }
+  }
+
+  @NotNull
+  private static String appliedMethodsToXml(List<FeatureListAppliedMethod> methods)
+      throws IOException {
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .newDocument();
+      final Element root = document.createElement(CONST.XML_FLIST_APPLIED_METHODS_LIST_ELEMENT);
+      document.appendChild(root);
+      for (FeatureListAppliedMethod method : methods) {
+        final Element methodElement = document.createElement(
+            CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+        method.saveValueToXML(methodElement);
+        root.appendChild(methodElement);
+      }
+
+      return toXmlString(document);
+    } catch (ParserConfigurationException | TransformerException e) {
+      throw new IOException("Cannot write applied methods of raw data snapshot", e);
+    }
+  }
+
+  @Nullable
+  private static String ccsCalibrationToXml(@Nullable CCSCalibration calibration)
+      throws IOException {
+    if (calibration == null) {
+      return null;
+    }
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .newDocument();
+      final Element root = document.createElement(CCSCalibration.XML_ELEMENT);
+      document.appendChild(root);
+      calibration.saveToXML(root);
+      return toXmlString(document);
+    } catch (ParserConfigurationException | TransformerException e) {
+      throw new IOException("Cannot write ccs calibration of raw data snapshot", e);
+    }
+  }
+
+  private static String toXmlString(Document document) throws TransformerException {
+    final StringWriter string = new StringWriter();
+    TransformerFactory.newInstance().newTransformer()
+        .transform(new DOMSource(document), new StreamResult(string));
+    return string.toString();
+  }
+}
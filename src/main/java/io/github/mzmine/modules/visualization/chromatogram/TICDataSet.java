@@ -33,6 +33,8 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYZDataset;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.LineDecimationIndex;
+import io.github.mzmine.gui.chartbasics.simplechart.providers.LineDecimationProvider;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
@@ -47,6 +49,7 @@ import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.jfree.chart.axis.NumberAxis;
+import org.jfree.data.DomainOrder;
 
 /**
  * TIC visualizer data set. One data set is created per file shown in this visualizer. We need to
@@ -54,7 +57,7 @@ import org.jfree.chart.axis.NumberAxis;
  * <p>
  * Added the possibility to switch to TIC plot type from a "non-TICVisualizerWindow" context.
  */
-public class TICDataSet extends AbstractTaskXYZDataset {
+public class TICDataSet extends AbstractTaskXYZDataset implements LineDecimationProvider {
 
   private static final long serialVersionUID = 1L;
   // For comparing small differences.
@@ -78,6 +81,10 @@ public class TICDataSet extends AbstractTaskXYZDataset {
   private int processedScans;
   private double intensityMin;
   private double intensityMax;
+  // false once a retention time is lower than its predecessor
+  private volatile boolean rtAscending = true;
+  // items visible at the plot resolution, created once all scans were processed
+  private volatile LineDecimationIndex lineDecimationIndex;
   private TICVisualizerTab window;
   private String customSeriesKey = null;
 
@@ -182,6 +189,10 @@ public class TICDataSet extends AbstractTaskXYZDataset {
       calculateValues();
 
       if (status != TaskStatus.CANCELED) {
+        if (rtAscending) {
+          lineDecimationIndex = LineDecimationIndex.create(processedScans,
+              i -> intensityValues[i]);
+        }
 
         // Always redraw when we add last value.
         refresh();
@@ -220,6 +231,16 @@ public class TICDataSet extends AbstractTaskXYZDataset {
     return processedScans;
   }
 
+  @Override
+  public DomainOrder getDomainOrder() {
+    return rtAscending ? DomainOrder.ASCENDING : DomainOrder.NONE;
+  }
+
+  @Override
+  public LineDecimationIndex getLineDecimationIndex() {
+    return lineDecimationIndex;
+  }
+
   @Override
   public Number getX(final int series, final int item) {
 
@@ -388,6 +409,9 @@ public class TICDataSet extends AbstractTaskXYZDataset {
 
       intensityValues[index] = intensity;
       rtValues[index] = useScanNumberAsRt ? scan.getScanNumber() : scan.getRetentionTime();
+      if (index > 0 && rtValues[index] < rtValues[index - 1]) {
+        rtAscending = false;
+      }
 
       // Update min and max.
       if (index == 0) {
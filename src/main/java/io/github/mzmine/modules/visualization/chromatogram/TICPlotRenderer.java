@@ -26,6 +26,8 @@
 package io.github.mzmine.modules.visualization.chromatogram;
 
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
+import io.github.mzmine.gui.chartbasics.simplechart.renderers.DecimatedItemFilter;
+import io.github.mzmine.gui.chartbasics.simplechart.renderers.PixelColumnLinePath;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Shape;
@@ -46,6 +48,11 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
    */
   private static final long serialVersionUID = 1L;
   private final double transparency = 1.0f;
+  // reduces the line to the visible resolution
+  private transient PixelColumnLinePath linePath;
+  // skips items that are not visible at the plot resolution
+  private transient DecimatedItemFilter itemFilter;
+  private transient AlphaComposite composite;
 
   public TICPlotRenderer() {
     super(true, false);
@@ -55,14 +62,20 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
   }
 
   private AlphaComposite makeComposite(double alpha) {
-    int type = AlphaComposite.SRC_OVER;
-    return (AlphaComposite.getInstance(type, (float) alpha));
+    if (composite == null) {
+      int type = AlphaComposite.SRC_OVER;
+      composite = AlphaComposite.getInstance(type, (float) alpha);
+    }
+    return composite;
   }
 
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
 
+    if (!getItemFilter().isDrawn(state, plot, dataset, series, item, pass, dataArea)) {
+      return;
+    }
     g2.setComposite(makeComposite(transparency));
 
     super.drawItem(g2, state, dataArea, info, plot, domainAxis, rangeAxis, dataset, series, item,
@@ -94,9 +107,38 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
 
     g2.setComposite(makeComposite(transparency));
 
-    super.drawPrimaryLineAsPath(state, g2, plot, dataset, pass, series, item, domainAxis, rangeAxis,
-        dataArea);
+    if (!(state instanceof State s)) {
+      super.drawPrimaryLineAsPath(state, g2, plot, dataset, pass, series, item, domainAxis,
+          rangeAxis, dataArea);
+      return;
+    }
+    // at most four points per pixel column are added to the path
+    if (getLinePath().addItem(s, plot, dataset, series, item, domainAxis, rangeAxis, dataArea)) {
+      drawFirstPassShape(g2, pass, series, item, s.seriesPath);
+    }
+  }
+
+  private PixelColumnLinePath getLinePath() {
+    if (linePath == null) {
+      linePath = new PixelColumnLinePath();
+    }
+    return linePath;
+  }
+
+  private DecimatedItemFilter getItemFilter() {
+    if (itemFilter == null) {
+      itemFilter = new DecimatedItemFilter();
+    }
+    return itemFilter;
+  }
 
+  @Override
+  public Object clone() throws CloneNotSupportedException {
+    final TICPlotRenderer clone = (TICPlotRenderer) super.clone();
+    // each renderer needs its own path and filter state
+    clone.linePath = null;
+    clone.itemFilter = null;
+    return clone;
   }
 
   protected void drawSecondaryPass(Graphics2D g2, XYPlot plot, XYDataset dataset, int pass,
@@ -81,6 +81,10 @@ public class RawDataFileImpl implements RawDataFile {
   private final ObjectProperty<Color> color = new SimpleObjectProperty<>();
   // maximum number of data points and centroid data points in all scans
   protected int maxRawDataPoints = -1;
+  private volatile int maxCentroidDataPoints = -1;
+  private final Object maxCentroidLock = new Object();
+  // lazily built index of scans by ms level and rt, reset when scans are added
+  private volatile RawDataFileScanIndex scanIndex;
   // Name of this raw data file - may be changed by the user
   private final String name;
   // track if file contains zero intensity as this might originate from wrong conversion
@@ -219,6 +223,69 @@ public class RawDataFileImpl implements RawDataFile {
     dataRTRange.clear();
     dataMaxBasePeakIntensity.clear();
     dataMaxTIC.clear();
+    scanIndex = null;
+    synchronized (maxCentroidLock) {
+      maxCentroidDataPoints = -1;
+    }
+  }
+
+  /**
+   * @return the index of all scans, built on first access after scans were added
+   */
+  @NotNull
+  protected RawDataFileScanIndex getScanIndex() {
+    RawDataFileScanIndex index = scanIndex;
+    if (index == null) {
+      // same lock as addScan so that the index matches the scans
+      synchronized (this) {
+        index = scanIndex;
+        if (index == null) {
+          index = new RawDataFileScanIndex(scans);
+          scanIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  @Override
+  public int getMaxCentroidDataPoints() {
+    final int max = maxCentroidDataPoints;
+    if (max != -1) {
+      return max;
+    }
+    // lock so that a concurrent mass list change cannot be overwritten by an outdated value
+    synchronized (maxCentroidLock) {
+      if (maxCentroidDataPoints == -1) {
+        maxCentroidDataPoints = RawDataFile.super.getMaxCentroidDataPoints();
+      }
+      return maxCentroidDataPoints;
+    }
+  }
+
+  @Override
+  public @NotNull int[] getMSLevels() {
+    return getScanIndex().getMSLevels();
+  }
+
+  @Override
+  public @NotNull List<Scan> getScanNumbers(int msLevel) {
+    return getScanIndex().getScans(msLevel);
+  }
+
+  @Override
+  public @NotNull Scan[] getScanNumbers(int msLevel, @NotNull Range<Float> rtRange) {
+    return getScanIndex().getScans(msLevel, rtRange);
+  }
+
+  @Override
+  public int binarySearchClosestScanIndex(float rt) {
+    return getScanIndex().binarySearchClosestScanIndex(rt);
+  }
+
+  @Override
+  public int binarySearchClosestScanIndex(float rt, int mslevel) {
+    return getScanIndex().binarySearchClosestScanIndex(rt, mslevel);
   }
 
   @Override
@@ -328,7 +395,7 @@ public class RawDataFileImpl implements RawDataFile {
 
   @Override
   public int getNumOfScans(int msLevel) {
-    return getScanNumbers(msLevel).size();
+    return getScanIndex().getNumberOfScans(msLevel);
   }
 
   @NotNull
@@ -404,6 +471,9 @@ public class RawDataFileImpl implements RawDataFile {
    */
   @Override
   public void applyMassListChanged(Scan scan, MassList old, MassList masses) {
+    synchronized (maxCentroidLock) {
+      maxCentroidDataPoints = -1;
+    }
   }
 
   @Nullable
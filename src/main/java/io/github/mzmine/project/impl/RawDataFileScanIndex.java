@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.project.impl;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable index over the scans of a raw data file. Holds the retention times of all scans and
+ * per MS level the positions and retention times of its scans in primitive arrays. RT range and
+ * closest scan queries are binary searches. The index is a snapshot and needs to be rebuilt when
+ * scans are added.
+ */
+public final class RawDataFileScanIndex {
+
+  private final Scan[] scans;
+  private final float[] rts;
+  // sorted ascending
+  private final int[] msLevels;
+  // positions and rts of scans for each ms level, aligned with msLevels
+  private final int[][] levelPositions;
+  private final float[][] levelRts;
+  // binary search requires ascending RTs
+  private final boolean sortedByRt;
+
+  public RawDataFileScanIndex(@NotNull List<Scan> scanList) {
+    scans = scanList.toArray(Scan[]::new);
+    final int numScans = scans.length;
+    rts = new float[numScans];
+    final int[] levels = new int[numScans];
+    boolean sorted = true;
+    for (int i = 0; i < numScans; i++) {
+      rts[i] = scans[i].getRetentionTime();
+      levels[i] = scans[i].getMSLevel();
+      if (i > 0 && rts[i] < rts[i - 1]) {
+        sorted = false;
+      }
+    }
+    sortedByRt = sorted;
+    msLevels = Arrays.stream(levels).distinct().sorted().toArray();
+
+    final int[] counts = new int[msLevels.length];
+    for (final int level : levels) {
+      counts[Arrays.binarySearch(msLevels, level)]++;
+    }
+    levelPositions = new int[msLevels.length][];
+    levelRts = new float[msLevels.length][];
+    for (int l = 0; l < msLevels.length; l++) {
+      levelPositions[l] = new int[counts[l]];
+      levelRts[l] = new float[counts[l]];
+    }
+    final int[] filled = new int[msLevels.length];
+    for (int i = 0; i < numScans; i++) {
+      final int l = Arrays.binarySearch(msLevels, levels[i]);
+      levelPositions[l][filled[l]] = i;
+      levelRts[l][filled[l]] = rts[i];
+      filled[l]++;
+    }
+  }
+
+  /**
+   * @return index of the MS level in {@link #msLevels} or -1
+   */
+  private int levelIndex(int msLevel) {
+    final int l = Arrays.binarySearch(msLevels, msLevel);
+    return l < 0 ? -1 : l;
+  }
+
+  public int getNumberOfScans() {
+    return scans.length;
+  }
+
+  public int getNumberOfScans(int msLevel) {
+    final int l = levelIndex(msLevel);
+    return l == -1 ? 0 : levelPositions[l].length;
+  }
+
+  /**
+   * @return sorted array of all MS levels, a copy
+   */
+  public int @NotNull [] getMSLevels() {
+    return msLevels.clone();
+  }
+
+  /**
+   * @return a new mutable list of all scans of this MS level
+   */
+  @NotNull
+  public List<Scan> getScans(int msLevel) {
+    final int l = levelIndex(msLevel);
+    if (l == -1) {
+      return new ArrayList<>();
+    }
+    final int[] positions = levelPositions[l];
+    final List<Scan> result = new ArrayList<>(positions.length);
+    for (final int position : positions) {
+      result.add(scans[position]);
+    }
+    return result;
+  }
+
+  /**
+   * @return all scans of this MS level within the RT range in scan order
+   */
+  public Scan @NotNull [] getScans(int msLevel, @NotNull Range<Float> rtRange) {
+    final int l = levelIndex(msLevel);
+    if (l == -1) {
+      return new Scan[0];
+    }
+    final int[] positions = levelPositions[l];
+    final float[] rts = levelRts[l];
+    if (!sortedByRt) {
+      return Arrays.stream(positions).filter(i -> rtRange.contains(this.rts[i]))
+          .mapToObj(i -> scans[i]).toArray(Scan[]::new);
+    }
+
+    final int from = rtRange.hasLowerBound() ? lowerBound(rts, rtRange.lowerEndpoint(),
+        rtRange.lowerBoundType() == BoundType.OPEN) : 0;
+    final int to = rtRange.hasUpperBound() ? lowerBound(rts, rtRange.upperEndpoint(),
+        rtRange.upperBoundType() == BoundType.CLOSED) : rts.length;
+    if (from >= to) {
+      return new Scan[0];
+    }
+    final Scan[] result = new Scan[to - from];
+    for (int i = from; i < to; i++) {
+      result[i - from] = scans[positions[i]];
+    }
+    return result;
+  }
+
+  /**
+   * @param exclusive true: first index with rts[index] > value, false: first index with rts[index]
+   *                  >= value
+   * @return the first index that matches or rts.length
+   */
+  private static int lowerBound(final float[] rts, final float value, final boolean exclusive) {
+    int low = 0;
+    int high = rts.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (rts[mid] < value || (exclusive && rts[mid] == value)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return index of the scan with the closest retention time or -1 if there are no scans
+   */
+  public int binarySearchClosestScanIndex(float rt) {
+    if (rts.length == 0) {
+      return -1;
+    }
+    return BinarySearch.binarySearch(rt, DefaultTo.CLOSEST_VALUE, rts.length, i -> rts[i]);
+  }
+
+  /**
+   * @return index of the scan of this MS level with the closest retention time or -1 if there is
+   * no such scan
+   */
+  public int binarySearchClosestScanIndex(float rt, int msLevel) {
+    final int l = levelIndex(msLevel);
+    if (l == -1) {
+      return -1;
+    }
+    final float[] rts = levelRts[l];
+    if (rts.length == 0) {
+      return -1;
+    }
+    final int closest = BinarySearch.binarySearch(rt, DefaultTo.CLOSEST_VALUE, rts.length,
+        i -> rts[i]);
+    return levelPositions[l][closest];
+  }
+}
@@ -37,47 +37,83 @@ import io.github.mzmine.taskcontrol.TaskControlListener;
 import io.github.mzmine.taskcontrol.TaskController;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Vector;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Task controller implementation
+ * Task controller implementation. Tasks are started and completed event driven: adding a task
+ * starts it right away if a thread slot is free and every finished task starts the next waiting
+ * one. Tasks run on a pool of reused worker threads. NORMAL priority tasks are limited to the
+ * number of threads specified in the preferences, HIGH priority tasks always start immediately.
  */
-public class TaskControllerImpl implements TaskController, Runnable {
+public class TaskControllerImpl implements TaskController {
 
   private static final Logger logger = Logger.getLogger(TaskControllerImpl.class.getName());
   /**
    * Update the task progress window every 300 ms
    */
-  private final int TASKCONTROLLER_THREAD_SLEEP = 300;
+  private static final int PROGRESS_UPDATE_INTERVAL = 300;
 
   private static final TaskControllerImpl INSTANCE = new TaskControllerImpl();
-  private final ArrayList<TaskControlListener> listeners = new ArrayList<>();
-  private final Thread taskControllerThread;
+  private final List<TaskControlListener> listeners = new CopyOnWriteArrayList<>();
 
   private final TaskQueue taskQueue;
 
   /**
-   * This vector contains references to all running threads of NORMAL priority. Maximum number of
-   * concurrent threads is specified in the preferences dialog.
+   * Worker threads are reused for consecutive tasks instead of starting one thread per task
    */
-  private final Vector<WorkerThread> runningThreads;
+  private final ExecutorService workers;
+  /**
+   * Only reports the progress of running tasks, scheduling does not depend on this thread
+   */
+  private final ScheduledExecutorService progressUpdater;
+  private final AtomicBoolean progressUpdateRequested = new AtomicBoolean(false);
 
+  /**
+   * NORMAL priority tasks waiting for a free thread in order of submission. Also the lock for
+   * {@link #runningNormalTasks}
+   */
+  private final Deque<WrappedTask> waitingTasks = new ArrayDeque<>();
+  /**
+   * Number of running tasks of NORMAL priority. Maximum number of concurrent tasks is specified in
+   * the preferences dialog.
+   */
+  private int runningNormalTasks;
+  private final Set<WrappedTask> runningTasks = ConcurrentHashMap.newKeySet();
+
+  private int previousQueueSize = -1;
+  private int previousPercentDone = -1;
 
   private TaskControllerImpl() {
-    logger.finest("Starting task controller thread");
+    logger.finest("Starting task controller");
     taskQueue = new TaskQueue();
 
-    runningThreads = new Vector<>();
-
-    // Create a low-priority thread that will manage the queue and start
-    // worker threads for tasks
-    taskControllerThread = new Thread(this, "Task controller thread");
-    taskControllerThread.setPriority(Thread.MIN_PRIORITY);
-    taskControllerThread.start();
+    final AtomicInteger workerCounter = new AtomicInteger(0);
+    workers = Executors.newCachedThreadPool(
+        r -> new Thread(r, "Task worker thread " + workerCounter.incrementAndGet()));
+
+    // Create a low-priority thread that updates the progress of running tasks
+    progressUpdater = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "Task controller thread");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.setDaemon(true);
+      return thread;
+    });
+    progressUpdater.scheduleWithFixedDelay(this::onProgressInterval, PROGRESS_UPDATE_INTERVAL,
+        PROGRESS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
   public static TaskControllerImpl getInstance() {
@@ -128,118 +164,131 @@ public class TaskControllerImpl implements TaskController, Runnable {
       WrappedTask newQueueEntry = new WrappedTask(task, priority);
       taskQueue.addWrappedTask(newQueueEntry);
       wrappedTasks[i] = newQueueEntry;
-      // logger.finest("Added wrapped task for " +
-      // task.getTaskDescription());
-    }
 
-    // Wake up the task controller thread
-    synchronized (this) {
-      this.notifyAll();
+      // high priority tasks do not wait for a free thread
+      if (priority == TaskPriority.HIGH) {
+        startTask(newQueueEntry, false);
+      } else {
+        synchronized (waitingTasks) {
+          waitingTasks.add(newQueueEntry);
+        }
+      }
     }
+
+    startWaitingTasks();
+    requestProgressUpdate();
     return wrappedTasks;
   }
 
   /**
-   * Task controller thread main method.
+   * Starts waiting NORMAL priority tasks until all thread slots are occupied
    */
-  @Override
-  public void run() {
-
-    int previousQueueSize = -1;
-    int previousPercentDone = -1;
-
-    while (true) {
-
-      final int waitingTasks = taskQueue.getNumOfWaitingTasks();
-      final int percentDone = taskQueue.getTotalPercentComplete();
-      if ((waitingTasks != previousQueueSize) || (percentDone != previousPercentDone)) {
-        previousQueueSize = waitingTasks;
-        previousPercentDone = percentDone;
-        for (TaskControlListener listener : listeners) {
-          listener.numberOfWaitingTasksChanged(waitingTasks, percentDone);
-        }
-      }
-
-      // If the queue is empty, we can sleep. When new task is added into
-      // the queue, we will be awaken by notify()
-      synchronized (this) {
-        while (taskQueue.isEmpty()) {
-          try {
-            this.wait(100);
-          } catch (InterruptedException e) {
-            // Ignore
-          }
+  private void startWaitingTasks() {
+    final int maxRunningThreads = getMaxRunningThreads();
+    synchronized (waitingTasks) {
+      while (runningNormalTasks < maxRunningThreads && !waitingTasks.isEmpty()) {
+        WrappedTask task = waitingTasks.poll();
+        // Skip canceled tasks
+        if (task.getActualTask().getStatus() == TaskStatus.CANCELED) {
+          continue;
         }
+        runningNormalTasks++;
+        startTask(task, true);
       }
+    }
+  }
 
-      // Check if all tasks in the queue are finished
-      if (taskQueue.allTasksFinished()) {
-        taskQueue.clear();
-        continue;
-      }
+  private void startTask(WrappedTask task, boolean countsToThreadLimit) {
+    TaskWorker worker = new TaskWorker(task, countsToThreadLimit, this::onTaskFinished);
+    runningTasks.add(task);
 
-      // Remove already finished threads from runningThreads
-      Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-      while (threadIterator.hasNext()) {
-        WorkerThread thread = threadIterator.next();
-        if (thread.isFinished()) {
-          threadIterator.remove();
-        }
-      }
+    // track task use
+    GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
 
-      // Get a snapshot of the queue
-      WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
+    workers.execute(worker);
+  }
 
-      // Obtain the settings of max concurrent threads
-      NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
-          .getParameter(MZminePreferences.numOfThreads);
-      int maxRunningThreads;
-      if (parameter.isAutomatic() || (parameter.getValue() == null)) {
-        maxRunningThreads = Runtime.getRuntime().availableProcessors();
-      } else {
-        maxRunningThreads = parameter.getValue();
+  /**
+   * Called by the worker thread once its task is done. Frees the thread slot for the next
+   * waiting task.
+   */
+  private void onTaskFinished(TaskWorker worker) {
+    runningTasks.remove(worker.getWrappedTask());
+    if (worker.countsToThreadLimit()) {
+      synchronized (waitingTasks) {
+        runningNormalTasks--;
       }
+    }
+    startWaitingTasks();
+    requestProgressUpdate();
+  }
 
-      // Check all tasks in the queue
-      for (WrappedTask task : queueSnapshot) {
-
-        // Skip assigned and canceled tasks
-        if (task.isAssigned() || (task.getActualTask().getStatus() == TaskStatus.CANCELED)) {
-          continue;
-        }
-
-        // Create a new thread if the task is high-priority or if we
-        // have less then maximum # of threads running
-        if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
-            < maxRunningThreads)) {
-          WorkerThread newThread = new WorkerThread(task);
+  private int getMaxRunningThreads() {
+    // Obtain the settings of max concurrent threads
+    NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    if (parameter.isAutomatic() || (parameter.getValue() == null)) {
+      return Runtime.getRuntime().availableProcessors();
+    } else {
+      return parameter.getValue();
+    }
+  }
 
-          // track task use
-          GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
+  /**
+   * Updates the listeners without waiting for the next interval. Multiple requests are merged
+   * while an update is pending.
+   */
+  private void requestProgressUpdate() {
+    if (progressUpdateRequested.compareAndSet(false, true)) {
+      progressUpdater.execute(() -> {
+        progressUpdateRequested.set(false);
+        updateProgress();
+      });
+    }
+  }
 
-          if (task.getPriority() == TaskPriority.NORMAL) {
-            runningThreads.add(newThread);
-          }
+  private void onProgressInterval() {
+    try {
+      // the number of threads may have changed in the preferences
+      startWaitingTasks();
+      updateProgress();
+    } catch (Throwable e) {
+      // an exception would stop the scheduled updates
+      logger.log(Level.WARNING, "Error while updating the task progress " + e.getMessage(), e);
+    }
+  }
 
-          newThread.start();
-        }
-      }
+  private boolean hasWaitingTasks() {
+    synchronized (waitingTasks) {
+      return !waitingTasks.isEmpty();
+    }
+  }
 
-      // Refresh the tasks window
-      Desktop desktop = MZmineCore.getDesktop();
-      if ((desktop != null) && (!(desktop instanceof HeadLessDesktop))) {
-        desktop.getTasksView().refresh();
-      }
+  private synchronized void updateProgress() {
+    if (taskQueue.isEmpty()) {
+      return;
+    }
 
-      // Sleep for a while until next update
-      try {
-        Thread.sleep(TASKCONTROLLER_THREAD_SLEEP);
-      } catch (InterruptedException e) {
-        // Ignore
+    final int numWaitingTasks = taskQueue.getNumOfWaitingTasks();
+    final int percentDone = taskQueue.getTotalPercentComplete();
+    if ((numWaitingTasks != previousQueueSize) || (percentDone != previousPercentDone)) {
+      previousQueueSize = numWaitingTasks;
+      previousPercentDone = percentDone;
+      for (TaskControlListener listener : listeners) {
+        listener.numberOfWaitingTasksChanged(numWaitingTasks, percentDone);
       }
+    }
 
+    // Check if all tasks in the queue are finished. New tasks may not be in the queue yet
+    if (numWaitingTasks == 0 && runningTasks.isEmpty() && !hasWaitingTasks()) {
+      taskQueue.clear();
     }
 
+    // Refresh the tasks window
+    Desktop desktop = MZmineCore.getDesktop();
+    if ((desktop != null) && (!(desktop instanceof HeadLessDesktop))) {
+      desktop.getTasksView().refresh();
+    }
   }
 
   @Override
@@ -255,6 +304,15 @@ public class TaskControllerImpl implements TaskController, Runnable {
         logger.finest(
             "Setting priority of task \"" + task.getTaskDescription() + "\" to " + priority);
         wrappedTask.setPriority(priority);
+
+        // a waiting task that became high priority starts right away
+        if (priority == TaskPriority.HIGH) {
+          synchronized (waitingTasks) {
+            if (waitingTasks.remove(wrappedTask)) {
+              startTask(wrappedTask, false);
+            }
+          }
+        }
       }
     }
 
@@ -278,9 +336,16 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
     }
 
-    var running = runningThreads.toArray(WorkerThread[]::new);
-    for (WorkerThread runningThread : running) {
-      if (clazz.isInstance(runningThread.getWrappedTask().getActualTask())) {
+    synchronized (waitingTasks) {
+      for (WrappedTask wrappedTask : waitingTasks) {
+        if (clazz.isInstance(wrappedTask.getActualTask())) {
+          return true;
+        }
+      }
+    }
+
+    for (WrappedTask runningTask : runningTasks.toArray(WrappedTask[]::new)) {
+      if (clazz.isInstance(runningTask.getActualTask())) {
         return true;
       }
     }
@@ -29,22 +29,34 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Task controller worker thread, this thread will process one task and then finish
+ * Task controller worker, processes one task on a pooled thread of the task controller and
+ * reports back once the task is done
  */
-class WorkerThread extends Thread {
+class TaskWorker implements Runnable {
 
-  private Logger logger = Logger.getLogger(this.getClass().getName());
+  private static final Logger logger = Logger.getLogger(TaskWorker.class.getName());
 
-  private WrappedTask wrappedTask;
-  private boolean finished = false;
+  private final WrappedTask wrappedTask;
+  private final boolean countsToThreadLimit;
+  private final Consumer<TaskWorker> onFinished;
+  // the thread that currently executes the task
+  private volatile Thread thread;
 
-  WorkerThread(WrappedTask wrappedTask) {
-    super("Thread executing task " + wrappedTask);
+  /**
+   * @param countsToThreadLimit true if this task occupies one of the limited NORMAL priority
+   *                            slots
+   * @param onFinished          called after the task is done, regardless of the task status
+   */
+  TaskWorker(WrappedTask wrappedTask, boolean countsToThreadLimit,
+      Consumer<TaskWorker> onFinished) {
     this.wrappedTask = wrappedTask;
+    this.countsToThreadLimit = countsToThreadLimit;
+    this.onFinished = onFinished;
     wrappedTask.assignTo(this);
   }
 
@@ -52,6 +64,12 @@ class WorkerThread extends Thread {
    * @see java.lang.Runnable#run()
    */
   public void run() {
+    final Thread current = Thread.currentThread();
+    final String poolThreadName = current.getName();
+    current.setName("Thread executing task " + wrappedTask);
+    // reset a priority that was changed for the previous task of this pooled thread
+    current.setPriority(Thread.NORM_PRIORITY);
+    thread = current;
 
     Task actualTask = wrappedTask.getActualTask();
 
@@ -102,17 +120,26 @@ class WorkerThread extends Thread {
       MZmineCore.getDesktop().displayErrorMessage("Unhandled exception in task "
           + actualTask.getTaskDescription() + ": " + ExceptionUtils.exceptionToString(e));
 
+    } finally {
+      thread = null;
+      current.setName(poolThreadName);
+      current.setPriority(Thread.NORM_PRIORITY);
+      onFinished.accept(this);
     }
+  }
 
-    /*
-     * Mark this thread as finished
-     */
-    finished = true;
-
+  /**
+   * Changes the priority of the executing thread, if the task is running
+   */
+  void setThreadPriority(int priority) {
+    final Thread t = thread;
+    if (t != null) {
+      t.setPriority(priority);
+    }
   }
 
-  boolean isFinished() {
-    return finished;
+  boolean countsToThreadLimit() {
+    return countsToThreadLimit;
   }
 
   public WrappedTask getWrappedTask() {
@@ -54,7 +54,7 @@ public class WrappedTask {
 
   private Task task;
   private Property<TaskPriority> priority;
-  private WorkerThread assignedTo;
+  private volatile TaskWorker assignedTo;
 
   public WrappedTask(Task task, TaskPriority priority) {
     this.task = task;
@@ -75,8 +75,8 @@ public class WrappedTask {
     MZmineCore.runLater(() -> this.priority.setValue(priority));
     if (assignedTo != null) {
       switch (priority) {
-        case HIGH -> assignedTo.setPriority(Thread.MAX_PRIORITY);
-        case NORMAL -> assignedTo.setPriority(Thread.NORM_PRIORITY);
+        case HIGH -> assignedTo.setThreadPriority(Thread.MAX_PRIORITY);
+        case NORMAL -> assignedTo.setThreadPriority(Thread.NORM_PRIORITY);
       }
     }
   }
@@ -92,8 +92,8 @@ public class WrappedTask {
     return assignedTo != null;
   }
 
-  void assignTo(WorkerThread thread) {
-    assignedTo = thread;
+  void assignTo(TaskWorker worker) {
+    assignedTo = worker;
   }
 
   /**
@@ -60,7 +60,6 @@ import io.github.mzmine.datamodel.features.types.numbers.MZType;
 import io.github.mzmine.datamodel.features.types.numbers.RTRangeType;
 import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.datamodel.features.types.numbers.TailingFactorType;
-import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogram;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogrambuilder.Chromatogram;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvedPeak;
 import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.IIonMobilityTrace;
@@ -71,7 +70,6 @@ import io.github.mzmine.modules.tools.qualityparameters.QualityParameters;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.List;
@@ -83,24 +81,14 @@ import org.jetbrains.annotations.NotNull;
 public class FeatureConvertors {
 
   /**
-   * Creates a ModularFeature on the basis of chromatogram results with the {@link
+   * Creates a ModularFeature on the basis of a chromatogram time series with the {@link
    * DataTypeUtils#addDefaultChromatographicTypeColumns(ModularFeatureList)} columns
    *
-   * @param chromatogram input ADAP chromatogram
+   * @param timeSeries data points of the chromatogram
    * @return output modular feature
    */
   static public ModularFeature ADAPChromatogramToModularFeature(ModularFeatureList featureList,
-      RawDataFile dataFile, @NotNull ADAPChromatogram chromatogram) {
-    // Data points of feature
-    final Collection<DataPoint> dataPoints = chromatogram.getDataPoints();
-    final Collection<Scan> scans = chromatogram.getScanNumbers();
-    if (dataPoints.size() != scans.size()) {
-      throw new IllegalArgumentException(
-          "Number of data points does not match number of scan numbers");
-    }
-
-    SimpleIonTimeSeries timeSeries = createSimpleTimeSeries(featureList.getMemoryMapStorage(),
-        new ArrayList<>(dataPoints), new ArrayList<>(scans));
+      RawDataFile dataFile, @NotNull SimpleIonTimeSeries timeSeries) {
     ModularFeature modularFeature = new ModularFeature(featureList, dataFile, timeSeries,
         FeatureStatus.DETECTED);
 
@@ -30,16 +30,21 @@ import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -51,19 +56,24 @@ import sun.misc.Unsafe;
  * buffer is directly bound to the memory-mapped portion of the file so the data can be directly
  * accessed without loading it into another intermediate primitive type array.
  * <p>
- * The size of each temporary file is STORAGE_FILE_CAPACITY bytes. When the file is full, a new file
- * is automatically created using the createNewMappedFile() function. The size of each temporary
- * file in the filesystem may show as 1GB, but actually only a portion of that space is occupied on
- * the disk, depending on the amount of stored data (this can be examined using the 'du -hs' Linux
- * command.
+ * The storage is split into segments of STORAGE_FILE_CAPACITY bytes, each backed by one temporary
+ * file. When the current segment is full, a new one is automatically created using the
+ * createNewSegment() function. The size of each temporary file in the filesystem may show as 1GB,
+ * but actually only a portion of that space is occupied on the disk, depending on the amount of
+ * stored data (this can be examined using the 'du -hs' Linux command.
  * <p>
- * There is no support for removing data from the file - we assume such operation is rare and
- * therefore the data can be left on the disk until the whole temporary file is discarded.
+ * Segments are mapped in chunks. Each thread maps an arena chunk of ARENA_CAPACITY bytes and
+ * allocates small arrays within its arena without any locks or shared atomics. Larger arrays are
+ * mapped as their own chunk. All buffers derived from a chunk reference its mapping, so each chunk
+ * is tracked once by a {@link Cleaner} instead of every buffer. Once all chunks of a segment were
+ * garbage collected (e.g., the feature list was removed from the project), the segment is dropped
+ * and its temporary file is deleted. The memory mapping itself is removed automatically when the
+ * chunk is garbage-collected. Segments are never reused, so remaining buffers cannot be
+ * overwritten.
  * <p>
- * There is a limit on the number of open file descriptors (e.g. 1024 by default on Linux). With 1
- * GB per temporary file, this would give us about 1 TB of storage space, so perhaps it is okay.
- * There is no way to remove the memory-mapped file, it is removed automatically when the
- * MappedByteBuffer is garbage-collected.
+ * There is a limit on the number of open file descriptors (e.g. 1024 by default on Linux). Each
+ * segment keeps its file channel open to map new chunks until it is reclaimed. With 1 GB per
+ * segment, this would give us about 1 TB of storage space.
  * <p>
  * The total amount of storage space is also limited by the amount of addressable virtual memory
  * (e.g., 128TB on Linux). For this reason, this approach requires a 64-bit system - the limit would
@@ -76,22 +86,44 @@ public class MemoryMapStorage {
    * single MappedByteBuffer. 1 GB per file seems like a good start.
    */
   private static final long STORAGE_FILE_CAPACITY = 1_000_000_000L;
+  /**
+   * Releases the space of mapped chunks after all of their buffers were garbage collected
+   */
+  private static final Cleaner chunkCleaner = Cleaner.create();
+  /**
+   * Each thread maps chunks of this many bytes as arena. Larger arrays are mapped as their own
+   * chunk.
+   */
+  private static final int ARENA_CAPACITY = 4 * 1024 * 1024;
+  private static final int MAX_ARENA_ALLOCATION = ARENA_CAPACITY / 4;
+  /**
+   * Chunks start at page boundaries
+   */
+  private static final long CHUNK_ALIGNMENT = 4096;
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
   private static boolean storeMassListsInRam = false;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
-  private final Set<File> temporaryFiles = new HashSet<>();
-  private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
   /**
-   * The file that we are currently writing into.
+   * Temporary files of reclaimed segments that could not be deleted (e.g., still mapped on
+   * Windows)
+   */
+  private final Set<File> temporaryFiles = ConcurrentHashMap.newKeySet();
+  private final Set<Segment> segments = ConcurrentHashMap.newKeySet();
+  /**
+   * The segment that we are currently writing into.
    */
-  private MappedByteBuffer currentMappedFile = null;
+  private volatile Segment currentSegment = null;
+  /**
+   * The arena of each thread. The arena only weakly references its chunk, so the segment is
+   * released once all buffers of the chunk were garbage collected.
+   */
+  private final ThreadLocal<Arena> threadArenas = new ThreadLocal<>();
 
   private MemoryMapStorage() {
     // register this storage to MZmineCore, so we can delete all temp files later.
     MZmineCore.registerStorage(this);
   }
-
   /**
    * @return The {@link MemoryMapStorage} or null, if the data shall be stored in ram.
    */
@@ -157,37 +189,106 @@ public class MemoryMapStorage {
   }
 
   /**
-   * Creates a new temporary file, maps it into memory, and returns the corresponding
-   * MappedByteBuffer. The capacity of the buffer is STORAGE_FILE_CAPACITY bytes.
+   * Creates a new temporary file and returns the corresponding segment. The capacity of the segment
+   * is STORAGE_FILE_CAPACITY bytes, which are mapped in chunks.
    *
-   * @return a MappedByteBuffer corresponding to the memory-mapped temporary file
+   * @return a segment corresponding to the temporary file
    * @throws IOException
    */
-  private MappedByteBuffer createNewMappedFile() throws IOException {
+  private Segment createNewSegment() throws IOException {
 
     // Create the temporary storage file
     File storageFileName = FileAndPathUtil.createTempFile("mzmine", ".tmp");
-    temporaryFiles.add(storageFileName);
     logger.finest("Created a temporary file " + storageFileName);
 
-    // Open the file for writing
+    // Open the file for writing, the file stays sparse on the disk
     RandomAccessFile storageFile = new RandomAccessFile(storageFileName, "rw");
-
-    // Map the file into memory
-    MappedByteBuffer mappedFileBuffer =
-        storageFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, STORAGE_FILE_CAPACITY);
-    mappedByteBufferList.add(mappedFileBuffer);
-
-    // Close the temporary file, the memory mapping will remain
-    storageFile.close();
+    storageFile.setLength(STORAGE_FILE_CAPACITY);
 
     // Unfortunately, deleteOnExit() doesn't work on Windows, see JDK
     // bug #4171239. We will try to remove the temporary files in a
     // shutdown hook registered in the main.ShutDownHook class.
     storageFileName.deleteOnExit();
 
-    return mappedFileBuffer;
+    final Segment segment = new Segment(storageFileName, storageFile.getChannel());
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * Allocates a slice and writes the data. The returned buffer keeps its chunk mapped.
+   *
+   * @param bytes  the number of bytes to allocate
+   * @param writer writes the data into the slice and returns the read-only buffer
+   * @return the buffer returned by the writer
+   * @throws IOException if a new segment or chunk cannot be created
+   */
+  @NotNull
+  private <T extends Buffer> T store(long bytes, Function<ByteBuffer, T> writer)
+      throws IOException {
+    if (bytes > STORAGE_FILE_CAPACITY) {
+      throw new IOException(
+          "Cannot store %d bytes, the maximum is %d bytes".formatted(bytes, STORAGE_FILE_CAPACITY));
+    }
+
+    if (bytes > MAX_ARENA_ALLOCATION) {
+      // large arrays are their own chunk
+      return writer.apply(mapChunk((int) bytes));
+    }
 
+    final Arena arena = threadArenas.get();
+    ByteBuffer slice = arena == null ? null : arena.allocate((int) bytes);
+    if (slice == null) {
+      // the arena is full or all of its buffers were collected
+      final MappedByteBuffer chunk = mapChunk(ARENA_CAPACITY);
+      final Arena newArena = new Arena(chunk);
+      threadArenas.set(newArena);
+      slice = newArena.allocate(chunk, (int) bytes);
+    }
+    return writer.apply(slice);
+  }
+
+  /**
+   * Maps a chunk of the current segment. Threads only synchronize when a new segment is created.
+   */
+  @NotNull
+  private MappedByteBuffer mapChunk(int bytes) throws IOException {
+    while (true) {
+      final Segment segment = currentSegment;
+      if (segment != null) {
+        final MappedByteBuffer chunk = segment.mapChunk(bytes);
+        if (chunk != null) {
+          return chunk;
+        }
+      }
+      // segment is full or was reclaimed
+      replaceCurrentSegment(segment);
+    }
+  }
+
+  private void replaceCurrentSegment(@Nullable Segment expected) throws IOException {
+    synchronized (segments) {
+      // another thread might have replaced it already
+      if (currentSegment == expected) {
+        currentSegment = createNewSegment();
+      }
+    }
+  }
+
+  /**
+   * Drops a segment without any mapped chunks and deletes its file.
+   */
+  private void reclaim(@NotNull Segment segment) {
+    if (!segments.remove(segment)) {
+      return;
+    }
+    segment.close();
+    if (segment.file.delete()) {
+      logger.finest("Reclaimed temporary file " + segment.file);
+    } else {
+      // try again on discard
+      temporaryFiles.add(segment.file);
+    }
   }
 
   /**
@@ -199,8 +300,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[])
-      throws IOException {
+  public DoubleBuffer storeData(@NotNull final double data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -215,36 +315,16 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Double.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Double.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
-
-    // Create a double view of the memory-mapped byte buffer
-    DoubleBuffer sliceDoubleView = slice.asDoubleBuffer();
-
-    // Copy the data to the memory mapped storage
-    sliceDoubleView.put(data, offset, length);
-
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Double.BYTES);
-
-    // Create a read-only version of the new buffer slice
-    final DoubleBuffer readOnlySlice = sliceDoubleView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+  public DoubleBuffer storeData(@NotNull final double data[], int offset, int length)
+      throws IOException {
+    return store((long) length * Double.BYTES, slice -> {
+      // Create a double view of the memory-mapped byte buffer
+      DoubleBuffer sliceDoubleView = slice.asDoubleBuffer();
+      // Copy the data to the memory mapped storage
+      sliceDoubleView.put(data, offset, length);
+      // Create a read-only version of the new buffer slice
+      return sliceDoubleView.asReadOnlyBuffer();
+    });
   }
 
   /**
@@ -256,8 +336,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[])
-      throws IOException {
+  public FloatBuffer storeData(@NotNull final float data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -272,36 +351,16 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Float.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Float.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
-
-    // Create a float view of the memory-mapped byte buffer
-    FloatBuffer sliceFloatView = slice.asFloatBuffer();
-
-    // Copy the data to the memory mapped storage
-    sliceFloatView.put(data, offset, length);
-
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Float.BYTES);
-
-    // Create a read-only version of the new buffer slice
-    final FloatBuffer readOnlySlice = sliceFloatView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+  public FloatBuffer storeData(@NotNull final float data[], int offset, int length)
+      throws IOException {
+    return store((long) length * Float.BYTES, slice -> {
+      // Create a float view of the memory-mapped byte buffer
+      FloatBuffer sliceFloatView = slice.asFloatBuffer();
+      // Copy the data to the memory mapped storage
+      sliceFloatView.put(data, offset, length);
+      // Create a read-only version of the new buffer slice
+      return sliceFloatView.asReadOnlyBuffer();
+    });
   }
 
   /**
@@ -313,7 +372,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[]) throws IOException {
+  public IntBuffer storeData(@NotNull final int data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -328,36 +387,31 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Integer.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Integer.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
-
-    // Create an int view of the memory-mapped byte buffer
-    IntBuffer sliceIntView = slice.asIntBuffer();
-
-    // Copy the data to the memory mapped storage
-    sliceIntView.put(data, offset, length);
-
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Integer.BYTES);
-
-    // Create a read-only version of the new buffer slice
-    final IntBuffer readOnlySlice = sliceIntView.asReadOnlyBuffer();
+  public IntBuffer storeData(@NotNull final int data[], int offset, int length)
+      throws IOException {
+    return store((long) length * Integer.BYTES, slice -> {
+      // Create an int view of the memory-mapped byte buffer
+      IntBuffer sliceIntView = slice.asIntBuffer();
+      // Copy the data to the memory mapped storage
+      sliceIntView.put(data, offset, length);
+      // Create a read-only version of the new buffer slice
+      return sliceIntView.asReadOnlyBuffer();
+    });
+  }
 
-    return readOnlySlice;
+  /**
+   * @return the number of segments (temporary files) that still contain stored buffers
+   */
+  public int getNumberOfSegments() {
+    return segments.size();
+  }
 
+  /**
+   * @return the temporary files of the segments that still contain stored buffers
+   */
+  @NotNull
+  List<File> getSegmentFiles() {
+    return segments.stream().map(segment -> segment.file).toList();
   }
 
   /**
@@ -365,10 +419,21 @@ public class MemoryMapStorage {
    */
   public synchronized void discard(Unsafe theUnsafe) throws IOException {
 
-    if (theUnsafe != null) {
-      for (MappedByteBuffer mappedByteBuffer : mappedByteBufferList) {
-        theUnsafe.invokeCleaner(mappedByteBuffer);
+    synchronized (segments) {
+      for (Segment segment : segments) {
+        if (theUnsafe != null) {
+          for (WeakReference<MappedByteBuffer> chunk : segment.chunks) {
+            final MappedByteBuffer buffer = chunk.get();
+            if (buffer != null) {
+              theUnsafe.invokeCleaner(buffer);
+            }
+          }
+        }
+        segment.close();
+        temporaryFiles.add(segment.file);
       }
+      segments.clear();
+      currentSegment = null;
     }
 
     for (File tmpFile : temporaryFiles) {
@@ -378,6 +443,133 @@ public class MemoryMapStorage {
     }
 
     temporaryFiles.clear();
-    currentMappedFile = null;
+  }
+
+  /**
+   * One temporary file. Chunks are reserved with an atomic bump pointer and mapped separately. The
+   * number of chunks that were not garbage collected is counted. A segment is reclaimed when the
+   * count drops to zero and never receives new data afterwards.
+   */
+  private final class Segment {
+
+    private final File file;
+    private final FileChannel channel;
+    private final AtomicLong position = new AtomicLong(0);
+    // -1 marks a reclaimed segment
+    private final AtomicInteger liveChunks = new AtomicInteger(0);
+    // to unmap the chunks on discard
+    private final Set<WeakReference<MappedByteBuffer>> chunks = ConcurrentHashMap.newKeySet();
+
+    private Segment(File file, FileChannel channel) {
+      this.file = file;
+      this.channel = channel;
+    }
+
+    /**
+     * @param bytes the number of bytes
+     * @return a new chunk of the segment or null if the segment is full or reclaimed
+     */
+    @Nullable
+    private MappedByteBuffer mapChunk(int bytes) throws IOException {
+      // count the chunk first, so that the segment is not reclaimed while mapping
+      if (!acquire()) {
+        return null;
+      }
+
+      final long start = position.getAndAdd(
+          (bytes + CHUNK_ALIGNMENT - 1) / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT);
+      if (start + bytes > STORAGE_FILE_CAPACITY) {
+        releaseChunk();
+        return null;
+      }
+
+      final MappedByteBuffer chunk;
+      try {
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, bytes);
+      } catch (IOException e) {
+        releaseChunk();
+        throw e;
+      }
+      // all buffers derived from the chunk reference it, so it is collected after the last one
+      final WeakReference<MappedByteBuffer> reference = new WeakReference<>(chunk);
+      chunks.add(reference);
+      chunkCleaner.register(chunk, () -> {
+        chunks.remove(reference);
+        releaseChunk();
+      });
+      return chunk;
+    }
+
+    /**
+     * @return false if the segment was reclaimed
+     */
+    private boolean acquire() {
+      int live;
+      do {
+        live = liveChunks.get();
+        if (live < 0) {
+          return false;
+        }
+      } while (!liveChunks.compareAndSet(live, live + 1));
+      return true;
+    }
+
+    private void releaseChunk() {
+      if (liveChunks.decrementAndGet() == 0 && liveChunks.compareAndSet(0, -1)) {
+        reclaim(this);
+      }
+    }
+
+    private void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.finest("Cannot close temporary file " + file);
+      }
+    }
+  }
+
+  /**
+   * Keep 8 byte alignment for all primitive views
+   */
+  private static long align(int bytes) {
+    return (bytes + 7L) & ~7L;
+  }
+
+  /**
+   * Arena chunk used by a single thread. Only the owner thread allocates, so no synchronization is
+   * needed. The chunk is weakly referenced, the stored buffers keep it alive.
+   */
+  private static final class Arena {
+
+    private final WeakReference<MappedByteBuffer> chunk;
+    // only accessed by the owner thread
+    private int next;
+
+    private Arena(MappedByteBuffer chunk) {
+      this.chunk = new WeakReference<>(chunk);
+    }
+
+    /**
+     * @return a slice of the arena or null if the arena is full or was garbage collected
+     */
+    @Nullable
+    private ByteBuffer allocate(int bytes) {
+      final MappedByteBuffer buffer = chunk.get();
+      return buffer == null ? null : allocate(buffer, bytes);
+    }
+
+    /**
+     * @return a slice of the arena or null if the arena is full
+     */
+    @Nullable
+    private ByteBuffer allocate(MappedByteBuffer buffer, int bytes) {
+      if (next + bytes > buffer.capacity()) {
+        return null;
+      }
+      final ByteBuffer slice = buffer.slice(next, bytes);
+      next += (int) align(bytes);
+      return slice;
+    }
   }
 }
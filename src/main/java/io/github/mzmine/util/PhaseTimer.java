@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Measures the duration of consecutive phases of a task, e.g., to report them in the task
+ * description and in the log. Starting a new phase finishes the current phase.
+ */
+public class PhaseTimer {
+
+  private final List<Phase> finishedPhases = new ArrayList<>();
+  private @Nullable String currentPhase;
+  private long currentStartNanos;
+
+  /**
+   * Finishes the current phase and starts a new one
+   *
+   * @param name the name of the new phase
+   */
+  public synchronized void start(@NotNull String name) {
+    finish();
+    currentPhase = name;
+    currentStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Finishes the current phase if there is one
+   */
+  public synchronized void finish() {
+    if (currentPhase != null) {
+      finishedPhases.add(new Phase(currentPhase, getCurrentPhaseSeconds()));
+      currentPhase = null;
+    }
+  }
+
+  @Nullable
+  public synchronized String getCurrentPhase() {
+    return currentPhase;
+  }
+
+  /**
+   * @return the seconds since the current phase was started or 0 if there is no current phase
+   */
+  public synchronized double getCurrentPhaseSeconds() {
+    return currentPhase == null ? 0 : (System.nanoTime() - currentStartNanos) / 1E9;
+  }
+
+  /**
+   * @return description of the current phase and its duration, e.g., "feature lists (12.3 s)", or
+   * an empty string
+   */
+  @NotNull
+  public synchronized String describeCurrentPhase() {
+    if (currentPhase == null) {
+      return "";
+    }
+    return "%s (%.1f s)".formatted(currentPhase, getCurrentPhaseSeconds());
+  }
+
+  /**
+   * @return all finished phases with their durations
+   */
+  @NotNull
+  public synchronized String summary() {
+    return finishedPhases.stream().map(p -> "%s %.1f s".formatted(p.name(), p.seconds()))
+        .collect(Collectors.joining(", "));
+  }
+
+  private record Phase(String name, double seconds) {
+
+  }
+}
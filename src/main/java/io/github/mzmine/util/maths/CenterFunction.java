@@ -65,6 +65,14 @@ public class CenterFunction {
     return weightTransform;
   }
 
+  public @Nullable Double getNoiseLevel() {
+    return noiseLevel;
+  }
+
+  public @Nullable Double getMaxWeight() {
+    return maxWeight;
+  }
+
   /**
    * Cap weight at a maximum. null for no maxWeight
    * 
@@ -243,23 +243,58 @@ public class ScanUtils {
    */
   @Nullable
   public static DataPoint findBasePeak(@NotNull Scan scan, @NotNull Range<Double> mzRange) {
+    final DataPoint scanBasePeak = getScanBasePeakInRange(scan, mzRange);
+    if (scanBasePeak != null) {
+      return scanBasePeak;
+    }
+    final int startIndex = scan.binarySearch(mzRange.lowerEndpoint(), DefaultTo.GREATER_EQUALS);
+    return findBasePeakFrom(scan, mzRange.upperEndpoint(), startIndex);
+  }
+
+  /**
+   * Find a base peak of a given scan in a given m/z range, starting at a known index. Useful when
+   * many ranges are searched on the same scan in ascending order of their lower m/z.
+   *
+   * @param scan       Scan to search
+   * @param mzRange    mz range to search in
+   * @param startIndex index of the first data point with m/z &gt;= the lower endpoint of the range
+   *                   or -1 if there is no such data point
+   * @return data point containing base peak m/z and intensity
+   */
+  @Nullable
+  public static DataPoint findBasePeak(@NotNull Scan scan, @NotNull Range<Double> mzRange,
+      int startIndex) {
+    final DataPoint scanBasePeak = getScanBasePeakInRange(scan, mzRange);
+    if (scanBasePeak != null) {
+      return scanBasePeak;
+    }
+    return findBasePeakFrom(scan, mzRange.upperEndpoint(), startIndex);
+  }
+
+  /**
+   * @return the base peak of the scan if it is within the range, otherwise null
+   */
+  @Nullable
+  private static DataPoint getScanBasePeakInRange(@NotNull Scan scan,
+      @NotNull Range<Double> mzRange) {
     final Double scanBasePeakMz = scan.getBasePeakMz();
     if (scanBasePeakMz != null && mzRange.contains(scanBasePeakMz)) {
       return new SimpleDataPoint(scanBasePeakMz,
           requireNonNullElse(scan.getBasePeakIntensity(), 0d));
     }
+    return null;
+  }
 
-    final double lower = mzRange.lowerEndpoint();
-    final double upper = mzRange.upperEndpoint();
+  @Nullable
+  private static DataPoint findBasePeakFrom(@NotNull Scan scan, final double upper,
+      final int startIndex) {
+    if (startIndex == -1) {
+      return null;
+    }
 
     boolean found = false;
     double baseMz = 0d;
     double baseIntensity = 0d;
-
-    final int startIndex = scan.binarySearch(lower, DefaultTo.GREATER_EQUALS);
-    if (startIndex == -1) {
-      return null;
-    }
     for (int i = startIndex; i < scan.getNumberOfDataPoints(); i++) {
       double mz = scan.getMzValue(i);
       if (mz > upper) {
@@ -28,9 +28,7 @@ package io.github.mzmine.util.scans;
 import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import com.google.common.util.concurrent.AtomicDouble;
-import gnu.trove.list.array.TDoubleArrayList;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MassList;
@@ -51,10 +49,7 @@ import io.github.mzmine.datamodel.impl.SimpleMergedMsMsSpectrum;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.maths.CenterFunction;
 import io.github.mzmine.util.maths.CenterMeasure;
 import io.github.mzmine.util.maths.Weighting;
@@ -67,8 +62,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -102,10 +95,16 @@ public class SpectraMerging {
 
   public static final MZTolerance defaultMs2MergeTol = new MZTolerance(0.008, 25);
 
-  private static final DataPointSorter sorter = new DataPointSorter(SortingProperty.Intensity,
-      SortingDirection.Descending);
   private static final Logger logger = Logger.getLogger(SpectraMerging.class.getName());
 
+  private static final int RADIX_BITS = 11;
+  private static final int RADIX_SIZE = 1 << RADIX_BITS;
+  private static final long RADIX_MASK = RADIX_SIZE - 1;
+  private static final int RADIX_PASSES = (Long.SIZE + RADIX_BITS - 1) / RADIX_BITS;
+  private static final int MAX_BUFFERED_DATA_POINTS = 1 << 16;
+  private static final ThreadLocal<MergingBuffers> MERGING_BUFFERS = ThreadLocal.withInitial(
+      MergingBuffers::new);
+
   /**
    * Calculates merged intensities and mz values of all data points in the given spectrum. Ideally,
    * {@link MassList}s should be used so noise is filtered out by the user.
@@ -134,13 +133,24 @@ public class SpectraMerging {
       return new double[][]{new double[0], new double[0]};
     }
 
-    final List<IndexedDataPoint> dataPoints = new ArrayList<>();
-    // extract all data points in the mass spectrum
-    final int numDp = source.stream().mapToInt(MassSpectrum::getNumberOfDataPoints).max()
-        .getAsInt();
-    final double[] rawMzs = new double[numDp];
-    final double[] rawIntensities = new double[numDp];
+    int totalDp = 0;
+    int maxDp = 0;
+    for (T spectrum : source) {
+      totalDp += spectrum.getNumberOfDataPoints();
+      maxDp = Math.max(maxDp, spectrum.getNumberOfDataPoints());
+    }
+    // do not keep the buffers of very large merges alive
+    final MergingBuffers buffers =
+        totalDp <= MAX_BUFFERED_DATA_POINTS ? MERGING_BUFFERS.get() : new MergingBuffers();
+    buffers.ensureCapacity(totalDp, maxDp, source.size());
+    final double[] rawMzs = buffers.rawMzs;
+    final double[] rawIntensities = buffers.rawIntensities;
+    final double[] mzs = buffers.mzs;
+    final double[] intensities = buffers.intensities;
+    final int[] spectrumIndices = buffers.spectrumIndices;
 
+    // extract all data points in the mass spectrum
+    int numDp = 0;
     int index = 0;
     for (T spectrum : source) {
       spectrum.getMzValues(rawMzs);
@@ -148,84 +158,304 @@ public class SpectraMerging {
 
       for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
         if (inputNoiseLevel == null || rawIntensities[i] > inputNoiseLevel) {
-          final IndexedDataPoint dp = new IndexedDataPoint(rawMzs[i], rawIntensities[i], index);
-          dataPoints.add(dp);
+          mzs[numDp] = rawMzs[i];
+          intensities[numDp] = rawIntensities[i];
+          spectrumIndices[numDp] = index;
+          numDp++;
         }
       }
       index++;
     }
+    final int numSpectra = index;
+
+    // rank of each data point by mz. Ranges never overlap and contain their first data point, so
+    // the range containing a data point belongs to the closest range seed by rank
+    final long[] sortKeys = buffers.sortKeys;
+    final int[] byMz = buffers.temp;
+    for (int i = 0; i < numDp; i++) {
+      byMz[i] = i;
+      sortKeys[i] = toSortableBits(mzs[i]);
+    }
+    radixSort(byMz, sortKeys, numDp, buffers);
+    final int[] mzRanks = buffers.mzRanks;
+    for (int rank = 0; rank < numDp; rank++) {
+      mzRanks[byMz[rank]] = rank;
+    }
 
-    dataPoints.sort(sorter);
-
-    // set is sorted by the index of the datapoint, so we can quickly check the presence of the same index
-    RangeMap<Double, SortedSet<IndexedDataPoint>> dataPointRanges = TreeRangeMap.create();
-
-    for (IndexedDataPoint dp : dataPoints) {
-      // todo hash map should be smarter, just put by index
-      SortedSet<IndexedDataPoint> dplist = dataPointRanges.get(dp.getMZ());
-      boolean containsIndex = false;
-
-      // no entry -> make a new one
-      if (dplist == null) {
-        dplist = new TreeSet<>(Comparator.comparingInt(IndexedDataPoint::getIndex));
-        Range<Double> range = createNewNonOverlappingRange(dataPointRanges,
-            tolerance.getToleranceRange(dp.getMZ()));
-        dataPointRanges.put(range, dplist);
-      } else { // we have an entry, check if if we have the same index in there already
-        if (dp.getIndex() > dplist.first().getIndex() && dp.getIndex() < dplist.last().getIndex()) {
-          for (IndexedDataPoint indexedDataPoint : dplist) {
-            if (dp.getIndex() == indexedDataPoint.getIndex()) {
-              containsIndex = true;
-              break;
-            }
-            if (dp.getIndex() > indexedDataPoint.getIndex()) {
-              break;
-            }
-          }
-        }
-        // if an entry contains that index, make a new entry (this way multiple data points from a
-        //  single scan will not be merged together)
-        if (containsIndex) {
-          dplist = new TreeSet<>(Comparator.comparingInt(IndexedDataPoint::getIndex));
-          Range<Double> range = createNewNonOverlappingRange(dataPointRanges,
-              tolerance.getToleranceRange(dp.getMZ()));
-          dataPointRanges.put(range, dplist);
-        }
+    // processing order: descending intensity, then descending mz (like the data point sorter) and
+    // the order of the source for equal data points. Equal mzs keep the source order.
+    final int[] order = buffers.order;
+    int sorted = 0;
+    for (int end = numDp; end > 0; ) {
+      int start = end - 1;
+      while (start > 0 && sortKeys[start - 1] == sortKeys[end - 1]) {
+        start--;
       }
-
-      // now add the datapoint to the set
-      dplist.add(dp);
+      System.arraycopy(byMz, start, order, sorted, end - start);
+      sorted += end - start;
+      end = start;
+    }
+    for (int i = 0; i < numDp; i++) {
+      sortKeys[i] = ~toSortableBits(intensities[order[i]]);
     }
+    radixSort(order, sortKeys, numDp, buffers);
+
+    // assign each data point to a range. Ranges are stored by the mz rank of their seed
+    final long[] seeds = buffers.seeds;
+    Arrays.fill(seeds, 0, (numDp >> 6) + 1, 0L);
+    final double[] lower = buffers.rangeLower;
+    final double[] upper = buffers.rangeUpper;
+    final boolean[] lowerOpen = buffers.rangeLowerOpen;
+    final boolean[] upperOpen = buffers.rangeUpperOpen;
+    final int[] rangeOfDp = buffers.rangeOfDp;
+    for (int i = 0; i < numDp; i++) {
+      final int dp = order[i];
+      final double mz = mzs[dp];
+      final int rank = mzRanks[dp];
+      final int below = previousSetBit(seeds, rank - 1);
+      final int above = nextSetBit(seeds, rank + 1, numDp);
+      if (below != -1 && rangeContains(buffers, below, mz)) {
+        rangeOfDp[dp] = below;
+        continue;
+      }
+      if (above != -1 && rangeContains(buffers, above, mz)) {
+        rangeOfDp[dp] = above;
+        continue;
+      }
 
-    final int numDps = dataPointRanges.asMapOfRanges().size();
-    final TDoubleArrayList newIntensities = new TDoubleArrayList(numDps);
-    final TDoubleArrayList newMzs = new TDoubleArrayList(numDps);
+      // new range, cut at the neighbouring ranges same as createNewNonOverlappingRange
+      final double absoluteTolerance = tolerance.getMzToleranceForMass(mz);
+      final double lowerMz = mz - absoluteTolerance;
+      final double upperMz = mz + absoluteTolerance;
+      if (below != -1 && rangeContains(buffers, below, lowerMz)) {
+        lower[rank] = upper[below];
+        lowerOpen[rank] = true;
+      } else {
+        lower[rank] = lowerMz;
+        lowerOpen[rank] = false;
+      }
+      if (above != -1 && rangeContains(buffers, above, upperMz)) {
+        upper[rank] = lower[above];
+        upperOpen[rank] = true;
+      } else {
+        upper[rank] = upperMz;
+        upperOpen[rank] = false;
+      }
+      seeds[rank >> 6] |= 1L << rank;
+      rangeOfDp[dp] = rank;
+    }
 
+    // group by range (ascending mz) and spectrum index. Both counting sorts are stable, so the
+    // processing order is kept within each spectrum
+    final int[] bySpectrum = buffers.temp;
+    countingSort(order, bySpectrum, numDp, spectrumIndices, numSpectra, buffers.counts);
+    final int[] grouped = buffers.order;
+    countingSort(bySpectrum, grouped, numDp, rangeOfDp, numDp, buffers.counts);
+
+    final double[] newMzs = buffers.newMzs;
+    final double[] newIntensities = buffers.newIntensities;
+    // the default center function is calculated on the buffers without copies
+    final boolean linearWeightedAverage = mzCenterFunction.getMeasure() == CenterMeasure.AVG
+        && mzCenterFunction.getWeightTransform() == Weighting.LINEAR
+        && mzCenterFunction.getNoiseLevel() == null && mzCenterFunction.getMaxWeight() == null;
+    int numMerged = 0;
     // now we got everything in place and have to calculate the new intensities and mzs
-    for (Entry<Range<Double>, SortedSet<IndexedDataPoint>> entry : dataPointRanges.asMapOfRanges()
-        .entrySet()) {
-      if (minNumPeaks != null && entry.getValue().size() < minNumPeaks) {
-        continue;
+    for (int start = 0; start < numDp; ) {
+      final int range = rangeOfDp[grouped[start]];
+      // only the first (most intense) data point of each spectrum is merged
+      int numInRange = 0;
+      int lastSpectrum = -1;
+      int end = start;
+      for (; end < numDp && rangeOfDp[grouped[end]] == range; end++) {
+        final int dp = grouped[end];
+        if (spectrumIndices[dp] != lastSpectrum) {
+          lastSpectrum = spectrumIndices[dp];
+          buffers.rangeMzs[numInRange] = mzs[dp];
+          buffers.rangeIntensities[numInRange] = intensities[dp];
+          numInRange++;
+        }
       }
+      start = end;
 
-      double[] mzs = entry.getValue().stream().mapToDouble(IndexedDataPoint::getMZ).toArray();
-      double[] intensities = entry.getValue().stream().mapToDouble(IndexedDataPoint::getIntensity)
-          .toArray();
+      if (minNumPeaks != null && numInRange < minNumPeaks) {
+        continue;
+      }
 
-      double newMz = mzCenterFunction.calcCenter(mzs, intensities);
+      final double[] rangeMzs = buffers.rangeMzs;
+      final double[] rangeIntensities = buffers.rangeIntensities;
+      double newMz = linearWeightedAverage ? calcLinearWeightedAvg(rangeMzs, rangeIntensities,
+          numInRange, buffers.rangeWeights) : mzCenterFunction.calcCenter(
+          Arrays.copyOf(rangeMzs, numInRange), Arrays.copyOf(rangeIntensities, numInRange));
       double newIntensity = switch (intensityMergingType) {
-        case SUMMED -> Arrays.stream(intensities).sum();
-        case MAXIMUM -> Arrays.stream(intensities).max().orElse(0d);
-        case AVERAGE -> Arrays.stream(intensities).average().orElse(0d);
+        case SUMMED -> Arrays.stream(rangeIntensities, 0, numInRange).sum();
+        case MAXIMUM -> Arrays.stream(rangeIntensities, 0, numInRange).max().orElse(0d);
+        case AVERAGE -> Arrays.stream(rangeIntensities, 0, numInRange).average().orElse(0d);
       };
 
       if (outputNoiseLevel == null || newIntensity > outputNoiseLevel) {
-        newMzs.add(newMz);
-        newIntensities.add(newIntensity);
+        newMzs[numMerged] = newMz;
+        newIntensities[numMerged] = newIntensity;
+        numMerged++;
+      }
+    }
+
+    return new double[][]{Arrays.copyOf(newMzs, numMerged),
+        Arrays.copyOf(newIntensities, numMerged)};
+  }
+
+  /**
+   * Same as {@link CenterFunction#calcCenter(double[], double[])} for {@link CenterMeasure#AVG}
+   * with {@link Weighting#LINEAR} weights but on the first values of the arrays
+   */
+  private static double calcLinearWeightedAvg(double[] values, double[] weights, int length,
+      double[] realWeights) {
+    for (int i = 0; i < length; i++) {
+      realWeights[i] = Weighting.LINEAR.transform(weights[i], null, null);
+    }
+    final double weightSum = Arrays.stream(realWeights, 0, length).sum();
+    if (weightSum == 0) {
+      double sum = 0;
+      for (int i = 0; i < length; i++) {
+        sum += values[i];
+      }
+      return sum / length;
+    }
+
+    double avg = 0;
+    for (int i = 0; i < length; i++) {
+      avg += values[i] * realWeights[i] / weightSum;
+    }
+    return avg;
+  }
+
+  /**
+   * @return bits of the value that sort as unsigned long in the same order as
+   * {@link Double#compare(double, double)}
+   */
+  private static long toSortableBits(double value) {
+    final long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+  }
+
+  /**
+   * Stable LSD radix sort of the indices by unsigned keys. The keys are moved along with the
+   * indices.
+   *
+   * @param keys the key of each position in indices
+   */
+  private static void radixSort(int[] indices, long[] keys, int length, MergingBuffers buffers) {
+    if (length < 2) {
+      return;
+    }
+    // histograms of all digits in one pass
+    final int[] counts = buffers.radixCounts;
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < length; i++) {
+      final long key = keys[i];
+      for (int pass = 0; pass < RADIX_PASSES; pass++) {
+        counts[pass * RADIX_SIZE + (int) ((key >>> (pass * RADIX_BITS)) & RADIX_MASK)]++;
       }
     }
 
-    return new double[][]{newMzs.toArray(), newIntensities.toArray()};
+    int[] src = indices;
+    int[] dst = buffers.radixIndices;
+    long[] srcKeys = keys;
+    long[] dstKeys = buffers.radixKeys;
+    for (int pass = 0; pass < RADIX_PASSES; pass++) {
+      final int offset = pass * RADIX_SIZE;
+      final int shift = pass * RADIX_BITS;
+      // all keys share this digit
+      if (counts[offset + (int) ((srcKeys[0] >>> shift) & RADIX_MASK)] == length) {
+        continue;
+      }
+      // start position of each digit
+      int position = 0;
+      for (int d = offset; d < offset + RADIX_SIZE; d++) {
+        final int count = counts[d];
+        counts[d] = position;
+        position += count;
+      }
+      for (int i = 0; i < length; i++) {
+        final long key = srcKeys[i];
+        final int target = counts[offset + (int) ((key >>> shift) & RADIX_MASK)]++;
+        dst[target] = src[i];
+        dstKeys[target] = key;
+      }
+      final int[] swap = src;
+      src = dst;
+      dst = swap;
+      final long[] swapKeys = srcKeys;
+      srcKeys = dstKeys;
+      dstKeys = swapKeys;
+    }
+    if (src != indices) {
+      System.arraycopy(src, 0, indices, 0, length);
+      System.arraycopy(srcKeys, 0, keys, 0, length);
+    }
+  }
+
+  private static boolean rangeContains(MergingBuffers buffers, int rank, double mz) {
+    return (buffers.rangeLowerOpen[rank] ? mz > buffers.rangeLower[rank]
+        : mz >= buffers.rangeLower[rank]) && (buffers.rangeUpperOpen[rank] ? mz
+        < buffers.rangeUpper[rank] : mz <= buffers.rangeUpper[rank]);
+  }
+
+  /**
+   * @return the highest set bit <= fromIndex or -1
+   */
+  private static int previousSetBit(long[] bits, int fromIndex) {
+    if (fromIndex < 0) {
+      return -1;
+    }
+    int word = fromIndex >> 6;
+    long masked = bits[word] & (-1L >>> (63 - (fromIndex & 63)));
+    while (masked == 0) {
+      if (--word < 0) {
+        return -1;
+      }
+      masked = bits[word];
+    }
+    return (word << 6) + 63 - Long.numberOfLeadingZeros(masked);
+  }
+
+  /**
+   * @return the lowest set bit >= fromIndex and < size or -1
+   */
+  private static int nextSetBit(long[] bits, int fromIndex, int size) {
+    if (fromIndex >= size) {
+      return -1;
+    }
+    int word = fromIndex >> 6;
+    final int lastWord = (size - 1) >> 6;
+    long masked = bits[word] & (-1L << fromIndex);
+    while (masked == 0) {
+      if (++word > lastWord) {
+        return -1;
+      }
+      masked = bits[word];
+    }
+    final int bit = (word << 6) + Long.numberOfTrailingZeros(masked);
+    return bit < size ? bit : -1;
+  }
+
+  /**
+   * Stable counting sort of the indices by their key
+   *
+   * @param keys    key for each index, 0 <= key < numKeys
+   * @param counts  buffer of at least numKeys + 1
+   */
+  private static void countingSort(int[] src, int[] dst, int length, int[] keys, int numKeys,
+      int[] counts) {
+    Arrays.fill(counts, 0, numKeys + 1, 0);
+    for (int i = 0; i < length; i++) {
+      counts[keys[src[i]] + 1]++;
+    }
+    for (int k = 0; k < numKeys; k++) {
+      counts[k + 1] += counts[k];
+    }
+    for (int i = 0; i < length; i++) {
+      dst[counts[keys[src[i]]]++] = src[i];
+    }
   }
 
   /**
@@ -578,4 +808,70 @@ public class SpectraMerging {
       return this.label;
     }
   }
+
+  /**
+   * Reusable primitive buffers for {@link #calculatedMergedMzsAndIntensities}, one instance per
+   * thread. Buffers only grow.
+   */
+  private static final class MergingBuffers {
+
+    private double[] rawMzs = new double[0];
+    private double[] rawIntensities = new double[0];
+    private double[] mzs = new double[0];
+    private double[] intensities = new double[0];
+    private int[] spectrumIndices = new int[0];
+    private int[] order = new int[0];
+    private long[] sortKeys = new long[0];
+    private int[] radixIndices = new int[0];
+    private long[] radixKeys = new long[0];
+    private final int[] radixCounts = new int[RADIX_PASSES * RADIX_SIZE];
+    private int[] temp = new int[0];
+    private int[] mzRanks = new int[0];
+    private int[] rangeOfDp = new int[0];
+    private long[] seeds = new long[1];
+    private double[] rangeLower = new double[0];
+    private double[] rangeUpper = new double[0];
+    private boolean[] rangeLowerOpen = new boolean[0];
+    private boolean[] rangeUpperOpen = new boolean[0];
+    private int[] counts = new int[1];
+    private double[] newMzs = new double[0];
+    private double[] newIntensities = new double[0];
+    private double[] rangeMzs = new double[0];
+    private double[] rangeIntensities = new double[0];
+    private double[] rangeWeights = new double[0];
+
+    private void ensureCapacity(int totalDp, int maxDp, int numSpectra) {
+      if (rawMzs.length < maxDp) {
+        rawMzs = new double[maxDp];
+        rawIntensities = new double[maxDp];
+      }
+      if (mzs.length < totalDp) {
+        mzs = new double[totalDp];
+        intensities = new double[totalDp];
+        spectrumIndices = new int[totalDp];
+        order = new int[totalDp];
+        sortKeys = new long[totalDp];
+        radixIndices = new int[totalDp];
+        radixKeys = new long[totalDp];
+        temp = new int[totalDp];
+        mzRanks = new int[totalDp];
+        rangeOfDp = new int[totalDp];
+        seeds = new long[(totalDp >> 6) + 1];
+        rangeLower = new double[totalDp];
+        rangeUpper = new double[totalDp];
+        rangeLowerOpen = new boolean[totalDp];
+        rangeUpperOpen = new boolean[totalDp];
+        newMzs = new double[totalDp];
+        newIntensities = new double[totalDp];
+      }
+      if (counts.length < Math.max(totalDp, numSpectra) + 1) {
+        counts = new int[Math.max(totalDp, numSpectra) + 1];
+      }
+      if (rangeMzs.length < numSpectra) {
+        rangeMzs = new double[numSpectra];
+        rangeIntensities = new double[numSpectra];
+        rangeWeights = new double[numSpectra];
+      }
+    }
+  }
 }
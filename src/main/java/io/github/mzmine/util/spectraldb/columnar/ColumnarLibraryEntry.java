@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lazy view on one entry of a {@link ColumnarLibraryStore}. Peaks and fields are read from the
+ * memory mapped store on every access. Fields that are changed after loading are kept in a small
+ * copy-on-write overlay map, so that reads never lock the entry.
+ */
+public class ColumnarLibraryEntry implements SpectralLibraryEntry {
+
+  private final ColumnarLibraryStore store;
+  private final int index;
+  // replaced on change, never modified after publishing
+  @Nullable
+  private volatile Map<DBEntryField, Object> changedFields;
+  // lazy views on the store, benign race
+  @Nullable
+  private volatile DoubleBuffer mzs;
+  @Nullable
+  private volatile DoubleBuffer intensities;
+  @Nullable
+  private SpectralLibrary library;
+
+  ColumnarLibraryEntry(@NotNull ColumnarLibraryStore store, int index) {
+    this.store = store;
+    this.index = index;
+  }
+
+  @Override
+  public int getNumberOfDataPoints() {
+    return store.getNumberOfDataPoints(index);
+  }
+
+  @Override
+  public MassSpectrumType getSpectrumType() {
+    return MassSpectrumType.CENTROIDED;
+  }
+
+  @Override
+  public double[] getMzValues(@NotNull double[] dst) {
+    final int numDp = getNumberOfDataPoints();
+    if (dst.length < numDp) {
+      dst = new double[numDp];
+    }
+    mzs().get(0, dst, 0, numDp);
+    return dst;
+  }
+
+  @Override
+  public double[] getIntensityValues(@NotNull double[] dst) {
+    final int numDp = getNumberOfDataPoints();
+    if (dst.length < numDp) {
+      dst = new double[numDp];
+    }
+    intensities().get(0, dst, 0, numDp);
+    return dst;
+  }
+
+  private DoubleBuffer mzs() {
+    DoubleBuffer values = mzs;
+    if (values == null) {
+      values = store.getMzValues(index);
+      mzs = values;
+    }
+    return values;
+  }
+
+  private DoubleBuffer intensities() {
+    DoubleBuffer values = intensities;
+    if (values == null) {
+      values = store.getIntensityValues(index);
+      intensities = values;
+    }
+    return values;
+  }
+
+  @Override
+  public double getMzValue(int index) {
+    return mzs().get(index);
+  }
+
+  @Override
+  public double getIntensityValue(int index) {
+    return intensities().get(index);
+  }
+
+  @Override
+  public @Nullable Double getBasePeakMz() {
+    final Integer basePeak = getBasePeakIndex();
+    return basePeak == null ? null : getMzValue(basePeak);
+  }
+
+  @Override
+  public @Nullable Double getBasePeakIntensity() {
+    final Integer basePeak = getBasePeakIndex();
+    return basePeak == null ? null : getIntensityValue(basePeak);
+  }
+
+  @Override
+  public @Nullable Integer getBasePeakIndex() {
+    final DoubleBuffer intensities = intensities();
+    if (intensities.capacity() == 0) {
+      return null;
+    }
+    int basePeak = 0;
+    for (int i = 1; i < intensities.capacity(); i++) {
+      if (intensities.get(i) > intensities.get(basePeak)) {
+        basePeak = i;
+      }
+    }
+    return basePeak;
+  }
+
+  @Override
+  public @Nullable Range<Double> getDataPointMZRange() {
+    final DoubleBuffer mzs = mzs();
+    if (mzs.capacity() == 0) {
+      return null;
+    }
+    return Range.closed(mzs.get(0), mzs.get(mzs.capacity() - 1));
+  }
+
+  @Override
+  public @Nullable Double getTIC() {
+    final DoubleBuffer intensities = intensities();
+    double tic = 0;
+    for (int i = 0; i < intensities.capacity(); i++) {
+      tic += intensities.get(i);
+    }
+    return tic;
+  }
+
+  @Override
+  public @NotNull Iterator<DataPoint> iterator() {
+    return Arrays.asList(getDataPoints()).iterator();
+  }
+
+  @Override
+  public void putAll(Map<DBEntryField, Object> fields) {
+    fields.forEach(this::putIfNotNull);
+  }
+
+  @Override
+  public synchronized boolean putIfNotNull(DBEntryField field, Object value) {
+    if (field != null && value != null) {
+      final Map<DBEntryField, Object> changed = new EnumMap<>(DBEntryField.class);
+      if (changedFields != null) {
+        changed.putAll(changedFields);
+      }
+      changed.put(field, value);
+      changedFields = changed;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public Double getPrecursorMZ() {
+    return (Double) getValue(DBEntryField.PRECURSOR_MZ);
+  }
+
+  @Override
+  public Optional<Object> getField(DBEntryField f) {
+    return Optional.ofNullable(getValue(f));
+  }
+
+  @Override
+  public <T> T getOrElse(DBEntryField f, T defaultValue) {
+    final Object value = getValue(f);
+    return value == null ? defaultValue : (T) value;
+  }
+
+  @Nullable
+  private Object getValue(DBEntryField f) {
+    final Map<DBEntryField, Object> changed = changedFields;
+    if (changed != null && changed.containsKey(f)) {
+      return changed.get(f);
+    }
+    return store.getValue(index, f);
+  }
+
+  /**
+   * @return an unmodifiable snapshot of all fields, decoded from the store
+   */
+  @Override
+  public Map<DBEntryField, Object> getFields() {
+    final Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
+    for (DBEntryField field : store.getFields()) {
+      final Object value = store.getValue(index, field);
+      if (value != null) {
+        fields.put(field, value);
+      }
+    }
+    final Map<DBEntryField, Object> changed = changedFields;
+    if (changed != null) {
+      fields.putAll(changed);
+    }
+    return Collections.unmodifiableMap(fields);
+  }
+
+  /**
+   * Saved in the same format as {@link SpectralDBEntry}
+   */
+  @Override
+  public void saveToXML(XMLStreamWriter writer) throws XMLStreamException {
+    final double[] mzs = getMzValues(new double[0]);
+    final double[] intensities = getIntensityValues(new double[0]);
+    new SpectralDBEntry(null, mzs, intensities, getFields(), library).saveToXML(writer);
+  }
+
+  @Override
+  public @Nullable SpectralLibrary getLibrary() {
+    return library;
+  }
+
+  @Override
+  public void setLibrary(@Nullable SpectralLibrary library) {
+    this.library = library;
+  }
+
+  @Override
+  public @Nullable String getLibraryName() {
+    return library != null ? library.getName() : null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ColumnarLibraryEntry that = (ColumnarLibraryEntry) o;
+    return index == that.index && store == that.store;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(System.identityHashCode(store), index);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Entry: %s (dp: %d)", getOrElse(DBEntryField.NAME, ""),
+        getNumberOfDataPoints());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Constants of the columnar spectral library format. All entries of a library are stored in one
+ * file with the following sections (big endian, all sections are aligned to 8 bytes):
+ * <pre>
+ * magic (8 bytes), version (int), header length (int)
+ * header: library name, number of entries, number of peaks, column descriptions
+ * long[entries + 1] peak offsets
+ * double[peaks] mz values
+ * double[peaks] intensity values
+ * per column, encoded by the most frequent {@link ColumnarValueType} of the field:
+ *   numbers: double[entries], NaN for missing values
+ *   strings: int[entries] dictionary codes, -1 for missing values
+ *   arrays:  int[entries] lengths, -1 for missing values, long[entries + 1] element offsets,
+ *            double[elements], float[elements] or int[elements] dictionary codes
+ *   dictionary (strings and string arrays): long[dictionary size + 1] string offsets,
+ *            UTF-8 string bytes
+ *   side values: entry index and tagged value for each value of another type
+ * </pre>
+ * The file is memory mapped by {@link ColumnarLibraryStore} so that peaks and metadata are only
+ * read when accessed.
+ */
+public final class ColumnarLibraryFormat {
+
+  public static final String EXTENSION = "mzlib";
+  static final byte[] MAGIC = "MZLIBCOL".getBytes(StandardCharsets.US_ASCII);
+  static final int VERSION = 2;
+  /**
+   * magic, version and header length
+   */
+  static final int PREAMBLE_BYTES = MAGIC.length + Integer.BYTES * 2;
+
+  private ColumnarLibraryFormat() {
+  }
+
+  /**
+   * The columnar cache file of a library is placed next to the original library file
+   *
+   * @param libraryFile the original library file (json, msp, mgf, ...)
+   * @return the cache file name.extension.mzlib
+   */
+  @NotNull
+  public static File getCacheFile(@NotNull File libraryFile) {
+    return new File(libraryFile.getParentFile(), libraryFile.getName() + "." + EXTENSION);
+  }
+
+  /**
+   * @return true if the file has the columnar library extension
+   */
+  public static boolean isColumnarLibrary(@NotNull File file) {
+    return file.getName().toLowerCase().endsWith("." + EXTENSION);
+  }
+
+  /**
+   * @return padding bytes to align position to 8 bytes
+   */
+  static int padding(long position) {
+    return (int) ((8 - (position % 8)) % 8);
+  }
+}
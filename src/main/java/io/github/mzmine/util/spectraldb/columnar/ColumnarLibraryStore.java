@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.MAGIC;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.PREAMBLE_BYTES;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.VERSION;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.padding;
+
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Memory mapped, read-only view on a library in the {@link ColumnarLibraryFormat}. Opening only
+ * reads the header and maps the sections, peaks and metadata are read on access through
+ * {@link ColumnarLibraryEntry}.
+ */
+public class ColumnarLibraryStore {
+
+  private static final Logger logger = Logger.getLogger(ColumnarLibraryStore.class.getName());
+
+  private final File file;
+  private final String libraryName;
+  private final int numEntries;
+  private final LongBuffer peakOffsets;
+  private final DoubleBuffer mzs;
+  private final DoubleBuffer intensities;
+  private final Map<DBEntryField, Column> columns = new EnumMap<>(DBEntryField.class);
+  // all available fields in column order
+  private final DBEntryField[] fields;
+
+  private ColumnarLibraryStore(File file, FileChannel channel) throws IOException {
+    this.file = file;
+    final ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_BYTES);
+    readFully(channel, preamble, 0);
+    final byte[] magic = new byte[MAGIC.length];
+    preamble.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not a columnar spectral library: " + file.getAbsolutePath());
+    }
+    final int version = preamble.getInt();
+    if (version != VERSION) {
+      throw new IOException(
+          "Unsupported columnar spectral library version %d in %s".formatted(version,
+              file.getAbsolutePath()));
+    }
+    final int headerLength = preamble.getInt();
+    final ByteBuffer headerBuffer = ByteBuffer.allocate(headerLength);
+    readFully(channel, headerBuffer, PREAMBLE_BYTES);
+
+    final List<DBEntryField> availableFields = new ArrayList<>();
+    try (var header = new DataInputStream(
+        new ByteArrayInputStream(headerBuffer.array(), 0, headerLength))) {
+      libraryName = header.readUTF();
+      numEntries = header.readInt();
+      final long numPeaks = header.readLong();
+
+      long position = PREAMBLE_BYTES + headerLength;
+      peakOffsets = map(channel, position, (numEntries + 1L) * Long.BYTES).asLongBuffer();
+      position += (numEntries + 1L) * Long.BYTES;
+      mzs = map(channel, position, numPeaks * Double.BYTES).asDoubleBuffer();
+      position += numPeaks * Double.BYTES;
+      intensities = map(channel, position, numPeaks * Double.BYTES).asDoubleBuffer();
+      position += numPeaks * Double.BYTES;
+
+      final int numColumns = header.readInt();
+      for (int c = 0; c < numColumns; c++) {
+        final String fieldName = header.readUTF();
+        final ColumnarValueType type = ColumnarValueType.forCode(header.readByte());
+        final int dictionarySize = header.readInt();
+        final long dictionaryBytes = header.readLong();
+        final long numElements = header.readLong();
+        final int numSideValues = header.readInt();
+        final long sideBytes = header.readLong();
+
+        DoubleBuffer numbers = null;
+        IntBuffer codes = null;
+        LongBuffer elementOffsets = null;
+        ByteBuffer elements = null;
+        if (type.isNumber()) {
+          final long bytes = (long) numEntries * Double.BYTES;
+          numbers = map(channel, position, bytes).asDoubleBuffer();
+          position += bytes;
+        } else {
+          // dictionary codes or array lengths
+          final long bytes = (long) numEntries * Integer.BYTES;
+          codes = map(channel, position, bytes).asIntBuffer();
+          position += bytes + padding(position + bytes);
+        }
+        if (type.isArray()) {
+          final long offsetBytes = (numEntries + 1L) * Long.BYTES;
+          elementOffsets = map(channel, position, offsetBytes).asLongBuffer();
+          position += offsetBytes;
+          final long elementBytes = numElements * (type == ColumnarValueType.DOUBLE_ARRAY
+              ? Double.BYTES : Integer.BYTES);
+          elements = map(channel, position, elementBytes);
+          position += elementBytes + padding(position + elementBytes);
+        }
+        StringDictionary dictionary = null;
+        if (type.usesDictionary()) {
+          final long offsetBytes = (dictionarySize + 1L) * Long.BYTES;
+          dictionary = new StringDictionary(map(channel, position, offsetBytes).asLongBuffer(),
+              map(channel, position + offsetBytes, dictionaryBytes));
+          position += offsetBytes + dictionaryBytes;
+          position += padding(position);
+        }
+        final Int2ObjectMap<Object> sideValues = readSideValues(channel, position, sideBytes,
+            numSideValues);
+        position += sideBytes + padding(position + sideBytes);
+
+        // unknown fields are skipped, maybe written by another version
+        final DBEntryField field = parseField(fieldName);
+        if (field != null) {
+          availableFields.add(field);
+          columns.put(field, new Column(type, numbers, codes, elementOffsets, elements, dictionary,
+              sideValues));
+        }
+      }
+    }
+    fields = availableFields.toArray(DBEntryField[]::new);
+  }
+
+  /**
+   * Opens and maps the library file. The file channel is closed afterwards, the mapping stays
+   * valid until all buffers are garbage collected.
+   *
+   * @param file a library in the {@link ColumnarLibraryFormat}
+   * @return the memory mapped store
+   * @throws IOException if the file is not a valid columnar library
+   */
+  @NotNull
+  public static ColumnarLibraryStore open(@NotNull File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return new ColumnarLibraryStore(file, channel);
+    }
+  }
+
+  @Nullable
+  private static DBEntryField parseField(String name) {
+    try {
+      return DBEntryField.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      logger.fine("Skipping unknown library field " + name);
+      return null;
+    }
+  }
+
+  /**
+   * Side values are rare and decoded once
+   */
+  private static Int2ObjectMap<Object> readSideValues(FileChannel channel, long position,
+      long bytes, int numValues) throws IOException {
+    if (numValues == 0) {
+      return Int2ObjectMaps.emptyMap();
+    }
+    if (bytes > Integer.MAX_VALUE || position + bytes > channel.size()) {
+      throw new IOException("Columnar spectral library is truncated");
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+    readFully(channel, buffer, position);
+    final Int2ObjectOpenHashMap<Object> values = new Int2ObjectOpenHashMap<>(numValues);
+    try (var in = new DataInputStream(new ByteArrayInputStream(buffer.array()))) {
+      for (int i = 0; i < numValues; i++) {
+        final int entry = in.readInt();
+        values.put(entry, ColumnarValueType.readTagged(in));
+      }
+    }
+    return values;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of columnar spectral library");
+      }
+    }
+    buffer.flip();
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long position, long size)
+      throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException(
+          "Columnar library section of %d bytes exceeds the maximum mapping size".formatted(
+              size));
+    }
+    if (position + size > channel.size()) {
+      throw new IOException("Columnar spectral library is truncated");
+    }
+    return channel.map(MapMode.READ_ONLY, position, size);
+  }
+
+  /**
+   * Creates lazy entry views. Each entry only holds a reference to this store and its index.
+   *
+   * @return list of all entries
+   */
+  @NotNull
+  public List<SpectralLibraryEntry> createEntries() {
+    final List<SpectralLibraryEntry> entries = new ArrayList<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      entries.add(new ColumnarLibraryEntry(this, i));
+    }
+    return entries;
+  }
+
+  public int getNumEntries() {
+    return numEntries;
+  }
+
+  @NotNull
+  public String getLibraryName() {
+    return libraryName;
+  }
+
+  @NotNull
+  public File getFile() {
+    return file;
+  }
+
+  int getNumberOfDataPoints(int entry) {
+    return (int) (peakOffsets.get(entry + 1) - peakOffsets.get(entry));
+  }
+
+  /**
+   * @return a view on the mz values of this entry
+   */
+  DoubleBuffer getMzValues(int entry) {
+    return mzs.slice((int) peakOffsets.get(entry), getNumberOfDataPoints(entry));
+  }
+
+  /**
+   * @return a view on the intensity values of this entry
+   */
+  DoubleBuffer getIntensityValues(int entry) {
+    return intensities.slice((int) peakOffsets.get(entry), getNumberOfDataPoints(entry));
+  }
+
+  DBEntryField[] getFields() {
+    return fields;
+  }
+
+  /**
+   * @return the field value with the class it was written with or null if missing
+   */
+  @Nullable
+  Object getValue(int entry, @NotNull DBEntryField field) {
+    final Column column = columns.get(field);
+    return column == null ? null : column.get(entry);
+  }
+
+  /**
+   * A typed column. Depending on the {@link ColumnarValueType} only some buffers are set.
+   *
+   * @param numbers        values of number columns, NaN if missing
+   * @param codes          dictionary codes of string columns or lengths of array columns, -1 if
+   *                       missing
+   * @param elementOffsets first element of each entry in array columns
+   * @param elements       array elements: doubles, floats or dictionary codes
+   * @param sideValues     values that did not match the column type by entry index
+   */
+  private record Column(ColumnarValueType type, DoubleBuffer numbers, IntBuffer codes,
+                        LongBuffer elementOffsets, ByteBuffer elements,
+                        StringDictionary dictionary, Int2ObjectMap<Object> sideValues) {
+
+    @Nullable
+    Object get(int entry) {
+      final Object value = type.isNumber() ? getNumber(entry)
+          : type.isArray() ? getArray(entry) : getString(entry);
+      return value != null ? value : sideValues.get(entry);
+    }
+
+    private Object getNumber(int entry) {
+      final double value = numbers.get(entry);
+      return Double.isNaN(value) ? null : type.fromDouble(value);
+    }
+
+    private Object getString(int entry) {
+      final int code = codes.get(entry);
+      return code < 0 ? null : type.fromDictionaryString(dictionary.get(code));
+    }
+
+    private Object getArray(int entry) {
+      final int length = codes.get(entry);
+      if (length < 0) {
+        return null;
+      }
+      final int start = (int) elementOffsets.get(entry);
+      switch (type) {
+        case DOUBLE_ARRAY -> {
+          final double[] values = new double[length];
+          for (int i = 0; i < length; i++) {
+            values[i] = elements.getDouble((start + i) * Double.BYTES);
+          }
+          return values;
+        }
+        case FLOAT_ARRAY -> {
+          final float[] values = new float[length];
+          for (int i = 0; i < length; i++) {
+            values[i] = elements.getFloat((start + i) * Float.BYTES);
+          }
+          return values;
+        }
+        default -> {
+          final String[] values = new String[length];
+          for (int i = 0; i < length; i++) {
+            values[i] = dictionary.get(elements.getInt((start + i) * Integer.BYTES));
+          }
+          return type == ColumnarValueType.STRING_LIST ? List.of(values) : values;
+        }
+      }
+    }
+  }
+
+  private record StringDictionary(LongBuffer offsets, ByteBuffer strings) {
+
+    @NotNull
+    String get(int code) {
+      final int start = (int) offsets.get(code);
+      final byte[] bytes = new byte[(int) (offsets.get(code + 1) - start)];
+      strings.get(start, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
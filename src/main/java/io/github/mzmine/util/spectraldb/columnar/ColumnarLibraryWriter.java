@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.MAGIC;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.PREAMBLE_BYTES;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.VERSION;
+import static io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat.padding;
+
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts a {@link SpectralLibrary} into the {@link ColumnarLibraryFormat}. Each field is stored
+ * as a typed column of its most frequent {@link ColumnarValueType}, values of other types are kept
+ * as tagged side values. Libraries with values that cannot be encoded are rejected.
+ */
+public class ColumnarLibraryWriter {
+
+  private static final Logger logger = Logger.getLogger(ColumnarLibraryWriter.class.getName());
+
+  private final List<SpectralLibraryEntry> entries;
+  private final String libraryName;
+  private DataOutputStream out;
+  private long position;
+
+  public ColumnarLibraryWriter(@NotNull String libraryName,
+      @NotNull List<SpectralLibraryEntry> entries) {
+    this.libraryName = libraryName;
+    this.entries = entries;
+  }
+
+  /**
+   * Write library to file. The file is first written to a temporary file and then moved to the
+   * target to never leave incomplete libraries.
+   *
+   * @param library the library to convert
+   * @param file    the target file
+   */
+  public static void write(@NotNull SpectralLibrary library, @NotNull File file)
+      throws IOException {
+    new ColumnarLibraryWriter(library.getPath().getName(), library.getEntries()).write(file);
+  }
+
+  public void write(@NotNull File file) throws IOException {
+    final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    try {
+      try (var stream = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+        out = stream;
+        position = 0;
+        writeLibrary();
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      out = null;
+      Files.deleteIfExists(tmp.toPath());
+    }
+    logger.fine(() -> "Wrote columnar library %s with %d entries to %s".formatted(libraryName,
+        entries.size(), file.getAbsolutePath()));
+  }
+
+  private void writeLibrary() throws IOException {
+    final int numEntries = entries.size();
+    long numPeaks = 0;
+    for (SpectralLibraryEntry entry : entries) {
+      numPeaks += entry.getNumberOfDataPoints();
+    }
+
+    // collect columns
+    final List<Column> columns = createColumns();
+
+    // header
+    final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    try (var header = new DataOutputStream(headerBytes)) {
+      header.writeUTF(libraryName);
+      header.writeInt(numEntries);
+      header.writeLong(numPeaks);
+      header.writeInt(columns.size());
+      for (Column column : columns) {
+        header.writeUTF(column.field.name());
+        header.writeByte(column.type.ordinal());
+        header.writeInt(column.dictionary.size());
+        header.writeLong(column.dictionaryBytes);
+        header.writeLong(column.numElements);
+        header.writeInt(column.numSideValues);
+        header.writeLong(column.sideValues.size());
+      }
+    }
+    final int headerLength = headerBytes.size() + padding(PREAMBLE_BYTES + headerBytes.size());
+    out.write(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(headerLength);
+    position += PREAMBLE_BYTES;
+    headerBytes.writeTo(out);
+    position += headerBytes.size();
+    pad();
+
+    // peak offsets
+    long offset = 0;
+    out.writeLong(offset);
+    for (SpectralLibraryEntry entry : entries) {
+      offset += entry.getNumberOfDataPoints();
+      out.writeLong(offset);
+    }
+    position += (numEntries + 1L) * Long.BYTES;
+
+    // peaks
+    double[] buffer = new double[0];
+    for (SpectralLibraryEntry entry : entries) {
+      buffer = entry.getMzValues(buffer);
+      writeDoubles(buffer, entry.getNumberOfDataPoints());
+    }
+    for (SpectralLibraryEntry entry : entries) {
+      buffer = entry.getIntensityValues(buffer);
+      writeDoubles(buffer, entry.getNumberOfDataPoints());
+    }
+
+    for (Column column : columns) {
+      if (column.type.isNumber()) {
+        writeNumberColumn(column);
+      } else if (column.type.isArray()) {
+        writeArrayColumn(column);
+      } else {
+        writeCodeColumn(column);
+      }
+      if (column.type.usesDictionary()) {
+        writeDictionary(column);
+      }
+      column.sideValues.writeTo(out);
+      position += column.sideValues.size();
+      pad();
+    }
+  }
+
+  private void writeNumberColumn(Column column) throws IOException {
+    for (SpectralLibraryEntry entry : entries) {
+      final Object value = column.getColumnValue(entry);
+      out.writeDouble(value == null ? Double.NaN : ((Number) value).doubleValue());
+    }
+    position += (long) entries.size() * Double.BYTES;
+  }
+
+  private void writeCodeColumn(Column column) throws IOException {
+    for (SpectralLibraryEntry entry : entries) {
+      final Object value = column.getColumnValue(entry);
+      out.writeInt(value == null ? -1
+          : column.dictionary.getInt(ColumnarValueType.toDictionaryString(value)));
+    }
+    position += (long) entries.size() * Integer.BYTES;
+    pad();
+  }
+
+  private void writeArrayColumn(Column column) throws IOException {
+    // lengths
+    for (SpectralLibraryEntry entry : entries) {
+      final Object value = column.getColumnValue(entry);
+      out.writeInt(value == null ? -1 : ColumnarValueType.length(value));
+    }
+    position += (long) entries.size() * Integer.BYTES;
+    pad();
+
+    // element offsets
+    long offset = 0;
+    out.writeLong(offset);
+    for (SpectralLibraryEntry entry : entries) {
+      final Object value = column.getColumnValue(entry);
+      offset += value == null ? 0 : ColumnarValueType.length(value);
+      out.writeLong(offset);
+    }
+    position += (entries.size() + 1L) * Long.BYTES;
+
+    // elements
+    for (SpectralLibraryEntry entry : entries) {
+      final Object value = column.getColumnValue(entry);
+      switch (value) {
+        case null -> {
+        }
+        case double[] values -> writeDoubles(values, values.length);
+        case float[] values -> {
+          for (float v : values) {
+            out.writeFloat(v);
+          }
+          position += (long) values.length * Float.BYTES;
+        }
+        default -> {
+          final List<String> values = stringElements(value);
+          for (String v : values) {
+            out.writeInt(column.dictionary.getInt(v));
+          }
+          position += (long) values.size() * Integer.BYTES;
+        }
+      }
+    }
+    pad();
+  }
+
+  /**
+   * Dictionary offsets and UTF-8 bytes
+   */
+  private void writeDictionary(Column column) throws IOException {
+    long offset = 0;
+    out.writeLong(offset);
+    for (byte[] bytes : column.encoded) {
+      offset += bytes.length;
+      out.writeLong(offset);
+    }
+    position += (column.encoded.size() + 1L) * Long.BYTES;
+    for (byte[] bytes : column.encoded) {
+      out.write(bytes);
+    }
+    position += column.dictionaryBytes;
+    pad();
+  }
+
+  private void writeDoubles(double[] values, int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      out.writeDouble(values[i]);
+    }
+    position += (long) length * Double.BYTES;
+  }
+
+  private void pad() throws IOException {
+    final int padding = padding(position);
+    for (int i = 0; i < padding; i++) {
+      out.writeByte(0);
+    }
+    position += padding;
+  }
+
+  /**
+   * Only fields that are present in at least one entry. Each column uses the most frequent value
+   * type of its field.
+   *
+   * @throws IOException if a value cannot be stored in the columnar format
+   */
+  private List<Column> createColumns() throws IOException {
+    final Map<DBEntryField, int[]> typeCounts = new EnumMap<>(DBEntryField.class);
+    for (SpectralLibraryEntry entry : entries) {
+      for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+        final Object value = field.getValue();
+        if (value == null) {
+          continue;
+        }
+        final ColumnarValueType type = ColumnarValueType.of(value);
+        if (type == null) {
+          throw new IOException(
+              "Field %s has values of %s that cannot be stored in a columnar library".formatted(
+                  field.getKey(), value.getClass().getName()));
+        }
+        typeCounts.computeIfAbsent(field.getKey(),
+            k -> new int[ColumnarValueType.values().length])[type.ordinal()]++;
+      }
+    }
+
+    final List<Column> columns = new ArrayList<>();
+    for (Entry<DBEntryField, int[]> field : typeCounts.entrySet()) {
+      final int[] counts = field.getValue();
+      int mostFrequent = 0;
+      for (int i = 1; i < counts.length; i++) {
+        if (counts[i] > counts[mostFrequent]) {
+          mostFrequent = i;
+        }
+      }
+      columns.add(createColumn(field.getKey(), ColumnarValueType.values()[mostFrequent]));
+    }
+    return columns;
+  }
+
+  private Column createColumn(DBEntryField field, ColumnarValueType type) throws IOException {
+    final Column column = new Column(field, type);
+    final ByteArrayOutputStream sideBytes = new ByteArrayOutputStream();
+    try (var side = new DataOutputStream(sideBytes)) {
+      for (int i = 0; i < entries.size(); i++) {
+        final Object value = entries.get(i).getField(field).orElse(null);
+        if (value == null) {
+          continue;
+        }
+        if (column.getColumnValue(entries.get(i)) == null) {
+          // other type or NaN which marks missing values in number columns
+          side.writeInt(i);
+          ColumnarValueType.writeTagged(side, value);
+          column.numSideValues++;
+          continue;
+        }
+        if (type.isArray()) {
+          column.numElements += ColumnarValueType.length(value);
+        }
+        if (type == ColumnarValueType.STRING || type == ColumnarValueType.QUALITY) {
+          column.addToDictionary(ColumnarValueType.toDictionaryString(value));
+        } else if (type.usesDictionary()) {
+          stringElements(value).forEach(column::addToDictionary);
+        }
+      }
+    }
+    column.sideValues = sideBytes;
+    column.encodeDictionary();
+    return column;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> stringElements(Object value) {
+    return value instanceof String[] array ? Arrays.asList(array) : (List<String>) value;
+  }
+
+  private static final class Column {
+
+    private final DBEntryField field;
+    private final ColumnarValueType type;
+    // linked map keeps insertion order = dictionary code
+    private final Object2IntLinkedOpenHashMap<String> dictionary =
+        new Object2IntLinkedOpenHashMap<>();
+    private List<byte[]> encoded = List.of();
+    private long dictionaryBytes;
+    private long numElements;
+    private int numSideValues;
+    private ByteArrayOutputStream sideValues;
+
+    private Column(DBEntryField field, ColumnarValueType type) {
+      this.field = field;
+      this.type = type;
+    }
+
+    /**
+     * @return the value if it is stored in the column itself, null if missing or a side value
+     */
+    private Object getColumnValue(SpectralLibraryEntry entry) {
+      final Object value = entry.getField(field).orElse(null);
+      if (value == null || ColumnarValueType.of(value) != type) {
+        return null;
+      }
+      if (value instanceof Number n && Double.isNaN(n.doubleValue())) {
+        return null;
+      }
+      return value;
+    }
+
+    private void addToDictionary(String value) {
+      dictionary.putIfAbsent(value, dictionary.size());
+    }
+
+    private void encodeDictionary() {
+      encoded = new ArrayList<>(dictionary.size());
+      long bytes = 0;
+      for (String value : dictionary.keySet()) {
+        final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        encoded.add(utf8);
+        bytes += utf8.length;
+      }
+      dictionaryBytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.util.spectraldb.parser.mzmine.SpectralQuality;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Value types that can be stored in a {@link ColumnarLibraryFormat} column. Each column is encoded
+ * with the most frequent value type of its field. Values of other types are stored as tagged
+ * values in a side section of the column, so that every value is read back with the class it was
+ * written with.
+ */
+enum ColumnarValueType {
+  DOUBLE, FLOAT, INTEGER, STRING, QUALITY, DOUBLE_ARRAY, FLOAT_ARRAY, STRING_ARRAY, STRING_LIST;
+
+  private static final ColumnarValueType[] VALUES = values();
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  /**
+   * @return the value type or null if the value cannot be stored
+   */
+  @Nullable
+  static ColumnarValueType of(@NotNull Object value) {
+    return switch (value) {
+      case Double ignored -> DOUBLE;
+      case Float ignored -> FLOAT;
+      case Integer ignored -> INTEGER;
+      case String ignored -> STRING;
+      case SpectralQuality ignored -> QUALITY;
+      case double[] ignored -> DOUBLE_ARRAY;
+      case float[] ignored -> FLOAT_ARRAY;
+      case String[] array when Arrays.stream(array).allMatch(Objects::nonNull) -> STRING_ARRAY;
+      case List<?> list when list.stream().allMatch(String.class::isInstance) -> STRING_LIST;
+      default -> null;
+    };
+  }
+
+  @NotNull
+  static ColumnarValueType forCode(int code) throws IOException {
+    if (code < 0 || code >= VALUES.length) {
+      throw new IOException("Unknown value type %d in columnar spectral library".formatted(code));
+    }
+    return VALUES[code];
+  }
+
+  /**
+   * @return true if values are stored in a double column, NaN marks missing values
+   */
+  boolean isNumber() {
+    return this == DOUBLE || this == FLOAT || this == INTEGER;
+  }
+
+  /**
+   * @return true if values are stored as length prefixed elements
+   */
+  boolean isArray() {
+    return this == DOUBLE_ARRAY || this == FLOAT_ARRAY || this == STRING_ARRAY
+        || this == STRING_LIST;
+  }
+
+  /**
+   * @return true if values or array elements are stored as codes of a string dictionary
+   */
+  boolean usesDictionary() {
+    return this == STRING || this == QUALITY || this == STRING_ARRAY || this == STRING_LIST;
+  }
+
+  /**
+   * @return the number of array elements or 1 for scalar values
+   */
+  static int length(@NotNull Object value) {
+    return switch (value) {
+      case double[] array -> array.length;
+      case float[] array -> array.length;
+      case String[] array -> array.length;
+      case List<?> list -> list.size();
+      default -> 1;
+    };
+  }
+
+  /**
+   * Boxes a value of a double column
+   */
+  @NotNull
+  Object fromDouble(double value) {
+    return switch (this) {
+      case FLOAT -> (float) value;
+      case INTEGER -> (int) value;
+      default -> value;
+    };
+  }
+
+  /**
+   * Dictionary representation of a string or quality value
+   */
+  @NotNull
+  static String toDictionaryString(@NotNull Object value) {
+    if (value instanceof SpectralQuality quality) {
+      try {
+        return mapper.writeValueAsString(quality);
+      } catch (JsonProcessingException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return (String) value;
+  }
+
+  /**
+   * Inverse of {@link #toDictionaryString(Object)}
+   */
+  @NotNull
+  Object fromDictionaryString(@NotNull String value) {
+    if (this != QUALITY) {
+      return value;
+    }
+    try {
+      return mapper.readValue(value, SpectralQuality.class);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException("Cannot read spectral quality from columnar library", e);
+    }
+  }
+
+  /**
+   * Writes a tagged value to the side section of a column
+   */
+  static void writeTagged(@NotNull DataOutput out, @NotNull Object value) throws IOException {
+    final ColumnarValueType type = of(value);
+    if (type == null) {
+      throw new IOException("Cannot store value of " + value.getClass());
+    }
+    out.writeByte(type.ordinal());
+    switch (value) {
+      case Double v -> out.writeDouble(v);
+      case Float v -> out.writeFloat(v);
+      case Integer v -> out.writeInt(v);
+      case double[] array -> {
+        out.writeInt(array.length);
+        for (double v : array) {
+          out.writeDouble(v);
+        }
+      }
+      case float[] array -> {
+        out.writeInt(array.length);
+        for (float v : array) {
+          out.writeFloat(v);
+        }
+      }
+      case String[] array -> {
+        out.writeInt(array.length);
+        for (String v : array) {
+          writeString(out, v);
+        }
+      }
+      case List<?> list -> {
+        out.writeInt(list.size());
+        for (Object v : list) {
+          writeString(out, (String) v);
+        }
+      }
+      default -> writeString(out, toDictionaryString(value));
+    }
+  }
+
+  /**
+   * Reads a value written by {@link #writeTagged(DataOutput, Object)}
+   */
+  @NotNull
+  static Object readTagged(@NotNull DataInput in) throws IOException {
+    final ColumnarValueType type = forCode(in.readByte());
+    return switch (type) {
+      case DOUBLE -> in.readDouble();
+      case FLOAT -> in.readFloat();
+      case INTEGER -> in.readInt();
+      case STRING, QUALITY -> type.fromDictionaryString(readString(in));
+      case DOUBLE_ARRAY -> {
+        final double[] array = new double[in.readInt()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = in.readDouble();
+        }
+        yield array;
+      }
+      case FLOAT_ARRAY -> {
+        final float[] array = new float[in.readInt()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = in.readFloat();
+        }
+        yield array;
+      }
+      case STRING_ARRAY, STRING_LIST -> {
+        final String[] array = new String[in.readInt()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = readString(in);
+        }
+        yield type == STRING_LIST ? List.of(array) : array;
+      }
+    };
+  }
+
+  /**
+   * Strings may exceed the 64 kB limit of {@link DataOutput#writeUTF(String)}
+   */
+  private static void writeString(DataOutput out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
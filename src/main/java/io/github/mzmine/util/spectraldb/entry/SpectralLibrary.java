@@ -54,6 +54,9 @@ public class SpectralLibrary {
   @Nullable
   private final MemoryMapStorage storage;
   private final ObservableSet<DataType> types = FXCollections.observableSet(new LinkedHashSet<>());
+  // precursor index, invalidated when entries are added
+  @Nullable
+  private volatile SpectralLibraryIndex index;
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path) {
     this(storage, path.getName(), path);
@@ -74,12 +77,41 @@ public class SpectralLibrary {
   public void addEntry(SpectralLibraryEntry entry) {
     entry.setLibrary(this);
     entries.add(entry);
+    index = null;
   }
 
   public void addEntries(Collection<SpectralLibraryEntry> entries) {
     entries.forEach(this::addEntry);
   }
 
+  /**
+   * The index is built on first access or by {@link #buildIndex()} and is invalidated by adding
+   * new entries.
+   *
+   * @return the precursor index, positions refer to {@link #getEntries()}
+   */
+  @NotNull
+  public SpectralLibraryIndex getIndex() {
+    SpectralLibraryIndex current = index;
+    if (current == null) {
+      synchronized (this) {
+        current = index;
+        if (current == null) {
+          current = new SpectralLibraryIndex(entries);
+          index = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Build the precursor index, usually called after all entries were loaded
+   */
+  public void buildIndex() {
+    getIndex();
+  }
+
   @NotNull
   public File getPath() {
     return path;
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable index over the entries of a {@link SpectralLibrary}. Entries are sorted by precursor
+ * m/z in primitive arrays so that candidates for a precursor are found by a range query instead of
+ * a linear scan. Polarity, CCS and RT are stored in entry order for cheap pre-filtering. Entries
+ * without precursor m/z are not part of the precursor index.
+ */
+public class SpectralLibraryIndex {
+
+  private static final PolarityType[] POLARITIES = PolarityType.values();
+
+  private final int numEntries;
+  // sorted by precursor mz
+  private final double[] precursorMzs;
+  // entry index for each sorted precursor mz
+  private final int[] precursorEntryIndices;
+  // in entry order
+  private final byte[] polarities;
+  private final float[] ccs;
+  private final float[] rts;
+  // lazy: all entries in order
+  private int[] allEntryIndices;
+
+  /**
+   * @param entries the library entries, the index refers to the positions in this list
+   */
+  public SpectralLibraryIndex(@NotNull List<SpectralLibraryEntry> entries) {
+    numEntries = entries.size();
+    polarities = new byte[numEntries];
+    ccs = new float[numEntries];
+    rts = new float[numEntries];
+
+    final double[] mzs = new double[numEntries];
+    int withPrecursor = 0;
+    for (int i = 0; i < numEntries; i++) {
+      final SpectralLibraryEntry entry = entries.get(i);
+      polarities[i] = (byte) entry.getPolarity().ordinal();
+      ccs[i] = entry.getAsFloat(DBEntryField.CCS).orElse(Float.NaN);
+      rts[i] = entry.getAsFloat(DBEntryField.RT).orElse(Float.NaN);
+
+      final Double precursorMz = entry.getPrecursorMZ();
+      mzs[i] = precursorMz == null ? Double.NaN : precursorMz;
+      if (precursorMz != null) {
+        withPrecursor++;
+      }
+    }
+
+    // sort by mz, merge sort is stable for equal mz to keep the entry order
+    precursorEntryIndices = IntStream.range(0, numEntries).filter(i -> !Double.isNaN(mzs[i]))
+        .toArray();
+    IntArrays.mergeSort(precursorEntryIndices, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    precursorMzs = new double[withPrecursor];
+    for (int i = 0; i < withPrecursor; i++) {
+      precursorMzs[i] = mzs[precursorEntryIndices[i]];
+    }
+  }
+
+  /**
+   * @return number of indexed entries, including those without precursor m/z
+   */
+  public int getNumEntries() {
+    return numEntries;
+  }
+
+  /**
+   * @return number of entries with a precursor m/z
+   */
+  public int getNumPrecursorEntries() {
+    return precursorMzs.length;
+  }
+
+  /**
+   * Range query on the precursor m/z
+   *
+   * @param lowerMz inclusive lower bound
+   * @param upperMz inclusive upper bound
+   * @return the entry indices with a precursor m/z within the bounds, sorted by entry index to
+   * retain the library order
+   */
+  public int @NotNull [] findPrecursorCandidates(final double lowerMz, final double upperMz) {
+    if (lowerMz > upperMz) {
+      return new int[0];
+    }
+    final IndexRange range = BinarySearch.indexRange(precursorMzs, lowerMz, upperMz);
+    if (range.isEmpty()) {
+      return new int[0];
+    }
+    final int[] candidates = Arrays.copyOfRange(precursorEntryIndices, range.min(),
+        range.maxExclusive());
+    Arrays.sort(candidates);
+    return candidates;
+  }
+
+  /**
+   * @return all entry indices in library order
+   */
+  public int @NotNull [] getAllEntryIndices() {
+    if (allEntryIndices == null) {
+      allEntryIndices = IntStream.range(0, numEntries).toArray();
+    }
+    return allEntryIndices;
+  }
+
+  @NotNull
+  public PolarityType getPolarity(int entryIndex) {
+    return POLARITIES[polarities[entryIndex]];
+  }
+
+  /**
+   * @return the CCS or NaN if not available
+   */
+  public float getCCS(int entryIndex) {
+    return ccs[entryIndex];
+  }
+
+  /**
+   * @return the retention time or NaN if not available
+   */
+  public float getRT(int entryIndex) {
+    return rts[entryIndex];
+  }
+}
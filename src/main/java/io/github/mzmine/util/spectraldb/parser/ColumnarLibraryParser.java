@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryStore;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Opens libraries in the columnar format. Entries are lazy views on the memory mapped file and are
+ * pushed without reading their data points.
+ */
+public class ColumnarLibraryParser extends SpectralDBParser {
+
+  private static final Logger logger = Logger.getLogger(ColumnarLibraryParser.class.getName());
+
+  private int totalEntries = 0;
+  private int processed = 0;
+
+  public ColumnarLibraryParser(int bufferEntries, LibraryEntryProcessor processor) {
+    super(bufferEntries, processor);
+  }
+
+  @Override
+  public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
+      throws IOException {
+    logger.info("Opening columnar spectral library " + dataBaseFile.getAbsolutePath());
+    final ColumnarLibraryStore store = ColumnarLibraryStore.open(dataBaseFile);
+    final List<SpectralLibraryEntry> entries = store.createEntries();
+    totalEntries = entries.size();
+
+    // entries were already validated when the library was converted
+    final int chunk = bufferEntries > 0 ? bufferEntries : Math.max(totalEntries, 1);
+    for (int i = 0; i < totalEntries; i += chunk) {
+      if (mainTask != null && mainTask.isCanceled()) {
+        return false;
+      }
+      final List<SpectralLibraryEntry> next = entries.subList(i,
+          Math.min(i + chunk, totalEntries));
+      processor.processNextEntries(next, processed);
+      processed += next.size();
+    }
+    logger.info(processed + "  library entries opened");
+    return true;
+  }
+
+  @Override
+  public int getProcessedEntries() {
+    return processed;
+  }
+
+  @Override
+  public double getProgress() {
+    return totalEntries == 0 ? 0 : processed / (double) totalEntries;
+  }
+}
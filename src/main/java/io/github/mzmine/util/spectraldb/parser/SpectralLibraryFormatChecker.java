@@ -26,6 +26,7 @@
 package io.github.mzmine.util.spectraldb.parser;
 
 import io.github.mzmine.util.files.FileTypeFilter;
+import io.github.mzmine.util.spectraldb.columnar.ColumnarLibraryFormat;
 import io.github.mzmine.util.spectraldb.parser.gnps.GNPSJsonParser;
 import java.io.BufferedReader;
 import java.io.File;
@@ -44,6 +45,12 @@ public class SpectralLibraryFormatChecker {
     FileTypeFilter msp = new FileTypeFilter("msp", "");
     FileTypeFilter mgf = new FileTypeFilter("mgf", "");
     FileTypeFilter jdx = new FileTypeFilter("jdx", "");
+    FileTypeFilter columnar = new FileTypeFilter(ColumnarLibraryFormat.EXTENSION, "");
+
+    if (columnar.accept(dataBaseFile)) {
+      // memory mapped columnar library
+      return new ColumnarLibraryParser(bufferEntries, processor);
+    }
 
     if (json.accept(dataBaseFile)) {
       return getJsonParser(dataBaseFile, bufferEntries, processor);
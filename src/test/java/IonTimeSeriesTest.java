@@ -36,6 +36,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeriesUtils;
 import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
+import io.github.mzmine.datamodel.featuredata.impl.RawFileScanList;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
 import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
@@ -384,6 +385,48 @@ class IonTimeSeriesTest {
     testSortedSeries(IonTimeSeriesUtils.getIntensitySortedIndices(i3), i3);
   }
 
+  @Test
+  void testScanIndicesOfRawFile() throws IOException {
+    final RawDataFile file = new RawDataFileImpl("test", null, null);
+    final List<Scan> ms1Scans = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      final int msLevel = i % 4 == 0 ? 1 : 2;
+      final SimpleScan scan = new SimpleScan(file, i, msLevel, i, null, new double[]{0d, 1},
+          new double[]{15d, 1E5}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "test",
+          Range.closed(0d, 1000d));
+      file.addScan(scan);
+      if (msLevel == 1) {
+        ms1Scans.add(scan);
+      }
+    }
+
+    final double[] values = new double[ms1Scans.size()];
+    final SimpleIonTimeSeries series = new SimpleIonTimeSeries(null, values, values, ms1Scans);
+    Assertions.assertInstanceOf(RawFileScanList.class, series.getSpectra());
+    Assertions.assertEquals(ms1Scans, series.getSpectra());
+    for (int i = 0; i < ms1Scans.size(); i++) {
+      Assertions.assertSame(ms1Scans.get(i), series.getSpectrum(i));
+      Assertions.assertEquals(file.getScans().indexOf(ms1Scans.get(i)),
+          ((RawFileScanList<Scan>) series.getSpectra()).getScanIndex(i));
+    }
+
+    final List<Scan> consecutive = file.getScans().subList(3, 9);
+    final double[] consecutiveValues = new double[consecutive.size()];
+    final SimpleIonTimeSeries consecutiveSeries = new SimpleIonTimeSeries(null,
+        consecutiveValues, consecutiveValues, new ArrayList<>(consecutive));
+    Assertions.assertEquals(consecutive, consecutiveSeries.getSpectra());
+    Assertions.assertArrayEquals(new int[]{3, 4, 5, 6, 7, 8},
+        ((RawFileScanList<Scan>) consecutiveSeries.getSpectra()).getScanIndices());
+
+    // scans that are not part of the raw file are kept as they are
+    final List<Scan> otherScans = makeSomeScans(file, 3);
+    final double[] otherValues = new double[otherScans.size()];
+    final SimpleIonTimeSeries otherSeries = new SimpleIonTimeSeries(null, otherValues,
+        otherValues, otherScans);
+    Assertions.assertFalse(otherSeries.getSpectra() instanceof RawFileScanList);
+    Assertions.assertEquals(otherScans, otherSeries.getSpectra());
+  }
+
   public List<Scan> makeSomeScans(RawDataFile file, int numFrames) {
     final List<Scan> scans = new ArrayList<>();
     for (int i = 0; i < numFrames; i++) {
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.correlation;
+
+import io.github.mzmine.datamodel.features.correlation.R2RMap.Adjacency;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class R2RMapTest {
+
+  @Test
+  void testUndirectedKeys() {
+    final R2RMap<String> map = new R2RMap<>();
+    map.put(1, 2, "a");
+    map.put(2, 1, "b");
+    // large IDs overflowed the int pairing before
+    map.put(70_000, 90_000, "c");
+    map.put(90_001, 70_000, "d");
+
+    Assertions.assertEquals(3, map.size());
+    Assertions.assertEquals("b", map.get(1, 2));
+    Assertions.assertEquals("c", map.get(90_000, 70_000));
+    Assertions.assertEquals("d", map.get(70_000, 90_001));
+    Assertions.assertNull(map.get(90_000, 90_001));
+  }
+
+  @Test
+  void testAdjacency() {
+    final R2RMap<String> map = new R2RMap<>();
+    map.put(5, 1, "a");
+    map.put(1, 3, "b");
+    map.put(3, 3, "self");
+    map.put(7, 5, "c");
+
+    final Adjacency adjacency = map.getAdjacency();
+    Assertions.assertArrayEquals(new int[]{1, 3, 5, 7}, adjacency.rowIDs());
+    Assertions.assertArrayEquals(new int[]{3, 5}, adjacency.getNeighborIDs(1));
+    Assertions.assertArrayEquals(new int[]{1, 3}, adjacency.getNeighborIDs(3));
+    Assertions.assertArrayEquals(new int[]{1, 7}, adjacency.getNeighborIDs(5));
+    Assertions.assertArrayEquals(new int[0], adjacency.getNeighborIDs(2));
+    Assertions.assertSame(adjacency, map.getAdjacency());
+
+    // replacing does not change the adjacency, new edges do
+    map.put(1, 5, "d");
+    Assertions.assertSame(adjacency, map.getAdjacency());
+    map.put(2, 7, "e");
+    Assertions.assertArrayEquals(new int[]{2, 5}, map.getAdjacency().getNeighborIDs(7));
+
+    final R2RMap<String> copy = new R2RMap<>();
+    copy.putAll(map);
+    Assertions.assertEquals(map.size(), copy.size());
+    Assertions.assertEquals("d", copy.get(5, 1));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LineDecimationIndexTest {
+
+  private static double[] randomValues(Random random, int n) {
+    final double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = random.nextDouble() * 1E5;
+    }
+    return values;
+  }
+
+  @Test
+  void testSmallDatasetsAreNotReduced() {
+    final double[] values = randomValues(new Random(1), LineDecimationIndex.MIN_ITEMS - 1);
+    Assertions.assertNull(LineDecimationIndex.create(values.length, i -> values[i]));
+  }
+
+  @Test
+  void testZoomedInRangeDrawsAllItems() {
+    final double[] values = randomValues(new Random(2), 100_000);
+    final LineDecimationIndex index = LineDecimationIndex.create(values.length, i -> values[i]);
+    Assertions.assertNotNull(index);
+    // fewer than eight items per pixel
+    Assertions.assertNull(index.getItems(5000, 8000, 1000));
+  }
+
+  @Test
+  void testSelectedItemsAreBoundedByPixels() {
+    final Random random = new Random(3);
+    final double[] values = randomValues(random, 1_000_000);
+    final LineDecimationIndex index = LineDecimationIndex.create(values.length, i -> values[i]);
+    Assertions.assertNotNull(index);
+
+    for (int test = 0; test < 200; test++) {
+      final int first = random.nextInt(values.length / 2);
+      final int last = first + 10_000 + random.nextInt(values.length / 2 - 10_000);
+      final int pixels = 100 + random.nextInt(1500);
+      final int[] items = index.getItems(first, last, pixels);
+      if ((last - first + 1) / pixels < 8) {
+        Assertions.assertNull(items);
+        continue;
+      }
+      Assertions.assertNotNull(items);
+      Assertions.assertEquals(first, items[0]);
+      Assertions.assertEquals(last, items[items.length - 1]);
+      for (int i = 1; i < items.length; i++) {
+        Assertions.assertTrue(items[i] > items[i - 1], "Items are not ascending");
+      }
+      // at most four items per chunk and at least one pixel per chunk, plus both ends
+      Assertions.assertTrue(items.length <= 8 * pixels + 10,
+          "%d items for %d pixels".formatted(items.length, pixels));
+    }
+  }
+
+  @Test
+  void testExtremaAreKept() {
+    final Random random = new Random(4);
+    final double[] values = randomValues(random, 200_000);
+    values[123_457] = Double.NaN;
+    values[77_777] = -1;
+    values[150_001] = 2E5;
+    final LineDecimationIndex index = LineDecimationIndex.create(values.length, i -> values[i]);
+    Assertions.assertNotNull(index);
+
+    for (int pixels : new int[]{10, 100, 1000, 5000}) {
+      final int[] items = index.getItems(0, values.length - 1, pixels);
+      Assertions.assertNotNull(items);
+      boolean min = false;
+      boolean max = false;
+      for (int item : items) {
+        min |= item == 77_777;
+        max |= item == 150_001;
+        // undefined values are never the minimum or maximum of a chunk
+        Assertions.assertNotEquals(123_457, item);
+      }
+      Assertions.assertTrue(min, "Minimum was dropped");
+      Assertions.assertTrue(max, "Maximum was dropped");
+    }
+  }
+}
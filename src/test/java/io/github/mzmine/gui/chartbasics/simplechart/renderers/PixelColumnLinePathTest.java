@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import org.jfree.chart.plot.PlotOrientation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PixelColumnLinePathTest {
+
+  /**
+   * @return one entry per path segment: segment type, x, y
+   */
+  private static List<double[]> segments(Path2D path) {
+    final List<double[]> segments = new ArrayList<>();
+    final double[] coords = new double[6];
+    for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+      final int type = it.currentSegment(coords);
+      segments.add(new double[]{type, coords[0], coords[1]});
+    }
+    return segments;
+  }
+
+  private static void assertSegment(double[] segment, int type, double x, double y) {
+    Assertions.assertEquals(type, (int) segment[0]);
+    Assertions.assertEquals(x, segment[1], 1E-4);
+    Assertions.assertEquals(y, segment[2], 1E-4);
+  }
+
+  private static Path2D draw(PlotOrientation orientation, double[] xs, double[] ys) {
+    final Path2D path = new Path2D.Double();
+    final PixelColumnLinePath linePath = new PixelColumnLinePath();
+    linePath.start(path, orientation);
+    for (int i = 0; i < xs.length; i++) {
+      if (Double.isNaN(xs[i]) || Double.isNaN(ys[i])) {
+        linePath.gap();
+      } else {
+        linePath.add(xs[i], ys[i]);
+      }
+    }
+    linePath.flushColumn();
+    return path;
+  }
+
+  @Test
+  void testColumnAggregation() {
+    final Path2D path = draw(PlotOrientation.VERTICAL,
+        new double[]{10.0, 10.2, 10.4, 10.6, 10.8, 11.5, 13.1},
+        new double[]{5, 1, 9, 3, 4, 2, 2});
+    final List<double[]> segments = segments(path);
+    Assertions.assertEquals(6, segments.size());
+    // first, min, max and last of column 10
+    assertSegment(segments.get(0), PathIterator.SEG_MOVETO, 10.0, 5);
+    assertSegment(segments.get(1), PathIterator.SEG_LINETO, 10.2, 1);
+    assertSegment(segments.get(2), PathIterator.SEG_LINETO, 10.4, 9);
+    assertSegment(segments.get(3), PathIterator.SEG_LINETO, 10.8, 4);
+    // single points of the next columns
+    assertSegment(segments.get(4), PathIterator.SEG_LINETO, 11.5, 2);
+    assertSegment(segments.get(5), PathIterator.SEG_LINETO, 13.1, 2);
+  }
+
+  @Test
+  void testMaximumBeforeMinimumKeepsOrder() {
+    final List<double[]> segments = segments(draw(PlotOrientation.VERTICAL,
+        new double[]{20.1, 20.3, 20.5, 20.7}, new double[]{5, 9, 1, 9}));
+    Assertions.assertEquals(4, segments.size());
+    assertSegment(segments.get(0), PathIterator.SEG_MOVETO, 20.1, 5);
+    assertSegment(segments.get(1), PathIterator.SEG_LINETO, 20.3, 9);
+    assertSegment(segments.get(2), PathIterator.SEG_LINETO, 20.5, 1);
+    assertSegment(segments.get(3), PathIterator.SEG_LINETO, 20.7, 9);
+  }
+
+  @Test
+  void testDuplicatePointsAreSkipped() {
+    // the first point is also the minimum and the maximum
+    final List<double[]> segments = segments(draw(PlotOrientation.VERTICAL,
+        new double[]{30.0, 30.5, 31.0}, new double[]{3, 3, 3}));
+    Assertions.assertEquals(3, segments.size());
+    assertSegment(segments.get(0), PathIterator.SEG_MOVETO, 30.0, 3);
+    assertSegment(segments.get(1), PathIterator.SEG_LINETO, 30.5, 3);
+    assertSegment(segments.get(2), PathIterator.SEG_LINETO, 31.0, 3);
+  }
+
+  @Test
+  void testNaNStartsNewSubPath() {
+    final List<double[]> segments = segments(draw(PlotOrientation.VERTICAL,
+        new double[]{1.0, 1.5, 2.2, Double.NaN, 4.0, 5.0},
+        new double[]{1, 2, 3, 4, Double.NaN, 6}));
+    Assertions.assertEquals(4, segments.size());
+    assertSegment(segments.get(0), PathIterator.SEG_MOVETO, 1.0, 1);
+    assertSegment(segments.get(1), PathIterator.SEG_LINETO, 1.5, 2);
+    assertSegment(segments.get(2), PathIterator.SEG_LINETO, 2.2, 3);
+    // the line is interrupted by both undefined points
+    assertSegment(segments.get(3), PathIterator.SEG_MOVETO, 5.0, 6);
+  }
+
+  @Test
+  void testHorizontalOrientationSwapsCoordinates() {
+    final List<double[]> segments = segments(draw(PlotOrientation.HORIZONTAL,
+        new double[]{50.1, 50.4, 50.8, 52.0}, new double[]{7, 2, 4, 1}));
+    Assertions.assertEquals(4, segments.size());
+    // columns are along the domain value, which is the java2d y coordinate
+    assertSegment(segments.get(0), PathIterator.SEG_MOVETO, 7, 50.1);
+    assertSegment(segments.get(1), PathIterator.SEG_LINETO, 2, 50.4);
+    assertSegment(segments.get(2), PathIterator.SEG_LINETO, 4, 50.8);
+    assertSegment(segments.get(3), PathIterator.SEG_LINETO, 1, 52.0);
+  }
+}
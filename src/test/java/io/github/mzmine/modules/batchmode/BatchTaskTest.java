@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.modules.MZmineModuleCategory;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.StringParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.parameters.parametertypes.submodules.ParameterSetParameter;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.ExitCode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Color;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class BatchTaskTest {
+
+  private static final String STEP_A = "A";
+  private static final String STEP_B = "B";
+  private static final String STEP_ALL = "all files";
+
+  private final MZmineProject project = new MZmineProjectImpl();
+  private final List<RawDataFile> files = new ArrayList<>();
+  private final List<Event> events = Collections.synchronizedList(new ArrayList<>());
+  // released when the other files finished both pipelined steps
+  private final CountDownLatch otherFilesDone = new CountDownLatch(2);
+  private volatile boolean otherFilesFinishedFirst;
+
+  /**
+   * Consecutive per file steps run as one chain per raw data file. Each step receives only its own
+   * file, also in embedded parameters, and the first file does not hold back the others. The next
+   * step that combines all files waits for all chains.
+   */
+  @Test
+  void pipelinedStepsRunPerFile() {
+    final BatchQueue queue = new BatchQueue();
+    queue.add(new MZmineProcessingStepImpl<>(new ImportModule(), new SimpleParameterSet()));
+    queue.add(new MZmineProcessingStepImpl<>(new PerFileModule(), createParameters(STEP_A)));
+    queue.add(new MZmineProcessingStepImpl<>(new PerFileModule(), createParameters(STEP_B)));
+    queue.add(new MZmineProcessingStepImpl<>(new AllFilesModule(), createParameters(STEP_ALL)));
+
+    final ParameterSet parameters = new BatchModeParameters().cloneParameterSet();
+    parameters.setParameter(BatchModeParameters.batchQueue, queue);
+    parameters.setParameter(BatchModeParameters.advanced, false);
+    parameters.setParameter(BatchModeParameters.pipelineFileSteps, true);
+
+    final BatchTask batch = new BatchTask(project, parameters, Instant.now(), null);
+    batch.run();
+
+    assertEquals(TaskStatus.FINISHED, batch.getStatus(), batch.getErrorMessage());
+    assertEquals(3, files.size());
+    assertTrue(otherFilesFinishedFirst, "The first file blocked the pipeline of the other files");
+
+    int lastPerFileEnd = -1;
+    for (RawDataFile file : files) {
+      for (String step : List.of(STEP_A, STEP_B)) {
+        final List<Event> starts = events(step, file, true);
+        assertEquals(1, starts.size(), step + " " + file.getName());
+        assertEquals(List.of(file), starts.get(0).stepFiles());
+        assertEquals(List.of(file), starts.get(0).embeddedFiles());
+      }
+      final int endA = indexOf(events(STEP_A, file, false).get(0));
+      final int startB = indexOf(events(STEP_B, file, true).get(0));
+      final int endB = indexOf(events(STEP_B, file, false).get(0));
+      assertTrue(endA < startB, "Step B started before step A finished for " + file.getName());
+      lastPerFileEnd = Math.max(lastPerFileEnd, endB);
+    }
+
+    for (RawDataFile file : files) {
+      final List<Event> starts = events(STEP_ALL, file, true);
+      assertEquals(1, starts.size(), file.getName());
+      assertEquals(files, starts.get(0).stepFiles());
+      assertEquals(files, starts.get(0).embeddedFiles());
+      assertTrue(indexOf(starts.get(0)) > lastPerFileEnd,
+          "Step started before all files finished the pipelined steps");
+    }
+  }
+
+  private List<Event> events(String step, RawDataFile file, boolean start) {
+    synchronized (events) {
+      return events.stream()
+          .filter(e -> e.step().equals(step) && e.file() == file && e.start() == start).toList();
+    }
+  }
+
+  private int indexOf(Event event) {
+    synchronized (events) {
+      return events.indexOf(event);
+    }
+  }
+
+  private static ParameterSet createParameters(String step) {
+    final ParameterSet parameters = new StepParameters().cloneParameterSet();
+    parameters.setParameter(StepParameters.step, step);
+    parameters.getParameter(StepParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.BATCH_LAST_FILES);
+    parameters.getValue(StepParameters.embedded).getParameter(EmbeddedParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.BATCH_LAST_FILES);
+    return parameters;
+  }
+
+  /**
+   * Creates one task per selected file that records its start and end
+   */
+  private ExitCode createTasks(ParameterSet parameters, Collection<Task> tasks) {
+    final String step = parameters.getValue(StepParameters.step);
+    final List<RawDataFile> stepFiles = List.of(
+        parameters.getValue(StepParameters.dataFiles).getMatchingRawDataFiles());
+    final List<RawDataFile> embeddedFiles = List.of(
+        parameters.getValue(StepParameters.embedded).getValue(EmbeddedParameters.dataFiles)
+            .getMatchingRawDataFiles());
+    for (RawDataFile file : stepFiles) {
+      tasks.add(new RecordingTask(step, file, stepFiles, embeddedFiles));
+    }
+    return ExitCode.OK;
+  }
+
+  public static class StepParameters extends SimpleParameterSet {
+
+    public static final StringParameter step = new StringParameter("Step", "");
+    public static final RawDataFilesParameter dataFiles = new RawDataFilesParameter();
+    public static final ParameterSetParameter<EmbeddedParameters> embedded =
+        new ParameterSetParameter<>("Embedded", "", new EmbeddedParameters());
+
+    public StepParameters() {
+      super(new Parameter[]{step, dataFiles, embedded});
+    }
+  }
+
+  public static class EmbeddedParameters extends SimpleParameterSet {
+
+    public static final RawDataFilesParameter dataFiles = new RawDataFilesParameter();
+
+    public EmbeddedParameters() {
+      super(new Parameter[]{dataFiles});
+    }
+  }
+
+  private record Event(String step, RawDataFile file, List<RawDataFile> stepFiles,
+                       List<RawDataFile> embeddedFiles, boolean start) {
+
+  }
+
+  private class RecordingTask extends AbstractTask {
+
+    private final Event start;
+
+    private RecordingTask(String step, RawDataFile file, List<RawDataFile> stepFiles,
+        List<RawDataFile> embeddedFiles) {
+      super(null, Instant.now());
+      start = new Event(step, file, stepFiles, embeddedFiles, true);
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return "Step " + start.step() + " of " + start.file().getName();
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return 0;
+    }
+
+    @Override
+    public void run() {
+      setStatus(TaskStatus.PROCESSING);
+      events.add(start);
+      final RawDataFile file = start.file();
+      if (start.step().equals(STEP_A) && file == files.get(0)) {
+        // the other files need to pass both steps while the first file is still in the first step
+        try {
+          otherFilesFinishedFirst = otherFilesDone.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          setStatus(TaskStatus.CANCELED);
+          return;
+        }
+      }
+      events.add(new Event(start.step(), file, start.stepFiles(), start.embeddedFiles(), false));
+      if (start.step().equals(STEP_B) && file != files.get(0)) {
+        otherFilesDone.countDown();
+      }
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+
+  /**
+   * Adds the raw data files to the project
+   */
+  private class ImportModule implements MZmineProcessingModule {
+
+    @Override
+    public @NotNull String getName() {
+      return "Test import";
+    }
+
+    @Override
+    public @NotNull String getDescription() {
+      return getName();
+    }
+
+    @Override
+    public @NotNull ExitCode runModule(@NotNull MZmineProject project,
+        @NotNull ParameterSet parameters, @NotNull Collection<Task> tasks,
+        @NotNull Instant moduleCallDate) {
+      tasks.add(new AbstractTask(null, moduleCallDate) {
+        @Override
+        public String getTaskDescription() {
+          return getName();
+        }
+
+        @Override
+        public double getFinishedPercentage() {
+          return 0;
+        }
+
+        @Override
+        public void run() {
+          setStatus(TaskStatus.PROCESSING);
+          for (int i = 0; i < 3; i++) {
+            final RawDataFile file = new RawDataFileImpl("file " + i, null, null, Color.BLACK);
+            files.add(file);
+            project.addFile(file);
+          }
+          setStatus(TaskStatus.FINISHED);
+        }
+      });
+      return ExitCode.OK;
+    }
+
+    @Override
+    public @NotNull MZmineModuleCategory getModuleCategory() {
+      return MZmineModuleCategory.RAWDATA;
+    }
+
+    @Override
+    public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+      return SimpleParameterSet.class;
+    }
+  }
+
+  /**
+   * A module that processes each file on its own and may be pipelined
+   */
+  private class PerFileModule extends MassDetectionModule {
+
+    @Override
+    public @NotNull ExitCode runModule(@NotNull MZmineProject project,
+        @NotNull ParameterSet parameters, @NotNull Collection<Task> tasks,
+        @NotNull Instant moduleCallDate) {
+      return createTasks(parameters, tasks);
+    }
+
+    @Override
+    public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+      return StepParameters.class;
+    }
+  }
+
+  /**
+   * A module that needs all files
+   */
+  private class AllFilesModule extends ImportModule {
+
+    @Override
+    public @NotNull String getName() {
+      return "Test all files";
+    }
+
+    @Override
+    public @NotNull ExitCode runModule(@NotNull MZmineProject project,
+        @NotNull ParameterSet parameters, @NotNull Collection<Task> tasks,
+        @NotNull Instant moduleCallDate) {
+      return createTasks(parameters, tasks);
+    }
+
+    @Override
+    public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+      return StepParameters.class;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.gnf.clustering.LinkageMode;
+import org.gnf.clustering.Node;
+import org.gnf.clustering.Utils;
+import org.gnf.clustering.sequentialcache.SequentialCacheClustering;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class HierarAlignerGCTaskTest {
+
+  private static final double MZ_TOLERANCE = 0.02;
+  private static final double RT_TOLERANCE = 1.0;
+  private static final double MIN_SCORE = 0.3;
+  // m/z weight + RT weight
+  private static final double MAXIMUM_SCORE = 2.0;
+
+  @Test
+  void componentClustersEqualDenseClusters() {
+    final Random rand = new Random(42);
+    final LinkageMode[] linkages = {LinkageMode.MIN, LinkageMode.AVG, LinkageMode.MAX};
+    int bridgedComponents = 0;
+    for (int t = 0; t < 300; t++) {
+      final int numFiles = 2 + rand.nextInt(4);
+      final List<FeatureListRow> rows = createRows(rand, numFiles);
+      final int numRows = rows.size();
+      final LinkageMode linkage = linkages[t % linkages.length];
+      final RowVsRowDistanceProvider distProvider = new ScoreByDistanceProvider(rows);
+
+      // dense matrix over all rows, same as the task without components
+      final DistanceMatrixTriangular1D2D distances = new DistanceMatrixTriangular1D2D(numRows);
+      for (int x = 0; x < numRows; ++x) {
+        for (int y = x; y < numRows; ++y) {
+          distances.setValue(x, y, (float) distProvider.getRankedDistance(x, y, MZ_TOLERANCE,
+              RT_TOLERANCE, MIN_SCORE));
+        }
+      }
+      final DistanceMatrixTriangular1D2D distancesBkp = new DistanceMatrixTriangular1D2D(
+          distances);
+      final Node[] nodes = SequentialCacheClustering.clusterDM(distances, linkage, null, numRows);
+      Utils.NodeSort(nodes, numRows - 2, 0, new int[numRows]);
+      final List<List<Integer>> expected = HierarAlignerGCTask.getValidatedClusters_3(nodes, 0.0f,
+          numFiles, MAXIMUM_SCORE, distancesBkp);
+
+      final SparseRowDistances sparseDistances = new SparseRowDistances(rows, distProvider,
+          MZ_TOLERANCE, RT_TOLERANCE, MIN_SCORE);
+      final List<List<Integer>> actual = HierarAlignerGCTask.clusterComponents(sparseDistances,
+          linkage, numFiles, MAXIMUM_SCORE, () -> false);
+
+      assertEquals(numRows, actual.stream().mapToInt(List::size).sum());
+      assertEquals(toSets(expected), toSets(actual));
+
+      for (int c = 0; c < sparseDistances.getNumComponents(); c++) {
+        if (spansTwoRtGroups(rows, sparseDistances.getComponent(c))) {
+          bridgedComponents++;
+        }
+      }
+    }
+    assertTrue(bridgedComponents > 0, "No component bridges two RT groups");
+  }
+
+  /**
+   * Rows in RT groups that are separated by more than half the RT tolerance and rows between two
+   * groups that connect both groups to one component. Only a few m/z values, so rows of different
+   * files overlap.
+   */
+  private static List<FeatureListRow> createRows(Random rand, int numFiles) {
+    final List<RawDataFile> files = new ArrayList<>();
+    for (int f = 0; f < numFiles; f++) {
+      files.add(Mockito.mock(RawDataFile.class));
+    }
+    final List<FeatureListRow> rows = new ArrayList<>();
+    final int numGroups = 1 + rand.nextInt(8);
+    final int numRows = 5 + rand.nextInt(60);
+    for (int i = 0; i < numRows; i++) {
+      final int group = rand.nextInt(numGroups);
+      final boolean bridge = group + 1 < numGroups && rand.nextInt(8) == 0;
+      final float rt = bridge ? group + 0.55f + rand.nextFloat() * 0.1f
+          : group + rand.nextFloat() * 0.2f;
+      final double mz = 100 + rand.nextInt(3) + rand.nextDouble() * 0.01;
+      rows.add(createRow(files.get(rand.nextInt(numFiles)), rt, mz));
+    }
+    return rows;
+  }
+
+  private static FeatureListRow createRow(RawDataFile file, float rt, double mz) {
+    final Feature feature = Mockito.mock(Feature.class);
+    Mockito.when(feature.getRT()).thenReturn(rt);
+    Mockito.when(feature.getMZ()).thenReturn(mz);
+    final FeatureListRow row = Mockito.mock(FeatureListRow.class);
+    Mockito.when(row.getBestFeature()).thenReturn(feature);
+    Mockito.when(row.getRawDataFiles()).thenReturn(List.of(file));
+    return row;
+  }
+
+  private static boolean spansTwoRtGroups(List<FeatureListRow> rows, int[] component) {
+    final Set<Integer> groups = new HashSet<>();
+    for (int row : component) {
+      final float rt = rows.get(row).getBestFeature().getRT();
+      // rows between two groups are not counted
+      if (rt - (int) rt < 0.5f) {
+        groups.add((int) rt);
+      }
+    }
+    return groups.size() > 1;
+  }
+
+  private static Set<Set<Integer>> toSets(List<List<Integer>> clusters) {
+    final Set<Set<Integer>> sets = new HashSet<>();
+    for (List<Integer> cluster : clusters) {
+      sets.add(new HashSet<>(cluster));
+    }
+    return sets;
+  }
+
+  /**
+   * Scores decrease linearly with the RT and m/z differences instead of comparing the spectra of
+   * the rows
+   */
+  private static class ScoreByDistanceProvider extends RowVsRowDistanceProvider {
+
+    private final List<FeatureListRow> rows;
+
+    private ScoreByDistanceProvider(List<FeatureListRow> rows) {
+      super(null, rows, 1.0, 1.0, MAXIMUM_SCORE);
+      this.rows = rows;
+    }
+
+    @Override
+    public RowVsRowScoreGC getScore(int row_id, int aligned_row_id, double mzMaxDiff,
+        double rtMaxDiff) {
+      final Feature a = rows.get(row_id).getBestFeature();
+      final Feature b = rows.get(aligned_row_id).getBestFeature();
+      final double score = MAXIMUM_SCORE * (1 - Math.abs(a.getRT() - b.getRT()) / rtMaxDiff) * (1
+          - Math.abs(a.getMZ() - b.getMZ()) / mzMaxDiff);
+      final RowVsRowScoreGC rowScore = Mockito.mock(RowVsRowScoreGC.class);
+      Mockito.when(rowScore.getScore()).thenReturn(score);
+      return rowScore;
+    }
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ADAPChromatogramEngineTest {
+
+  @Test
+  void buildChromatograms() {
+    final var engine = new ADAPChromatogramEngine(6, 0, new MZTolerance(0.01, 0), 100);
+    // trace at 200 in scans 0-3, second data point in scan 1 is ignored
+    engine.addDataPoint(200.000, 500, 0);
+    engine.addDataPoint(200.002, 800, 1);
+    engine.addDataPoint(200.004, 300, 1);
+    engine.addDataPoint(199.998, 600, 2);
+    engine.addDataPoint(200.001, 50, 3);
+    // trace at 100 in scans 4 and 5
+    engine.addDataPoint(100.000, 150, 4);
+    engine.addDataPoint(100.005, 90, 5);
+    // too low to start a chromatogram
+    engine.addDataPoint(300, 99, 5);
+    engine.addDataPoint(Double.NaN, 1000, 5);
+
+    assertTrue(engine.buildChromatograms(() -> false));
+    assertEquals(2, engine.getNumberOfChromatograms());
+    // sorted by m/z
+    assertEquals(2, engine.getNumberOfDataPoints(0));
+    assertEquals(100.0025, engine.getMZ(0), 1e-9);
+    assertEquals(4, engine.getNumberOfDataPoints(1));
+    assertEquals((200.000 + 200.002 + 199.998 + 200.001) / 4, engine.getMZ(1), 1e-9);
+
+    assertTrue(engine.matchesMinContinuousDataPoints(1, 100, 3, 700));
+    assertFalse(engine.matchesMinContinuousDataPoints(1, 100, 4, 0));
+    assertFalse(engine.matchesMinContinuousDataPoints(0, 100, 2, 0));
+  }
+
+  @Test
+  void canceled() {
+    final var engine = new ADAPChromatogramEngine(1, 1, new MZTolerance(0.01, 0), 0);
+    engine.addDataPoint(200, 100, 0);
+    assertFalse(engine.buildChromatograms(() -> true));
+  }
+
+  @Test
+  void chromatogramsEqualRangeMapImplementation() {
+    final Random rand = new Random(42);
+    for (int t = 0; t < 1000; t++) {
+      final int numScans = 1 + rand.nextInt(40);
+      final Scan[] scans = new Scan[numScans];
+      for (int i = 0; i < numScans; i++) {
+        scans[i] = Mockito.mock(Scan.class);
+      }
+      final List<ScanDataPoint> dataPoints = createDataPoints(rand, numScans);
+      final MZTolerance tolerance = new MZTolerance(0.0005 + rand.nextInt(3) * 0.005,
+          rand.nextInt(3) * 5);
+      final double minHighest = rand.nextInt(3) * 2000;
+      final double minGroupIntensity = rand.nextInt(3) * 1000;
+      final int minConsecutive = 1 + rand.nextInt(4);
+      final int minTotal = 1 + rand.nextInt(4);
+
+      final List<RangeMapChromatogram> expected = new ArrayList<>();
+      for (RangeMapChromatogram chrom : buildRangeMapChromatograms(dataPoints, tolerance,
+          minHighest)) {
+        if (chrom.getNumberOfDataPoints() >= minTotal && chrom.matchesMinContinuousDataPoints(
+            numScans, minGroupIntensity, minConsecutive, minHighest)) {
+          chrom.addNZeros(numScans, 1, 1);
+          expected.add(chrom);
+        }
+      }
+
+      final var engine = new ADAPChromatogramEngine(numScans, dataPoints.size() / 3, tolerance,
+          minHighest);
+      for (ScanDataPoint dp : dataPoints) {
+        engine.addDataPoint(dp.getMZ(), dp.getIntensity(), dp.scan());
+      }
+      assertTrue(engine.buildChromatograms(() -> false));
+      final List<SimpleIonTimeSeries> actual = new ArrayList<>();
+      for (int c = 0; c < engine.getNumberOfChromatograms(); c++) {
+        if (engine.getNumberOfDataPoints(c) >= minTotal && engine.matchesMinContinuousDataPoints(
+            c, minGroupIntensity, minConsecutive, minHighest)) {
+          actual.add(engine.createTimeSeriesWithZeros(c, scans, null));
+        }
+      }
+
+      assertEquals(expected.size(), actual.size());
+      for (int c = 0; c < expected.size(); c++) {
+        final TreeMap<Integer, DataPoint> expectedDps = expected.get(c).dataPointsMap;
+        final SimpleIonTimeSeries series = actual.get(c);
+        assertEquals(expectedDps.size(), series.getNumberOfValues());
+        int i = 0;
+        for (Entry<Integer, DataPoint> entry : expectedDps.entrySet()) {
+          assertSame(scans[entry.getKey()], series.getSpectrum(i));
+          assertEquals(entry.getValue().getMZ(), series.getMZ(i));
+          assertEquals(entry.getValue().getIntensity(), series.getIntensity(i));
+          i++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Random centroids around a few m/z values with noise, ties in intensity and some NaN values
+   */
+  private static List<ScanDataPoint> createDataPoints(Random rand, int numScans) {
+    final double[] baseMzs = new double[1 + rand.nextInt(30)];
+    for (int i = 0; i < baseMzs.length; i++) {
+      baseMzs[i] = 100 + rand.nextInt(2000) / (rand.nextBoolean() ? 100.0 : 7.0);
+    }
+    final List<ScanDataPoint> dataPoints = new ArrayList<>();
+    for (int scan = 0; scan < numScans; scan++) {
+      final double[] mzs = new double[rand.nextInt(40)];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = rand.nextInt(4) == 0 ? 100 + rand.nextDouble() * 20
+            : baseMzs[rand.nextInt(baseMzs.length)] + (rand.nextBoolean() ? 0
+                : (rand.nextDouble() - 0.5) * 0.02);
+      }
+      Arrays.sort(mzs);
+      for (double mz : mzs) {
+        double intensity =
+            rand.nextInt(5) == 0 ? 1000 * rand.nextInt(5) : rand.nextDouble() * 10000;
+        if (rand.nextInt(200) == 0) {
+          intensity = Double.NaN;
+        }
+        dataPoints.add(new ScanDataPoint(mz, intensity, scan));
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * Copy of the former range map implementation of the chromatogram builder task
+   *
+   * @return chromatograms sorted by m/z
+   */
+  private static List<RangeMapChromatogram> buildRangeMapChromatograms(
+      List<ScanDataPoint> dataPoints, MZTolerance mzTolerance, double minHighestPoint) {
+    final RangeMap<Double, RangeMapChromatogram> rangeToChromMap = TreeRangeMap.create();
+
+    final ScanDataPoint[] allMzValues = dataPoints.toArray(ScanDataPoint[]::new);
+    Arrays.parallelSort(allMzValues,
+        new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
+
+    for (ScanDataPoint mzFeature : allMzValues) {
+      if (Double.isNaN(mzFeature.getMZ()) || Double.isNaN(mzFeature.getIntensity())) {
+        continue;
+      }
+
+      final Entry<Range<Double>, RangeMapChromatogram> existing = rangeToChromMap.getEntry(
+          mzFeature.getMZ());
+      if (existing != null) {
+        existing.getValue().addMzFeature(mzFeature.scan(), mzFeature);
+      } else {
+        if (mzFeature.getIntensity() < minHighestPoint) {
+          continue;
+        }
+        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature, mzTolerance);
+      }
+    }
+    return new ArrayList<>(rangeToChromMap.asMapOfRanges().values());
+  }
+
+  private static void startNewChromatogramLimitMzRanges(
+      RangeMap<Double, RangeMapChromatogram> rangeToChromMap, ScanDataPoint mzFeature,
+      MZTolerance mzTolerance) {
+    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
+
+    final Entry<Range<Double>, RangeMapChromatogram> minusRange = rangeToChromMap.getEntry(
+        toleranceRange.lowerEndpoint());
+    final Entry<Range<Double>, RangeMapChromatogram> plusRange = rangeToChromMap.getEntry(
+        toleranceRange.upperEndpoint());
+
+    Double toBeLowerBound =
+        minusRange == null ? toleranceRange.lowerEndpoint() : minusRange.getKey().upperEndpoint();
+    Double toBeUpperBound =
+        plusRange == null ? toleranceRange.upperEndpoint() : plusRange.getKey().lowerEndpoint();
+
+    if (toBeLowerBound < toBeUpperBound) {
+      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
+      RangeMapChromatogram newChrom = new RangeMapChromatogram();
+      newChrom.addMzFeature(mzFeature.scan(), mzFeature);
+
+      rangeToChromMap.put(newRange, newChrom);
+    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
+      plusRange.getValue().addMzFeature(mzFeature.scan(), mzFeature);
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
+              mzFeature.getMZ()));
+    }
+  }
+
+  private record ScanDataPoint(double mz, double intensity, int scan) implements DataPoint {
+
+    @Override
+    public double getMZ() {
+      return mz;
+    }
+
+    @Override
+    public double getIntensity() {
+      return intensity;
+    }
+  }
+
+  /**
+   * Copy of the former ADAP chromatogram with scan indices instead of scans
+   */
+  private static class RangeMapChromatogram {
+
+    private final TreeMap<Integer, DataPoint> dataPointsMap = new TreeMap<>();
+    private double mz;
+    private double mzSum = 0;
+    private int mzN = 0;
+
+    public boolean matchesMinContinuousDataPoints(int numScans, double intensityThresh,
+        int minimumScanSpan, double minHeight) {
+      if (minimumScanSpan <= 1 && getNumberOfDataPoints() > 0) {
+        return true;
+      }
+
+      int connectedScans = 0;
+      double maxCurrentHeight = 0d;
+      for (int scan = 0; scan < numScans; scan++) {
+        final DataPoint dataPoint = dataPointsMap.get(scan);
+        if (dataPoint != null && dataPoint.getIntensity() >= intensityThresh) {
+          connectedScans++;
+          if (maxCurrentHeight < dataPoint.getIntensity()) {
+            maxCurrentHeight = dataPoint.getIntensity();
+          }
+          if (connectedScans >= minimumScanSpan && maxCurrentHeight >= minHeight) {
+            return true;
+          }
+        } else {
+          connectedScans = 0;
+        }
+      }
+      return false;
+    }
+
+    public int getNumberOfDataPoints() {
+      return dataPointsMap.size();
+    }
+
+    public void addMzFeature(int scan, DataPoint mzValue) {
+      // the first data point is the most intense
+      if (dataPointsMap.containsKey(scan)) {
+        return;
+      }
+      dataPointsMap.put(scan, mzValue);
+      mzSum += mzValue.getMZ();
+      mzN++;
+      mz = mzSum / mzN;
+    }
+
+    public void addNZeros(int numScans, int minGap, int zeros) {
+      final SimpleDataPoint zeroDataPoint = new SimpleDataPoint(mz, 0d);
+      final Map<Integer, DataPoint> dataPointsToAdd = new HashMap<>();
+      final Integer[] detectedScans = dataPointsMap.keySet().toArray(Integer[]::new);
+
+      int nextDetectedScanInAllIndex = -1;
+      int nextDetectedScanIndex = 0;
+      int currentGap = 0;
+      int added;
+      for (int allScansIndex = 0; allScansIndex < numScans; allScansIndex++) {
+        added = 0;
+        if (allScansIndex == detectedScans[nextDetectedScanIndex]) {
+          if (currentGap >= minGap) {
+            // add leading zeros before allScansIndex
+            for (int i = 1; i <= zeros && i <= currentGap && (allScansIndex - i) >= 0; i++) {
+              dataPointsToAdd.put(allScansIndex - i, zeroDataPoint);
+              added++;
+            }
+            currentGap -= added;
+            // add trailing zeros after last detected
+            if (currentGap > 0 && nextDetectedScanInAllIndex >= 0) {
+              for (int i = 1;
+                  i <= zeros && i <= currentGap && (nextDetectedScanInAllIndex + i) < numScans;
+                  i++) {
+                dataPointsToAdd.put(nextDetectedScanInAllIndex + i, zeroDataPoint);
+              }
+            }
+          }
+          currentGap = 0;
+          nextDetectedScanIndex++;
+          nextDetectedScanInAllIndex = allScansIndex;
+
+          // no more detected scans
+          if (nextDetectedScanIndex == detectedScans.length) {
+            for (int i = 1; i <= zeros && (nextDetectedScanInAllIndex + i) < numScans; i++) {
+              dataPointsToAdd.put(nextDetectedScanInAllIndex + i, zeroDataPoint);
+            }
+            break;
+          }
+        } else {
+          currentGap++;
+        }
+
+        // last data point
+        if (allScansIndex == numScans - 1) {
+          if (currentGap >= minGap) {
+            if (currentGap > 0 && nextDetectedScanInAllIndex >= 0) {
+              for (int i = 1;
+                  i <= zeros && i <= currentGap && (nextDetectedScanInAllIndex + i) < numScans;
+                  i++) {
+                dataPointsToAdd.put(nextDetectedScanInAllIndex + i, zeroDataPoint);
+              }
+            }
+          }
+        }
+      }
+      dataPointsMap.putAll(dataPointsToAdd);
+    }
+  }
+}
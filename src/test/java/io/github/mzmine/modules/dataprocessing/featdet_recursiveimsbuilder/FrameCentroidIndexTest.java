@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.SpectraMerging;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class FrameCentroidIndexTest {
+
+  private static final int MAX_SCANS = 230;
+  private static final MZTolerance TOLERANCE = new MZTolerance(0.005, 15);
+
+  /**
+   * Mobilograms must contain the same data points as the ones of the range map algorithm that was
+   * used before the centroid index. The old algorithm adds the data points in order of decreasing
+   * intensity, equal intensities in scan order.
+   */
+  @Test
+  void mobilogramsEqualRangeMapImplementation() {
+    final Random random = new Random(42);
+    final List<MobilityScan> allScans = createMobilityScans();
+
+    int replacements = 0;
+    int recursions = 0;
+    for (int i = 0; i < 100; i++) {
+      final int numScans = 30 + random.nextInt(MAX_SCANS - 30);
+      final List<MobilityScan> scans = allScans.subList(0, numScans);
+      // low intensities create many ties, high intensities rarely replace data points
+      final int maxIntensity = i % 2 == 0 ? 20 : 100_000;
+      final List<MobilityDataPoint> dataPoints = randomFrame(random, scans, maxIntensity);
+
+      final int recursiveThreshold = i % 3 == 0 ? 50 : random.nextInt(10);
+      final boolean enableRecursive = i % 5 != 0;
+      final RangeMapMobilogramBuilder builder = new RangeMapMobilogramBuilder(recursiveThreshold,
+          enableRecursive);
+      final List<TempMobilogram> expected = builder.calcMobilograms(sortByIntensity(dataPoints));
+      replacements += builder.replacements;
+      recursions += builder.recursions;
+
+      final FrameCentroidIndex index = createIndex(scans, dataPoints);
+      assertEquals(dataPoints.size(), index.getNumberOfDataPoints());
+      final List<BuildingIonMobilitySeries> actual = index.buildMobilograms(TOLERANCE,
+          recursiveThreshold, enableRecursive, null);
+
+      assertEquals(expected.stream().map(FrameCentroidIndexTest::toString).sorted().toList(),
+          actual.stream().map(FrameCentroidIndexTest::toString).sorted().toList());
+    }
+
+    // make sure both rules were actually exercised
+    assertTrue(replacements > 0);
+    assertTrue(recursions > 0);
+  }
+
+  private static List<MobilityScan> createMobilityScans() {
+    final Frame frame = Mockito.mock(Frame.class);
+    final List<MobilityScan> scans = new ArrayList<>();
+    for (int i = 0; i < MAX_SCANS; i++) {
+      final MobilityScan scan = Mockito.mock(MobilityScan.class);
+      Mockito.when(scan.getMobilityScanNumber()).thenReturn(i + 3);
+      Mockito.when(scan.getFrame()).thenReturn(frame);
+      scans.add(scan);
+    }
+    return scans;
+  }
+
+  /**
+   * Ion mobility traces of close m/z and random noise. Data points are sorted by scan and m/z.
+   */
+  private static List<MobilityDataPoint> randomFrame(Random random, List<MobilityScan> scans,
+      int maxIntensity) {
+    final double[] centers = new double[5 + random.nextInt(60)];
+    for (int i = 0; i < centers.length; i++) {
+      centers[i] = 100 + random.nextDouble() * 50;
+    }
+
+    final List<MobilityDataPoint> dataPoints = new ArrayList<>();
+    final List<MobilityDataPoint> scanDataPoints = new ArrayList<>();
+    for (MobilityScan scan : scans) {
+      scanDataPoints.clear();
+      for (double center : centers) {
+        if (random.nextDouble() < 0.7) {
+          scanDataPoints.add(new MobilityDataPoint(scan, center + random.nextGaussian() * 0.004,
+              1 + random.nextInt(maxIntensity)));
+        }
+      }
+      for (int j = random.nextInt(5); j > 0; j--) {
+        scanDataPoints.add(new MobilityDataPoint(scan, 100 + random.nextDouble() * 50,
+            1 + random.nextInt(maxIntensity)));
+      }
+      scanDataPoints.sort(Comparator.comparingDouble(MobilityDataPoint::mz));
+      dataPoints.addAll(scanDataPoints);
+    }
+    return dataPoints;
+  }
+
+  private static FrameCentroidIndex createIndex(List<MobilityScan> scans,
+      List<MobilityDataPoint> dataPoints) {
+    final double[] mzs = new double[dataPoints.size()];
+    final double[] intensities = new double[dataPoints.size()];
+    final int[] scanIndices = new int[dataPoints.size()];
+    for (int i = 0; i < dataPoints.size(); i++) {
+      final MobilityDataPoint dp = dataPoints.get(i);
+      mzs[i] = dp.mz();
+      intensities[i] = dp.intensity();
+      scanIndices[i] = scans.indexOf(dp.scan());
+    }
+    return new FrameCentroidIndex(scans, mzs, intensities, scanIndices);
+  }
+
+  private static String toString(TempMobilogram mobilogram) {
+    return mobilogram.dataPoints.values().stream().map(
+        dp -> dp.scan().getMobilityScanNumber() + ":" + dp.mz() + ":" + dp.intensity()).toList()
+        .toString();
+  }
+
+  private static String toString(BuildingIonMobilitySeries series) {
+    final String[] values = new String[series.getNumberOfValues()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = series.getSpectrum(i).getMobilityScanNumber() + ":" + series.getMZ(i) + ":"
+          + series.getIntensity(i);
+    }
+    return Arrays.toString(values);
+  }
+
+  private static Set<MobilityDataPoint> sortByIntensity(Collection<MobilityDataPoint> dps) {
+    final Set<MobilityDataPoint> sorted = new TreeSet<>(RangeMapMobilogramBuilder.INTENSITY);
+    sorted.addAll(dps);
+    return sorted;
+  }
+
+  private record MobilityDataPoint(MobilityScan scan, double mz, double intensity) {
+
+  }
+
+  /**
+   * The mobilogram building with a range map of temp mobilograms that was replaced by the
+   * {@link FrameCentroidIndex}.
+   */
+  private static class RangeMapMobilogramBuilder {
+
+    // never returns 0, equal intensities keep their insertion order
+    private static final Comparator<MobilityDataPoint> INTENSITY = (o1, o2) ->
+        o1.intensity() > o2.intensity() ? -1 : 1;
+
+    private final int recursiveThreshold;
+    private final boolean enableRecursive;
+    private int replacements = 0;
+    private int recursions = 0;
+
+    private RangeMapMobilogramBuilder(int recursiveThreshold, boolean enableRecursive) {
+      this.recursiveThreshold = recursiveThreshold;
+      this.enableRecursive = enableRecursive;
+    }
+
+    private List<TempMobilogram> calcMobilograms(Set<MobilityDataPoint> dps) {
+      final RangeMap<Double, TempMobilogram> rangeMobilogramMap = TreeRangeMap.create();
+      final Set<MobilityDataPoint> leftoverDataPoints = new TreeSet<>(INTENSITY);
+
+      for (MobilityDataPoint dp : dps) {
+        TempMobilogram mobilogram = rangeMobilogramMap.get(dp.mz());
+        if (mobilogram == null) {
+          final Range<Double> proposedRange = TOLERANCE.getToleranceRange(dp.mz());
+          final Range<Double> actualRange = SpectraMerging.createNewNonOverlappingRange(
+              rangeMobilogramMap, proposedRange);
+          if (!proposedRange.equals(actualRange)) {
+            leftoverDataPoints.add(dp);
+            continue;
+          }
+          mobilogram = new TempMobilogram();
+          rangeMobilogramMap.put(actualRange, mobilogram);
+        }
+
+        final MobilityDataPoint previous = mobilogram.keepBetterFittingDataPoint(dp);
+        if (previous != null) {
+          if (previous != dp) {
+            replacements++;
+          }
+          leftoverDataPoints.add(previous);
+        }
+      }
+
+      final List<TempMobilogram> mobilograms = new ArrayList<>(
+          rangeMobilogramMap.asMapOfRanges().values());
+      if (enableRecursive && leftoverDataPoints.size() > recursiveThreshold) {
+        recursions++;
+        mobilograms.addAll(calcMobilograms(leftoverDataPoints));
+      }
+      return mobilograms;
+    }
+  }
+
+  /**
+   * Data points by mobility scan number
+   */
+  private static class TempMobilogram {
+
+    private final TreeMap<Integer, MobilityDataPoint> dataPoints = new TreeMap<>();
+    private double centerMz;
+
+    private MobilityDataPoint tryToAddDataPoint(MobilityDataPoint dp) {
+      final MobilityDataPoint current = dataPoints.putIfAbsent(
+          dp.scan().getMobilityScanNumber(), dp);
+      if (current == null) {
+        updateValues();
+      }
+      return current;
+    }
+
+    private MobilityDataPoint replaceDataPoint(MobilityDataPoint dp) {
+      final MobilityDataPoint replaced = dataPoints.put(dp.scan().getMobilityScanNumber(), dp);
+      updateValues();
+      return replaced;
+    }
+
+    private void updateValues() {
+      centerMz = 0d;
+      double summedIntensities = 0d;
+      for (MobilityDataPoint dp : dataPoints.values()) {
+        centerMz += dp.mz() * dp.intensity();
+        summedIntensities += dp.intensity();
+      }
+      centerMz /= summedIntensities;
+    }
+
+    private MobilityDataPoint keepBetterFittingDataPoint(MobilityDataPoint dp) {
+      final MobilityDataPoint current = tryToAddDataPoint(dp);
+      if (current == null) {
+        return null;
+      }
+      final double currentDelta = Math.abs(centerMz - current.mz());
+      final double proposedDelta = Math.abs(centerMz - dp.mz());
+      if (currentDelta < proposedDelta) {
+        return dp;
+      }
+
+      final int scanNumber = dp.scan().getMobilityScanNumber();
+      final Entry<Integer, MobilityDataPoint> ceilingEntry = dataPoints.ceilingEntry(
+          scanNumber + 1);
+      final Entry<Integer, MobilityDataPoint> floorEntry = dataPoints.floorEntry(scanNumber - 1);
+      if (ceilingEntry != null && floorEntry != null) {
+        final double avg =
+            (ceilingEntry.getValue().intensity() + floorEntry.getValue().intensity()) / 2;
+        if (Math.abs(avg - dp.intensity()) < Math.abs(avg - current.intensity())) {
+          return replaceDataPoint(dp);
+        }
+      }
+      return dp;
+    }
+  }
+}
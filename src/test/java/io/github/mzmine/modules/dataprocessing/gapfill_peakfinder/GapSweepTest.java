@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+class GapSweepTest {
+
+  /**
+   * Gaps filled by the sweep must find the same best peaks as gaps that are offered every scan.
+   */
+  @Test
+  void sweepEqualsOfferingAllScans() {
+    final Random random = new Random(42);
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+
+    int filledGaps = 0;
+    for (int i = 0; i < 100; i++) {
+      final double[][] compounds = randomCompounds(random);
+      final List<Scan> scans = randomScans(random, file, compounds);
+      final GapDefinition[] definitions = randomGaps(random, scans, compounds);
+
+      final List<Gap> allScanGaps = new ArrayList<>();
+      final List<Gap> sweepGaps = new ArrayList<>();
+      for (GapDefinition definition : definitions) {
+        allScanGaps.add(definition.create(file));
+        sweepGaps.add(definition.create(file));
+      }
+
+      for (Scan scan : scans) {
+        for (Gap gap : allScanGaps) {
+          gap.offerNextScan(scan);
+        }
+      }
+      final GapSweep sweep = new GapSweep(sweepGaps);
+      for (Scan scan : scans) {
+        sweep.offerNextScan(scan);
+      }
+
+      for (int g = 0; g < definitions.length; g++) {
+        final List<PeakPoint> expected = finishAndGetBestPeak(allScanGaps.get(g));
+        final List<PeakPoint> actual = finishAndGetBestPeak(sweepGaps.get(g));
+        assertEquals(expected, actual, definitions[g].toString());
+        if (!expected.isEmpty()) {
+          filledGaps++;
+        }
+      }
+    }
+    assertTrue(filledGaps > 1000);
+  }
+
+  /**
+   * Checks the last peak without adding a feature to the row
+   */
+  private static List<PeakPoint> finishAndGetBestPeak(Gap gap) {
+    gap.noMoreOffers(Integer.MAX_VALUE);
+    if (gap.bestPeakDataPoints == null) {
+      return List.of();
+    }
+    return gap.bestPeakDataPoints.stream()
+        .map(dp -> new PeakPoint(dp.getScan(), dp.getMZ(), dp.getIntensity())).toList();
+  }
+
+  /**
+   * @return compounds as m/z, apex RT, RT width and height
+   */
+  private static double[][] randomCompounds(Random random) {
+    final double[][] compounds = new double[5 + random.nextInt(100)][];
+    for (int i = 0; i < compounds.length; i++) {
+      compounds[i] = new double[]{100 + random.nextDouble() * 400, random.nextDouble() * 3,
+          0.02 + random.nextDouble() * 0.1, 1000 + random.nextDouble() * 1E6};
+    }
+    return compounds;
+  }
+
+  /**
+   * Scans in ascending RT order with Gaussian peaks of the compounds and random noise
+   */
+  private static List<Scan> randomScans(Random random, RawDataFile file, double[][] compounds) {
+    final List<Scan> scans = new ArrayList<>();
+    final int numScans = 50 + random.nextInt(250);
+    for (int s = 0; s < numScans; s++) {
+      final float rt = s * 0.01f;
+      final List<double[]> dataPoints = new ArrayList<>();
+      for (double[] compound : compounds) {
+        final double z = (rt - compound[1]) / compound[2];
+        final double intensity = compound[3] * Math.exp(-0.5 * z * z);
+        if (intensity > 1) {
+          dataPoints.add(new double[]{compound[0] + random.nextGaussian() * 0.002,
+              intensity * (0.9 + random.nextDouble() * 0.2)});
+        }
+      }
+      for (int j = random.nextInt(200); j > 0; j--) {
+        dataPoints.add(new double[]{100 + random.nextDouble() * 400, random.nextDouble() * 2000});
+      }
+      dataPoints.sort((a, b) -> Double.compare(a[0], b[0]));
+
+      final double[] mzs = dataPoints.stream().mapToDouble(dp -> dp[0]).toArray();
+      final double[] intensities = dataPoints.stream().mapToDouble(dp -> dp[1]).toArray();
+      scans.add(new SimpleScan(file, s, 1, rt, null, mzs, intensities, MassSpectrumType.CENTROIDED,
+          PolarityType.POSITIVE, "", Range.closed(100d, 500d)));
+    }
+    return scans;
+  }
+
+  /**
+   * Gaps of compounds and random gaps with overlapping m/z ranges. Some RT ranges are open or
+   * end exactly at a scan RT.
+   */
+  private static GapDefinition[] randomGaps(Random random, List<Scan> scans,
+      double[][] compounds) {
+    final float maxRT = scans.get(scans.size() - 1).getRetentionTime();
+    final GapDefinition[] gaps = new GapDefinition[1 + random.nextInt(300)];
+    for (int i = 0; i < gaps.length; i++) {
+      final double mz;
+      final double rt;
+      if (random.nextBoolean()) {
+        final double[] compound = compounds[random.nextInt(compounds.length)];
+        mz = compound[0];
+        rt = compound[1];
+      } else {
+        mz = 100 + random.nextDouble() * 400;
+        rt = random.nextDouble() * maxRT;
+      }
+      final double mzTolerance = 0.001 + random.nextDouble() * random.nextDouble();
+      final Range<Double> mzRange = Range.closed(mz - mzTolerance, mz + mzTolerance);
+
+      final Range<Float> rtRange;
+      final int rangeType = random.nextInt(4);
+      if (rangeType < 2) {
+        final double rtTolerance = 0.01 + random.nextDouble() * 0.3;
+        rtRange = Range.closed((float) (rt - rtTolerance), (float) (rt + rtTolerance));
+      } else {
+        // ends exactly at scan RTs
+        final int lowerScan = random.nextInt(scans.size() - 1);
+        final int upperScan = Math.min(scans.size() - 1, lowerScan + 1 + random.nextInt(30));
+        final float lower = scans.get(lowerScan).getRetentionTime();
+        final float upper = scans.get(upperScan).getRetentionTime();
+        rtRange = rangeType == 2 ? Range.closed(lower, upper) : Range.open(lower, upper);
+      }
+      gaps[i] = new GapDefinition(mzRange, rtRange, random.nextDouble() * 0.5,
+          random.nextBoolean());
+    }
+    return gaps;
+  }
+
+  private record GapDefinition(Range<Double> mzRange, Range<Float> rtRange, double intTolerance,
+                               boolean validateRtShape) {
+
+    private Gap create(RawDataFile file) {
+      return new Gap(null, file, mzRange, rtRange, intTolerance, validateRtShape);
+    }
+  }
+
+  private record PeakPoint(Scan scan, double mz, double intensity) {
+
+    @Override
+    public String toString() {
+      return Arrays.toString(new double[]{scan.getScanNumber(), mz, intensity});
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ModifiedCosineCandidateIndexTest {
+
+  private static final MZTolerance MZ_TOL = new MZTolerance(0.005, 10);
+  // no modification and common modifications between related molecules
+  private static final double[] MODIFICATIONS = {0, 0, 2.01565, 14.01565, 15.99491, -18.01056};
+
+  private record Spectrum(double precursorMz, DataPoint[] data) {
+
+  }
+
+  @Test
+  void prunedEdgesEqualAllPairs() {
+    final Random random = new Random(42);
+    final List<Spectrum> spectra = createSpectra(random, 40, 5);
+    final List<DataPoint[]> data = spectra.stream().map(Spectrum::data).toList();
+    final double[] precursorMzs = spectra.stream().mapToDouble(Spectrum::precursorMz).toArray();
+
+    for (double maxMzDelta : new double[]{Double.MAX_VALUE, 30}) {
+      for (int minMatch : new int[]{2, 4, 8}) {
+        for (double minCosine : new double[]{0.3, 0.7, 0.9}) {
+          final Set<Long> expected = new HashSet<>();
+          long allPairs = 0;
+          for (int i = 0; i < spectra.size() - 1; i++) {
+            for (int j = i + 1; j < spectra.size(); j++) {
+              if (precursorMzs[j] - precursorMzs[i] > maxMzDelta) {
+                break;
+              }
+              allPairs++;
+              if (isEdge(spectra, i, j, minMatch, minCosine)) {
+                expected.add(pairKey(i, j));
+              }
+            }
+          }
+
+          final ModifiedCosineCandidateIndex index = new ModifiedCosineCandidateIndex(data,
+              precursorMzs, MZ_TOL, Weights.SQRT, minMatch, minCosine, maxMzDelta);
+          final Set<Long> actual = new HashSet<>();
+          long candidatePairs = 0;
+          for (int i = 0; i < spectra.size() - 1; i++) {
+            final int[] candidates = index.findCandidates(i);
+            candidatePairs += candidates.length;
+            for (int j : candidates) {
+              if (isEdge(spectra, i, j, minMatch, minCosine)) {
+                actual.add(pairKey(i, j));
+              }
+            }
+          }
+
+          final String settings = "min match %d, min cosine %.1f, max m/z delta %s".formatted(
+              minMatch, minCosine, maxMzDelta);
+          Assertions.assertFalse(expected.isEmpty(), "No edges with " + settings);
+          Assertions.assertEquals(expected, actual, "Different edges with " + settings);
+          Assertions.assertTrue(candidatePairs < allPairs, "Nothing was pruned with " + settings);
+        }
+      }
+    }
+  }
+
+  /**
+   * Same check as {@link SpectralNetworkingTask#checkR2RMs2Similarity} for the modified cosine
+   */
+  private static boolean isEdge(List<Spectrum> spectra, int i, int j, int minMatch,
+      double minCosine) {
+    final Spectrum a = spectra.get(i);
+    final Spectrum b = spectra.get(j);
+    final SpectralSimilarity similarity = SpectralNetworkingTask.createMS2SimModificationAware(
+        MZ_TOL, a.data(), b.data(), minMatch, SpectralNetworkingTask.SIZE_OVERLAP,
+        a.precursorMz(), b.precursorMz());
+    return similarity != null && similarity.cosine() >= minCosine;
+  }
+
+  private static long pairKey(int i, int j) {
+    return ((long) i << 32) | j;
+  }
+
+  /**
+   * Families of related spectra. Members share fragments of the family, some shifted by the
+   * precursor m/z difference, and have random noise signals.
+   *
+   * @return spectra sorted by precursor m/z, data points sorted by intensity
+   */
+  private static List<Spectrum> createSpectra(Random random, int families, int members) {
+    final List<Spectrum> spectra = new ArrayList<>();
+    for (int f = 0; f < families; f++) {
+      final double precursorMz = 200 + random.nextDouble() * 700;
+      final int numFragments = 5 + random.nextInt(26);
+      final double[] fragmentMzs = new double[numFragments];
+      final double[] fragmentIntensities = new double[numFragments];
+      for (int k = 0; k < numFragments; k++) {
+        fragmentMzs[k] = 50 + random.nextDouble() * (precursorMz - 60);
+        fragmentIntensities[k] = 1 + random.nextDouble() * 1E4;
+      }
+
+      for (int m = 0; m < members; m++) {
+        final double modification = MODIFICATIONS[random.nextInt(MODIFICATIONS.length)];
+        final List<DataPoint> dps = new ArrayList<>();
+        for (int k = 0; k < numFragments; k++) {
+          if (random.nextDouble() > 0.85) {
+            continue;
+          }
+          // fragments that contain the modification are shifted
+          final double shift = random.nextDouble() < 0.4 ? modification : 0;
+          dps.add(new SimpleDataPoint(fragmentMzs[k] + shift + random.nextGaussian() * 0.001,
+              fragmentIntensities[k] * (0.8 + random.nextDouble() * 0.4)));
+        }
+        final int noise = random.nextInt(11);
+        for (int k = 0; k < noise; k++) {
+          dps.add(new SimpleDataPoint(50 + random.nextDouble() * precursorMz,
+              1 + random.nextDouble() * 500));
+        }
+        final DataPoint[] data = dps.toArray(DataPoint[]::new);
+        Arrays.sort(data, DataPointSorter.DEFAULT_INTENSITY);
+        spectra.add(new Spectrum(precursorMz + modification, data));
+      }
+    }
+    spectra.sort(Comparator.comparingDouble(Spectrum::precursorMz));
+    return spectra;
+  }
+}
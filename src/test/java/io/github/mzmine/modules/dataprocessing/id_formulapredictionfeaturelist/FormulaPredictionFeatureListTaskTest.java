@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist.FormulaPredictionFeatureListTask.MassWindow;
+import io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist.FormulaPredictionFeatureListTask.RowSearch;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.formula.MolecularFormulaGenerator;
+import org.openscience.cdk.formula.MolecularFormulaRange;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+class FormulaPredictionFeatureListTaskTest {
+
+  private static final MZTolerance TOLERANCE = new MZTolerance(0.002, 5);
+
+  /**
+   * The candidates of each row from the shared window formulas must equal the formulas generated
+   * for the row alone, in the same order. Also if windows are split because of too many formulas.
+   */
+  @Test
+  void windowCandidatesEqualPerRowGeneration() throws IOException {
+    final MolecularFormulaRange elements = createElementRange();
+    final Random random = new Random(42);
+    final List<RowSearch> searches = new ArrayList<>();
+    // overlapping tolerance ranges share windows
+    for (int i = 0; i < 60; i++) {
+      searches.add(createSearch(150.05 + i * 0.003));
+    }
+    for (int i = 0; i < 40; i++) {
+      searches.add(createSearch(400.1 + random.nextDouble() * 0.2));
+    }
+    for (int i = 0; i < 20; i++) {
+      searches.add(createSearch(150 + random.nextDouble() * 250));
+    }
+
+    final List<MassWindow> windows = FormulaPredictionFeatureListTask.createMassWindows(searches);
+    assertTrue(windows.size() < searches.size());
+
+    final Map<RowSearch, List<String>> expected = new IdentityHashMap<>();
+    for (RowSearch search : searches) {
+      expected.put(search, generateFormulas(search.massRange(), elements));
+    }
+    assertTrue(expected.values().stream().anyMatch(formulas -> formulas.size() > 1));
+
+    // a low maximum splits the windows
+    for (int maxFormulas : new int[]{FormulaPredictionFeatureListTask.MAX_WINDOW_FORMULAS, 10}) {
+      final Map<RowSearch, List<String>> actual = new IdentityHashMap<>();
+      for (MassWindow window : windows) {
+        FormulaPredictionFeatureListTask.findCandidates(window, elements, maxFormulas,
+            ConcurrentHashMap.newKeySet(), () -> false,
+            (search, candidates) -> actual.put(search, toStrings(Arrays.asList(candidates))));
+      }
+      assertEquals(searches.size(), actual.size());
+      for (RowSearch search : searches) {
+        assertEquals(expected.get(search), actual.get(search));
+      }
+    }
+  }
+
+  private static RowSearch createSearch(double mass) {
+    return new RowSearch(null, mass, TOLERANCE.getToleranceRange(mass));
+  }
+
+  private static MolecularFormulaRange createElementRange() throws IOException {
+    final Isotopes isotopes = Isotopes.getInstance();
+    final MolecularFormulaRange elements = new MolecularFormulaRange();
+    elements.addIsotope(isotopes.getMajorIsotope("C"), 0, 30);
+    elements.addIsotope(isotopes.getMajorIsotope("H"), 0, 60);
+    elements.addIsotope(isotopes.getMajorIsotope("N"), 0, 5);
+    elements.addIsotope(isotopes.getMajorIsotope("O"), 0, 10);
+    elements.addIsotope(isotopes.getMajorIsotope("S"), 0, 2);
+    return elements;
+  }
+
+  private static List<String> generateFormulas(Range<Double> massRange,
+      MolecularFormulaRange elements) {
+    final MolecularFormulaGenerator generator = new MolecularFormulaGenerator(
+        SilentChemObjectBuilder.getInstance(), massRange.lowerEndpoint(),
+        massRange.upperEndpoint(), elements);
+    final List<IMolecularFormula> formulas = new ArrayList<>();
+    IMolecularFormula formula;
+    while ((formula = generator.getNextFormula()) != null) {
+      formulas.add(formula);
+    }
+    return toStrings(formulas);
+  }
+
+  private static List<String> toStrings(List<IMolecularFormula> formulas) {
+    return formulas.stream().map(MolecularFormulaManipulator::getString).toList();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_all;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+class MsDataImportAndMassDetectWrapperTaskTest {
+
+  private static final int SCANS = 2000;
+
+  /**
+   * Mass lists created while the scans are imported must equal the mass detection of each scan.
+   */
+  @Test
+  void massDetectionDuringImport() {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    final MZmineProcessingStep<MassDetector> ms1Detector = createCentroidMassDetector(1E3);
+    final MZmineProcessingStep<MassDetector> ms2Detector = createCentroidMassDetector(0);
+
+    final AdvancedSpectraImportParameters advancedParam = new AdvancedSpectraImportParameters();
+    advancedParam.setParameter(AdvancedSpectraImportParameters.msMassDetection, true);
+    advancedParam.setParameter(AdvancedSpectraImportParameters.ms2MassDetection, true);
+    advancedParam.getParameter(AdvancedSpectraImportParameters.msMassDetection)
+        .getEmbeddedParameter().setValue(ms1Detector);
+    advancedParam.getParameter(AdvancedSpectraImportParameters.ms2MassDetection)
+        .getEmbeddedParameter().setValue(ms2Detector);
+    advancedParam.setParameter(AdvancedSpectraImportParameters.denormalizeMSnScans, false);
+
+    final ScanImportTask importTask = new ScanImportTask(file);
+    final MsDataImportAndMassDetectWrapperTask task = new MsDataImportAndMassDetectWrapperTask(
+        null, file, importTask, advancedParam, Instant.now());
+    task.run();
+
+    assertEquals(TaskStatus.FINISHED, importTask.getStatus());
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+    assertEquals(SCANS, file.getNumOfScans());
+    for (Scan scan : file.getScans()) {
+      final MZmineProcessingStep<MassDetector> detector =
+          scan.getMSLevel() == 1 ? ms1Detector : ms2Detector;
+      final double[][] expected = detector.getModule()
+          .getMassValues(scan, detector.getParameterSet());
+      final MassList massList = scan.getMassList();
+      assertNotNull(massList, "Missing mass list for scan " + scan.getScanNumber());
+      assertArrayEquals(expected[0], massList.getMzValues(new double[0]));
+      assertArrayEquals(expected[1], massList.getIntensityValues(new double[0]));
+    }
+  }
+
+  private static MZmineProcessingStep<MassDetector> createCentroidMassDetector(double noise) {
+    CentroidMassDetector detect = MZmineCore.getModuleInstance(CentroidMassDetector.class);
+    CentroidMassDetectorParameters param = new CentroidMassDetectorParameters();
+    param.setParameter(CentroidMassDetectorParameters.noiseLevel, noise);
+    param.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+    return new MZmineProcessingStepImpl<>(detect, param);
+  }
+
+  /**
+   * Adds random MS1 and MS2 scans to the data file like a data import
+   */
+  private static class ScanImportTask extends AbstractTask {
+
+    private final RawDataFile file;
+
+    private ScanImportTask(RawDataFile file) {
+      super(null, Instant.now());
+      this.file = file;
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return "Importing random scans";
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return file.getNumOfScans() / (double) SCANS;
+    }
+
+    @Override
+    public void run() {
+      setStatus(TaskStatus.PROCESSING);
+      final Random random = new Random(42);
+      try {
+        for (int i = 0; i < SCANS; i++) {
+          final int msLevel = i % 4 == 0 ? 1 : 2;
+          final int dataPoints = random.nextInt(200);
+          final double[] mzs = new double[dataPoints];
+          final double[] intensities = new double[dataPoints];
+          for (int dp = 0; dp < dataPoints; dp++) {
+            mzs[dp] = 50 + random.nextDouble() * 950;
+            intensities[dp] = random.nextDouble() * 1E4;
+          }
+          Arrays.sort(mzs);
+          file.addScan(new SimpleScan(file, i + 1, msLevel, i * 0.01f, null, mzs, intensities,
+              MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(50d, 1000d)));
+        }
+      } catch (IOException e) {
+        setErrorMessage(e.getMessage());
+        setStatus(TaskStatus.ERROR);
+        return;
+      }
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+}
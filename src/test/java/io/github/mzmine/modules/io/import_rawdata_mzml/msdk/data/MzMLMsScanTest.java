@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.MsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MzMLMsScanTest {
+
+  /**
+   * Decoding the binary data of all scans in parallel, each with its own copy of the memory mapped
+   * stream, must equal the sequential decoding from the shared stream.
+   */
+  @Test
+  void parallelDecodingEqualsSequential() throws MSDKException {
+    final File file = new File(MzMLMsScanTest.class.getClassLoader()
+        .getResource("rawdatafiles/additional/gc_orbi_profil.mzML").getFile());
+    final List<MsScan> sequential = new MzMLFileImportMethod(file).execute().getScans();
+    final List<MsScan> parallel = new MzMLFileImportMethod(file).execute().getScans();
+    assertFalse(sequential.isEmpty());
+    assertEquals(sequential.size(), parallel.size());
+
+    parallel.parallelStream().forEach(scan -> {
+      final MzMLMsScan mzMLScan = (MzMLMsScan) scan;
+      final ByteBufferInputStream mapped = assertInstanceOf(ByteBufferInputStream.class,
+          mzMLScan.getInputStream());
+      mzMLScan.decodeBinaryData(mapped.copy());
+    });
+
+    for (int i = 0; i < sequential.size(); i++) {
+      final MsScan expected = sequential.get(i);
+      final MsScan actual = parallel.get(i);
+      assertEquals(expected.getScanNumber(), actual.getScanNumber());
+      assertArrayEquals(expected.getMzValues(null), actual.getMzValues(null));
+      assertArrayEquals(expected.getIntensityValues(null), actual.getIntensityValues(null));
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.FwhmType;
+import io.github.mzmine.datamodel.features.types.numbers.MZRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.NeutralMassType;
+import io.github.mzmine.datamodel.features.types.numbers.RTRangeType;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FeatureListColumnsTest {
+
+  @TempDir
+  File tempDir;
+
+  private RawDataFile fileA;
+  private RawDataFile fileB;
+  private ModularFeatureList flist;
+
+  @BeforeEach
+  void createFeatureList() throws IOException {
+    fileA = createFile("columns test a.mzML");
+    fileB = createFile("columns test b.mzML");
+    flist = new ModularFeatureList("columns test", null, fileA, fileB);
+    flist.setSelectedScans(fileA, fileA.getScans());
+    flist.setSelectedScans(fileB, fileB.getScans());
+
+    // chromatograms in both files
+    final ModularFeatureListRow row1 = new ModularFeatureListRow(flist, 1);
+    row1.addFeature(fileA, createFeature(fileA, 200.1, 2, 7));
+    row1.addFeature(fileB, createFeature(fileB, 200.1, 3, 8));
+    row1.getFeature(fileA).set(ChargeType.class, 1);
+    row1.getFeature(fileA).set(FwhmType.class, 0.12f);
+    row1.getFeature(fileB).set(FwhmType.class, Float.NaN);
+    row1.set(NeutralMassType.class, 199.0927);
+    flist.addRow(row1);
+
+    // missing feature in file b, NaN row value
+    final ModularFeatureListRow row2 = new ModularFeatureListRow(flist, 2);
+    row2.addFeature(fileA, createFeature(fileA, 350.2, 0, 4));
+    row2.set(NeutralMassType.class, Double.NaN);
+    flist.addRow(row2);
+
+    // features without chromatograms, NaN and null values
+    final ModularFeatureListRow row3 = new ModularFeatureListRow(flist, 3);
+    for (RawDataFile file : List.of(fileA, fileB)) {
+      final ModularFeature feature = new ModularFeature(flist, file, FeatureStatus.ESTIMATED);
+      feature.set(MZType.class, file == fileA ? 412.3 : Double.NaN);
+      feature.set(FwhmType.class, file == fileA ? null : 0.2f);
+      feature.set(MZRangeType.class, Range.closed(412.29, 412.31));
+      feature.set(RTRangeType.class, Range.closed(0.4f, 0.6f));
+      row3.addFeature(file, feature);
+    }
+    flist.addRow(row3);
+
+    // chromatogram with a single data point
+    final ModularFeatureListRow row4 = new ModularFeatureListRow(flist, 4);
+    row4.addFeature(fileB, createFeature(fileB, 500.5, 9, 10));
+    flist.addRow(row4);
+  }
+
+  @Test
+  void binaryColumnsEqualXml() throws IOException {
+    final FeatureListColumnsWriter columns = new FeatureListColumnsWriter(flist);
+    // one type of each column kind
+    for (DataType<?> type : List.of(DataTypes.get(ChargeType.class), DataTypes.get(FwhmType.class),
+        DataTypes.get(MZType.class), DataTypes.get(MZRangeType.class),
+        DataTypes.get(RTRangeType.class))) {
+      Assertions.assertTrue(columns.isFeatureColumn(type), type.getUniqueID());
+    }
+    Assertions.assertTrue(columns.isRowColumn(DataTypes.get(NeutralMassType.class)));
+
+    final File xmlZip = save(new File(tempDir, "xml.zip"), false);
+    final File binaryZip = save(new File(tempDir, "binary.zip"), true);
+    try (ZipFile zip = new ZipFile(binaryZip)) {
+      Assertions.assertNotNull(
+          zip.getEntry(FeatureListSaveTask.getColumnsFileName(flist.getName())));
+    }
+
+    final ModularFeatureList xmlFlist = load(xmlZip);
+    final ModularFeatureList binaryFlist = load(binaryZip);
+    Assertions.assertEquals(flist.getNumberOfRows(), binaryFlist.getNumberOfRows());
+    Assertions.assertEquals(xmlFlist.getNumberOfRows(), binaryFlist.getNumberOfRows());
+
+    for (int i = 0; i < flist.getNumberOfRows(); i++) {
+      final FeatureListRow row = flist.getRow(i);
+      final ModularFeatureListRow xmlRow = (ModularFeatureListRow) xmlFlist.getRow(i);
+      final ModularFeatureListRow binaryRow = (ModularFeatureListRow) binaryFlist.getRow(i);
+      Assertions.assertEquals(row.getID(), binaryRow.getID());
+      for (DataType<?> type : ((ModularFeatureListRow) row).getTypes()) {
+        if (columns.isRowColumn(type)) {
+          Assertions.assertEquals(xmlRow.get(type), binaryRow.get(type),
+              () -> "Row " + row.getID() + " " + type.getUniqueID());
+        }
+      }
+
+      for (RawDataFile file : List.of(fileA, fileB)) {
+        final ModularFeature feature = (ModularFeature) row.getFeature(file);
+        final ModularFeature xmlFeature = xmlRow.getFeature(file);
+        final ModularFeature binaryFeature = binaryRow.getFeature(file);
+        if (feature == null) {
+          Assertions.assertNull(binaryFeature);
+          continue;
+        }
+        Assertions.assertNotNull(binaryFeature);
+        Assertions.assertEquals(columns.isSeriesColumn(feature),
+            feature.getFeatureData() != null);
+        Assertions.assertEquals(feature.getFeatureData(), binaryFeature.getFeatureData());
+        Assertions.assertEquals(xmlFeature.getFeatureData(), binaryFeature.getFeatureData());
+        for (DataType<?> type : feature.getTypes()) {
+          if (columns.isFeatureColumn(type)) {
+            Assertions.assertEquals(xmlFeature.get(type), binaryFeature.get(type),
+                () -> "Row " + row.getID() + " " + file.getName() + " " + type.getUniqueID());
+          }
+        }
+      }
+    }
+
+    // NaN and null values are kept
+    final ModularFeatureListRow row1 = (ModularFeatureListRow) binaryFlist.getRow(0);
+    final ModularFeatureListRow row2 = (ModularFeatureListRow) binaryFlist.getRow(1);
+    final ModularFeatureListRow row3 = (ModularFeatureListRow) binaryFlist.getRow(2);
+    Assertions.assertEquals(Double.valueOf(199.0927), row1.get(NeutralMassType.class));
+    Assertions.assertTrue(Float.isNaN(row1.getFeature(fileB).get(FwhmType.class)));
+    Assertions.assertNull(row1.getFeature(fileB).get(ChargeType.class));
+    Assertions.assertTrue(Double.isNaN(row2.get(NeutralMassType.class)));
+    Assertions.assertNull(row2.getFeature(fileB));
+    Assertions.assertNull(row3.get(NeutralMassType.class));
+    Assertions.assertTrue(Double.isNaN(row3.getFeature(fileB).get(MZType.class)));
+  }
+
+  @Test
+  void missingColumnsFileFails() throws IOException {
+    final File binaryZip = save(new File(tempDir, "binary.zip"), true);
+    final File missing = copyWithColumns(binaryZip, new File(tempDir, "missing.zip"),
+        bytes -> null);
+    assertLoadFails(missing, "missing");
+  }
+
+  @Test
+  void truncatedColumnsFileFails() throws IOException {
+    final File binaryZip = save(new File(tempDir, "binary.zip"), true);
+    final File truncated = copyWithColumns(binaryZip, new File(tempDir, "truncated.zip"),
+        bytes -> Arrays.copyOf(bytes, bytes.length / 2));
+    assertLoadFails(truncated, "truncated");
+  }
+
+  private static RawDataFile createFile(String name) throws IOException {
+    final RawDataFile file = new RawDataFileImpl(name, null, null, Color.BLACK);
+    for (int i = 0; i < 12; i++) {
+      file.addScan(new SimpleScan(file, i, 1, 0.1f * i, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+    }
+    return file;
+  }
+
+  /**
+   * @return a feature with a chromatogram of the scans from (inclusive) to (exclusive)
+   */
+  private ModularFeature createFeature(RawDataFile file, double mz, int from, int to) {
+    final List<Scan> scans = new ArrayList<>(file.getScans().subList(from, to));
+    final double[] mzs = new double[scans.size()];
+    final double[] intensities = new double[scans.size()];
+    for (int i = 0; i < scans.size(); i++) {
+      mzs[i] = mz + i * 1E-4;
+      intensities[i] = 1E4 * (i + 1);
+    }
+    return new ModularFeature(flist, file, new SimpleIonTimeSeries(null, mzs, intensities, scans),
+        FeatureStatus.DETECTED);
+  }
+
+  private File save(File zipFile, boolean binaryColumns) throws IOException {
+    try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+      final FeatureListSaveTask task = new FeatureListSaveTask(flist, zos, binaryColumns);
+      task.run();
+      Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus());
+    }
+    return zipFile;
+  }
+
+  private MZmineProject createProject() {
+    final MZmineProject project = new MZmineProjectImpl();
+    project.addFile(fileA);
+    project.addFile(fileB);
+    return project;
+  }
+
+  private ModularFeatureList load(File zipFile) throws IOException {
+    final MZmineProject project = createProject();
+    try (ZipFile zip = new ZipFile(zipFile)) {
+      final FeatureListLoadTask task = new FeatureListLoadTask(null, project, zip);
+      task.run();
+      Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+    }
+    final List<FeatureList> flists = project.getCurrentFeatureLists();
+    Assertions.assertEquals(1, flists.size());
+    return (ModularFeatureList) flists.get(0);
+  }
+
+  private void assertLoadFails(File zipFile, String reason) throws IOException {
+    final MZmineProject project = createProject();
+    try (ZipFile zip = new ZipFile(zipFile)) {
+      final FeatureListLoadTask task = new FeatureListLoadTask(null, project, zip);
+      task.run();
+      Assertions.assertEquals(TaskStatus.ERROR, task.getStatus());
+      Assertions.assertNotNull(task.getErrorMessage());
+      Assertions.assertTrue(task.getErrorMessage().contains(flist.getName()),
+          task.getErrorMessage());
+      Assertions.assertTrue(task.getErrorMessage().contains(reason), task.getErrorMessage());
+    }
+    Assertions.assertTrue(project.getCurrentFeatureLists().isEmpty());
+  }
+
+  /**
+   * Copies the project zip and replaces the columns file.
+   *
+   * @param columns maps the bytes of the columns file, null to remove it
+   */
+  private static File copyWithColumns(File source, File target,
+      UnaryOperator<byte[]> columns) throws IOException {
+    try (ZipFile zip = new ZipFile(source);
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(target))) {
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        byte[] bytes = zip.getInputStream(entry).readAllBytes();
+        if (entry.getName().endsWith(FeatureListColumnsWriter.COLUMNS_FILE_SUFFIX)) {
+          bytes = columns.apply(bytes);
+        }
+        if (bytes == null) {
+          continue;
+        }
+        zos.putNextEntry(new ZipEntry(entry.getName()));
+        zos.write(bytes);
+        zos.closeEntry();
+      }
+    }
+    return target;
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.PasefMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.ActivationMethod;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.modules.dataprocessing.id_ccscalibration.DriftTubeCCSCalibration;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataSnapshotReader;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import javafx.scene.paint.Color;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RawDataSnapshotTest {
+
+  @Test
+  void msFileRoundTrip() throws IOException {
+    final RawDataFileImpl file = new RawDataFileImpl("snapshot.mzML", "/data/snapshot.mzML", null,
+        Color.DARKBLUE);
+    file.setStartTimeStamp(LocalDateTime.of(2023, 5, 4, 12, 30, 15));
+
+    final SimpleScan ms1 = new SimpleScan(file, 1, 1, 1.5f, null,
+        new double[]{100.1, 200.2, 300.3}, new double[]{1E3, 5E4, 2E2},
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "FTMS + p ESI Full ms",
+        Range.closed(100d, 1000d), 25f);
+    ms1.addMassList(new SimpleMassList(null, new double[]{100.1, 200.2}, new double[]{1E3, 5E4}));
+    file.addScan(ms1);
+
+    final SimpleScan ms2 = new SimpleScan(file, 2, 2, 1.6f,
+        new DDAMsMsInfoImpl(200.2, 1, 35f, null, ms1, 2, ActivationMethod.HCD,
+            Range.closed(199.7, 200.7)), new double[]{50.5, 120.1, 199.9},
+        new double[]{10d, 800d, 30d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE,
+        "FTMS + p ESI d Full ms2 200.20@hcd35.00", Range.closed(50d, 210d), null);
+    ms2.addMassList(new ScanPointerMassList(ms2));
+    file.addScan(ms2);
+
+    // no mass list, scan definition and scanning range
+    file.addScan(new SimpleScan(file, 3, 1, 1.7f, null, new double[]{150d}, new double[]{42d},
+        MassSpectrumType.PROFILE, PolarityType.NEGATIVE, null, null, null));
+
+    final RawDataFile loaded = writeAndRead(file);
+    Assertions.assertEquals(RawDataFileImpl.class, loaded.getClass());
+    assertFileEquals(file, loaded);
+  }
+
+  @Test
+  void imsFileRoundTrip() throws IOException {
+    final IMSRawDataFileImpl file = new IMSRawDataFileImpl("snapshot.d", "/data/snapshot.d", null,
+        Color.WHITE);
+    file.setStartTimeStamp(LocalDateTime.of(2023, 5, 4, 13, 0));
+    file.setCCSCalibration(new DriftTubeCCSCalibration(0.15, 1.2, 0.998, 6));
+
+    final SimpleFrame ms1 = new SimpleFrame(file, 1, 1, 2.5f, new double[]{400.1, 500.25},
+        new double[]{3E4, 8E5}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "ms1 frame",
+        Range.closed(100d, 1500d), MobilityType.TIMS, null, 100f);
+    ms1.setMobilities(new double[]{1.3, 1.2, 1.1});
+    // mobility scans may be empty
+    ms1.setMobilityScans(List.of(
+        new BuildingMobilityScan(0, new double[]{400.1, 500.25}, new double[]{1E4, 5E5}),
+        new BuildingMobilityScan(1, new double[0], new double[0]),
+        new BuildingMobilityScan(2, new double[]{400.1}, new double[]{2E4})), false);
+    ms1.getMobilityScanStorage().setMassLists(null,
+        List.of(new double[][]{{500.25}, {5E5}}, new double[][]{{}, {}},
+            new double[][]{{400.1}, {2E4}}));
+    ms1.addMassList(new SimpleMassList(null, new double[]{500.25}, new double[]{8E5}));
+
+    final SimpleFrame ms2 = new SimpleFrame(file, 2, 2, 2.6f, new double[]{150.2, 480.3},
+        new double[]{2E3, 1E3}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "ms2 frame",
+        Range.closed(100d, 1500d), MobilityType.TIMS, null, 100f);
+    ms2.setMobilities(new double[]{1.3, 1.2});
+    ms2.setMobilityScans(
+        List.of(new BuildingMobilityScan(0, new double[]{150.2}, new double[]{2E3}),
+            new BuildingMobilityScan(1, new double[]{480.3}, new double[]{1E3})), false);
+    ms2.setPrecursorInfos(Set.of(
+        new PasefMsMsInfoImpl(500.25, Range.closed(0, 1), 25f, 2, ms1, ms2,
+            Range.closed(499.25, 501.25))));
+
+    file.addScan(ms1);
+    file.addScan(ms2);
+
+    final RawDataFile loaded = writeAndRead(file);
+    Assertions.assertEquals(IMSRawDataFileImpl.class, loaded.getClass());
+    assertFileEquals(file, loaded);
+
+    final IMSRawDataFileImpl imsLoaded = (IMSRawDataFileImpl) loaded;
+    Assertions.assertEquals(file.getMobilityType(), imsLoaded.getMobilityType());
+    Assertions.assertEquals(file.getCCSCalibration(), imsLoaded.getCCSCalibration());
+    for (int i = 0; i < file.getNumberOfFrames(); i++) {
+      assertFrameEquals(file.getFrame(i), imsLoaded.getFrame(i));
+    }
+  }
+
+  @Test
+  void framesWithoutMobilityScansAreNotSupported() throws IOException {
+    final IMSRawDataFileImpl file = new IMSRawDataFileImpl("no mobility scans.d", null, null,
+        Color.WHITE);
+    file.addScan(new SimpleFrame(file, 1, 1, 1f, new double[]{100d}, new double[]{1d},
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, null, Range.closed(50d, 500d),
+        MobilityType.TIMS, null, null));
+    Assertions.assertFalse(RawDataSnapshotWriter.isSupported(file));
+  }
+
+  private static RawDataFile writeAndRead(RawDataFile file) throws IOException {
+    Assertions.assertTrue(RawDataSnapshotWriter.isSupported(file));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RawDataSnapshotWriter.write(file, out);
+
+    final MZmineProject project = new MZmineProjectImpl();
+    final RawDataFile loaded = RawDataSnapshotReader.read(
+        new ByteArrayInputStream(out.toByteArray()), project, () -> false);
+    Assertions.assertNotNull(loaded);
+    Assertions.assertArrayEquals(new RawDataFile[]{loaded}, project.getDataFiles());
+    return loaded;
+  }
+
+  private static void assertFileEquals(RawDataFile expected, RawDataFile actual) {
+    Assertions.assertEquals(expected.getName(), actual.getName());
+    Assertions.assertEquals(expected.getAbsolutePath(), actual.getAbsolutePath());
+    Assertions.assertEquals(expected.getColor(), actual.getColor());
+    Assertions.assertEquals(expected.getStartTimeStamp(), actual.getStartTimeStamp());
+    Assertions.assertEquals(expected.getNumOfScans(), actual.getNumOfScans());
+
+    for (int i = 0; i < expected.getNumOfScans(); i++) {
+      final Scan expectedScan = expected.getScan(i);
+      final Scan actualScan = actual.getScan(i);
+      Assertions.assertEquals(expectedScan.getClass(), actualScan.getClass());
+      Assertions.assertEquals(expectedScan.getScanNumber(), actualScan.getScanNumber());
+      Assertions.assertEquals(expectedScan.getMSLevel(), actualScan.getMSLevel());
+      Assertions.assertEquals(expectedScan.getRetentionTime(), actualScan.getRetentionTime());
+      Assertions.assertEquals(expectedScan.getPolarity(), actualScan.getPolarity());
+      Assertions.assertEquals(expectedScan.getSpectrumType(), actualScan.getSpectrumType());
+      Assertions.assertEquals(expectedScan.getInjectionTime(), actualScan.getInjectionTime());
+      Assertions.assertEquals(expectedScan.getScanningMZRange(), actualScan.getScanningMZRange());
+      Assertions.assertEquals(expectedScan.getScanDefinition(), actualScan.getScanDefinition());
+      assertSpectrumEquals(expectedScan, actualScan);
+
+      final MassList expectedMassList = expectedScan.getMassList();
+      final MassList actualMassList = actualScan.getMassList();
+      if (expectedMassList == null) {
+        Assertions.assertNull(actualMassList);
+      } else {
+        Assertions.assertEquals(expectedMassList.getClass(), actualMassList.getClass());
+        assertSpectrumEquals(expectedMassList, actualMassList);
+      }
+
+      assertMsMsInfoEquals(expectedScan.getMsMsInfo(), actualScan.getMsMsInfo());
+      if (actualScan.getMsMsInfo() != null) {
+        Assertions.assertSame(actualScan, actualScan.getMsMsInfo().getMsMsScan());
+      }
+    }
+  }
+
+  private static void assertFrameEquals(Frame expected, Frame actual) {
+    Assertions.assertArrayEquals(expected.getMobilities().toDoubleArray(),
+        actual.getMobilities().toDoubleArray());
+    Assertions.assertEquals(expected.getMobilityRange(), actual.getMobilityRange());
+    Assertions.assertEquals(expected.getNumberOfMobilityScans(),
+        actual.getNumberOfMobilityScans());
+
+    for (int i = 0; i < expected.getNumberOfMobilityScans(); i++) {
+      final var expectedScan = expected.getMobilityScan(i);
+      final var actualScan = actual.getMobilityScan(i);
+      Assertions.assertEquals(expectedScan.getMobility(), actualScan.getMobility());
+      assertSpectrumEquals(expectedScan, actualScan);
+
+      final MassList expectedMassList = expectedScan.getMassList();
+      if (expectedMassList == null) {
+        Assertions.assertNull(actualScan.getMassList());
+      } else {
+        assertSpectrumEquals(expectedMassList, actualScan.getMassList());
+      }
+    }
+
+    final Comparator<PasefMsMsInfo> byMz = Comparator.comparingDouble(
+        PasefMsMsInfo::getIsolationMz);
+    final List<PasefMsMsInfo> expectedInfos = expected.getImsMsMsInfos().stream().sorted(byMz)
+        .toList();
+    final List<PasefMsMsInfo> actualInfos = actual.getImsMsMsInfos().stream().sorted(byMz)
+        .toList();
+    Assertions.assertEquals(expectedInfos.size(), actualInfos.size());
+    for (int i = 0; i < expectedInfos.size(); i++) {
+      assertMsMsInfoEquals(expectedInfos.get(i), actualInfos.get(i));
+      Assertions.assertEquals(expectedInfos.get(i).getSpectrumNumberRange(),
+          actualInfos.get(i).getSpectrumNumberRange());
+    }
+  }
+
+  private static void assertSpectrumEquals(MassSpectrum expected, MassSpectrum actual) {
+    final int numDp = expected.getNumberOfDataPoints();
+    Assertions.assertEquals(numDp, actual.getNumberOfDataPoints());
+    Assertions.assertArrayEquals(expected.getMzValues(new double[numDp]),
+        actual.getMzValues(new double[numDp]));
+    Assertions.assertArrayEquals(expected.getIntensityValues(new double[numDp]),
+        actual.getIntensityValues(new double[numDp]));
+  }
+
+  private static void assertMsMsInfoEquals(@Nullable MsMsInfo expected,
+      @Nullable MsMsInfo actual) {
+    if (expected == null) {
+      Assertions.assertNull(actual);
+      return;
+    }
+    Assertions.assertNotNull(actual);
+    Assertions.assertEquals(expected.getClass(), actual.getClass());
+    Assertions.assertEquals(expected.getMsLevel(), actual.getMsLevel());
+    Assertions.assertEquals(expected.getActivationMethod(), actual.getActivationMethod());
+    Assertions.assertEquals(expected.getActivationEnergy(), actual.getActivationEnergy());
+    Assertions.assertEquals(expected.getIsolationWindow(), actual.getIsolationWindow());
+    assertSameScanIndex(expected.getMsMsScan(), actual.getMsMsScan());
+
+    final DDAMsMsInfo expectedDda = (DDAMsMsInfo) expected;
+    final DDAMsMsInfo actualDda = (DDAMsMsInfo) actual;
+    Assertions.assertEquals(expectedDda.getIsolationMz(), actualDda.getIsolationMz());
+    Assertions.assertEquals(expectedDda.getPrecursorCharge(), actualDda.getPrecursorCharge());
+    assertSameScanIndex(expectedDda.getParentScan(), actualDda.getParentScan());
+  }
+
+  /**
+   * Scans of the loaded file are different instances, compare their position in the file.
+   */
+  private static void assertSameScanIndex(@Nullable Scan expected, @Nullable Scan actual) {
+    if (expected == null) {
+      Assertions.assertNull(actual);
+      return;
+    }
+    Assertions.assertNotNull(actual);
+    Assertions.assertNotSame(expected.getDataFile(), actual.getDataFile());
+    Assertions.assertEquals(expected.getDataFile().getScans().indexOf(expected),
+        actual.getDataFile().getScans().indexOf(actual));
+  }
+}
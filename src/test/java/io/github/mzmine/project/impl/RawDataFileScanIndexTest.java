@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.project.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+class RawDataFileScanIndexTest {
+
+  private static RawDataFile createFile(int numScans, long seed) throws IOException {
+    final RawDataFile file = new RawDataFileImpl("test", null, null, Color.BLACK);
+    final Random random = new Random(seed);
+    float rt = 0f;
+    for (int i = 0; i < numScans; i++) {
+      // mostly ms2 scans between ms1 scans, some equal rts
+      final int msLevel = random.nextInt(4) == 0 ? 1 : 2;
+      rt += random.nextInt(5) == 0 ? 0f : random.nextFloat();
+      file.addScan(new SimpleScan(file, i, msLevel, rt, null, new double[]{100d},
+          new double[]{1000d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+          Range.closed(0d, 1000d)));
+    }
+    return file;
+  }
+
+  @Test
+  void testScansByLevelAndRtRange() throws IOException {
+    final RawDataFile file = createFile(500, 42);
+    final List<Scan> scans = file.getScans();
+    assertArrayEquals(new int[]{1, 2}, file.getMSLevels());
+
+    for (final int level : new int[]{1, 2, 3}) {
+      final List<Scan> expected = scans.stream().filter(s -> s.getMSLevel() == level).toList();
+      assertEquals(expected, file.getScanNumbers(level));
+      assertEquals(expected.size(), file.getNumOfScans(level));
+
+      final float maxRt = scans.getLast().getRetentionTime();
+      final Random random = new Random(level);
+      for (int i = 0; i < 200; i++) {
+        final float a = random.nextFloat() * maxRt;
+        final float b = a + random.nextFloat() * 20f;
+        // include exact scan rts as bounds
+        final float lower =
+            i % 3 == 0 ? scans.get(random.nextInt(scans.size())).getRetentionTime() : a;
+        final float upper = Math.max(lower, b);
+        for (final Range<Float> range : List.of(Range.closed(lower, upper),
+            Range.open(lower, upper + 1), Range.closedOpen(lower, upper), Range.atLeast(lower),
+            Range.atMost(upper))) {
+          final Scan[] expectedInRange = expected.stream()
+              .filter(s -> range.contains(s.getRetentionTime())).toArray(Scan[]::new);
+          assertArrayEquals(expectedInRange, file.getScanNumbers(level, range), range.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testClosestScan() throws IOException {
+    final RawDataFile file = createFile(300, 7);
+    final List<Scan> scans = file.getScans();
+    final float maxRt = scans.getLast().getRetentionTime();
+    final Random random = new Random(3);
+    for (int i = 0; i < 500; i++) {
+      final float rt = random.nextFloat() * (maxRt + 10f) - 5f;
+      final Scan closest = file.binarySearchClosestScan(rt);
+      final float minDelta = (float) scans.stream()
+          .mapToDouble(s -> Math.abs(s.getRetentionTime() - rt)).min().orElseThrow();
+      assertEquals(minDelta, Math.abs(closest.getRetentionTime() - rt), 1E-5f);
+
+      for (final int level : new int[]{1, 2}) {
+        final Scan closestLevel = file.binarySearchClosestScan(rt, level);
+        assertEquals(level, closestLevel.getMSLevel());
+        final float minLevelDelta = (float) scans.stream().filter(s -> s.getMSLevel() == level)
+            .mapToDouble(s -> Math.abs(s.getRetentionTime() - rt)).min().orElseThrow();
+        assertEquals(minLevelDelta, Math.abs(closestLevel.getRetentionTime() - rt), 1E-5f);
+      }
+      assertNull(file.binarySearchClosestScan(rt, 3));
+    }
+  }
+
+  @Test
+  void testIndexUpdatedOnAddScan() throws IOException {
+    final RawDataFile file = createFile(10, 1);
+    final int ms1 = file.getNumOfScans(1);
+    final float rt = file.getScans().getLast().getRetentionTime() + 1f;
+    file.addScan(new SimpleScan(file, 10, 1, rt, null, new double[]{100d}, new double[]{1000d},
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+    assertEquals(ms1 + 1, file.getNumOfScans(1));
+    assertEquals(file.getScans().getLast(), file.binarySearchClosestScan(rt + 5f, 1));
+  }
+}
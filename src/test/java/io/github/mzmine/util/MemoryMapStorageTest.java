@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+class MemoryMapStorageTest {
+
+  private static final Logger logger = Logger.getLogger(MemoryMapStorageTest.class.getName());
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  @Test
+  void testConcurrentStore() throws Exception {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      final List<Future<List<DoubleBuffer>>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          final List<DoubleBuffer> buffers = new ArrayList<>();
+          for (int i = 0; i < 2000; i++) {
+            // include arrays larger than an arena allocation
+            final double[] data = new double[i % 100 == 0 ? 300_000 : i % 50 + 1];
+            Arrays.fill(data, thread * 1E6 + i);
+            buffers.add(storage.storeData(data));
+          }
+          return buffers;
+        }));
+      }
+
+      for (int t = 0; t < THREADS; t++) {
+        final List<DoubleBuffer> buffers = futures.get(t).get();
+        for (int i = 0; i < buffers.size(); i++) {
+          final DoubleBuffer buffer = buffers.get(i);
+          final double expected = t * 1E6 + i;
+          Assertions.assertEquals(i % 100 == 0 ? 300_000 : i % 50 + 1, buffer.capacity());
+          for (int j = 0; j < buffer.capacity(); j++) {
+            Assertions.assertEquals(expected, buffer.get(j));
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      storage.discard(null);
+    }
+  }
+
+  @Test
+  void testSegmentIsReclaimedAfterBuffersAreCollected() throws Exception {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    try {
+      List<DoubleBuffer> buffers = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        // arena and own chunk allocations
+        buffers.add(storage.storeData(new double[i % 10 == 0 ? 300_000 : 20]));
+      }
+      Assertions.assertEquals(1, storage.getNumberOfSegments());
+      final File file = storage.getSegmentFiles().get(0);
+      Assertions.assertTrue(file.exists());
+
+      buffers = null;
+      awaitReclaimed(storage);
+      Assertions.assertEquals(0, storage.getNumberOfSegments());
+      Assertions.assertFalse(file.exists(), "Temporary file of the segment was not deleted");
+
+      // the arena of this thread was collected and space is mapped in a new segment
+      final double[] data = {1, 2, 3};
+      final DoubleBuffer buffer = storage.storeData(data);
+      Assertions.assertEquals(1, storage.getNumberOfSegments());
+      Assertions.assertNotEquals(file, storage.getSegmentFiles().get(0));
+      for (int i = 0; i < data.length; i++) {
+        Assertions.assertEquals(data[i], buffer.get(i));
+      }
+      // the arena is reused for the next array
+      final DoubleBuffer next = storage.storeData(data);
+      Assertions.assertEquals(1, storage.getNumberOfSegments());
+      Assertions.assertEquals(3d, next.get(2));
+    } finally {
+      storage.discard(null);
+    }
+  }
+
+  /**
+   * The cleaner runs asynchronously after garbage collection, so retry a bounded number of times
+   */
+  private static void awaitReclaimed(MemoryMapStorage storage) throws InterruptedException {
+    for (int i = 0; i < 50 && storage.getNumberOfSegments() > 0; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+  }
+
+  /**
+   * Contended throughput of storeData compared to the previous synchronized implementation. Warm
+   * up and measurement iterations similar to JMH, run manually.
+   */
+  @Disabled("Benchmark")
+  @Test
+  void benchmarkContendedStoreData() throws Exception {
+    for (boolean previous : new boolean[]{true, false}) {
+      // warm up
+      for (int i = 0; i < 3; i++) {
+        measureStoreThroughput(previous, THREADS, 200_000);
+      }
+      double total = 0;
+      final int iterations = 5;
+      for (int i = 0; i < iterations; i++) {
+        total += measureStoreThroughput(previous, THREADS, 200_000);
+      }
+      logger.info("%s storeData, %d threads: %.0f ops/s".formatted(
+          previous ? "synchronized" : "arena", THREADS, total / iterations));
+    }
+  }
+
+  /**
+   * @return operations per second
+   */
+  private double measureStoreThroughput(boolean previous, int threads, int opsPerThread)
+      throws Exception {
+    final MemoryMapStorage storage = previous ? null : MemoryMapStorage.create();
+    final SynchronizedStorage synchronizedStorage = previous ? new SynchronizedStorage() : null;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final double[] data = new double[32];
+      final List<Future<?>> futures = new ArrayList<>();
+      final long start = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < opsPerThread; i++) {
+            try {
+              if (previous) {
+                synchronizedStorage.storeData(data, 0, data.length);
+              } else {
+                storage.storeData(data);
+              }
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      final long nanos = System.nanoTime() - start;
+      return threads * (double) opsPerThread / nanos * TimeUnit.SECONDS.toNanos(1);
+    } finally {
+      executor.shutdownNow();
+      if (previous) {
+        synchronizedStorage.discard();
+      } else {
+        storage.discard(null);
+      }
+    }
+  }
+
+  /**
+   * Copy of the previous MemoryMapStorage.storeData that synchronized every call on the storage
+   */
+  private static class SynchronizedStorage {
+
+    private static final long STORAGE_FILE_CAPACITY = 1_000_000_000L;
+    private final List<File> temporaryFiles = new ArrayList<>();
+    private MappedByteBuffer currentMappedFile = null;
+
+    private MappedByteBuffer createNewMappedFile() throws IOException {
+      File storageFileName = File.createTempFile("mzmine", ".tmp");
+      temporaryFiles.add(storageFileName);
+      RandomAccessFile storageFile = new RandomAccessFile(storageFileName, "rw");
+      MappedByteBuffer mappedFileBuffer = storageFile.getChannel()
+          .map(FileChannel.MapMode.READ_WRITE, 0, STORAGE_FILE_CAPACITY);
+      storageFile.close();
+      storageFileName.deleteOnExit();
+      return mappedFileBuffer;
+    }
+
+    public synchronized DoubleBuffer storeData(final double[] data, int offset, int length)
+        throws IOException {
+      if ((currentMappedFile == null)
+          || (currentMappedFile.position() + (length * Double.BYTES) > STORAGE_FILE_CAPACITY)) {
+        currentMappedFile = createNewMappedFile();
+      }
+      final int savedPosition = currentMappedFile.position();
+      currentMappedFile.limit(savedPosition + length * Double.BYTES);
+      final ByteBuffer slice = currentMappedFile.slice();
+      DoubleBuffer sliceDoubleView = slice.asDoubleBuffer();
+      sliceDoubleView.put(data, offset, length);
+      currentMappedFile.position(savedPosition + length * Double.BYTES);
+      return sliceDoubleView.asReadOnlyBuffer();
+    }
+
+    public synchronized void discard() {
+      currentMappedFile = null;
+      temporaryFiles.forEach(File::delete);
+      temporaryFiles.clear();
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util.scans;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.maths.CenterFunction;
+import io.github.mzmine.util.maths.CenterMeasure;
+import io.github.mzmine.util.maths.Weighting;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+class SpectraMergingTest {
+
+  private static final Logger logger = Logger.getLogger(SpectraMergingTest.class.getName());
+  private static final CenterFunction MEDIAN = new CenterFunction(CenterMeasure.MEDIAN,
+      Weighting.NONE);
+
+  @Test
+  void mergedMzsAndIntensitiesEqualReference() {
+    final Random rand = new Random(42);
+    for (int i = 0; i < 300; i++) {
+      // tof like binned mzs and intensities create many ties
+      final List<MassList> spectra = createSpectra(rand, rand.nextInt(40) + 1,
+          rand.nextInt(300) + 1, i % 2 == 0);
+      final MZTolerance tolerance =
+          i % 3 == 0 ? SpectraMerging.pasefMS2MergeTol : new MZTolerance(0.001, 5);
+      final CenterFunction cf = i % 5 == 0 ? MEDIAN : SpectraMerging.DEFAULT_CENTER_FUNCTION;
+      final Double inputNoise = i % 7 == 0 ? 5d : null;
+      final Double outputNoise = i % 6 == 0 ? 10d : null;
+      final Integer minNumPeaks = i % 4 == 0 ? 2 : null;
+
+      for (IntensityMergingType type : IntensityMergingType.values()) {
+        final double[][] expected = referenceMerge(spectra, tolerance, type, cf, inputNoise,
+            outputNoise, minNumPeaks);
+        final double[][] actual = SpectraMerging.calculatedMergedMzsAndIntensities(spectra,
+            tolerance, type, cf, inputNoise, outputNoise, minNumPeaks);
+        assertArrayEquals(expected[0], actual[0]);
+        assertArrayEquals(expected[1], actual[1]);
+      }
+    }
+  }
+
+  /**
+   * Merging throughput compared to the former range map implementation. Warm up and measurement
+   * iterations similar to JMH, run manually.
+   */
+  @Disabled("Benchmark")
+  @Test
+  void benchmarkMerging() {
+    final Random rand = new Random(42);
+    // PASEF like: 60 mobility scans with up to 400 signals, binned tof mzs
+    final List<List<MassList>> pasef = new ArrayList<>();
+    // MS1 like: 20 scans with up to 3000 signals
+    final List<List<MassList>> ms1 = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      pasef.add(createSpectra(rand, 60, 400, true));
+      ms1.add(createSpectra(rand, 20, 3000, false));
+    }
+
+    logMergingSpeedup("PASEF MS2, 60 scans x 400 signals", pasef,
+        SpectraMerging.pasefMS2MergeTol);
+    logMergingSpeedup("MS1, 20 scans x 3000 signals", ms1, SpectraMerging.defaultMs1MergeTol);
+  }
+
+  private void logMergingSpeedup(String name, List<List<MassList>> sets,
+      MZTolerance tolerance) {
+    // warm up
+    for (int i = 0; i < 5; i++) {
+      measureMerging(sets, tolerance, true);
+      measureMerging(sets, tolerance, false);
+    }
+    long reference = 0;
+    long primitive = 0;
+    final int iterations = 10;
+    for (int i = 0; i < iterations; i++) {
+      reference += measureMerging(sets, tolerance, true);
+      primitive += measureMerging(sets, tolerance, false);
+    }
+    logger.info("%s: range map %.1f ms, primitive %.1f ms, speedup %.1fx".formatted(name,
+        reference / 1E6 / iterations, primitive / 1E6 / iterations,
+        reference / (double) primitive));
+  }
+
+  /**
+   * @return nanoseconds to merge all sets
+   */
+  private long measureMerging(List<List<MassList>> sets, MZTolerance tolerance,
+      boolean reference) {
+    final long start = System.nanoTime();
+    for (List<MassList> spectra : sets) {
+      if (reference) {
+        referenceMerge(spectra, tolerance, IntensityMergingType.SUMMED,
+            SpectraMerging.DEFAULT_CENTER_FUNCTION, null, null, null);
+      } else {
+        SpectraMerging.calculatedMergedMzsAndIntensities(spectra, tolerance,
+            IntensityMergingType.SUMMED, SpectraMerging.DEFAULT_CENTER_FUNCTION, null, null, null);
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<MassList> createSpectra(Random rand, int numSpectra, int numSignals,
+      boolean binned) {
+    final double[] signals = new double[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      signals[i] = 100 + rand.nextDouble() * 1400;
+    }
+
+    final List<MassList> spectra = new ArrayList<>();
+    for (int s = 0; s < numSpectra; s++) {
+      final int numDp = rand.nextInt(numSignals) + 1;
+      final double[] mzs = new double[numDp];
+      for (int i = 0; i < numDp; i++) {
+        final double mz = signals[rand.nextInt(numSignals)] + rand.nextGaussian() * 0.004;
+        mzs[i] = binned ? Math.round(mz * 500) / 500d : mz;
+      }
+      Arrays.sort(mzs);
+      final double[] intensities = new double[numDp];
+      for (int i = 0; i < numDp; i++) {
+        intensities[i] = binned ? rand.nextInt(20) + 1 : rand.nextDouble() * 1E4;
+      }
+      spectra.add(new SimpleMassList(null, mzs, intensities));
+    }
+    return spectra;
+  }
+
+  /**
+   * The former implementation based on a range map, used as reference
+   */
+  private static <T extends MassSpectrum> double[][] referenceMerge(Collection<T> source,
+      MZTolerance tolerance, IntensityMergingType intensityMergingType,
+      CenterFunction mzCenterFunction, Double inputNoiseLevel, Double outputNoiseLevel,
+      Integer minNumPeaks) {
+    final List<IndexedDataPoint> dataPoints = new ArrayList<>();
+    int index = 0;
+    for (T spectrum : source) {
+      for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
+        if (inputNoiseLevel == null || spectrum.getIntensityValue(i) > inputNoiseLevel) {
+          dataPoints.add(
+              new IndexedDataPoint(spectrum.getMzValue(i), spectrum.getIntensityValue(i), index));
+        }
+      }
+      index++;
+    }
+    dataPoints.sort(DataPointSorter.DEFAULT_INTENSITY);
+
+    final RangeMap<Double, SortedSet<IndexedDataPoint>> dataPointRanges = TreeRangeMap.create();
+    for (IndexedDataPoint dp : dataPoints) {
+      SortedSet<IndexedDataPoint> dplist = dataPointRanges.get(dp.getMZ());
+      // the set keeps only the first data point of each spectrum
+      if (dplist == null) {
+        dplist = new TreeSet<>(Comparator.comparingInt(IndexedDataPoint::getIndex));
+        Range<Double> range = SpectraMerging.createNewNonOverlappingRange(dataPointRanges,
+            tolerance.getToleranceRange(dp.getMZ()));
+        dataPointRanges.put(range, dplist);
+      }
+      dplist.add(dp);
+    }
+
+    final List<Double> newMzs = new ArrayList<>();
+    final List<Double> newIntensities = new ArrayList<>();
+    for (Entry<Range<Double>, SortedSet<IndexedDataPoint>> entry : dataPointRanges.asMapOfRanges()
+        .entrySet()) {
+      if (minNumPeaks != null && entry.getValue().size() < minNumPeaks) {
+        continue;
+      }
+      double[] mzs = entry.getValue().stream().mapToDouble(IndexedDataPoint::getMZ).toArray();
+      double[] intensities = entry.getValue().stream().mapToDouble(IndexedDataPoint::getIntensity)
+          .toArray();
+
+      double newMz = mzCenterFunction.calcCenter(mzs, intensities);
+      double newIntensity = switch (intensityMergingType) {
+        case SUMMED -> Arrays.stream(intensities).sum();
+        case MAXIMUM -> Arrays.stream(intensities).max().orElse(0d);
+        case AVERAGE -> Arrays.stream(intensities).average().orElse(0d);
+      };
+      if (outputNoiseLevel == null || newIntensity > outputNoiseLevel) {
+        newMzs.add(newMz);
+        newIntensities.add(newIntensity);
+      }
+    }
+    return new double[][]{newMzs.stream().mapToDouble(Double::doubleValue).toArray(),
+        newIntensities.stream().mapToDouble(Double::doubleValue).toArray()};
+  }
+}
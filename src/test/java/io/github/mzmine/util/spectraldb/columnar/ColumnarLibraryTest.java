@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.columnar;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.mzmine.MZmineJsonLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.mzmine.SpectralQuality;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnarLibraryTest {
+
+  @TempDir
+  File tempDir;
+
+  @Test
+  void writeAndOpen() throws IOException {
+    SpectralLibrary library = new SpectralLibrary(null, new File(tempDir, "lib.json"));
+    library.addEntry(new SpectralDBEntry(null, new double[]{50.1, 100.2, 200.3},
+        new double[]{10, 1000, 5},
+        Map.of(DBEntryField.NAME, "Caffeine", DBEntryField.PRECURSOR_MZ, 195.0877d,
+            DBEntryField.CHARGE, 1, DBEntryField.RT, 5.5f, DBEntryField.POLARITY, "+")));
+    // no peaks and string charge is stored as side value
+    library.addEntry(new SpectralDBEntry(null, new double[0], new double[0],
+        Map.of(DBEntryField.NAME, "Empty", DBEntryField.CHARGE, "2+")));
+    library.addEntry(new SpectralDBEntry(null, new double[]{80d}, new double[]{1d},
+        Map.of(DBEntryField.NAME, "Caffeine", DBEntryField.SMILES,
+            "CN1C=NC2=C1C(=O)N(C(=O)N2C)C")));
+
+    File file = new File(tempDir, "lib.json." + ColumnarLibraryFormat.EXTENSION);
+    ColumnarLibraryWriter.write(library, file);
+
+    ColumnarLibraryStore store = ColumnarLibraryStore.open(file);
+    assertEquals("lib.json", store.getLibraryName());
+    List<SpectralLibraryEntry> entries = store.createEntries();
+    assertEquals(3, entries.size());
+
+    for (int i = 0; i < entries.size(); i++) {
+      SpectralLibraryEntry expected = library.getEntries().get(i);
+      SpectralLibraryEntry actual = entries.get(i);
+      assertEquals(expected.getNumberOfDataPoints(), actual.getNumberOfDataPoints());
+      assertArrayEquals(expected.getMzValues(new double[0]), actual.getMzValues(new double[0]));
+      assertArrayEquals(expected.getIntensityValues(new double[0]),
+          actual.getIntensityValues(new double[0]));
+      assertEquals(expected.getTIC(), actual.getTIC());
+      assertEquals(expected.getBasePeakIndex(), actual.getBasePeakIndex());
+      assertEquals(expected.getDataPointMZRange(), actual.getDataPointMZRange());
+    }
+
+    SpectralLibraryEntry first = entries.get(0);
+    assertEquals(195.0877d, first.getPrecursorMZ());
+    assertEquals(5.5f, first.getOrElse(DBEntryField.RT, null));
+    assertEquals("Caffeine", first.getOrElse(DBEntryField.NAME, null));
+    // charge was mixed Integer and String, both keep their type
+    assertEquals(1, (Integer) first.getOrElse(DBEntryField.CHARGE, null));
+    assertEquals("2+", entries.get(1).getOrElse(DBEntryField.CHARGE, null));
+    assertNull(entries.get(1).getPrecursorMZ());
+    assertEquals(library.getEntries().get(2).getFields(), entries.get(2).getFields());
+
+    // changed fields are kept in the entry
+    first.putIfNotNull(DBEntryField.COMMENT, "test");
+    assertEquals("test", first.getOrElse(DBEntryField.COMMENT, null));
+  }
+
+  @Test
+  void roundTripAllFieldTypes() throws IOException {
+    // every field with a value of its declared type
+    Map<DBEntryField, Object> declared = new EnumMap<>(DBEntryField.class);
+    for (DBEntryField field : DBEntryField.values()) {
+      declared.put(field, createValue(field));
+    }
+    // types that the library parsers put into fields
+    declared.put(DBEntryField.SYNONYMS, List.of("Guaranine", "Methyltheobromine"));
+    declared.put(DBEntryField.MS_LEVEL, 3);
+    declared.put(DBEntryField.QUALITY, new SpectralQuality(0.9f, 0.8f, "passed", 2.5f, 0.6f));
+    declared.put(DBEntryField.MSN_PRECURSOR_MZS, new double[]{195.0877, 138.0662});
+    declared.put(DBEntryField.MSN_ISOLATION_WINDOWS, new double[]{1.2, 1.5});
+    declared.put(DBEntryField.MSN_COLLISION_ENERGIES, new float[]{30f, 45f});
+    declared.put(DBEntryField.MSN_FRAGMENTATION_METHODS, new String[]{"CID", "HCD"});
+
+    // values that do not match the column types are stored as side values
+    Map<DBEntryField, Object> mixed = new EnumMap<>(DBEntryField.class);
+    mixed.put(DBEntryField.CHARGE, "2+");
+    mixed.put(DBEntryField.PRECURSOR_MZ, Double.NaN);
+    mixed.put(DBEntryField.RT, 5.5d);
+    mixed.put(DBEntryField.NAME, 7);
+    mixed.put(DBEntryField.SYNONYMS, List.of());
+    mixed.put(DBEntryField.MSN_PRECURSOR_MZS, new double[0]);
+    mixed.put(DBEntryField.MSN_COLLISION_ENERGIES, "[30.0, 45.0]");
+    mixed.put(DBEntryField.MSN_FRAGMENTATION_METHODS, new String[]{"CID", "ETD", "CID"});
+
+    // only fields that the json export can take
+    Map<DBEntryField, Object> msn = Map.of(DBEntryField.NAME, "MSn",
+        DBEntryField.MSN_PRECURSOR_MZS, new double[]{195.0877, 138.0662, 110.0713},
+        DBEntryField.MSN_COLLISION_ENERGIES, new float[]{30f, 45f, 60f});
+
+    SpectralLibrary library = new SpectralLibrary(null, new File(tempDir, "types.json"));
+    library.addEntry(new SpectralDBEntry(null, new double[]{100d}, new double[]{1d}, declared));
+    library.addEntry(new SpectralDBEntry(null, new double[]{100d}, new double[]{1d}, mixed));
+    library.addEntry(new SpectralDBEntry(null, new double[0], new double[0], Map.of()));
+    library.addEntry(new SpectralDBEntry(null, new double[]{100d}, new double[]{1d}, declared));
+    library.addEntry(new SpectralDBEntry(null, new double[]{100d}, new double[]{1d}, msn));
+
+    File file = new File(tempDir, "types.json." + ColumnarLibraryFormat.EXTENSION);
+    ColumnarLibraryWriter.write(library, file);
+    List<SpectralLibraryEntry> entries = ColumnarLibraryStore.open(file).createEntries();
+
+    for (int i = 0; i < entries.size(); i++) {
+      SpectralLibraryEntry expected = library.getEntries().get(i);
+      SpectralLibraryEntry actual = entries.get(i);
+      for (DBEntryField field : DBEntryField.values()) {
+        Object expectedValue = expected.getField(field).orElse(null);
+        Object actualValue = actual.getField(field).orElse(null);
+        String message = "entry %d field %s".formatted(i, field);
+        if (expectedValue == null) {
+          assertNull(actualValue, message);
+          continue;
+        }
+        assertNotNull(actualValue, message);
+        assertEquals(expectedValue.getClass(), actualValue.getClass(), message);
+        assertTrue(Objects.deepEquals(expectedValue, actualValue), message);
+      }
+    }
+
+    // MSn arrays are read with their types
+    assertDoesNotThrow(() -> MZmineJsonLibraryEntry.fromSpectralLibraryEntry(entries.get(4)));
+  }
+
+  @Test
+  void unsupportedValueIsRejected() {
+    SpectralLibrary library = new SpectralLibrary(null, new File(tempDir, "unsupported.json"));
+    library.addEntry(new SpectralDBEntry(null, new double[]{100d}, new double[]{1d},
+        Map.of(DBEntryField.COMMENT, new Object())));
+    File file = new File(tempDir, "unsupported.json." + ColumnarLibraryFormat.EXTENSION);
+    assertThrows(IOException.class, () -> ColumnarLibraryWriter.write(library, file));
+    assertFalse(file.exists());
+  }
+
+  private static Object createValue(DBEntryField field) {
+    final Class<?> clazz = field.getObjectClass();
+    if (clazz == Double.class) {
+      return 100.5 + field.ordinal();
+    } else if (clazz == Float.class) {
+      return 0.25f + field.ordinal();
+    } else if (clazz == Integer.class) {
+      return field.ordinal();
+    }
+    return field.name() + " value";
+  }
+
+  @Test
+  void invalidFile() throws IOException {
+    File file = new File(tempDir, "invalid." + ColumnarLibraryFormat.EXTENSION);
+    Files.writeString(file.toPath(), "not a columnar library file");
+    assertThrows(IOException.class, () -> ColumnarLibraryStore.open(file));
+  }
+}
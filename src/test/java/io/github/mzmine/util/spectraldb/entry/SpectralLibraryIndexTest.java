@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.PolarityType;
+import java.io.File;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SpectralLibraryIndexTest {
+
+  SpectralLibrary library;
+
+  @BeforeEach
+  void init() {
+    library = new SpectralLibrary(null, new File("test_library.json"));
+    Random rand = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      // some duplicates in mz
+      double mz = 100 + rand.nextInt(200) * 0.5;
+      SpectralLibraryEntry entry = SpectralLibraryEntry.create(null, mz, new DataPoint[0]);
+      entry.putIfNotNull(DBEntryField.POLARITY, i % 2 == 0 ? "+" : "-");
+      library.addEntry(entry);
+    }
+    // entry without precursor
+    SpectralLibraryEntry noPrecursor = SpectralLibraryEntry.create(null, 0, new DataPoint[0]);
+    noPrecursor.getFields().remove(DBEntryField.PRECURSOR_MZ);
+    library.addEntry(noPrecursor);
+  }
+
+  @Test
+  void findPrecursorCandidates() {
+    SpectralLibraryIndex index = library.getIndex();
+    assertEquals(501, index.getNumEntries());
+    assertEquals(500, index.getNumPrecursorEntries());
+
+    checkRange(index, 0, 50);
+    checkRange(index, 120, 120);
+    checkRange(index, 120.1, 120.4);
+    checkRange(index, 150.25, 180.75);
+    checkRange(index, 195, 1000);
+    checkRange(index, 500, 1000);
+  }
+
+  private void checkRange(SpectralLibraryIndex index, double lower, double upper) {
+    var entries = library.getEntries();
+    int[] expected = IntStream.range(0, entries.size()).filter(i -> {
+      Double mz = entries.get(i).getPrecursorMZ();
+      return mz != null && lower <= mz && mz <= upper;
+    }).toArray();
+    assertArrayEquals(expected, index.findPrecursorCandidates(lower, upper));
+  }
+
+  @Test
+  void polarityAndInvalidation() {
+    SpectralLibraryIndex index = library.getIndex();
+    assertEquals(PolarityType.POSITIVE, index.getPolarity(0));
+    assertEquals(PolarityType.NEGATIVE, index.getPolarity(1));
+    assertTrue(Float.isNaN(index.getRT(0)));
+
+    library.addEntry(SpectralLibraryEntry.create(null, 200, new DataPoint[0]));
+    assertEquals(502, library.getIndex().getNumEntries());
+  }
+}